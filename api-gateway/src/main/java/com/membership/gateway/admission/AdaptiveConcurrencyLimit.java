@@ -0,0 +1,125 @@
+package com.membership.gateway.admission;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ルートごとの同時実行数の上限
+ * 一定間隔ごとに平均応答時間を基準（負荷の低いときの応答時間）と比べ、遅くなった割合だけ上限を下げ、
+ * 許容範囲内で上限まで使われていれば上限を上げる。下流が過負荷を返した場合は一定の割合で下げる
+ * 受付と完了はCASとLongAdderだけで行い、上限の見直しは間隔ごとに1つのスレッドだけが行う
+ */
+@Slf4j
+final class AdaptiveConcurrencyLimit {
+    
+    private final AdmissionProperties.Concurrency config;
+    private final long windowNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder rttSum = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder overloads = new LongAdder();
+    private final AtomicLong windowStart;
+    private volatile double exactLimit;
+    private volatile int limit;
+    private volatile double baselineNanos = Double.NaN;
+    
+    AdaptiveConcurrencyLimit(AdmissionProperties.Concurrency config, long now) {
+        this.config = config;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(config.getWindowMs());
+        this.windowStart = new AtomicLong(now);
+        this.exactLimit = clamp(config.getInitialLimit());
+        this.limit = (int) exactLimit;
+    }
+    
+    /**
+     * 優先しない要求はpriority-reserve分を残した上限までしか受け付けない
+     */
+    boolean tryAcquire(boolean priority) {
+        int allowed = priority ? limit : normalLimit(limit);
+        while (true) {
+            int running = inFlight.get();
+            if (running >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(running, running + 1)) {
+                peakInFlight.accumulateAndGet(running + 1, Math::max);
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * @param rttNanos   受け付けてから応答を返し終えるまでの時間
+     * @param overloaded 下流が過負荷を返した（または接続できなかった）場合はtrue
+     * @param sampled    応答時間を上限の見直しに使う場合はtrue（クライアントが切断した場合などはfalse）
+     */
+    void release(long rttNanos, boolean overloaded, boolean sampled, long now) {
+        inFlight.decrementAndGet();
+        if (sampled) {
+            rttSum.add(rttNanos);
+            samples.increment();
+            if (overloaded) {
+                overloads.increment();
+            }
+        }
+        long start = windowStart.get();
+        if (now - start >= windowNanos && samples.sum() >= config.getMinWindowSamples()
+            && windowStart.compareAndSet(start, now)) {
+            update();
+        }
+    }
+    
+    int limit() {
+        return limit;
+    }
+    
+    int inFlight() {
+        return inFlight.get();
+    }
+    
+    private void update() {
+        long count = samples.sumThenReset();
+        long sum = rttSum.sumThenReset();
+        long overloaded = overloads.sumThenReset();
+        int peak = peakInFlight.getAndSet(inFlight.get());
+        if (count == 0) {
+            return;
+        }
+        double average = (double) sum / count;
+        double baseline = Double.isNaN(baselineNanos) ? average
+            : Math.min(baselineNanos * (1 + config.getBaselineDrift()), average);
+        baselineNanos = baseline;
+        double current = exactLimit;
+        double next;
+        if (overloaded > 0) {
+            next = current * config.getBackoffRatio();
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, config.getTolerance() * baseline / average));
+            if (gradient < 1.0) {
+                next = current * gradient;
+            } else if (peak >= normalLimit((int) current)) {
+                next = current + Math.sqrt(current);
+            } else {
+                // 上限まで使われていない間は、応答時間が変わらなくても上限を上げない
+                next = current;
+            }
+        }
+        exactLimit = clamp(current * (1 - config.getSmoothing()) + next * config.getSmoothing());
+        limit = (int) exactLimit;
+        log.debug("Concurrency limit {} (average {} ms, baseline {} ms, peak {}, overloaded {})", limit,
+            Math.round(average / 1_000_000), Math.round(baseline / 1_000_000), peak, overloaded);
+    }
+    
+    private int normalLimit(int current) {
+        return Math.max(1, (int) (current * (1 - config.getPriorityReserve())));
+    }
+    
+    private double clamp(double value) {
+        return Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), value));
+    }
+}
@@ -0,0 +1,19 @@
+package com.membership.gateway.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * ゲートウェイの流量制御の設定
+ */
+@Configuration
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionConfig {
+    
+    @Bean
+    public AdmissionFilter admissionFilter(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        return new AdmissionFilter(properties, meterRegistry);
+    }
+}
@@ -0,0 +1,219 @@
+package com.membership.gateway.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ゲートウェイの流量制御
+ * クライアントIP・店舗・ルートごとの要求レートを超えた要求は429で、ルートの同時実行数の上限を超えた要求は503で、
+ * 下流へ送らずにRetry-After付きで返す。状態はすべてインスタンスのメモリ上に持つため、
+ * レートはインスタンスごとの値となる（インスタンス数で割った値を設定する）
+ * チェックインなどの優先する要求は、レートを通常の要求と別枠で数え、同時実行数の上限の一部を専用に使う
+ */
+@Slf4j
+public class AdmissionFilter implements GlobalFilter, Ordered {
+    
+    /**
+     * ルートの決定後、負荷分散・下流への送信より前に判定する
+     */
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 10;
+    
+    /**
+     * 後段のフィルターが下流へ送らずに応答した（応答キャッシュなど）要求に付ける属性
+     * 応答時間が下流の負荷を表さないため、同時実行数の上限の見直しに使わない
+     */
+    public static final String LOCAL_RESPONSE_ATTR = AdmissionFilter.class.getName() + ".localResponse";
+    
+    private static final String PRIORITY_SUFFIX = "#priority";
+    private static final int MAX_STORE_ID_LENGTH = 32;
+    private static final Set<Integer> OVERLOAD_STATUSES = Set.of(429, 503, 504);
+    
+    private final AdmissionProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final List<PathPattern> priorityPaths;
+    private final TokenBuckets clientBuckets;
+    private final TokenBuckets storeBuckets;
+    private final TokenBuckets routeBuckets;
+    private final Map<String, AdaptiveConcurrencyLimit> concurrencyLimits = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejections = new ConcurrentHashMap<>();
+    
+    public AdmissionFilter(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.priorityPaths = properties.getPriorityPaths().stream()
+            .map(PathPatternParser.defaultInstance::parse)
+            .toList();
+        this.clientBuckets = new TokenBuckets(properties.getMaxKeys());
+        this.storeBuckets = new TokenBuckets(properties.getMaxKeys());
+        this.routeBuckets = new TokenBuckets(properties.getMaxKeys());
+    }
+    
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (!properties.isEnabled() || route == null) {
+            return chain.filter(exchange);
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        String routeId = route.getId();
+        boolean priority = isPriority(request.getPath().pathWithinApplication());
+        String suffix = priority ? PRIORITY_SUFFIX : "";
+        long start = System.nanoTime();
+        
+        String storeId = storeId(request);
+        AdmissionProperties.Limit[] limits = {properties.getClientIp(), properties.getStore(), properties.routeLimit(routeId)};
+        TokenBucket[] buckets = {
+            clientBuckets.bucket(clientIp(request) + suffix, limits[0], start),
+            storeId != null ? storeBuckets.bucket(storeId + suffix, limits[1], start) : null,
+            routeBuckets.bucket(routeId + suffix, limits[2], start)};
+        long wait = tryAcquire(buckets, limits, start);
+        if (wait > 0) {
+            return reject(exchange, routeId, "rate", HttpStatus.TOO_MANY_REQUESTS,
+                Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1)));
+        }
+        
+        if (!properties.getConcurrency().isEnabled()) {
+            return chain.filter(exchange);
+        }
+        AdaptiveConcurrencyLimit concurrencyLimit = concurrencyLimits.computeIfAbsent(routeId, this::newConcurrencyLimit);
+        if (!concurrencyLimit.tryAcquire(priority)) {
+            return reject(exchange, routeId, "concurrency", HttpStatus.SERVICE_UNAVAILABLE,
+                properties.getConcurrency().getRetryAfterSeconds());
+        }
+        return chain.filter(exchange)
+            .doFinally(signal -> {
+                long now = System.nanoTime();
+                HttpStatusCode status = exchange.getResponse().getStatusCode();
+                boolean overloaded = signal == SignalType.ON_ERROR
+                    || status != null && OVERLOAD_STATUSES.contains(status.value());
+                boolean local = Boolean.TRUE.equals(exchange.getAttribute(LOCAL_RESPONSE_ATTR));
+                concurrencyLimit.release(now - start, overloaded, signal != SignalType.CANCEL && !local, now);
+            });
+    }
+    
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+    
+    /**
+     * ルートの現在の同時実行数の上限（まだ要求のないルートはnull）
+     */
+    public Integer getConcurrencyLimit(String routeId) {
+        AdaptiveConcurrencyLimit concurrencyLimit = concurrencyLimits.get(routeId);
+        return concurrencyLimit != null ? concurrencyLimit.limit() : null;
+    }
+    
+    /**
+     * すべてのバケットから1件分を取る。受け付けられないバケットがあれば、それまでに取った分を戻す
+     * （店舗・ルートのレートで断った要求でクライアントIPのバケットを減らさない）
+     *
+     * @return 受け付けた場合は0、受け付けない場合は次に受け付けられるまでの時間（ナノ秒）
+     */
+    private static long tryAcquire(TokenBucket[] buckets, AdmissionProperties.Limit[] limits, long now) {
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] == null) {
+                continue;
+            }
+            long wait = buckets[i].tryAcquire(now, limits[i]);
+            if (wait > 0) {
+                for (int j = 0; j < i; j++) {
+                    if (buckets[j] != null) {
+                        buckets[j].refund(limits[j]);
+                    }
+                }
+                return wait;
+            }
+        }
+        return 0;
+    }
+    
+    private boolean isPriority(PathContainer path) {
+        for (PathPattern pattern : priorityPaths) {
+            if (pattern.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private String clientIp(ServerHttpRequest request) {
+        if (properties.isTrustForwardedFor()) {
+            String forwardedFor = request.getHeaders().getFirst("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isBlank()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return "unknown";
+        }
+        return remoteAddress.getAddress().getHostAddress();
+    }
+    
+    /**
+     * 店舗ヘッダー、なければstoreIdパラメータ。長すぎる値は店舗IDとして扱わない
+     */
+    private String storeId(ServerHttpRequest request) {
+        String storeId = request.getHeaders().getFirst(properties.getStoreHeader());
+        if (storeId == null) {
+            storeId = request.getQueryParams().getFirst("storeId");
+        }
+        if (storeId == null || storeId.isBlank() || storeId.length() > MAX_STORE_ID_LENGTH) {
+            return null;
+        }
+        return storeId.trim();
+    }
+    
+    private AdaptiveConcurrencyLimit newConcurrencyLimit(String routeId) {
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(properties.getConcurrency(), System.nanoTime());
+        Gauge.builder("gateway.admission.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::limit)
+            .tag("route", routeId)
+            .register(meterRegistry);
+        Gauge.builder("gateway.admission.concurrency.in-flight", concurrencyLimit, AdaptiveConcurrencyLimit::inFlight)
+            .tag("route", routeId)
+            .register(meterRegistry);
+        return concurrencyLimit;
+    }
+    
+    private Mono<Void> reject(ServerWebExchange exchange, String routeId, String reason, HttpStatus status,
+                              long retryAfterSeconds) {
+        rejections.computeIfAbsent(routeId + "/" + reason, key -> Counter.builder("gateway.admission.rejected")
+                .tag("route", routeId)
+                .tag("reason", reason)
+                .register(meterRegistry))
+            .increment();
+        log.debug("Rejected {} {} on {} by {} limit", exchange.getRequest().getMethod(),
+            exchange.getRequest().getPath(), routeId, reason);
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return response.setComplete();
+    }
+}
@@ -0,0 +1,145 @@
+package com.membership.gateway.admission;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ゲートウェイの流量制御の設定（gateway.admission.*）
+ * クライアントIP・店舗・ルートごとの要求レートと、ルートごとの同時実行数の上限（下流の応答時間から自動調整）を決める
+ */
+@Data
+@ConfigurationProperties(prefix = "gateway.admission")
+public class AdmissionProperties {
+    
+    private boolean enabled = true;
+    
+    /**
+     * クライアントIPごとの要求レート
+     */
+    private Limit clientIp = new Limit(50, 100);
+    
+    /**
+     * 店舗ごとの要求レート（店舗ヘッダーまたはstoreIdパラメータを付けた要求のみ）
+     */
+    private Limit store = new Limit(200, 400);
+    
+    /**
+     * ルートごとの要求レートの既定値
+     */
+    private Limit route = new Limit(2000, 4000);
+    
+    /**
+     * ルートIDごとの要求レート（未指定のルートはrouteの値）
+     */
+    private Map<String, Limit> routes = new HashMap<>();
+    
+    /**
+     * 要求元の店舗IDを示すヘッダー（キオスク・タブレット端末が付ける）
+     */
+    private String storeHeader = "X-Store-Id";
+    
+    /**
+     * X-Forwarded-Forの先頭をクライアントIPとして扱うか（前段のロードバランサーが付け直す場合のみ有効にする）
+     */
+    private boolean trustForwardedFor = false;
+    
+    /**
+     * 種類（クライアントIP・店舗・ルート）ごとに保持するバケット数の上限。超えた分は種類ごとに1つのバケットを共有する
+     */
+    private int maxKeys = 100000;
+    
+    /**
+     * 優先する要求のパス。レートは通常の要求と別枠で数え、同時実行数の上限のうちpriority-reserve分は優先する要求だけが使う
+     */
+    private List<String> priorityPaths = new ArrayList<>(List.of("/api/check-ins/**"));
+    
+    private Concurrency concurrency = new Concurrency();
+    
+    public Limit routeLimit(String routeId) {
+        return routes.getOrDefault(routeId, route);
+    }
+    
+    @Data
+    @NoArgsConstructor
+    public static class Limit {
+        
+        /**
+         * 1秒あたりの要求数（0以下は制限なし）
+         */
+        private double rate;
+        
+        /**
+         * 間隔を空けずに受け付ける要求数
+         */
+        private int burst;
+        
+        Limit(double rate, int burst) {
+            this.rate = rate;
+            this.burst = burst;
+        }
+        
+        boolean isUnlimited() {
+            return rate <= 0;
+        }
+        
+        long intervalNanos() {
+            return (long) (1_000_000_000L / rate);
+        }
+        
+        long toleranceNanos() {
+            return intervalNanos() * (Math.max(burst, 1) - 1);
+        }
+    }
+    
+    @Data
+    public static class Concurrency {
+        
+        private boolean enabled = true;
+        
+        private int initialLimit = 20;
+        private int minLimit = 4;
+        private int maxLimit = 500;
+        
+        /**
+         * 同時実行数の上限のうち、優先する要求のために空けておく割合
+         */
+        private double priorityReserve = 0.2;
+        
+        /**
+         * 応答時間が基準（負荷の低いときの応答時間）の何倍までなら上限を下げないか
+         */
+        private double tolerance = 1.5;
+        
+        /**
+         * 上限を見直す間隔（ミリ秒）と、見直しに必要な応答数
+         */
+        private long windowMs = 100;
+        private int minWindowSamples = 10;
+        
+        /**
+         * 下流が過負荷（429・503・504・接続エラー）を返したときに上限へ掛ける割合
+         */
+        private double backoffRatio = 0.9;
+        
+        /**
+         * 新しい上限へ寄せる割合（小さいほど緩やかに変わる）
+         */
+        private double smoothing = 0.2;
+        
+        /**
+         * 基準の応答時間を見直し1回ごとに引き上げる割合（下流が恒常的に遅くなった場合に追従する）
+         */
+        private double baselineDrift = 0.001;
+        
+        /**
+         * 同時実行数の上限で受け付けなかった要求に返すRetry-After（秒）
+         */
+        private int retryAfterSeconds = 1;
+    }
+}
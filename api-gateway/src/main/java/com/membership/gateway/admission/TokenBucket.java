@@ -0,0 +1,55 @@
+package com.membership.gateway.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GCRA（Generic Cell Rate Algorithm）によるトークンバケット
+ * 次の要求を間隔どおりに受け付けられる理論上の時刻を1つのlongで持ち、CASだけで更新する
+ */
+final class TokenBucket {
+    
+    private final AtomicLong theoreticalArrival;
+    private final long refillNanos;
+    
+    /**
+     * @param limit バケットを作るときのレート（使われない状態が続いて満杯に戻るまでの時間を決める）
+     */
+    TokenBucket(long now, AdmissionProperties.Limit limit) {
+        this.theoreticalArrival = new AtomicLong(now);
+        this.refillNanos = limit.intervalNanos() + limit.toleranceNanos();
+    }
+    
+    /**
+     * @return 受け付けた場合は0、受け付けない場合は次に受け付けられるまでの時間（ナノ秒）
+     */
+    long tryAcquire(long now, AdmissionProperties.Limit limit) {
+        long interval = limit.intervalNanos();
+        long tolerance = limit.toleranceNanos();
+        while (true) {
+            long current = theoreticalArrival.get();
+            long base = current - now > 0 ? current : now;
+            long wait = base - tolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, base + interval)) {
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * tryAcquireで受け付けた1件分を戻す（同じ要求が後段のバケットで受け付けられなかった場合）
+     * 満杯を超えて戻った分は次のtryAcquireで現在時刻に切り上げられるため、満杯より多くは受け付けない
+     */
+    void refund(AdmissionProperties.Limit limit) {
+        theoreticalArrival.addAndGet(-limit.intervalNanos());
+    }
+    
+    /**
+     * 最後に受け付けてから満杯に戻るまでの最長の時間
+     */
+    long refillNanos() {
+        return refillNanos;
+    }
+}
@@ -0,0 +1,76 @@
+package com.membership.gateway.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * キー（クライアントIP・店舗IDなど）ごとのトークンバケット
+ * 最後に使われてから満杯に戻るまでの時間が過ぎたバケットは新しく作るものと同じため、Caffeineの有効期限で捨てる
+ * （期限切れの処理は読み書きのついでに少しずつ行われ、全件を走査しない）。キー数が上限を超えた分は1つのバケットを共有させる
+ */
+final class TokenBuckets {
+    
+    private static final String OVERFLOW_KEY = "*";
+    
+    private final Cache<String, TokenBucket> buckets;
+    private final int maxKeys;
+    
+    TokenBuckets(int maxKeys) {
+        this(maxKeys, Ticker.systemTicker());
+    }
+    
+    /**
+     * @param ticker tryAcquireに渡す時刻と同じ時計（System.nanoTime）
+     */
+    TokenBuckets(int maxKeys, Ticker ticker) {
+        this.maxKeys = maxKeys;
+        this.buckets = Caffeine.newBuilder()
+            .ticker(ticker)
+            .executor(Runnable::run)
+            .expireAfter(new Expiry<String, TokenBucket>() {
+                @Override
+                public long expireAfterCreate(String key, TokenBucket bucket, long currentTime) {
+                    return bucket.refillNanos();
+                }
+                
+                @Override
+                public long expireAfterUpdate(String key, TokenBucket bucket, long currentTime, long currentDuration) {
+                    return bucket.refillNanos();
+                }
+                
+                @Override
+                public long expireAfterRead(String key, TokenBucket bucket, long currentTime, long currentDuration) {
+                    return bucket.refillNanos();
+                }
+            })
+            .build();
+    }
+    
+    /**
+     * キーのバケット（制限なしの場合はnull）
+     */
+    TokenBucket bucket(String key, AdmissionProperties.Limit limit, long now) {
+        if (limit.isUnlimited()) {
+            return null;
+        }
+        TokenBucket bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            if (buckets.estimatedSize() >= maxKeys) {
+                // 期限切れで数に残っている分を先に捨てる（期限切れになった分だけの処理で済む）
+                buckets.cleanUp();
+                if (buckets.estimatedSize() >= maxKeys) {
+                    key = OVERFLOW_KEY;
+                }
+            }
+            bucket = buckets.get(key, k -> new TokenBucket(now, limit));
+        }
+        return bucket;
+    }
+    
+    long size() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,14 @@
+package com.membership.gateway.cache;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * キャッシュした応答（ステータス200の応答のみ）
+ */
+record CachedResponse(String routeId, String path, HttpHeaders headers, byte[] body, String etag,
+                      long storedAt, long expiresAt) {
+    
+    boolean isFresh(long now) {
+        return expiresAt > now;
+    }
+}
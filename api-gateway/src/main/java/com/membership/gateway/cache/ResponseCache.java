@@ -0,0 +1,132 @@
+package com.membership.gateway.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 応答キャッシュ（本文のバイト数の合計を上限とするLRU + 有効期限）
+ * 破棄のたびに世代番号を進め、下流へ問い合わせている間に破棄された応答は格納しない
+ * ヒット・ミス・破棄件数は cache.gets / cache.evictions / cache.size としてMicrometerへ公開する
+ */
+class ResponseCache {
+    
+    private final long maxBytes;
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+    private long totalBytes;
+    private long generation;
+    
+    ResponseCache(String name, long maxBytes, MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes;
+        this.hits = Counter.builder("cache.gets").tag("cache", name).tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", name).tag("result", "miss").register(meterRegistry);
+        this.coalesced = Counter.builder("cache.gets").tag("cache", name).tag("result", "coalesced").register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions").tag("cache", name).register(meterRegistry);
+        Gauge.builder("cache.size", this, ResponseCache::size).tag("cache", name).register(meterRegistry);
+        Gauge.builder("cache.bytes", this, ResponseCache::bytes).tag("cache", name).register(meterRegistry);
+    }
+    
+    /**
+     * 有効期限内の応答（なければnull）
+     */
+    synchronized CachedResponse get(String key, long now) {
+        CachedResponse entry = entries.get(key);
+        if (entry != null && entry.isFresh(now)) {
+            hits.increment();
+            return entry;
+        }
+        if (entry != null) {
+            remove(key);
+        }
+        misses.increment();
+        return null;
+    }
+    
+    /**
+     * 下流への問い合わせを始める時点の世代番号（putに渡す）
+     */
+    synchronized long generation() {
+        return generation;
+    }
+    
+    /**
+     * 問い合わせ開始後に破棄されていなければ格納する
+     */
+    synchronized void put(String key, CachedResponse entry, long readGeneration) {
+        if (readGeneration != generation || entry.body().length > maxBytes) {
+            return;
+        }
+        remove(key);
+        entries.put(key, entry);
+        totalBytes += entry.body().length;
+        Iterator<CachedResponse> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().body().length;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+    
+    void coalesced() {
+        coalesced.increment();
+    }
+    
+    /**
+     * ルートの応答を破棄する。パターンを指定しない場合はルートの応答をすべて破棄する
+     *
+     * @return 破棄した件数
+     */
+    synchronized int purge(String routeId, List<PathPattern> patterns) {
+        generation++;
+        int purged = 0;
+        Iterator<Map.Entry<String, CachedResponse>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            CachedResponse entry = iterator.next().getValue();
+            if (entry.routeId().equals(routeId) && matches(patterns, entry.path())) {
+                totalBytes -= entry.body().length;
+                iterator.remove();
+                purged++;
+            }
+        }
+        return purged;
+    }
+    
+    synchronized int size() {
+        return entries.size();
+    }
+    
+    synchronized long bytes() {
+        return totalBytes;
+    }
+    
+    private void remove(String key) {
+        CachedResponse removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.body().length;
+        }
+    }
+    
+    private static boolean matches(List<PathPattern> patterns, String path) {
+        if (patterns.isEmpty()) {
+            return true;
+        }
+        PathContainer container = PathContainer.parsePath(path);
+        for (PathPattern pattern : patterns) {
+            if (pattern.matches(container)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,365 @@
+package com.membership.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.membership.gateway.admission.AdmissionFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 読み取りの多いルートのGETの応答キャッシュ
+ * 同じ要求が同時に届いた場合は最初の1件だけを下流へ送り、残りはその応答を待って返す
+ * キャッシュから返す応答にはETagを付け、If-None-Matchが一致する要求には304を返す
+ * （下流の応答に付くCache-Controlは使わず、クライアントには毎回ETagで確認させる）
+ * 流量制御の後に判定するため、キャッシュから返す要求もレートに数える（応答時間は同時実行数の上限の見直しに使わない）
+ * ゲートウェイはトークンを検証しないため、呼び出し元で共有するルートの応答は、下流が同じAuthorizationヘッダーを
+ * 一定時間内に受け付けた呼び出し元にだけ返す。要求元IPで判定するルートはIPごとに別々にキャッシュする
+ */
+public class ResponseCacheFilter implements GlobalFilter, Ordered {
+    
+    public static final int ORDER = AdmissionFilter.ORDER + 5;
+    public static final String TOKEN_HEADER = "X-Cache-Invalidation-Token";
+    
+    private static final String CACHE_HEADER = "X-Cache";
+    private static final String MEMBER_ID_HEADER = "X-Member-Id";
+    private static final int MAX_VALIDATED_CALLERS = 100_000;
+    private static final List<String> CACHED_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LANGUAGE,
+        HttpHeaders.LAST_MODIFIED);
+    
+    private final ResponseCacheProperties properties;
+    private final ResponseCache cache;
+    private final Map<String, List<PathPattern>> routePaths = new HashMap<>();
+    private final Map<String, Sinks.One<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> validatedCallers;
+    private final Duration coalesceTimeout;
+    
+    public ResponseCacheFilter(ResponseCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.cache = new ResponseCache("gateway-response", properties.getMaxBytes(), meterRegistry);
+        properties.getRoutes().forEach((routeId, route) -> routePaths.put(routeId, parse(route.getPaths())));
+        this.coalesceTimeout = Duration.ofMillis(properties.getCoalesceTimeoutMs());
+        this.validatedCallers = Caffeine.newBuilder()
+            .maximumSize(MAX_VALIDATED_CALLERS)
+            .expireAfterWrite(Duration.ofSeconds(properties.getValidatedCallerTtlSeconds()))
+            .build();
+    }
+    
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (!properties.isEnabled() || route == null || request.getMethod() != HttpMethod.GET) {
+            return chain.filter(exchange);
+        }
+        ResponseCacheProperties.RouteCache config = properties.getRoutes().get(route.getId());
+        String path = request.getPath().pathWithinApplication().value();
+        if (config == null || !matches(routePaths.get(route.getId()), path)) {
+            return chain.filter(exchange);
+        }
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (config.isShared() && authorization == null) {
+            // 認証を付けていない要求は下流に判定させる
+            return chain.filter(exchange);
+        }
+        String key = key(route.getId(), path, request.getURI().getRawQuery(), config.isShared() ? null : authorization,
+            config.isIpRestricted() ? clientAddress(request) : null);
+        String caller = config.isShared() ? route.getId() + ' ' + hash(authorization) : null;
+        if (caller != null && validatedCallers.getIfPresent(caller) == null) {
+            // 下流がまだ受け付けていない呼び出し元には、共有の応答を返さずに下流へ送る（受け付けた応答はキャッシュする）
+            return fetch(exchange, chain, route.getId(), path, config, key, null, caller);
+        }
+        
+        CachedResponse cached = cache.get(key, System.currentTimeMillis());
+        if (cached != null) {
+            return writeCached(exchange, cached);
+        }
+        Sinks.One<CachedResponse> flight = Sinks.one();
+        Sinks.One<CachedResponse> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            cache.coalesced();
+            return leader.asMono()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .timeout(coalesceTimeout, Mono.just(Optional.empty()))
+                .flatMap(response -> response.isPresent() ? writeCached(exchange, response.get()) : miss(exchange, chain));
+        }
+        return fetch(exchange, chain, route.getId(), path, config, key, flight, caller)
+            .doFinally(signal -> {
+                inFlight.remove(key, flight);
+                flight.tryEmitEmpty();
+            });
+    }
+    
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+    
+    /**
+     * ルートの応答を破棄する。パスのパターンを指定しない場合はルートの応答をすべて破棄する
+     *
+     * @return 破棄した件数
+     */
+    public int purge(String routeId, List<String> paths) {
+        return cache.purge(routeId, paths == null ? List.of() : parse(paths));
+    }
+    
+    /**
+     * 下流へ送り、キャッシュできる応答を格納してflight（同じ要求を待つ要求がない場合はnull）へ渡す
+     *
+     * @param caller 呼び出し元で共有するルートの場合、下流が受け付けたら覚えておく呼び出し元（それ以外はnull）
+     */
+    private Mono<Void> fetch(ServerWebExchange exchange, GatewayFilterChain chain, String routeId, String path,
+                             ResponseCacheProperties.RouteCache config, String key, Sinks.One<CachedResponse> flight,
+                             String caller) {
+        long generation = cache.generation();
+        CapturingResponse response = new CapturingResponse(exchange.getResponse(), captured -> {
+            CachedResponse entry = captured.toEntry(routeId, path, config.getTtlSeconds());
+            cache.put(key, entry, generation);
+            if (flight != null) {
+                flight.tryEmitValue(entry);
+            }
+        });
+        response.getHeaders().set(CACHE_HEADER, "MISS");
+        ServerWebExchange leaderExchange = exchange.mutate()
+            .request(builder -> builder.headers(headers -> {
+                // 条件付きの要求でも下流からは本文を受け取ってキャッシュする
+                headers.remove(HttpHeaders.IF_NONE_MATCH);
+                headers.remove(HttpHeaders.IF_MODIFIED_SINCE);
+            }))
+            .response(response)
+            .build();
+        return chain.filter(leaderExchange)
+            .doOnSuccess(done -> {
+                HttpStatusCode status = response.getStatusCode();
+                if (caller != null && status != null && status.is2xxSuccessful()) {
+                    validatedCallers.put(caller, Boolean.TRUE);
+                }
+            });
+    }
+    
+    /**
+     * 破棄APIの呼び出し元の認証。トークンが未設定の場合は、プライベートネットワークから（プロキシを経由せず）直接届いた要求のみ受け付ける
+     */
+    public boolean isPurgeAuthorized(ServerHttpRequest request) {
+        String token = properties.getPurgeToken();
+        if (!token.isEmpty()) {
+            String requestToken = request.getHeaders().getFirst(TOKEN_HEADER);
+            return requestToken != null && MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8), requestToken.getBytes(StandardCharsets.UTF_8));
+        }
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        InetAddress address = remoteAddress != null ? remoteAddress.getAddress() : null;
+        return address != null && (address.isLoopbackAddress() || address.isSiteLocalAddress())
+            && !request.getHeaders().containsKey("X-Forwarded-For") && !request.getHeaders().containsKey("Forwarded");
+    }
+    
+    private Mono<Void> miss(ServerWebExchange exchange, GatewayFilterChain chain) {
+        exchange.getResponse().getHeaders().set(CACHE_HEADER, "MISS");
+        return chain.filter(exchange);
+    }
+    
+    private Mono<Void> writeCached(ServerWebExchange exchange, CachedResponse cached) {
+        exchange.getAttributes().put(AdmissionFilter.LOCAL_RESPONSE_ATTR, Boolean.TRUE);
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.putAll(cached.headers());
+        headers.setETag(cached.etag());
+        headers.setCacheControl("private, no-cache");
+        headers.set(HttpHeaders.AGE, String.valueOf(Math.max(0, (System.currentTimeMillis() - cached.storedAt()) / 1000)));
+        headers.set(CACHE_HEADER, "HIT");
+        if (isNotModified(exchange.getRequest(), cached.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+        response.setStatusCode(HttpStatus.OK);
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(cached.body())));
+    }
+    
+    private static boolean isNotModified(ServerHttpRequest request, String etag) {
+        List<String> ifNoneMatch;
+        try {
+            ifNoneMatch = request.getHeaders().getIfNoneMatch();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch) {
+            if ("*".equals(candidate) || stripWeak(candidate).equals(stripWeak(etag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+    
+    /**
+     * ルート・パス・クエリ文字列と、共有しないルートではAuthorizationヘッダーのハッシュ、
+     * 要求元IPで判定するルートでは要求元の情報のハッシュ
+     */
+    private static String key(String routeId, String path, String rawQuery, String authorization, String clientAddress) {
+        StringBuilder key = new StringBuilder(routeId).append(' ').append(path);
+        if (rawQuery != null) {
+            key.append('?').append(rawQuery);
+        }
+        if (authorization != null) {
+            key.append(' ').append(hash(authorization));
+        }
+        if (clientAddress != null) {
+            key.append(' ').append(hash(clientAddress));
+        }
+        return key.toString();
+    }
+    
+    /**
+     * 下流が要求元IPの判定（IpRestrictionFilter）に使う値: 会員ID、X-Forwarded-For・X-Real-IP（ゲートウェイはそのまま転送する）と接続元
+     */
+    private static String clientAddress(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return headers.getFirst(MEMBER_ID_HEADER) + '\n' + headers.get("X-Forwarded-For") + '\n'
+            + headers.get("X-Real-IP") + '\n'
+            + (remoteAddress != null && remoteAddress.getAddress() != null ? remoteAddress.getAddress().getHostAddress() : "");
+    }
+    
+    private static String hash(String value) {
+        return HexFormat.of().formatHex(sha256(value.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    private static boolean matches(List<PathPattern> patterns, String path) {
+        PathContainer container = PathContainer.parsePath(path);
+        for (PathPattern pattern : patterns) {
+            if (pattern.matches(container)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static List<PathPattern> parse(List<String> paths) {
+        return paths.stream().map(PathPatternParser.defaultInstance::parse).toList();
+    }
+    
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * 下流の応答を返しながら本文を写し取る。キャッシュできる応答（ステータス200、Set-Cookie・Content-Encodingなし、
+     * 本文が上限以下）を最後まで返し終えたらlistenerへ渡す
+     */
+    private class CapturingResponse extends ServerHttpResponseDecorator {
+        
+        private final Consumer<Captured> listener;
+        
+        CapturingResponse(ServerHttpResponse delegate, Consumer<Captured> listener) {
+            super(delegate);
+            this.listener = listener;
+        }
+        
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!isCacheable()) {
+                return super.writeWith(body);
+            }
+            getHeaders().setCacheControl("private, no-cache");
+            getHeaders().remove(HttpHeaders.PRAGMA);
+            getHeaders().remove(HttpHeaders.EXPIRES);
+            // 書き込み開始後はContent-Typeなどが下位の応答へ移るため、ここで写し取る
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(getHeaders());
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            boolean[] overflow = new boolean[1];
+            Flux<? extends DataBuffer> tee = Flux.from(body)
+                .doOnNext(buffer -> {
+                    int length = buffer.readableByteCount();
+                    if (overflow[0] || copy.size() + length > properties.getMaxEntryBytes()) {
+                        overflow[0] = true;
+                        return;
+                    }
+                    int position = buffer.readPosition();
+                    byte[] bytes = new byte[length];
+                    buffer.read(bytes);
+                    buffer.readPosition(position);
+                    copy.writeBytes(bytes);
+                })
+                .doOnComplete(() -> {
+                    if (!overflow[0]) {
+                        listener.accept(new Captured(headers, copy.toByteArray()));
+                    }
+                });
+            return super.writeWith(tee);
+        }
+        
+        private boolean isCacheable() {
+            HttpHeaders headers = getHeaders();
+            long contentLength = headers.getContentLength();
+            return HttpStatus.OK.equals(getStatusCode())
+                && !headers.containsKey(HttpHeaders.SET_COOKIE)
+                && !headers.containsKey(HttpHeaders.CONTENT_ENCODING)
+                && contentLength <= properties.getMaxEntryBytes();
+        }
+    }
+    
+    private record Captured(HttpHeaders headers, byte[] body) {
+        
+        CachedResponse toEntry(String routeId, String path, long ttlSeconds) {
+            HttpHeaders cachedHeaders = new HttpHeaders();
+            for (String name : CACHED_HEADERS) {
+                List<String> values = headers.get(name);
+                if (values != null) {
+                    cachedHeaders.put(name, values);
+                }
+            }
+            String etag = headers.getETag();
+            if (etag == null) {
+                etag = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(sha256(body)).substring(0, 27) + "\"";
+            }
+            long now = System.currentTimeMillis();
+            return new CachedResponse(routeId, path, cachedHeaders, body, etag, now, now + ttlSeconds * 1000);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.membership.gateway.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ゲートウェイの応答キャッシュの設定（gateway.response-cache.*）
+ * routesに設定したルートのGETの応答だけをキャッシュする
+ */
+@Data
+@ConfigurationProperties(prefix = "gateway.response-cache")
+public class ResponseCacheProperties {
+    
+    private boolean enabled = true;
+    
+    /**
+     * キャッシュ全体の上限（応答本文のバイト数の合計）。超えた分は最近使われていないものから捨てる
+     */
+    private long maxBytes = 64L * 1024 * 1024;
+    
+    /**
+     * 1件の応答本文の上限（バイト）。超える応答はキャッシュしない
+     */
+    private int maxEntryBytes = 1024 * 1024;
+    
+    /**
+     * 同じ要求の下流への問い合わせを待つ時間の上限（ミリ秒）。超えた要求は自分で下流へ問い合わせる
+     */
+    private long coalesceTimeoutMs = 10000;
+    
+    /**
+     * 破棄APIのトークン（X-Cache-Invalidation-Token）。未設定の場合はプライベートネットワークから直接届いた要求のみ受け付ける
+     */
+    private String purgeToken = "";
+    
+    /**
+     * 呼び出し元で共有するルートで、下流が受け付けたAuthorizationヘッダーを覚えておく時間（秒）
+     * この間は同じヘッダーの要求にキャッシュから返すため、失効したトークンもこの時間までは応答を受け取れる
+     */
+    private long validatedCallerTtlSeconds = 300;
+    
+    /**
+     * ルートIDごとのキャッシュ設定
+     */
+    private Map<String, RouteCache> routes = new HashMap<>();
+    
+    @Data
+    public static class RouteCache {
+        
+        private long ttlSeconds = 10;
+        
+        /**
+         * キャッシュするパス（ルートのパスのうち一部だけをキャッシュする場合に指定）
+         */
+        private List<String> paths = new ArrayList<>(List.of("/**"));
+        
+        /**
+         * 応答が呼び出し元によらない場合はtrue（Authorizationヘッダーを付けた要求どうしで応答を共有する）
+         * ゲートウェイはトークンを検証しないため、下流がvalidated-caller-ttl-seconds以内に受け付けたAuthorizationヘッダーの
+         * 要求にだけキャッシュから返す。認可が呼び出し元によらないルートのみ有効にする
+         * falseの場合はAuthorizationヘッダーごとに別々にキャッシュする
+         */
+        private boolean shared = false;
+        
+        /**
+         * 下流が要求元IPで応答を変える（membership-serviceのIpRestrictionFilter）場合はtrue
+         * 会員ID（X-Member-Id）・X-Forwarded-For・X-Real-IP・接続元ごとに別々にキャッシュする
+         */
+        private boolean ipRestricted = false;
+    }
+}
@@ -0,0 +1,37 @@
+package com.membership.gateway.controller;
+
+import com.membership.gateway.cache.ResponseCacheFilter;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/internal/cache")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Cache", description = "ゲートウェイの応答キャッシュの破棄API（データを持つ各サービスから呼び出す）")
+public class ResponseCacheController {
+    
+    private final ResponseCacheFilter responseCacheFilter;
+    
+    @PostMapping("/routes/{routeId}/purge")
+    @Operation(summary = "応答キャッシュの破棄", description = "ルートの応答キャッシュを破棄する。pathを指定した場合はパターンに一致するパスの応答のみ")
+    public ResponseEntity<Void> purge(
+            @PathVariable String routeId,
+            @RequestParam(required = false) List<String> path,
+            ServerHttpRequest request) {
+        if (!responseCacheFilter.isPurgeAuthorized(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        int purged = responseCacheFilter.purge(routeId, path);
+        log.debug("Purged {} cached responses of {} {}", purged, routeId, path != null ? path : "");
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.membership.gateway.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionFilterTest {
+    
+    private static final Route ROUTE = Route.async()
+        .id("membership-service")
+        .uri(URI.create("http://localhost"))
+        .predicate(exchange -> true)
+        .build();
+    
+    @Test
+    void requestsRejectedByStoreLimitDoNotConsumeClientTokens() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setClientIp(new AdmissionProperties.Limit(1, 5));
+        properties.setStore(new AdmissionProperties.Limit(1, 1));
+        properties.getConcurrency().setEnabled(false);
+        AdmissionFilter filter = new AdmissionFilter(properties, new SimpleMeterRegistry());
+        
+        assertThat(filter(filter, "1")).isNull();
+        for (int i = 0; i < 10; i++) {
+            assertThat(filter(filter, "1")).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        }
+        // 店舗のレートで断った10件はクライアントIPのバケットを減らさないため、残りの4件を受け付ける
+        for (int i = 0; i < 4; i++) {
+            assertThat(filter(filter, null)).isNull();
+        }
+        assertThat(filter(filter, null)).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    }
+    
+    private static HttpStatus filter(AdmissionFilter filter, String storeId) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/api/members/1");
+        if (storeId != null) {
+            request.header("X-Store-Id", storeId);
+        }
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, ROUTE);
+        filter.filter(exchange, e -> Mono.empty()).block();
+        return (HttpStatus) exchange.getResponse().getStatusCode();
+    }
+}
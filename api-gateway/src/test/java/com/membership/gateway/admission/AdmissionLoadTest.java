@@ -0,0 +1,173 @@
+package com.membership.gateway.admission;
+
+import com.membership.gateway.ApiGatewayApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 処理能力の限られた偽の下流サービスに、処理能力の2倍の要求を会員APIへ送り続けている間の
+ * チェックイン（優先する要求）の応答時間を、流量制御を有効にしたゲートウェイと無効にしたゲートウェイで比べる
+ * 下流は4スレッドで1件80ミリ秒かけて順に処理する（毎秒50件）。受け付けた要求は下流の待ち行列に並ぶため、
+ * 流量制御がなければチェックインも待ち行列の長さだけ遅れる
+ * 同時実行数の上限は応答時間が基準の1.5倍（tolerance）に収まるまで下がるため、上限が下がりきった後の応答時間を比べる
+ */
+class AdmissionLoadTest {
+    
+    private static final int DOWNSTREAM_WORKERS = 4;
+    private static final Duration DOWNSTREAM_LATENCY = Duration.ofMillis(80);
+    private static final Duration OVERLOAD_INTERVAL = Duration.ofMillis(10);
+    private static final Duration OVERLOAD_DURATION = Duration.ofSeconds(8);
+    private static final Duration CONVERGENCE = Duration.ofSeconds(3);
+    private static final Duration PROBE_INTERVAL = Duration.ofMillis(50);
+    
+    private static ExecutorService downstreamWorkers;
+    private static LoopResources loops;
+    private static DisposableServer downstream;
+    private static ConnectionProvider connections;
+    
+    @BeforeAll
+    static void startDownstream() {
+        downstreamWorkers = Executors.newFixedThreadPool(DOWNSTREAM_WORKERS);
+        Scheduler scheduler = Schedulers.fromExecutorService(downstreamWorkers);
+        // ゲートウェイの停止で共有のイベントループが止まらないよう、下流と負荷をかける側は専用のものを使う
+        loops = LoopResources.create("load-test");
+        downstream = HttpServer.create()
+            .runOn(loops)
+            .port(0)
+            .handle((request, response) -> response.sendString(Mono.fromCallable(() -> {
+                Thread.sleep(DOWNSTREAM_LATENCY.toMillis());
+                return "{}";
+            }).subscribeOn(scheduler)))
+            .bindNow();
+        connections = ConnectionProvider.builder("load-test").maxConnections(1000).pendingAcquireMaxCount(-1).build();
+    }
+    
+    @AfterAll
+    static void stopDownstream() {
+        connections.dispose();
+        downstream.disposeNow();
+        downstreamWorkers.shutdownNow();
+        loops.dispose();
+    }
+    
+    @Test
+    void checkInLatencyStaysFlatUnderOverload() throws InterruptedException {
+        // 流量制御なしを先に実行し、負荷のないときの応答時間を測る前のJITの暖機を兼ねる
+        Result unlimited = run(false);
+        Result limited = run(true);
+        
+        // 流量制御あり: 会員APIの超過分は503とRetry-Afterで断り、チェックインは負荷のないときと同程度で返る
+        assertThat(limited.shed()).isPositive();
+        assertThat(limited.loadedP90()).isLessThan(limited.idleP90() * 2);
+        // 流量制御なし: 断らない分だけ下流の待ち行列が伸び、チェックインも遅れる
+        assertThat(unlimited.shed()).isZero();
+        assertThat(unlimited.loadedP90()).isGreaterThan(limited.loadedP90() * 3);
+    }
+    
+    private record Result(long idleP90, long loadedP90, int shed) {
+    }
+    
+    private Result run(boolean admission) throws InterruptedException {
+        try (ConfigurableApplicationContext gateway = startGateway(admission)) {
+            int port = ((WebServerApplicationContext) gateway).getWebServer().getPort();
+            HttpClient client = HttpClient.create(connections).runOn(loops).baseUrl("http://localhost:" + port);
+            
+            // 負荷のないときの応答時間を基準として学習させる
+            for (int i = 0; i < 30; i++) {
+                get(client, "/api/members/" + i).block();
+            }
+            long idleP90 = p90(probe(client, Duration.ofSeconds(1)));
+            
+            AtomicInteger shed = new AtomicInteger();
+            Mono<Void> overload = Flux.interval(OVERLOAD_INTERVAL)
+                .take(OVERLOAD_DURATION)
+                .flatMap(i -> get(client, "/api/members/" + i)
+                    .doOnNext(status -> {
+                        if (status == 503) {
+                            shed.incrementAndGet();
+                        }
+                    }), Integer.MAX_VALUE)
+                .then();
+            Mono<List<Long>> probes = Mono.delay(CONVERGENCE)
+                .then(Mono.fromCallable(() -> probe(client, OVERLOAD_DURATION.minus(CONVERGENCE).minusSeconds(1)))
+                    .subscribeOn(Schedulers.boundedElastic()));
+            List<Long> loaded = Mono.zip(overload.thenReturn(true), probes).block().getT2();
+            return new Result(idleP90, p90(loaded), shed.get());
+        }
+    }
+    
+    /**
+     * 一定間隔でチェックインを1件ずつ送り、応答時間（ミリ秒）を集める
+     */
+    private static List<Long> probe(HttpClient client, Duration duration) throws InterruptedException {
+        List<Long> latencies = new ArrayList<>();
+        long deadline = System.nanoTime() + duration.toNanos();
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            Integer status = get(client, "/api/check-ins/1").block();
+            assertThat(status).isEqualTo(200);
+            latencies.add((System.nanoTime() - start) / 1_000_000);
+            Thread.sleep(PROBE_INTERVAL.toMillis());
+        }
+        return latencies;
+    }
+    
+    private static Mono<Integer> get(HttpClient client, String path) {
+        return client.get().uri(path).responseSingle((response, body) -> body.then(Mono.fromSupplier(() -> {
+            if (response.status().code() == 503) {
+                assertThat(response.responseHeaders().get("Retry-After")).isNotNull();
+            }
+            return response.status().code();
+        })));
+    }
+    
+    private static long p90(List<Long> latencies) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(sorted.size() * 0.9) - 1);
+    }
+    
+    private static ConfigurableApplicationContext startGateway(boolean admission) {
+        String uri = "http://localhost:" + downstream.port();
+        return new SpringApplicationBuilder(ApiGatewayApplication.class).run(
+            "--server.port=0",
+            "--spring.main.web-application-type=reactive",
+            "--spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration,"
+                + "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration",
+            "--eureka.client.enabled=false",
+            "--spring.cloud.gateway.routes[0].id=membership-service",
+            "--spring.cloud.gateway.routes[0].uri=" + uri,
+            "--spring.cloud.gateway.routes[0].predicates[0]=Path=/api/members/**",
+            "--spring.cloud.gateway.routes[1].id=check-in",
+            "--spring.cloud.gateway.routes[1].uri=" + uri,
+            "--spring.cloud.gateway.routes[1].predicates[0]=Path=/api/check-ins/**",
+            "--gateway.admission.enabled=" + admission,
+            // すべての要求が同じクライアントIPから来るため、IPごとのレートは外して同時実行数の上限だけを見る
+            "--gateway.admission.client-ip.rate=0",
+            "--gateway.response-cache.enabled=false",
+            "--logging.level.root=WARN");
+    }
+}
@@ -0,0 +1,63 @@
+package com.membership.gateway.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketsTest {
+    
+    // 1秒に10件、間隔を空けずに3件まで（使われなくなってから満杯に戻るまで300ミリ秒）
+    private static final AdmissionProperties.Limit LIMIT = new AdmissionProperties.Limit(10, 3);
+    
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+    
+    @Test
+    void bucketsExpireOnceRefilled() {
+        TokenBuckets buckets = new TokenBuckets(100, now::get);
+        for (int i = 0; i < 3; i++) {
+            assertThat(buckets.bucket("a", LIMIT, now.get()).tryAcquire(now.get(), LIMIT)).isZero();
+        }
+        assertThat(buckets.bucket("a", LIMIT, now.get()).tryAcquire(now.get(), LIMIT)).isPositive();
+        assertThat(buckets.size()).isEqualTo(1);
+        
+        // 満杯に戻る前は同じバケット（空のまま）を使う
+        advance(150);
+        assertThat(buckets.bucket("a", LIMIT, now.get()).tryAcquire(now.get(), LIMIT)).isZero();
+        assertThat(buckets.bucket("a", LIMIT, now.get()).tryAcquire(now.get(), LIMIT)).isPositive();
+        
+        advance(301);
+        assertThat(buckets.size()).isZero();
+    }
+    
+    @Test
+    void keysBeyondLimitShareOneBucket() {
+        TokenBuckets buckets = new TokenBuckets(2, now::get);
+        TokenBucket first = buckets.bucket("a", LIMIT, now.get());
+        TokenBucket second = buckets.bucket("b", LIMIT, now.get());
+        TokenBucket overflow = buckets.bucket("c", LIMIT, now.get());
+        
+        assertThat(overflow).isNotSameAs(first).isNotSameAs(second).isSameAs(buckets.bucket("d", LIMIT, now.get()));
+        
+        // 期限切れで空いた分は新しいキーに使う
+        advance(301);
+        assertThat(buckets.bucket("e", LIMIT, now.get())).isNotSameAs(overflow);
+    }
+    
+    @Test
+    void refundRestoresTheAcquiredToken() {
+        TokenBucket bucket = new TokenBucket(now.get(), LIMIT);
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.tryAcquire(now.get(), LIMIT)).isZero();
+        }
+        bucket.refund(LIMIT);
+        assertThat(bucket.tryAcquire(now.get(), LIMIT)).isZero();
+        assertThat(bucket.tryAcquire(now.get(), LIMIT)).isPositive();
+    }
+    
+    private void advance(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,93 @@
+package com.membership.gateway.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheFilterTest {
+    
+    private static final String VALID = "Bearer valid";
+    
+    private final AtomicInteger downstreamCalls = new AtomicInteger();
+    
+    /**
+     * Authorizationヘッダーが VALID の場合だけ200を返す下流
+     */
+    private final GatewayFilterChain downstream = exchange -> {
+        downstreamCalls.incrementAndGet();
+        String authorization = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (!VALID.equals(authorization)) {
+            exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+            return exchange.getResponse().setComplete();
+        }
+        exchange.getResponse().setStatusCode(HttpStatus.OK);
+        byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+        return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory().wrap(body)));
+    };
+    
+    @Test
+    void sharedResponsesAreServedOnlyToCallersAcceptedByDownstream() {
+        ResponseCacheFilter filter = filter("lesson-service", "/api/lessons", route -> route.setShared(true));
+        
+        assertThat(get(filter, "lesson-service", "/api/lessons", VALID, "192.0.2.1")).isEqualTo(HttpStatus.OK);
+        assertThat(get(filter, "lesson-service", "/api/lessons", VALID, "192.0.2.1")).isEqualTo(HttpStatus.OK);
+        assertThat(downstreamCalls).hasValue(1);
+        
+        // 下流が受け付けていないトークンは、キャッシュがあっても下流へ送って判定させる
+        assertThat(get(filter, "lesson-service", "/api/lessons", "Bearer forged", "192.0.2.1"))
+            .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(get(filter, "lesson-service", "/api/lessons", "Bearer forged", "192.0.2.1"))
+            .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(downstreamCalls).hasValue(3);
+    }
+    
+    @Test
+    void ipRestrictedRoutesAreCachedPerClientAddress() {
+        ResponseCacheFilter filter = filter("membership-service", "/api/members/code/*",
+            route -> route.setIpRestricted(true));
+        
+        assertThat(get(filter, "membership-service", "/api/members/code/M1", VALID, "192.0.2.1")).isEqualTo(HttpStatus.OK);
+        assertThat(get(filter, "membership-service", "/api/members/code/M1", VALID, "192.0.2.1")).isEqualTo(HttpStatus.OK);
+        assertThat(downstreamCalls).hasValue(1);
+        
+        // 別の要求元からは下流で要求元IPを判定させる
+        assertThat(get(filter, "membership-service", "/api/members/code/M1", VALID, "198.51.100.1")).isEqualTo(HttpStatus.OK);
+        assertThat(downstreamCalls).hasValue(2);
+    }
+    
+    private static ResponseCacheFilter filter(String routeId, String path,
+                                              Consumer<ResponseCacheProperties.RouteCache> customizer) {
+        ResponseCacheProperties properties = new ResponseCacheProperties();
+        ResponseCacheProperties.RouteCache route = new ResponseCacheProperties.RouteCache();
+        route.setPaths(List.of(path));
+        customizer.accept(route);
+        properties.getRoutes().put(routeId, route);
+        return new ResponseCacheFilter(properties, new SimpleMeterRegistry());
+    }
+    
+    private HttpStatus get(ResponseCacheFilter filter, String routeId, String path, String authorization, String clientIp) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path)
+            .header(HttpHeaders.AUTHORIZATION, authorization)
+            .remoteAddress(new InetSocketAddress(clientIp, 40000)));
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR,
+            Route.async().id(routeId).uri(URI.create("http://localhost")).predicate(e -> true).build());
+        filter.filter(exchange, downstream).block();
+        return (HttpStatus) exchange.getResponse().getStatusCode();
+    }
+}
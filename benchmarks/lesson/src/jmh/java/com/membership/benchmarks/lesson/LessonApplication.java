@@ -0,0 +1,39 @@
+package com.membership.benchmarks.lesson;
+
+import com.membership.benchmarks.BenchmarkDatabase;
+import com.membership.lesson.LessonServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 組み込みPostgreSQLに接続したlesson-serviceのアプリケーションコンテキスト
+ * 設定を変えて計測するため、ベンチマークのパラメータごとに起動し、計測後に閉じる
+ * 他インスタンスの変更を読み込む差分読み込みは計測と重ならないよう、計測中は動かさない
+ */
+final class LessonApplication {
+    
+    private LessonApplication() {
+    }
+    
+    /**
+     * @param properties 追加の設定（"lesson.schedule.horizon-days=0" の形式）
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--spring.datasource.url=" + BenchmarkDatabase.jdbcUrl(),
+            "--spring.datasource.username=postgres",
+            "--spring.datasource.password=",
+            "--spring.jpa.hibernate.ddl-auto=none",
+            "--eureka.client.enabled=false",
+            "--lesson.schedule.sync-interval-ms=3600000",
+            "--logging.level.root=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(LessonServiceApplication.class).run(args.toArray(String[]::new));
+    }
+}
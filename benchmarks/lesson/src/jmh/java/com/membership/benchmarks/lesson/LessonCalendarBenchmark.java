@@ -0,0 +1,105 @@
+package com.membership.benchmarks.lesson;
+
+import com.membership.benchmarks.BenchmarkDatabase;
+import com.membership.lesson.dto.LessonScheduleEntry;
+import com.membership.lesson.schedule.LessonScheduleService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 店舗のレッスン予定（カレンダー表示）の1週間・1か月分の検索時間
+ * 50店舗・1店舗4スクール・1スクール1日12レッスンを過去28日から先92日まで合成し（約29万件）、
+ * 店舗と開始日を順に変えながら検索する
+ * source=index は予定インデックスから、source=database は読み込み期間を0日にしてDBへ問い合わせた場合の時間
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LessonCalendarBenchmark {
+    
+    private static final int STORES = 50;
+    private static final int SCHOOLS_PER_STORE = 4;
+    private static final int LESSONS_PER_DAY = 12;
+    private static final int PAST_DAYS = 28;
+    private static final int HORIZON_DAYS = 92;
+    
+    @Param({"index", "database"})
+    public String source;
+    
+    @Param({"7", "31"})
+    public int rangeDays;
+    
+    private ConfigurableApplicationContext context;
+    private LessonScheduleService lessonScheduleService;
+    private long[] storeIds;
+    private LocalDate today;
+    private long next;
+    
+    @Setup
+    public void setUp() {
+        BenchmarkDatabase.ensureStores(STORES);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(BenchmarkDatabase.get().getPostgresDatabase());
+        seedLessons(jdbcTemplate);
+        storeIds = jdbcTemplate.queryForList("SELECT id FROM stores ORDER BY id LIMIT ?", Long.class, STORES)
+            .stream().mapToLong(Long::longValue).toArray();
+        context = LessonApplication.start(
+            "lesson.schedule.horizon-days=" + ("index".equals(source) ? HORIZON_DAYS : 0));
+        lessonScheduleService = context.getBean(LessonScheduleService.class);
+        today = LocalDate.now();
+        
+        int expected = SCHOOLS_PER_STORE * LESSONS_PER_DAY * rangeDays;
+        int found = lessonScheduleService.findLessons(storeIds[0], null, today, today.plusDays(rangeDays - 1)).size();
+        if (found != expected) {
+            throw new IllegalStateException("Expected " + expected + " lessons but found " + found);
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public List<LessonScheduleEntry> findLessons() {
+        long i = next++;
+        long storeId = storeIds[(int) (i % STORES)];
+        LocalDate from = today.plusDays(i / STORES % (HORIZON_DAYS - rangeDays));
+        return lessonScheduleService.findLessons(storeId, null, from, from.plusDays(rangeDays - 1));
+    }
+    
+    /**
+     * 先頭からSTORES店舗のスクールとレッスンを投入する（同じJVMで2回目以降のパラメータでは投入済み）
+     */
+    private static void seedLessons(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("""
+            INSERT INTO schools (store_id, school_code, school_name, capacity)
+            SELECT s.id, 'BENCH' || n, 'スクール' || n, 20
+            FROM (SELECT id FROM stores ORDER BY id LIMIT ?) s CROSS JOIN generate_series(1, ?) AS n
+            ON CONFLICT (store_id, school_code) DO NOTHING
+            """, STORES, SCHOOLS_PER_STORE);
+        jdbcTemplate.update("""
+            INSERT INTO lessons (school_id, lesson_code, lesson_name, lesson_date, duration_minutes, capacity,
+                instructor_name, price, booked_count)
+            SELECT sc.id, 'BENCH-' || sc.id || '-' || d || '-' || h, 'レッスン' || h,
+                CURRENT_DATE + d + make_interval(hours => 7 + h), 60, 20, '講師' || (h % 5), 1100, abs(sc.id + d + h) % 21
+            FROM schools sc CROSS JOIN generate_series(?, ?) AS d CROSS JOIN generate_series(0, ? - 1) AS h
+            WHERE sc.school_code LIKE 'BENCH%'
+                AND NOT EXISTS (SELECT 1 FROM lessons l WHERE l.school_id = sc.id)
+            """, -PAST_DAYS, HORIZON_DAYS - 1, LESSONS_PER_DAY);
+        jdbcTemplate.execute("ANALYZE schools");
+        jdbcTemplate.execute("ANALYZE lessons");
+    }
+}
@@ -0,0 +1,107 @@
+package com.membership.benchmarks.payment;
+
+import com.membership.benchmarks.BenchmarkDatabase;
+import com.membership.payment.billing.BillingRunService;
+import com.membership.payment.dto.BillingRunResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.YearMonth;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 月次請求処理（BillingRunService）で、有効な契約すべての請求を登録し終えるまでの時間
+ * 会員1人につき1件の契約（店舗ごとに月額の異なる3つのプラン）を合成し、計測ごとに請求と実行状況を消してから実行する
+ * 1回の計測で数十万件を登録するため、-Pjmh.quick（ウォームアップ1回・計測1回）での実行を想定する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BillingRunBenchmark {
+    
+    private static final YearMonth MONTH = YearMonth.of(2024, 4);
+    private static final long POLL_INTERVAL_MILLIS = 20;
+    
+    @Param({"100000", "300000"})
+    public int contracts;
+    
+    @Param({"1", "4"})
+    public int workerThreads;
+    
+    private ConfigurableApplicationContext context;
+    private BillingRunService billingRunService;
+    private JdbcTemplate jdbcTemplate;
+    
+    @Setup
+    public void setUp() {
+        BenchmarkDatabase.ensureMembers(contracts);
+        context = PaymentApplication.start("payment.billing.worker-threads=" + workerThreads);
+        billingRunService = context.getBean(BillingRunService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        seedContracts();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    /**
+     * 前回の計測の請求と実行状況を消し、最初から実行させる
+     */
+    @Setup(Level.Invocation)
+    public void clearBills() {
+        jdbcTemplate.execute("TRUNCATE membership_bills, billing_run_partitions, billing_runs");
+    }
+    
+    @Benchmark
+    public BillingRunResult billingRun() throws InterruptedException {
+        BillingRunResult result = billingRunService.start(MONTH);
+        while (!"COMPLETED".equals(result.status())) {
+            if ("FAILED".equals(result.status())) {
+                throw new IllegalStateException("Billing run failed: " + result);
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+            result = billingRunService.getRun(MONTH);
+        }
+        if (result.billedContracts() != contracts) {
+            throw new IllegalStateException("Expected " + contracts + " bills but billed " + result.billedContracts());
+        }
+        return result;
+    }
+    
+    /**
+     * 会員IDが1からcontractsまでの会員に有効な契約がある状態にする（それより後の会員の契約は解約済みにする）
+     */
+    private void seedContracts() {
+        jdbcTemplate.update("""
+            INSERT INTO membership_plans (store_id, plan_code, plan_name, monthly_fee)
+            SELECT s.id, p.code, p.name, p.fee
+            FROM stores s CROSS JOIN (VALUES ('BENCH-LITE', 'ライト', 5500), ('BENCH-REGULAR', 'レギュラー', 8800),
+                ('BENCH-PREMIUM', 'プレミアム', 13200)) AS p(code, name, fee)
+            ON CONFLICT (store_id, plan_code) DO NOTHING
+            """);
+        jdbcTemplate.update("""
+            INSERT INTO membership_contracts (member_id, plan_id, contract_start_date, payment_method, status)
+            SELECT m.id,
+                (SELECT p.id FROM membership_plans p WHERE p.store_id = m.store_id AND p.plan_code LIKE 'BENCH-%'
+                 ORDER BY p.id LIMIT 1 OFFSET (m.id % 3)),
+                DATE '2020-01-01' + (m.id % 1500)::int, CASE WHEN m.id % 4 = 0 THEN 'CARD' ELSE 'BANK' END, 'ACTIVE'
+            FROM members m
+            WHERE NOT EXISTS (SELECT 1 FROM membership_contracts c WHERE c.member_id = m.id)
+            """);
+        jdbcTemplate.update("UPDATE membership_contracts SET status = CASE WHEN member_id <= ? THEN 'ACTIVE' ELSE 'CANCELLED' END",
+            contracts);
+        jdbcTemplate.execute("ANALYZE membership_contracts");
+    }
+}
@@ -0,0 +1,37 @@
+package com.membership.benchmarks.payment;
+
+import com.membership.benchmarks.BenchmarkDatabase;
+import com.membership.payment.PaymentServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 組み込みPostgreSQLに接続したpayment-serviceのアプリケーションコンテキスト
+ * 設定を変えて計測するため、ベンチマークのパラメータごとに起動し、計測後に閉じる
+ */
+final class PaymentApplication {
+    
+    private PaymentApplication() {
+    }
+    
+    /**
+     * @param properties 追加の設定（"payment.billing.worker-threads=4" の形式）
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--spring.datasource.url=" + BenchmarkDatabase.jdbcUrl(),
+            "--spring.datasource.username=postgres",
+            "--spring.datasource.password=",
+            "--spring.jpa.hibernate.ddl-auto=none",
+            "--eureka.client.enabled=false",
+            "--logging.level.root=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(PaymentServiceApplication.class).run(args.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,189 @@
+package com.membership.benchmarks;
+
+import com.membership.service.FaceRecognitionService;
+import com.membership.service.face.FaceEmbeddingIndex;
+import com.membership.service.face.FaceVectors;
+import com.membership.service.face.LocalFaceEmbeddingExtractor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 顔認証データのBase64処理
+ * 特徴量（128次元）のエンコード・デコード、旧形式（画像のBase64）からの特徴量の抽出、画像の登録、
+ * 登録済み件数ごと・インデックスの方式（全件スキャン・IVF）ごとの照合の時間と再現率を計測する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FaceDataBenchmark {
+    
+    private final LocalFaceEmbeddingExtractor extractor = new LocalFaceEmbeddingExtractor();
+    private FaceRecognitionService faceRecognitionService;
+    private MockMultipartFile imageFile;
+    private String legacyImageData;
+    private float[] embedding;
+    private String encodedEmbedding;
+    
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        byte[] image = faceImage(random);
+        imageFile = new MockMultipartFile("image", "face.png", "image/png", image);
+        legacyImageData = Base64.getEncoder().encodeToString(image);
+        embedding = extractor.extract(image);
+        encodedEmbedding = FaceVectors.encode(embedding);
+        faceRecognitionService = new FaceRecognitionService(null, null, extractor,
+            new FaceEmbeddingIndex(extractor.dimension()));
+    }
+    
+    @Benchmark
+    public String encodeEmbedding() {
+        return FaceVectors.encode(embedding);
+    }
+    
+    @Benchmark
+    public float[] decodeEmbedding() {
+        return FaceVectors.decode(encodedEmbedding, extractor.dimension());
+    }
+    
+    /**
+     * 旧形式の顔認証データは照合のたびに画像をデコードして特徴量を抽出していた
+     */
+    @Benchmark
+    public float[] extractFromLegacyImage() {
+        return extractor.extract(Base64.getDecoder().decode(legacyImageData));
+    }
+    
+    @Benchmark
+    public String registerFaceData() {
+        return faceRecognitionService.registerFaceData(imageFile);
+    }
+    
+    /**
+     * 登録済みの会員の別の撮影に相当する照合（再現率は hits / (hits + misses)）
+     */
+    @Benchmark
+    public FaceEmbeddingIndex.FaceMatch findNearest(IndexedFaces faces, RecallCounters counters) {
+        int query = faces.nextQuery();
+        FaceEmbeddingIndex.FaceMatch match = faces.index.findNearest(faces.queries[query], 0.92f);
+        if (match != null && match.memberId() == faces.expectedMemberIds[query]) {
+            counters.hits++;
+        } else {
+            counters.misses++;
+        }
+        return match;
+    }
+    
+    /**
+     * 照合対象の登録済み特徴量（件数・方式ごと）
+     * 照合に使う特徴量は登録済みの特徴量にノイズを加えたもの（類似度は約0.96）で、正解は元の会員とする
+     * （乱数の特徴量どうしの類似度は閾値を大きく下回るため、全件スキャンの結果と一致する）
+     */
+    @State(Scope.Benchmark)
+    public static class IndexedFaces {
+        
+        private static final int QUERY_COUNT = 1024;
+        private static final float QUERY_NOISE = 0.026f;
+        
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+        
+        @Param({"flat", "ivf"})
+        public String indexType;
+        
+        private FaceEmbeddingIndex index;
+        private float[][] queries;
+        private long[] expectedMemberIds;
+        private int nextQuery;
+        
+        @Setup
+        public void setUp() {
+            int dimension = new LocalFaceEmbeddingExtractor().dimension();
+            Random random = new Random(7);
+            // IVFはアプリケーションの既定値（256区画・8区画をスキャン）で、件数によらず分割する
+            index = "ivf".equals(indexType)
+                ? new FaceEmbeddingIndex(dimension, 256, 256, 8)
+                : new FaceEmbeddingIndex(dimension);
+            queries = new float[QUERY_COUNT][];
+            expectedMemberIds = new long[QUERY_COUNT];
+            int queryStride = size / QUERY_COUNT;
+            for (int i = 1; i <= size; i++) {
+                float[] vector = randomEmbedding(random, dimension);
+                index.put(i, vector);
+                int query = (i - 1) / queryStride;
+                if ((i - 1) % queryStride == 0 && query < QUERY_COUNT) {
+                    queries[query] = withNoise(random, vector);
+                    expectedMemberIds[query] = i;
+                }
+            }
+            index.maintainPartitions();
+        }
+        
+        int nextQuery() {
+            int query = nextQuery;
+            nextQuery = (query + 1) % QUERY_COUNT;
+            return query;
+        }
+        
+        private static float[] withNoise(Random random, float[] vector) {
+            float[] noisy = vector.clone();
+            for (int i = 0; i < noisy.length; i++) {
+                noisy[i] += (float) random.nextGaussian() * QUERY_NOISE;
+            }
+            FaceVectors.centerAndNormalize(noisy);
+            return noisy;
+        }
+    }
+    
+    /**
+     * 照合で正解の会員が返った回数と返らなかった回数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RecallCounters {
+        
+        public long hits;
+        public long misses;
+    }
+    
+    private static float[] randomEmbedding(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        FaceVectors.centerAndNormalize(vector);
+        return vector;
+    }
+    
+    /**
+     * 顔写真相当（320x240のPNG）の画像
+     */
+    private static byte[] faceImage(Random random) throws IOException {
+        BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int shade = (x * 255 / image.getWidth() + random.nextInt(32)) & 0xff;
+                image.setRGB(x, y, shade << 16 | shade << 8 | (255 - shade));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,92 @@
+package com.membership.benchmarks;
+
+import com.membership.security.IpRestrictionFilter;
+import com.membership.security.IpWhitelistCache;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IpRestrictionFilter（doFilterInternal）の1要求あたりの処理時間
+ * CACHE_MISSは毎回ホワイトリストのキャッシュを破棄し、DBからの読み込みと変換を含めて計測する
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IpRestrictionFilterBenchmark {
+    
+    public enum Scenario {
+        /**
+         * X-Member-Idヘッダーなし
+         */
+        NO_MEMBER_HEADER,
+        /**
+         * ホワイトリスト未設定の会員
+         */
+        UNRESTRICTED,
+        /**
+         * ホワイトリストで許可されるIP（X-Forwarded-Forの先頭）
+         */
+        ALLOWED,
+        /**
+         * ホワイトリストで拒否されるIP
+         */
+        DENIED,
+        /**
+         * ALLOWEDと同じ要求で、ホワイトリストをDBから読み込む
+         */
+        CACHE_MISS
+    }
+    
+    @Param
+    public Scenario scenario;
+    
+    private IpRestrictionFilter filter;
+    private IpWhitelistCache cache;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private final FilterChain chain = (request, response) -> {
+    };
+    private long memberId;
+    
+    @Setup
+    public void setUp() {
+        filter = MembershipApplication.getBean(IpRestrictionFilter.class);
+        cache = MembershipApplication.getBean(IpWhitelistCache.class);
+        memberId = scenario == Scenario.UNRESTRICTED ? 12_345 : 12_340;
+        request = new MockHttpServletRequest("GET", "/api/members/" + memberId);
+        request.setRemoteAddr("172.16.0.1");
+        if (scenario != Scenario.NO_MEMBER_HEADER) {
+            request.addHeader("X-Member-Id", String.valueOf(memberId));
+        }
+        request.addHeader("X-Forwarded-For", scenario == Scenario.DENIED ? "203.0.113.5" : " 10.1.2.3, 172.16.0.1");
+        response = new MockHttpServletResponse();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        MembershipApplication.close();
+    }
+    
+    @Benchmark
+    public int doFilter() throws Exception {
+        if (scenario == Scenario.CACHE_MISS) {
+            cache.invalidate(memberId);
+        }
+        filter.doFilter(request, response, chain);
+        int status = response.getStatus();
+        response.reset();
+        return status;
+    }
+}
@@ -0,0 +1,107 @@
+package com.membership.benchmarks;
+
+import com.membership.repository.MemberRepository;
+import com.membership.security.IpRestrictionFilter;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IPホワイトリストの照合を、キャッシュ導入前（要求ごとに会員を読み込む）と比較する
+ * 目標の到着率（1k/10k/100k要求/秒）で要求を発行し、処理できた件数（スコア）と遅延のパーセンタイル（標準出力）を見る
+ * 会員IDは利用中の会員（先頭1万人、1割はホワイトリストあり）から一様に選び、計測前に全員分を1回ずつ処理しておく
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IpWhitelistLoadBenchmark {
+    
+    private static final int ACTIVE_MEMBERS = 10_000;
+    
+    public enum Implementation {
+        /**
+         * IpWhitelistCache（照合用に変換したホワイトリストをキャッシュ）
+         */
+        CACHED,
+        /**
+         * キャッシュ導入前（要求ごとにmembersを読み込み、文字列の完全一致で照合）
+         */
+        LEGACY
+    }
+    
+    @Param
+    public Implementation implementation;
+    
+    @Param({"1000", "10000", "100000"})
+    public int requestsPerSecond;
+    
+    private final FilterChain chain = (request, response) -> {
+    };
+    private final SplittableRandom random = new SplittableRandom(11);
+    private OncePerRequestFilter filter;
+    private MockHttpServletRequest[] requests;
+    private MockHttpServletResponse response;
+    private PacedRequests paced;
+    
+    @Setup
+    public void setUp() throws Exception {
+        filter = implementation == Implementation.CACHED
+            ? MembershipApplication.getBean(IpRestrictionFilter.class)
+            : new LegacyIpRestrictionFilter(MembershipApplication.getBean(MemberRepository.class));
+        requests = new MockHttpServletRequest[ACTIVE_MEMBERS];
+        for (int i = 0; i < requests.length; i++) {
+            long memberId = i + 1;
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/members/" + memberId);
+            request.setRemoteAddr("172.16.0.1");
+            request.addHeader("X-Member-Id", String.valueOf(memberId));
+            request.addHeader("X-Forwarded-For", "192.168.1.10, 172.16.0.1");
+            requests[i] = request;
+        }
+        response = new MockHttpServletResponse();
+        for (MockHttpServletRequest request : requests) {
+            filter.doFilter(request, response, chain);
+            response.reset();
+        }
+        paced = new PacedRequests(requestsPerSecond);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        MembershipApplication.close();
+    }
+    
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        paced.start();
+    }
+    
+    @TearDown(Level.Iteration)
+    public void printLatency() {
+        System.out.println(paced.summary(implementation.name()));
+    }
+    
+    @Benchmark
+    public int doFilter() throws Exception {
+        MockHttpServletRequest request = requests[random.nextInt(requests.length)];
+        long scheduledAt = paced.awaitNext();
+        filter.doFilter(request, response, chain);
+        paced.completed(scheduledAt);
+        int status = response.getStatus();
+        response.reset();
+        return status;
+    }
+}
@@ -0,0 +1,74 @@
+package com.membership.benchmarks;
+
+import com.membership.service.MemberCardQrService;
+import com.membership.service.id.MembershipCodes;
+import com.membership.service.qr.QrCodeRenderer;
+import com.membership.service.qr.QrImageCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 会員証QRコード画像の取得（1秒あたりの件数）
+ * COLDは毎回異なる会員証（キャッシュに無く描画する）、WARMは描画済みの会員証1,000枚から選ぶ
+ * 開店時のように複数の端末から同時に表示される状況として4スレッドで実行する（バッファのプールは既定の32）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class MemberCardQrBenchmark {
+    
+    private static final int WARM_CARDS = 1_000;
+    private static final int SCALE = 8;
+    
+    public enum Cache {
+        COLD,
+        WARM
+    }
+    
+    @Param
+    public Cache cache;
+    
+    @Param
+    public QrCodeRenderer.Format format;
+    
+    private final AtomicLong nextCard = new AtomicLong(WARM_CARDS);
+    private MemberCardQrService qrService;
+    private String[] warmContents;
+    
+    @Setup
+    public void setUp() {
+        qrService = new MemberCardQrService(null, new QrCodeRenderer(32), new QrImageCache(32L * 1024 * 1024));
+        warmContents = new String[WARM_CARDS];
+        for (int i = 0; i < WARM_CARDS; i++) {
+            warmContents[i] = content(i);
+            qrService.getQrImage(warmContents[i], format, SCALE);
+        }
+    }
+    
+    @Benchmark
+    public byte[] qrImage() {
+        String content = cache == Cache.WARM
+            ? warmContents[ThreadLocalRandom.current().nextInt(WARM_CARDS)]
+            : content(nextCard.getAndIncrement());
+        return qrService.getQrImage(content, format, SCALE);
+    }
+    
+    /**
+     * 会員証に埋め込む内容（MemberService.generateQRCodeと同じ形式）
+     */
+    private static String content(long id) {
+        return "QR:" + MembershipCodes.memberCode(id) + ":" + MembershipCodes.cardNumber(id);
+    }
+}
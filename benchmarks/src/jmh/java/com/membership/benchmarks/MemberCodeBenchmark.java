@@ -0,0 +1,58 @@
+package com.membership.benchmarks;
+
+import com.membership.service.id.MembershipCodes;
+import com.membership.service.id.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会員コード・会員証番号の生成（MemberServiceと同じくSnowflake IDから変換する）
+ * 1ミリ秒あたり4096件を超えると次のミリ秒を先取りするため、スレッド数を増やした場合の値も計測する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MemberCodeBenchmark {
+    
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+    private final String memberCode = MembershipCodes.memberCode(generator.nextId());
+    private final String cardNumber = MembershipCodes.cardNumber(generator.nextId());
+    
+    @Benchmark
+    public long nextId() {
+        return generator.nextId();
+    }
+    
+    @Benchmark
+    public String memberCode() {
+        return MembershipCodes.memberCode(generator.nextId());
+    }
+    
+    @Benchmark
+    public String cardNumber() {
+        return MembershipCodes.cardNumber(generator.nextId());
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public String memberCodeContended() {
+        return MembershipCodes.memberCode(generator.nextId());
+    }
+    
+    @Benchmark
+    public boolean validateMemberCode() {
+        return MembershipCodes.isValidMemberCode(memberCode);
+    }
+    
+    @Benchmark
+    public boolean validateCardNumber() {
+        return MembershipCodes.isValidCardNumber(cardNumber);
+    }
+}
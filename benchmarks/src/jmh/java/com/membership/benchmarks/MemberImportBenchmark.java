@@ -0,0 +1,118 @@
+package com.membership.benchmarks;
+
+import com.membership.dto.MemberImportResult;
+import com.membership.entity.Member;
+import com.membership.service.MemberExportService;
+import com.membership.service.MemberImportService;
+import com.membership.service.MemberService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会員の一括登録（NDJSONのストリームをチャンク単位でバッチ登録）と、1件ずつの登録（POST /api/members と同じ処理）で
+ * 同じ件数を登録する時間
+ * 1回の計測で数万件以上を登録するため、-Pjmh.quick（ウォームアップ1回・計測1回）での実行を想定する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MemberImportBenchmark {
+    
+    public enum Path {
+        BULK,
+        SINGLE_ROW
+    }
+    
+    @Param({"100000"})
+    public int rows;
+    
+    @Param
+    public Path path;
+    
+    private MemberImportService memberImportService;
+    private MemberService memberService;
+    private int run;
+    private byte[] ndjson;
+    private List<Member> members;
+    
+    @Setup
+    public void setUp() {
+        memberImportService = MembershipApplication.getBean(MemberImportService.class);
+        memberService = MembershipApplication.getBean(MemberService.class);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        MembershipApplication.close();
+    }
+    
+    /**
+     * 登録する会員（メールアドレスは計測ごとに変える）
+     */
+    @Setup(Level.Invocation)
+    public void prepareRows() {
+        run++;
+        if (path == Path.BULK) {
+            StringBuilder lines = new StringBuilder(rows * 256);
+            for (int i = 0; i < rows; i++) {
+                lines.append("{\"storeId\":1,\"firstName\":\"花子\",\"lastName\":\"佐藤\",")
+                    .append("\"firstNameKana\":\"ハナコ\",\"lastNameKana\":\"サトウ\",")
+                    .append("\"email\":\"import-").append(run).append('-').append(i).append("@example.com\",")
+                    .append("\"phone\":\"090-0000-0000\",\"birthday\":\"1990-04-01\",\"gender\":\"FEMALE\",")
+                    .append("\"memberType\":\"REGULAR\",\"enrollmentMethod\":\"TABLET\"}\n");
+            }
+            ndjson = lines.toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            members = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                Member member = new Member();
+                member.setStoreId(1L);
+                member.setFirstName("花子");
+                member.setLastName("佐藤");
+                member.setFirstNameKana("ハナコ");
+                member.setLastNameKana("サトウ");
+                member.setEmail("single-" + run + "-" + i + "@example.com");
+                member.setPhone("090-0000-0000");
+                member.setBirthday(LocalDate.of(1990, 4, 1));
+                member.setGender("FEMALE");
+                member.setMemberType("REGULAR");
+                member.setEnrollmentMethod("TABLET");
+                members.add(member);
+            }
+        }
+    }
+    
+    @Benchmark
+    public long importMembers() throws IOException {
+        if (path == Path.BULK) {
+            MemberImportResult result = memberImportService.importMembers(MemberExportService.Format.NDJSON,
+                new ByteArrayInputStream(ndjson));
+            if (result.imported() != rows) {
+                throw new IllegalStateException("Imported " + result.imported() + " of " + rows + " rows: " + result.errors());
+            }
+            return result.imported();
+        }
+        long imported = 0;
+        for (Member member : members) {
+            memberService.createMember(member);
+            imported++;
+        }
+        return imported;
+    }
+}
@@ -0,0 +1,132 @@
+package com.membership.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.membership.entity.Member;
+import com.membership.entity.MemberCard;
+import com.membership.service.face.FaceVectors;
+import com.membership.service.face.LocalFaceEmbeddingExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会員・会員証一覧のページのJSON変換（Spring Bootと同じ設定のObjectMapper）
+ * faceDataは会員ごとに顔認証データを含めた場合の比較用（EMBEDDINGは特徴量、IMAGEは旧形式の画像のBase64）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberJsonBenchmark {
+    
+    public enum FaceData {
+        NONE,
+        EMBEDDING,
+        IMAGE
+    }
+    
+    /**
+     * 顔認証データを含めた会員（会員マスタに顔認証データを持っていた頃の応答と同じ形）
+     */
+    public record MemberWithFace(@JsonUnwrapped Member member, String faceRecognitionData) {
+    }
+    
+    @Param({"20", "100"})
+    public int pageSize;
+    
+    @Param
+    public FaceData faceData;
+    
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private Page<?> members;
+    private Page<MemberCard> cards;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String faceRecognitionData = switch (faceData) {
+            case NONE -> null;
+            case EMBEDDING -> FaceVectors.encode(new LocalFaceEmbeddingExtractor().extract(randomBytes(random, 4096)));
+            case IMAGE -> Base64.getEncoder().encodeToString(randomBytes(random, 48 * 1024));
+        };
+        List<Object> memberRows = new ArrayList<>();
+        List<MemberCard> cardRows = new ArrayList<>();
+        for (int i = 1; i <= pageSize; i++) {
+            Member member = member(i);
+            memberRows.add(faceRecognitionData == null ? member : new MemberWithFace(member, faceRecognitionData));
+            cardRows.add(card(i));
+        }
+        PageRequest pageRequest = PageRequest.of(0, pageSize);
+        members = new PageImpl<>(memberRows, pageRequest, BenchmarkDatabase.MEMBERS);
+        cards = new PageImpl<>(cardRows, pageRequest, BenchmarkDatabase.MEMBERS);
+    }
+    
+    @Benchmark
+    public byte[] memberPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(members);
+    }
+    
+    @Benchmark
+    public byte[] memberCardPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(cards);
+    }
+    
+    private static Member member(long id) {
+        Member member = new Member();
+        member.setId(id);
+        member.setMemberCode("MEM" + String.format("%013d", id) + "0");
+        member.setStoreId(1L);
+        member.setFirstName("太郎");
+        member.setLastName("山田");
+        member.setFirstNameKana("タロウ");
+        member.setLastNameKana("ヤマダ");
+        member.setEmail("member" + id + "@example.com");
+        member.setPhone("090-0000-0000");
+        member.setBirthday(LocalDate.of(1985, 4, 1));
+        member.setGender("MALE");
+        member.setAddress("東京都渋谷区1-1-" + id);
+        member.setPostalCode("150-0001");
+        member.setMemberType("REGULAR");
+        member.setEnrollmentDate(LocalDate.of(2024, 4, 1));
+        member.setEnrollmentMethod("STORE");
+        member.setIpWhitelist(id % 10 == 0 ? new String[] {"10.0.0.0/8", "192.168.1.10"} : null);
+        member.setCreatedAt(LocalDateTime.of(2024, 4, 1, 10, 0));
+        member.setUpdatedAt(LocalDateTime.of(2024, 4, 1, 10, 0));
+        return member;
+    }
+    
+    private static MemberCard card(long id) {
+        MemberCard card = new MemberCard();
+        card.setId(id);
+        card.setMemberId(id);
+        card.setCardNumber(String.format("%020d", id));
+        card.setCardType("STANDARD");
+        card.setIssuedDate(LocalDate.of(2024, 4, 1));
+        card.setQrCode("QR:MEM" + String.format("%013d", id) + "0:" + String.format("%020d", id));
+        return card;
+    }
+    
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,96 @@
+package com.membership.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.membership.entity.Member;
+import com.membership.entity.MemberFace;
+import com.membership.repository.MemberFaceRepository;
+import com.membership.repository.MemberRepository;
+import com.membership.service.MemberService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 会員一覧の1ページ分の取得からJSON変換まで（GET /api/members の処理と同じ）
+ * PROJECTIONは一覧用の射影、ENTITY_WITH_FACEは射影導入前と同じく会員エンティティと顔認証データ（画像のBase64）を読み込む
+ * 1要求あたりのヒープ割り当ては -Pjmh.profilers=gc の gc.alloc.rate.norm で確認する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberPageBenchmark {
+    
+    /**
+     * 顔認証データを登録しておく会員数（先頭から）
+     * 計測するページはすべてこの範囲から選ぶ
+     */
+    private static final int MEMBERS_WITH_FACE = 1_000;
+    
+    public enum View {
+        PROJECTION,
+        ENTITY_WITH_FACE
+    }
+    
+    @Param({"20", "100"})
+    public int pageSize;
+    
+    @Param
+    public View view;
+    
+    private MemberService memberService;
+    private MemberRepository memberRepository;
+    private MemberFaceRepository memberFaceRepository;
+    private ObjectMapper objectMapper;
+    
+    @Setup
+    public void setUp() {
+        memberService = MembershipApplication.getBean(MemberService.class);
+        memberRepository = MembershipApplication.getBean(MemberRepository.class);
+        memberFaceRepository = MembershipApplication.getBean(MemberFaceRepository.class);
+        objectMapper = MembershipApplication.getBean(ObjectMapper.class);
+        byte[] image = new byte[48 * 1024];
+        new Random(42).nextBytes(image);
+        MembershipApplication.getBean(JdbcTemplate.class).update("""
+            INSERT INTO member_face_data (member_id, face_recognition_data)
+            SELECT id, ? FROM members WHERE id <= ?
+            ON CONFLICT (member_id) DO NOTHING
+            """, Base64.getEncoder().encodeToString(image), MEMBERS_WITH_FACE);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        MembershipApplication.close();
+    }
+    
+    @Benchmark
+    public byte[] memberPage() throws Exception {
+        int page = ThreadLocalRandom.current().nextInt(MEMBERS_WITH_FACE / pageSize);
+        PageRequest pageRequest = PageRequest.of(page, pageSize, Sort.by("id"));
+        if (view == View.PROJECTION) {
+            return objectMapper.writeValueAsBytes(memberService.getAllMembers(pageRequest));
+        }
+        Page<Member> members = memberRepository.findAll(pageRequest);
+        Map<Long, String> faces = memberFaceRepository.findAllById(members.map(Member::getId).getContent()).stream()
+            .collect(Collectors.toMap(MemberFace::getMemberId, MemberFace::getFaceRecognitionData));
+        Page<MemberJsonBenchmark.MemberWithFace> withFace = members.map(member ->
+            new MemberJsonBenchmark.MemberWithFace(member, faces.get(member.getId())));
+        return objectMapper.writeValueAsBytes(withFace);
+    }
+}
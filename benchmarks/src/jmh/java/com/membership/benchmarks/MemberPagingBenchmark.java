@@ -0,0 +1,68 @@
+package com.membership.benchmarks;
+
+import com.membership.dto.CursorPage;
+import com.membership.dto.MemberCursor;
+import com.membership.repository.projection.MemberSummary;
+import com.membership.service.MemberService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会員一覧の先頭ページと深いページ（10件ずつで1ページ目と10,000ページ目）の取得
+ * OFFSETはページ番号指定（件数の集計あり）、KEYSETはシーク方式（件数の集計なし）
+ * 会員IDは1からの連番のため、シーク方式のカーソルは直前ページの最終IDから作る
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberPagingBenchmark {
+    
+    private static final int PAGE_SIZE = 10;
+    
+    public enum Paging {
+        OFFSET,
+        KEYSET
+    }
+    
+    @Param({"1", "10000"})
+    public int page;
+    
+    @Param
+    public Paging paging;
+    
+    private MemberService memberService;
+    private String cursor;
+    
+    @Setup
+    public void setUp() {
+        memberService = MembershipApplication.getBean(MemberService.class);
+        cursor = new MemberCursor(null, (long) (page - 1) * PAGE_SIZE).encode();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        MembershipApplication.close();
+    }
+    
+    @Benchmark
+    public Object memberPage() {
+        if (paging == Paging.OFFSET) {
+            Page<MemberSummary> members = memberService.getAllMembers(PageRequest.of(page - 1, PAGE_SIZE, Sort.by("id")));
+            return members.getContent();
+        }
+        CursorPage<MemberSummary> members = memberService.getMembersAfter(null, null, cursor, PAGE_SIZE, false);
+        return members.content();
+    }
+}
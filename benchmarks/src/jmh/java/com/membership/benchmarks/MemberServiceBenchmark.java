@@ -0,0 +1,59 @@
+package com.membership.benchmarks;
+
+import com.membership.entity.Member;
+import com.membership.entity.MemberCard;
+import com.membership.service.MemberService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 会員登録（会員コードの生成を含む）と会員証の発行を、組み込みPostgreSQLに対して実行する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberServiceBenchmark {
+    
+    private final AtomicLong sequence = new AtomicLong();
+    private MemberService memberService;
+    
+    @Setup
+    public void setUp() {
+        memberService = MembershipApplication.getBean(MemberService.class);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        MembershipApplication.close();
+    }
+    
+    @Benchmark
+    public Member createMember() {
+        long n = sequence.incrementAndGet();
+        Member member = new Member();
+        member.setFirstName("花子");
+        member.setLastName("佐藤");
+        member.setEmail("bench-" + n + "-" + System.nanoTime() + "@example.com");
+        member.setMemberType("REGULAR");
+        member.setEnrollmentMethod("WEB");
+        member.setEnrollmentDate(LocalDate.now());
+        return memberService.createMember(member);
+    }
+    
+    @Benchmark
+    public MemberCard issueMemberCard() {
+        long memberId = ThreadLocalRandom.current().nextLong(1, BenchmarkDatabase.MEMBERS + 1);
+        return memberService.issueMemberCard(memberId, "STANDARD");
+    }
+}
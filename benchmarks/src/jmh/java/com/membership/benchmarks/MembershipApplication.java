@@ -0,0 +1,48 @@
+package com.membership.benchmarks;
+
+import com.membership.MembershipServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 組み込みPostgreSQLに接続したmembership-serviceのアプリケーションコンテキスト（JVMごとに1つ）
+ * Eurekaには登録せず、ランダムなポートで起動する
+ * JMHは計測後に残った非デーモンスレッド（Tomcatなど）を待ちきれないとシャットダウンフックを実行せずにJVMを止め、
+ * 組み込みPostgreSQLが残るため、使うベンチマークは計測後（@TearDown）にcloseを呼ぶ
+ */
+public final class MembershipApplication {
+    
+    private static ConfigurableApplicationContext context;
+    
+    private MembershipApplication() {
+    }
+    
+    public static synchronized ConfigurableApplicationContext get() {
+        if (context == null) {
+            context = new SpringApplicationBuilder(MembershipServiceApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + BenchmarkDatabase.jdbcUrl(),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--eureka.client.enabled=false",
+                "--logging.level.root=WARN");
+            Runtime.getRuntime().addShutdownHook(new Thread(context::close));
+        }
+        return context;
+    }
+    
+    /**
+     * コンテキストを閉じる（次のgetで起動し直す）
+     */
+    public static synchronized void close() {
+        if (context != null) {
+            context.close();
+            context = null;
+        }
+    }
+    
+    public static <T> T getBean(Class<T> type) {
+        return get().getBean(type);
+    }
+}
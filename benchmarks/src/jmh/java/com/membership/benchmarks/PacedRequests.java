@@ -0,0 +1,71 @@
+package com.membership.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * 一定の到着率で要求を発行した場合の遅延の記録
+ * 遅延は予定の発行時刻から完了までの時間で、処理が追いつかず発行が遅れた分も含める
+ * （処理時間だけを測ると飽和時の待ち時間が隠れるため）
+ */
+final class PacedRequests {
+    
+    private final int ratePerSecond;
+    private final long intervalNanos;
+    private long startedAt;
+    private long nextAt;
+    private long[] latencies = new long[1 << 16];
+    private int count;
+    
+    PacedRequests(int ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+        this.intervalNanos = 1_000_000_000L / ratePerSecond;
+    }
+    
+    /**
+     * 計測を始める（JMHのイテレーションごとに呼ぶ）
+     */
+    void start() {
+        startedAt = System.nanoTime();
+        nextAt = startedAt;
+        count = 0;
+    }
+    
+    /**
+     * 次の要求の予定時刻まで待ち、予定時刻を返す
+     */
+    long awaitNext() {
+        long scheduledAt = nextAt;
+        nextAt += intervalNanos;
+        while (System.nanoTime() < scheduledAt) {
+            Thread.onSpinWait();
+        }
+        return scheduledAt;
+    }
+    
+    void completed(long scheduledAt) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = System.nanoTime() - scheduledAt;
+    }
+    
+    /**
+     * 目標の到着率・実際に処理できた件数の割合・遅延のパーセンタイル
+     */
+    String summary(String label) {
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return String.format("%n[%s] target=%d/s achieved=%.0f/s p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+            label, ratePerSecond, count / elapsedSeconds,
+            percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+            sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e3);
+    }
+    
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e3;
+    }
+}
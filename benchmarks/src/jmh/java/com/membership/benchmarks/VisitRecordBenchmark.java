@@ -0,0 +1,114 @@
+package com.membership.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 来場記録（5,000万件）の月単位のパーティションと、パーティション化前の1テーブルの比較
+ * 会員の来場履歴（直近20件）、店舗の1週間の来場数、入館記録の書き込み（VisitRecordWriterと同じ500件のバッチ）の時間
+ * 投入には長い時間がかかるため、データは VisitRecordDatabase のデータディレクトリに残して次回以降も使う
+ * 件数は -Pjmh.params=visits=1000000 のように変えられる
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VisitRecordBenchmark {
+    
+    private static final int HISTORY_LIMIT = 20;
+    private static final int BATCH_SIZE = 500;
+    
+    @Param({"partitioned", "plain"})
+    public String layout;
+    
+    @Param({"50000000"})
+    public int visits;
+    
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private String table;
+    private long[] storeIds;
+    private LocalDateTime firstDay;
+    private int days;
+    private Timestamp startedAt;
+    private List<Object[]> batch;
+    private long next;
+    
+    @Setup
+    public void setUp() {
+        dataSource = VisitRecordDatabase.open(layout, visits);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        table = "plain".equals(layout) ? "visit_records_plain" : "visit_records";
+        storeIds = jdbcTemplate.queryForList("SELECT id FROM stores ORDER BY id LIMIT ?", Long.class,
+            VisitRecordDatabase.STORES).stream().mapToLong(Long::longValue).toArray();
+        firstDay = VisitRecordDatabase.firstMonth().atDay(1).atStartOfDay();
+        // 1週間の範囲が当月を越えないよう、当月の1日までを開始日にする
+        days = (int) Duration.between(firstDay, LocalDateTime.now().withDayOfMonth(1)).toDays();
+        
+        startedAt = Timestamp.valueOf(LocalDateTime.now());
+        if (memberHistory().isEmpty()) {
+            throw new IllegalStateException("No visit records in " + table);
+        }
+    }
+    
+    @Setup(Level.Iteration)
+    public void prepareBatch() {
+        batch = new ArrayList<>(BATCH_SIZE);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Object[]{1 + (next + i) % VisitRecordDatabase.MEMBERS, storeIds[i % storeIds.length], now, "CARD",
+                false, "192.0.2.1"});
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        // 書き込みの計測で追加した分を消し、次回の実行を投入直後と同じ件数にする
+        jdbcTemplate.update("DELETE FROM " + table + " WHERE visit_date >= ? AND ip_address = '192.0.2.1'", startedAt);
+        dataSource.destroy();
+    }
+    
+    @Benchmark
+    public List<Map<String, Object>> memberHistory() {
+        long memberId = 1 + next++ % VisitRecordDatabase.MEMBERS;
+        return jdbcTemplate.queryForList("SELECT id, store_id, visit_date, entry_method FROM " + table +
+            " WHERE member_id = ? ORDER BY visit_date DESC LIMIT " + HISTORY_LIMIT, memberId);
+    }
+    
+    @Benchmark
+    public Integer storeWeeklyVisits() {
+        long i = next++;
+        long storeId = storeIds[(int) (i % storeIds.length)];
+        LocalDateTime from = firstDay.plusDays(i / storeIds.length % days);
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table +
+            " WHERE store_id = ? AND visit_date >= ? AND visit_date < ?", Integer.class,
+            storeId, Timestamp.valueOf(from), Timestamp.valueOf(from.plusDays(7)));
+    }
+    
+    @Benchmark
+    public int[] insertBatch() {
+        return transactionTemplate.execute(status -> jdbcTemplate.batchUpdate("INSERT INTO " + table +
+            " (member_id, store_id, visit_date, entry_method, face_recognized, ip_address) VALUES (?, ?, ?, ?, ?, ?)", batch));
+    }
+}
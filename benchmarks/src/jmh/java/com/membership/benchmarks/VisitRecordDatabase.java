@@ -0,0 +1,135 @@
+package com.membership.benchmarks;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.YearMonth;
+
+/**
+ * 来場記録のベンチマーク用の組み込みPostgreSQL（データディレクトリを残し、実行をまたいで使い回す）
+ * 数千万件の投入には長い時間がかかるため、投入済みの件数と配置を記録しておき、同じ条件の2回目以降は投入しない
+ * データディレクトリは -Dbenchmarks.data-dir（既定は build/benchmark-data）の下。作り直す場合は削除する
+ */
+final class VisitRecordDatabase {
+    
+    static final int MEMBERS = BenchmarkDatabase.MEMBERS;
+    static final int STORES = 50;
+    static final int MONTHS = 36;
+    
+    private static EmbeddedPostgres postgres;
+    
+    private VisitRecordDatabase() {
+    }
+    
+    /**
+     * 来場記録がvisits件ある状態のDBへの接続（1本）
+     *
+     * @param layout partitioned は月単位のパーティション（visit_records）、
+     *               plain はパーティション化前の構成（visit_records_plain: IDの主キーと会員ID・来場日時の索引）
+     */
+    static synchronized SingleConnectionDataSource open(String layout, int visits) {
+        if (postgres == null) {
+            postgres = start();
+        }
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+            postgres.getJdbcUrl("postgres", "postgres"), "postgres", "", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Integer seeded = jdbcTemplate.query("SELECT visits FROM visit_benchmark_seeds WHERE layout = ?",
+            rs -> rs.next() ? rs.getInt(1) : null, layout);
+        if (seeded == null || seeded != visits) {
+            seed(jdbcTemplate, layout, visits);
+        }
+        return dataSource;
+    }
+    
+    /**
+     * 来場日時の範囲の最初の月（当月を最後の月とする）
+     */
+    static YearMonth firstMonth() {
+        return YearMonth.now().minusMonths(MONTHS - 1);
+    }
+    
+    private static EmbeddedPostgres start() {
+        Path dataDirectory = Path.of(System.getProperty("benchmarks.data-dir", "build/benchmark-data"), "visit-records");
+        try {
+            Files.createDirectories(dataDirectory);
+            EmbeddedPostgres database = EmbeddedPostgres.builder()
+                .setDataDirectory(dataDirectory)
+                .setCleanDataDirectory(false)
+                // 大量投入中のチェックポイントを減らす
+                .setServerConfig("max_wal_size", "4GB")
+                .setServerConfig("shared_buffers", "512MB")
+                .start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    database.close();
+                } catch (IOException e) {
+                    // 終了時のため無視する
+                }
+            }));
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(database.getPostgresDatabase());
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass('visit_benchmark_seeds') IS NOT NULL",
+                Boolean.class))) {
+                BenchmarkDatabase.initialize(database.getPostgresDatabase());
+                BenchmarkDatabase.insertStores(database.getPostgresDatabase(), STORES);
+                jdbcTemplate.execute("CREATE TABLE visit_benchmark_seeds (layout VARCHAR(20) PRIMARY KEY, visits INTEGER NOT NULL)");
+            }
+            return database;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to initialize the visit record benchmark database", e);
+        }
+    }
+    
+    /**
+     * 会員・店舗ごとに均等に、直近MONTHSか月へ来場記録を投入する（月ごとに1トランザクション）
+     */
+    private static void seed(JdbcTemplate jdbcTemplate, String layout, int visits) {
+        String table;
+        if ("plain".equals(layout)) {
+            table = "visit_records_plain";
+            jdbcTemplate.execute("DROP TABLE IF EXISTS visit_records_plain");
+            jdbcTemplate.execute("""
+                CREATE TABLE visit_records_plain (LIKE visit_records INCLUDING DEFAULTS);
+                ALTER TABLE visit_records_plain ADD PRIMARY KEY (id),
+                    ADD FOREIGN KEY (member_id) REFERENCES members(id) ON DELETE CASCADE,
+                    ADD FOREIGN KEY (store_id) REFERENCES stores(id);
+                CREATE INDEX idx_visit_records_plain_member_id ON visit_records_plain(member_id);
+                CREATE INDEX idx_visit_records_plain_visit_date ON visit_records_plain(visit_date);
+                """);
+        } else {
+            table = "visit_records";
+            jdbcTemplate.execute("TRUNCATE visit_records");
+            for (YearMonth month = firstMonth(); !month.isAfter(YearMonth.now()); month = month.plusMonths(1)) {
+                if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class,
+                    "visit_records_p%d%02d".formatted(month.getYear(), month.getMonthValue())))) {
+                    jdbcTemplate.execute("SELECT create_monthly_partition('visit_records', '%s')".formatted(month.atDay(1)));
+                }
+            }
+        }
+        jdbcTemplate.update("DELETE FROM visit_benchmark_seeds WHERE layout = ?", layout);
+        int perMonth = visits / MONTHS;
+        for (int month = 0; month < MONTHS; month++) {
+            YearMonth target = firstMonth().plusMonths(month);
+            long seconds = target.lengthOfMonth() * 86_400L;
+            jdbcTemplate.update(("""
+                INSERT INTO %s (member_id, store_id, visit_date, entry_method, duration_minutes)
+                SELECT 1 + (i * 7919) %% ?, s.ids[1 + (i * 104729) %% ?], ?::timestamp + make_interval(secs => (i * 7877) %% ?),
+                    'CARD', 30 + i %% 90
+                FROM (SELECT array_agg(id ORDER BY id) AS ids FROM (SELECT id FROM stores ORDER BY id LIMIT ?) t) s
+                    CROSS JOIN generate_series(?::bigint * ?, ?::bigint * ? + ? - 1) AS i
+                """).formatted(table),
+                MEMBERS, STORES, target.atDay(1).toString(), seconds, STORES,
+                month, perMonth, month, perMonth, month == MONTHS - 1 ? visits - perMonth * (MONTHS - 1) : perMonth);
+        }
+        jdbcTemplate.execute("VACUUM ANALYZE " + table);
+        jdbcTemplate.update("INSERT INTO visit_benchmark_seeds (layout, visits) VALUES (?, ?)", layout, visits);
+    }
+}
@@ -0,0 +1,129 @@
+package com.membership.benchmarks;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * ベンチマーク用の組み込みPostgreSQL（JVMごとに1つ）
+ * init.sql（-Dbenchmarks.init-sql）でスキーマを作成し、会員の試験データを投入する
+ * 会員IDは1からMEMBERSまでの連番で、IDが10の倍数の会員にはIPホワイトリストを設定する
+ * より多くの会員が必要なベンチマークは ensureMembers で同じ形式の会員を追加する
+ * 店舗はinit.sqlの2店舗で、多店舗のチェーンを想定するベンチマークは ensureStores で店舗を追加する
+ */
+public final class BenchmarkDatabase {
+    
+    public static final int MEMBERS = 100_000;
+    
+    /**
+     * IPホワイトリストを設定した会員（IDが10の倍数）に登録する許可範囲
+     */
+    public static final String IP_WHITELIST = "{10.0.0.0/8,192.168.1.10,2001:db8::/32}";
+    
+    private static EmbeddedPostgres postgres;
+    private static int members;
+    
+    private BenchmarkDatabase() {
+    }
+    
+    public static synchronized EmbeddedPostgres get() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.builder().start();
+                initialize(postgres.getPostgresDatabase());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to initialize the benchmark database", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(BenchmarkDatabase::close));
+        }
+        return postgres;
+    }
+    
+    public static String jdbcUrl() {
+        return get().getJdbcUrl("postgres", "postgres");
+    }
+    
+    /**
+     * 会員IDが1からcountまでの会員がいる状態にする（不足分を追加する）
+     */
+    public static synchronized void ensureMembers(int count) {
+        EmbeddedPostgres database = get();
+        if (count <= members) {
+            return;
+        }
+        try (Connection connection = database.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            insertMembers(statement, members + 1, count);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to add benchmark members", e);
+        }
+    }
+    
+    /**
+     * 店舗がcount店舗以上ある状態にする（不足分を追加する）
+     */
+    public static synchronized void ensureStores(int count) {
+        insertStores(get().getPostgresDatabase(), count);
+    }
+    
+    /**
+     * init.sqlでスキーマを作成し、会員IDが1からMEMBERSまでの会員を投入する（別のDBを使うベンチマークからも使う）
+     */
+    static void initialize(DataSource dataSource) throws IOException, SQLException {
+        String initSql = System.getProperty("benchmarks.init-sql", "../init.sql");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(Files.readString(Path.of(initSql)));
+            insertMembers(statement, 1, MEMBERS);
+        }
+    }
+    
+    static void insertStores(DataSource dataSource, int count) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("""
+                INSERT INTO stores (store_code, store_name, address, phone, email)
+                SELECT 'BENCH' || lpad(i::text, 4, '0'), 'ベンチマーク' || i || '号店', '東京都渋谷区2-2-' || i,
+                    '03-0000-0000', 'store' || i || '@example.com'
+                FROM generate_series(1, %d - (SELECT COUNT(*) FROM stores)) AS i
+                ON CONFLICT (store_code) DO NOTHING
+                """.formatted(count));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to add benchmark stores", e);
+        }
+    }
+    
+    private static void insertMembers(Statement statement, int from, int to) throws SQLException {
+        statement.execute("""
+            INSERT INTO members (member_code, store_id, first_name, last_name, first_name_kana, last_name_kana,
+                email, phone, birthday, gender, address, postal_code, member_type, status, enrollment_date,
+                enrollment_method, ip_whitelist)
+            SELECT 'BENCH' || lpad(i::text, 10, '0'),
+                (SELECT id FROM stores ORDER BY id LIMIT 1 OFFSET (i %% 2)),
+                '太郎' || i, '山田', 'タロウ', 'ヤマダ', 'member' || i || '@example.com', '090-0000-0000',
+                DATE '1980-01-01' + (i %% 10000), CASE WHEN i %% 2 = 0 THEN 'MALE' ELSE 'FEMALE' END,
+                '東京都渋谷区1-1-' || i, '150-0001', 'REGULAR',
+                CASE WHEN i %% 20 = 0 THEN 'SUSPENDED' ELSE 'ACTIVE' END,
+                DATE '2020-01-01' + (i %% 1500), 'STORE',
+                CASE WHEN i %% 10 = 0 THEN '%s'::text[] END
+            FROM generate_series(%d, %d) AS i
+            """.formatted(IP_WHITELIST, from, to));
+        statement.execute("ANALYZE members");
+        members = to;
+    }
+    
+    private static synchronized void close() {
+        try {
+            postgres.close();
+        } catch (IOException e) {
+            // 終了時のため無視する
+        }
+    }
+}
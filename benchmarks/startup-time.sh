@@ -0,0 +1,117 @@
+#!/usr/bin/env bash
+# 起動時間のベンチマーク: docker compose のサービスを停止状態から起動し、最初の要求が成功するまでの時間を計測する
+#
+# 使い方: ./benchmarks/startup-time.sh [-n 回数] [-t タイムアウト秒] [サービス名...]
+#   サービス名を省略した場合は全サービス（eureka-server, config-server, api-gateway, membership-service,
+#   payment-service, lesson-service, store-service, integration-service）を計測する
+#   要求先は PROBE_<サービス名（大文字・-は_）> で変更できる（例: PROBE_LESSON_SERVICE=http://localhost:8083/api/lessons?...）
+#   要求に付けるヘッダーは PROBE_HEADER で指定する（例: PROBE_HEADER="Authorization: Bearer ..."）
+#
+# 事前に docker compose up -d で全サービス（とPostgreSQL）を起動しておくこと
+# 通常の起動と比較する場合は README の「高速起動」の手順で対象サービスを通常の起動に戻して実行する
+
+set -euo pipefail
+
+runs=3
+timeout_seconds=180
+services=()
+
+while getopts "n:t:" opt; do
+    case "$opt" in
+        n) runs="$OPTARG" ;;
+        t) timeout_seconds="$OPTARG" ;;
+        *) echo "usage: $0 [-n runs] [-t timeout-seconds] [service...]" >&2; exit 2 ;;
+    esac
+done
+shift $((OPTIND - 1))
+services=("$@")
+if [ ${#services[@]} -eq 0 ]; then
+    services=(eureka-server config-server api-gateway membership-service payment-service lesson-service store-service integration-service)
+fi
+
+if docker compose version >/dev/null 2>&1; then
+    compose=(docker compose)
+else
+    compose=(docker-compose)
+fi
+
+# 既定の要求先（docker-compose.yml のホスト側ポート）
+# 各サービスのDBやディスカバリーの状態を含めて応答するヘルスチェックを最初の要求とする
+default_probe() {
+    case "$1" in
+        eureka-server) echo "http://localhost:8761/actuator/health" ;;
+        config-server) echo "http://localhost:8888/actuator/health" ;;
+        api-gateway) echo "http://localhost:8086/actuator/health" ;;
+        membership-service) echo "http://localhost:8081/actuator/health" ;;
+        payment-service) echo "http://localhost:8082/actuator/health" ;;
+        lesson-service) echo "http://localhost:8083/actuator/health" ;;
+        store-service) echo "http://localhost:8084/actuator/health" ;;
+        integration-service) echo "http://localhost:8085/actuator/health" ;;
+        *) echo "unknown service: $1" >&2; exit 2 ;;
+    esac
+}
+
+probe_url() {
+    local name
+    name="PROBE_$(echo "$1" | tr '[:lower:]-' '[:upper:]_')"
+    echo "${!name:-$(default_probe "$1")}"
+}
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+# 1回分の計測: 停止 → 起動 → 最初の成功した要求までのミリ秒を出力する（タイムアウトは空）
+measure_once() {
+    local service="$1" url="$2" start deadline
+    local curl_args=(--silent --fail --output /dev/null --max-time 2)
+    if [ -n "${PROBE_HEADER:-}" ]; then
+        curl_args+=(--header "$PROBE_HEADER")
+    fi
+    "${compose[@]}" stop "$service" >/dev/null 2>&1
+    start=$(now_ms)
+    deadline=$(( start + timeout_seconds * 1000 ))
+    "${compose[@]}" start "$service" >/dev/null 2>&1
+    while [ "$(now_ms)" -lt "$deadline" ]; do
+        if curl "${curl_args[@]}" "$url"; then
+            echo $(( $(now_ms) - start ))
+            return
+        fi
+        sleep 0.1
+    done
+    echo ""
+}
+
+# Spring Bootが出力する起動時間（Started ... in N seconds）の最後の値
+reported_startup() {
+    "${compose[@]}" logs --no-log-prefix --tail 500 "$1" 2>/dev/null \
+        | sed -n 's/.*Started .* in \([0-9.]*\) seconds.*/\1/p' | tail -1
+}
+
+printf '%-22s %10s %10s %10s %14s  %s\n' "service" "min(ms)" "median(ms)" "max(ms)" "jvm-report(s)" "probe"
+for service in "${services[@]}"; do
+    url=$(probe_url "$service")
+    results=()
+    failed=0
+    for ((i = 0; i < runs; i++)); do
+        elapsed=$(measure_once "$service" "$url")
+        if [ -z "$elapsed" ]; then
+            failed=$((failed + 1))
+        else
+            results+=("$elapsed")
+        fi
+    done
+    if [ ${#results[@]} -eq 0 ]; then
+        printf '%-22s %10s %10s %10s %14s  %s\n' "$service" "-" "-" "-" "-" "$url (timeout x$failed)"
+        continue
+    fi
+    sorted=($(printf '%s\n' "${results[@]}" | sort -n))
+    count=${#sorted[@]}
+    median=${sorted[$((count / 2))]}
+    note="$url"
+    if [ "$failed" -gt 0 ]; then
+        note="$note (timeout x$failed)"
+    fi
+    printf '%-22s %10s %10s %10s %14s  %s\n' "$service" "${sorted[0]}" "$median" "${sorted[$((count - 1))]}" \
+        "$(reported_startup "$service")" "$note"
+done
@@ -0,0 +1,83 @@
+package com.membership.benchmarks.store;
+
+import com.membership.benchmarks.BenchmarkDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.YearMonth;
+
+/**
+ * 集計のベンチマーク用の元データ
+ * 50店舗の直近12か月（当月を含まない）に、1店舗1日あたり来場150件・販売30件（20件に1件は取消）を合成する（来場約270万件）
+ */
+final class AnalyticsData {
+    
+    static final int STORES = 50;
+    static final int MONTHS = 12;
+    static final int VISITS_PER_DAY = 150;
+    static final int SALES_PER_DAY = 30;
+    
+    private static boolean seeded;
+    
+    private AnalyticsData() {
+    }
+    
+    static YearMonth firstMonth() {
+        return lastMonth().minusMonths(MONTHS - 1);
+    }
+    
+    static YearMonth lastMonth() {
+        return YearMonth.now().minusMonths(1);
+    }
+    
+    /**
+     * 元データを投入する（同じJVMで2回目以降は何もしない）
+     */
+    static synchronized void seed() {
+        if (seeded) {
+            return;
+        }
+        BenchmarkDatabase.ensureStores(STORES);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(BenchmarkDatabase.get().getPostgresDatabase());
+        String from = firstMonth().atDay(1).toString();
+        String until = lastMonth().plusMonths(1).atDay(1).toString();
+        // 来場記録は月単位のパーティションのため、過去の月のパーティションを先に作る
+        for (YearMonth month = firstMonth(); !month.isAfter(lastMonth()); month = month.plusMonths(1)) {
+            jdbcTemplate.execute(("CREATE TABLE IF NOT EXISTS visit_records_p%d%02d PARTITION OF visit_records " +
+                "FOR VALUES FROM ('%s') TO ('%s')").formatted(month.getYear(), month.getMonthValue(), month.atDay(1),
+                month.plusMonths(1).atDay(1)));
+        }
+        jdbcTemplate.update("""
+            INSERT INTO visit_records (member_id, store_id, visit_date, entry_method, duration_minutes)
+            SELECT 1 + (s.n * 7919 + k * 104729 + EXTRACT(DOY FROM d)::int) % ?, s.id,
+                d + make_interval(mins => 360 + (k * 37) % 960), 'CARD', 30 + k % 90
+            FROM (SELECT id, row_number() OVER (ORDER BY id) AS n FROM stores ORDER BY id LIMIT ?) s
+                CROSS JOIN generate_series(?::timestamp, ?::timestamp - interval '1 day', interval '1 day') AS d
+                CROSS JOIN generate_series(1, ?) AS k
+            """, BenchmarkDatabase.MEMBERS, STORES, from, until, VISITS_PER_DAY);
+        jdbcTemplate.update("""
+            INSERT INTO sales (store_id, member_id, sale_date, total_amount, tax_amount, payment_method, status)
+            SELECT s.id, 1 + (s.n * 7919 + k * 104729 + EXTRACT(DOY FROM d)::int) % ?,
+                d + make_interval(mins => 360 + (k * 53) % 960), 550 + (k * 113) % 20 * 110, 50 + (k * 113) % 20 * 10,
+                'CARD', CASE WHEN k % 20 = 0 THEN 'CANCELLED' ELSE 'COMPLETED' END
+            FROM (SELECT id, row_number() OVER (ORDER BY id) AS n FROM stores ORDER BY id LIMIT ?) s
+                CROSS JOIN generate_series(?::timestamp, ?::timestamp - interval '1 day', interval '1 day') AS d
+                CROSS JOIN generate_series(1, ?) AS k
+            """, BenchmarkDatabase.MEMBERS, STORES, from, until, SALES_PER_DAY);
+        jdbcTemplate.execute("ANALYZE visit_records");
+        jdbcTemplate.execute("ANALYZE sales");
+        seeded = true;
+    }
+    
+    /**
+     * 最後の月に来場記録をcount件追加する（差分集計の対象になる新しい元データ）
+     */
+    static void addVisits(JdbcTemplate jdbcTemplate, int count) {
+        jdbcTemplate.update("""
+            INSERT INTO visit_records (member_id, store_id, visit_date, entry_method, duration_minutes)
+            SELECT 1 + (i * 7919) % ?, s.ids[1 + i % array_length(s.ids, 1)],
+                ?::timestamp + make_interval(mins => (i * 37) % (28 * 24 * 60)), 'CARD', 30 + i % 90
+            FROM (SELECT array_agg(id ORDER BY id) AS ids FROM (SELECT id FROM stores ORDER BY id LIMIT ?) t) s
+                CROSS JOIN generate_series(1, ?) AS i
+            """, BenchmarkDatabase.MEMBERS, lastMonth().atDay(1).toString(), STORES, count);
+    }
+}
@@ -0,0 +1,63 @@
+package com.membership.benchmarks.store;
+
+import com.membership.store.analytics.RollupMetric;
+import com.membership.store.analytics.RollupService;
+import com.membership.store.dto.BackfillStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 来場数・売上の12か月分の集計値を元データから作り直す（バックフィル）時間
+ * 作り直しは月ごとに集計値を消してから集計するため、計測を繰り返しても同じ処理量になる
+ * 1回の計測で約300万件を集計するため、-Pjmh.quick（ウォームアップ1回・計測1回）での実行を想定する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RollupBackfillBenchmark {
+    
+    private static final long POLL_INTERVAL_MILLIS = 20;
+    
+    @Param({"1", "4"})
+    public int backfillThreads;
+    
+    private ConfigurableApplicationContext context;
+    private RollupService rollupService;
+    
+    @Setup
+    public void setUp() {
+        AnalyticsData.seed();
+        context = StoreApplication.start("analytics.rollup.backfill-threads=" + backfillThreads);
+        rollupService = context.getBean(RollupService.class);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public BackfillStatus backfill() throws InterruptedException {
+        BackfillStatus status = rollupService.startBackfill(AnalyticsData.firstMonth(), AnalyticsData.lastMonth(),
+            List.of(RollupMetric.VISITS, RollupMetric.SALES));
+        while (BackfillStatus.RUNNING.equals(status.status())) {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+            status = rollupService.getBackfill();
+        }
+        if (!BackfillStatus.COMPLETED.equals(status.status())) {
+            throw new IllegalStateException("Rollup backfill failed: " + status);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,63 @@
+package com.membership.benchmarks.store;
+
+import com.membership.store.analytics.RollupMetric;
+import com.membership.store.analytics.RollupService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 差分集計（RollupService.rollUp）で、前回の集計以降に追加された来場記録を集計値へ足し込む時間
+ * 12か月分の元データを集計済みの状態から始め、計測ごとに新しい来場記録を追加してから集計する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RollupIncrementalBenchmark {
+    
+    @Param({"10000", "100000"})
+    public int newVisits;
+    
+    private ConfigurableApplicationContext context;
+    private RollupService rollupService;
+    private JdbcTemplate jdbcTemplate;
+    
+    @Setup
+    public void setUp() {
+        AnalyticsData.seed();
+        context = StoreApplication.start();
+        rollupService = context.getBean(RollupService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        rollupService.rollUp(RollupMetric.VISITS);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Setup(Level.Invocation)
+    public void addVisits() {
+        AnalyticsData.addVisits(jdbcTemplate, newVisits);
+    }
+    
+    @Benchmark
+    public long rollUp() {
+        long rolledUp = rollupService.rollUp(RollupMetric.VISITS);
+        if (rolledUp != newVisits) {
+            throw new IllegalStateException("Expected " + newVisits + " new visits but rolled up " + rolledUp);
+        }
+        return rolledUp;
+    }
+}
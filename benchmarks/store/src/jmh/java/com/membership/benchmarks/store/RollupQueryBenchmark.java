@@ -0,0 +1,120 @@
+package com.membership.benchmarks.store;
+
+import com.membership.store.analytics.RollupGrain;
+import com.membership.store.analytics.RollupMetric;
+import com.membership.store.analytics.RollupService;
+import com.membership.store.dto.BackfillStatus;
+import com.membership.store.dto.RollupPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ダッシュボードの集計値の照会時間（1店舗の直近1か月を日単位、直近12か月を月単位）
+ * source=rollup は集計値（RollupService）から、source=raw は同じ値を元データ（来場記録・販売）から集計した場合の時間
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RollupQueryBenchmark {
+    
+    private static final String RAW_VISITS_SQL = "SELECT date_trunc(?, visit_date) AS bucket_start, COUNT(*) AS event_count, " +
+        "CAST(0 AS DECIMAL(16, 2)) AS amount FROM visit_records WHERE store_id = ? AND visit_date >= ? AND visit_date < ? " +
+        "GROUP BY 1 ORDER BY 1";
+    private static final String RAW_SALES_SQL = "SELECT date_trunc(?, sale_date) AS bucket_start, COUNT(*) AS event_count, " +
+        "SUM(total_amount) AS amount FROM sales WHERE store_id = ? AND sale_date >= ? AND sale_date < ? " +
+        "AND status = 'COMPLETED' GROUP BY 1 ORDER BY 1";
+    
+    @Param({"VISITS", "SALES"})
+    public RollupMetric metric;
+    
+    @Param({"month", "year"})
+    public String period;
+    
+    @Param({"rollup", "raw"})
+    public String source;
+    
+    private ConfigurableApplicationContext context;
+    private RollupService rollupService;
+    private JdbcTemplate jdbcTemplate;
+    private long[] storeIds;
+    private RollupGrain grain;
+    private LocalDateTime from;
+    private LocalDateTime until;
+    private long next;
+    
+    @Setup
+    public void setUp() throws InterruptedException {
+        AnalyticsData.seed();
+        context = StoreApplication.start();
+        rollupService = context.getBean(RollupService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        storeIds = jdbcTemplate.queryForList("SELECT id FROM stores ORDER BY id LIMIT ?", Long.class, AnalyticsData.STORES)
+            .stream().mapToLong(Long::longValue).toArray();
+        boolean year = "year".equals(period);
+        grain = year ? RollupGrain.MONTH : RollupGrain.DAY;
+        until = AnalyticsData.lastMonth().plusMonths(1).atDay(1).atStartOfDay();
+        from = until.minusMonths(year ? AnalyticsData.MONTHS : 1);
+        backfill();
+        
+        List<RollupPoint> rollups = rollupService.findPoints(metric, grain, storeIds[0], from, until);
+        List<RollupPoint> raw = findRaw(storeIds[0]);
+        if (!rollups.equals(raw)) {
+            throw new IllegalStateException("Rollups " + rollups + " do not match source rows " + raw);
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public List<RollupPoint> findPoints() {
+        long storeId = storeIds[(int) (next++ % storeIds.length)];
+        if ("raw".equals(source)) {
+            return findRaw(storeId);
+        }
+        return rollupService.findPoints(metric, grain, storeId, from, until);
+    }
+    
+    private List<RollupPoint> findRaw(long storeId) {
+        return jdbcTemplate.query(metric == RollupMetric.VISITS ? RAW_VISITS_SQL : RAW_SALES_SQL,
+            (rs, rowNum) -> new RollupPoint(rs.getTimestamp("bucket_start").toLocalDateTime(), "",
+                rs.getLong("event_count"), rs.getBigDecimal("amount")),
+            grain.name().toLowerCase(), storeId, Timestamp.valueOf(from), Timestamp.valueOf(until));
+    }
+    
+    /**
+     * 元データの全期間の集計値を作る（同じJVMで2回目以降のパラメータでは作成済み）
+     */
+    private void backfill() throws InterruptedException {
+        if (!rollupService.getWatermarks().isEmpty()) {
+            return;
+        }
+        BackfillStatus status = rollupService.startBackfill(AnalyticsData.firstMonth(), AnalyticsData.lastMonth(),
+            List.of(RollupMetric.VISITS, RollupMetric.SALES));
+        while (BackfillStatus.RUNNING.equals(status.status())) {
+            Thread.sleep(100);
+            status = rollupService.getBackfill();
+        }
+        if (!BackfillStatus.COMPLETED.equals(status.status())) {
+            throw new IllegalStateException("Rollup backfill failed: " + status);
+        }
+        // 本番では自動VACUUMが統計を更新する。作成直後の統計のないまま計測しない
+        jdbcTemplate.execute("ANALYZE analytics_rollups");
+    }
+}
@@ -0,0 +1,40 @@
+package com.membership.benchmarks.store;
+
+import com.membership.benchmarks.BenchmarkDatabase;
+import com.membership.store.StoreServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 組み込みPostgreSQLに接続したstore-serviceのアプリケーションコンテキスト
+ * 設定を変えて計測するため、ベンチマークのパラメータごとに起動し、計測後に閉じる
+ * 定期的な差分集計は計測と重ならないよう止め、投入した元データはすぐ集計対象にする
+ */
+final class StoreApplication {
+    
+    private StoreApplication() {
+    }
+    
+    /**
+     * @param properties 追加の設定（"analytics.rollup.backfill-threads=1" の形式）
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--spring.datasource.url=" + BenchmarkDatabase.jdbcUrl(),
+            "--spring.datasource.username=postgres",
+            "--spring.datasource.password=",
+            "--spring.jpa.hibernate.ddl-auto=none",
+            "--eureka.client.enabled=false",
+            "--analytics.rollup.enabled=false",
+            "--analytics.rollup.settle-ms=0",
+            "--logging.level.root=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(StoreServiceApplication.class).run(args.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,57 @@
+package com.membership.faststart;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 要求の処理で最初に使われるBeanを遅延初期化の対象から外す
+ * 起動時に作らないと最初の要求の応答時間に初期化の時間（Hibernateの起動など）が加わるため
+ */
+class EagerTypesExcludeFilter implements LazyInitializationExcludeFilter {
+    
+    /**
+     * DBを使うサービスでは最初の要求から必要になるため、常に起動時に作る
+     */
+    private static final List<String> DATABASE_TYPES = List.of(
+        "javax.sql.DataSource",
+        "jakarta.persistence.EntityManagerFactory");
+    
+    private final List<Class<?>> types = new ArrayList<>();
+    private final List<String> packages = new ArrayList<>();
+    
+    EagerTypesExcludeFilter(List<String> eagerTypes, ClassLoader classLoader) {
+        List<String> names = new ArrayList<>(DATABASE_TYPES);
+        names.addAll(eagerTypes);
+        for (String name : names) {
+            if (name.endsWith(".*")) {
+                packages.add(name.substring(0, name.length() - 1));
+            } else if (ClassUtils.isPresent(name, classLoader)) {
+                // クラスパスにない型（DBを使わないサービスのJPAなど）は無視する
+                types.add(ClassUtils.resolveClassName(name, classLoader));
+            }
+        }
+    }
+    
+    @Override
+    public boolean isExcluded(String beanName, BeanDefinition beanDefinition, Class<?> beanType) {
+        if (beanType == null) {
+            return false;
+        }
+        for (Class<?> type : types) {
+            if (type.isAssignableFrom(beanType)) {
+                return true;
+            }
+        }
+        String className = beanType.getName();
+        for (String prefix : packages) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
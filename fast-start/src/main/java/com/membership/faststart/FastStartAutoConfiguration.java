@@ -0,0 +1,28 @@
+package com.membership.faststart;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * 高速起動（fast-startプロファイル）の共通設定
+ * 遅延初期化を有効にした場合に、fast-start.eager-types のBeanだけは起動時に作る
+ */
+@AutoConfiguration
+public class FastStartAutoConfiguration {
+    
+    /**
+     * 遅延初期化の除外はBeanFactoryPostProcessorの段階で参照されるため、staticで宣言し、設定も直接バインドする
+     * （@ConfigurationPropertiesのバインドはこの段階ではまだ使えない）
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerTypesExcludeFilter(Environment environment) {
+        FastStartProperties properties = Binder.get(environment)
+            .bind("fast-start", FastStartProperties.class)
+            .orElseGet(FastStartProperties::new);
+        return new EagerTypesExcludeFilter(properties.getEagerTypes(),
+            FastStartAutoConfiguration.class.getClassLoader());
+    }
+}
@@ -0,0 +1,22 @@
+package com.membership.faststart;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 高速起動の設定（fast-start.*）
+ */
+@Data
+@ConfigurationProperties(prefix = "fast-start")
+public class FastStartProperties {
+    
+    /**
+     * 遅延初期化（spring.main.lazy-initialization）を有効にした場合も起動時に作るBeanの型（DataSourceとEntityManagerFactoryは常に対象）
+     * クラス名（そのクラスとサブクラス・実装クラス）か、末尾を「.*」にしたパッケージ名（配下のクラス）で指定する
+     * 指定したBeanが依存するBeanも起動時に作られる
+     */
+    private List<String> eagerTypes = new ArrayList<>();
+}
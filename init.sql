@@ -32,7 +32,6 @@ CREATE TABLE IF NOT EXISTS members (
     status VARCHAR(50) NOT NULL DEFAULT 'ACTIVE',
     enrollment_date DATE NOT NULL,
     enrollment_method VARCHAR(50) NOT NULL,
-    face_recognition_data TEXT,
     profile_image_url VARCHAR(500),
     ip_whitelist TEXT[],
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
@@ -52,6 +51,25 @@ CREATE TABLE IF NOT EXISTS member_cards (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- 会員顔認証データ（サイズが大きいため会員マスタから分離）
+CREATE TABLE IF NOT EXISTS member_face_data (
+    member_id BIGINT PRIMARY KEY REFERENCES members(id) ON DELETE CASCADE,
+    face_recognition_data TEXT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 既存環境の移行: members.face_recognition_data を member_face_data へ移す
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'members' AND column_name = 'face_recognition_data') THEN
+        INSERT INTO member_face_data (member_id, face_recognition_data)
+        SELECT id, face_recognition_data FROM members WHERE face_recognition_data IS NOT NULL
+        ON CONFLICT (member_id) DO NOTHING;
+        ALTER TABLE members DROP COLUMN face_recognition_data;
+    END IF;
+END $$;
+
 -- 契約ロッカー
 CREATE TABLE IF NOT EXISTS lockers (
     id BIGSERIAL PRIMARY KEY,
@@ -150,6 +168,49 @@ CREATE TABLE IF NOT EXISTS membership_bills (
     UNIQUE(member_id, billing_month)
 );
 
+-- 月次請求処理の実行状況（請求月ごとに1件）
+CREATE TABLE IF NOT EXISTS billing_runs (
+    id BIGSERIAL PRIMARY KEY,
+    billing_month DATE UNIQUE NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    total_contracts BIGINT,
+    billed_contracts BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    heartbeat_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP
+);
+
+-- 月次請求処理の会員ID範囲ごとの進捗（中断した処理を最後に登録した契約から再開する）
+CREATE TABLE IF NOT EXISTS billing_run_partitions (
+    run_id BIGINT NOT NULL REFERENCES billing_runs(id) ON DELETE CASCADE,
+    partition_no INTEGER NOT NULL,
+    from_member_id BIGINT NOT NULL,
+    to_member_id BIGINT,
+    last_member_id BIGINT,
+    last_contract_id BIGINT,
+    billed_contracts BIGINT NOT NULL DEFAULT 0,
+    status VARCHAR(50) NOT NULL DEFAULT 'PENDING',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (run_id, partition_no)
+);
+
+-- 口座振替の依頼ファイル（全銀フォーマット）
+CREATE TABLE IF NOT EXISTS bank_transfer_files (
+    id BIGSERIAL PRIMARY KEY,
+    billing_month DATE NOT NULL,
+    withdrawal_date DATE NOT NULL,
+    file_name VARCHAR(255),
+    record_count INTEGER NOT NULL DEFAULT 0,
+    total_amount DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    status VARCHAR(50) NOT NULL DEFAULT 'CREATING',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    result_imported_at TIMESTAMP
+);
+
+-- 既存環境の移行: 会費請求に口座振替の依頼ファイルと振替結果コードを追加する
+ALTER TABLE membership_bills ADD COLUMN IF NOT EXISTS transfer_file_id BIGINT REFERENCES bank_transfer_files(id);
+ALTER TABLE membership_bills ADD COLUMN IF NOT EXISTS transfer_result_code VARCHAR(1);
+
 -- 商品マスタ
 CREATE TABLE IF NOT EXISTS products (
     id BIGSERIAL PRIMARY KEY,
@@ -193,9 +254,97 @@ CREATE TABLE IF NOT EXISTS sale_items (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
--- 来場記録
+-- 月単位のレンジパーティション（来場記録・デバイス利用履歴など追記のみで増え続けるテーブル）
+-- パーティションは <テーブル名>_pYYYYMM。アプリケーションが定期的に先の月を作成し、保持期間を過ぎた月を切り離す
+CREATE SCHEMA IF NOT EXISTS archive;
+
+-- パーティションの範囲の上限（FOR VALUES ... TO (...) の値）
+CREATE OR REPLACE FUNCTION partition_upper_bound(partition regclass) RETURNS timestamp AS $$
+    SELECT substring(pg_get_expr(c.relpartbound, c.oid) FROM 'TO \(''([^'']+)''\)')::timestamp
+    FROM pg_class c WHERE c.oid = partition
+$$ LANGUAGE sql STABLE;
+
+-- 既存パーティションの上限（パーティションがなければ前月初）から、months_ahead か月先の月までのパーティションを作成する
+-- 作成したパーティション数を返す
+CREATE OR REPLACE FUNCTION ensure_monthly_partitions(parent regclass, months_ahead integer) RETURNS integer AS $$
+DECLARE
+    parent_name text := (SELECT relname FROM pg_class WHERE oid = parent);
+    last_start timestamp := date_trunc('month', LOCALTIMESTAMP) + make_interval(months => months_ahead);
+    next_start timestamp;
+    created integer := 0;
+BEGIN
+    -- 親テーブルの排他ロックを長く待って挿入を止めないよう、取れなければ次回に回す
+    PERFORM set_config('lock_timeout', '5s', true);
+    -- 複数インスタンスから同時に呼ばれても同じ月を重ねて作成しない
+    PERFORM pg_advisory_xact_lock(parent::oid::bigint);
+    SELECT MAX(partition_upper_bound(i.inhrelid)) INTO next_start FROM pg_inherits i WHERE i.inhparent = parent;
+    next_start := COALESCE(next_start, date_trunc('month', LOCALTIMESTAMP) - interval '1 month');
+    WHILE next_start <= last_start LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF %s FOR VALUES FROM (%L) TO (%L)',
+            parent_name || '_p' || to_char(next_start, 'YYYYMM'), parent, next_start, next_start + interval '1 month');
+        created := created + 1;
+        next_start := next_start + interval '1 month';
+    END LOOP;
+    RETURN created;
+END
+$$ LANGUAGE plpgsql;
+
+-- 範囲の上限が retention_months か月前の月初以前のパーティションを切り離し、archiveスキーマへ移す
+-- 移したテーブル名を返す（退避・削除は運用で行う）
+CREATE OR REPLACE FUNCTION detach_expired_partitions(parent regclass, retention_months integer) RETURNS SETOF text AS $$
+DECLARE
+    cutoff timestamp := date_trunc('month', LOCALTIMESTAMP) - make_interval(months => retention_months);
+    expired record;
+BEGIN
+    PERFORM set_config('lock_timeout', '5s', true);
+    PERFORM pg_advisory_xact_lock(parent::oid::bigint);
+    FOR expired IN SELECT i.inhrelid::regclass AS partition, c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = parent AND partition_upper_bound(i.inhrelid) <= cutoff ORDER BY 2 LOOP
+        EXECUTE format('ALTER TABLE %s DETACH PARTITION %s', parent, expired.partition);
+        EXECUTE format('ALTER TABLE %s SET SCHEMA archive', expired.partition);
+        RETURN NEXT 'archive.' || expired.relname;
+    END LOOP;
+END
+$$ LANGUAGE plpgsql;
+
+-- 既存環境の移行: パーティション化されていないテーブルを、既存の行をコピーせずにパーティションテーブルへ切り替える
+-- 既存テーブルは <テーブル名>_legacy として最後の行の翌月初までの最初のパーティションになり、
+-- 保持期間を過ぎた時点で他の月と同様にarchiveへ切り離される
+-- 主キーを (id, 期間の列) に作り直し、既存の索引は名前を _legacy 付きに変える（親の索引と同じ定義のものはそのまま使われる）
+-- 切り替え中は書き込みを止めること（パーティションの主キーの作成で既存の行を読むため、行数に応じて時間がかかる）
+CREATE OR REPLACE FUNCTION partition_by_month(parent text, time_column text) RETURNS void AS $$
+DECLARE
+    legacy text := parent || '_legacy';
+    legacy_until timestamp;
+    index_name text;
+    fk record;
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass(parent) AND relkind = 'r') THEN
+        RETURN;
+    END IF;
+    EXECUTE format('ALTER TABLE %I RENAME TO %I', parent, legacy);
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', legacy, parent || '_pkey');
+    FOR index_name IN SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+            WHERE i.indrelid = legacy::regclass LOOP
+        EXECUTE format('ALTER INDEX %I RENAME TO %I', index_name, index_name || '_legacy');
+    END LOOP;
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS, PRIMARY KEY (id, %I)) PARTITION BY RANGE (%I)',
+        parent, legacy, time_column, time_column);
+    FOR fk IN SELECT conname, pg_get_constraintdef(oid) AS definition FROM pg_constraint
+            WHERE conrelid = legacy::regclass AND contype = 'f' LOOP
+        EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I %s', parent, fk.conname, fk.definition);
+    END LOOP;
+    -- 採番は既存の続きから（集計済み位置などIDの順序に依存する処理のため）
+    EXECUTE format('ALTER SEQUENCE %s OWNED BY %I.id', pg_get_serial_sequence(legacy, 'id'), parent);
+    EXECUTE format('SELECT date_trunc(''month'', COALESCE(MAX(%I), LOCALTIMESTAMP)) + interval ''1 month'' FROM %I',
+        time_column, legacy) INTO legacy_until;
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)', parent, legacy, legacy_until);
+END
+$$ LANGUAGE plpgsql;
+
+-- 来場記録（来場日時の月単位でパーティション分割する）
 CREATE TABLE IF NOT EXISTS visit_records (
-    id BIGSERIAL PRIMARY KEY,
+    id BIGSERIAL,
     member_id BIGINT REFERENCES members(id) ON DELETE CASCADE,
     store_id BIGINT REFERENCES stores(id),
     visit_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
@@ -204,8 +353,13 @@ CREATE TABLE IF NOT EXISTS visit_records (
     duration_minutes INTEGER,
     face_recognized BOOLEAN DEFAULT false,
     ip_address VARCHAR(50),
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-);
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, visit_date)
+) PARTITION BY RANGE (visit_date);
+
+-- 既存環境の移行: visit_records を来場日時の月単位のパーティションテーブルへ切り替える
+SELECT partition_by_month('visit_records', 'visit_date');
+SELECT ensure_monthly_partitions('visit_records', 3);
 
 -- スクールマスタ
 CREATE TABLE IF NOT EXISTS schools (
@@ -250,6 +404,39 @@ CREATE TABLE IF NOT EXISTS lesson_bookings (
     UNIQUE(member_id, lesson_id)
 );
 
+-- 既存環境の移行: 予約確定数（lesson_bookingsのBOOKED件数）を保持し、定員を超える更新をDBで拒否する
+ALTER TABLE lessons ADD COLUMN IF NOT EXISTS booked_count INTEGER NOT NULL DEFAULT 0;
+UPDATE lessons l SET booked_count =
+    (SELECT COUNT(*) FROM lesson_bookings b WHERE b.lesson_id = l.id AND b.status = 'BOOKED');
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'ck_lessons_booked_count') THEN
+        ALTER TABLE lessons ADD CONSTRAINT ck_lessons_booked_count
+            CHECK (booked_count >= 0 AND booked_count <= capacity);
+    END IF;
+END $$;
+
+-- 集計（来場数・売上・入会数）の店舗別の時間/日/月単位の集計値
+-- store_idが未設定の元データは0に集計し、dimensionは商品カテゴリなどの内訳（内訳なしは空文字）
+CREATE TABLE IF NOT EXISTS analytics_rollups (
+    metric VARCHAR(30) NOT NULL,
+    grain VARCHAR(10) NOT NULL,
+    store_id BIGINT NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    dimension VARCHAR(100) NOT NULL DEFAULT '',
+    event_count BIGINT NOT NULL DEFAULT 0,
+    amount DECIMAL(16, 2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (metric, grain, store_id, bucket_start, dimension)
+);
+
+-- 集計済みの元データの位置（元テーブルのID）
+CREATE TABLE IF NOT EXISTS analytics_watermarks (
+    source VARCHAR(30) PRIMARY KEY,
+    last_id BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
 -- 外部連携（ゴルフシュミレーター、水素水サーバーなど）
 CREATE TABLE IF NOT EXISTS external_integrations (
     id BIGSERIAL PRIMARY KEY,
@@ -264,16 +451,42 @@ CREATE TABLE IF NOT EXISTS external_integrations (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
--- 外部デバイス利用履歴
+-- 外部デバイス利用履歴（利用開始日時の月単位でパーティション分割する）
 CREATE TABLE IF NOT EXISTS device_usage_logs (
-    id BIGSERIAL PRIMARY KEY,
+    id BIGSERIAL,
     member_id BIGINT REFERENCES members(id) ON DELETE CASCADE,
     integration_id BIGINT REFERENCES external_integrations(id),
     usage_start_time TIMESTAMP NOT NULL,
     usage_end_time TIMESTAMP,
     usage_data JSONB,
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-);
+    device_type VARCHAR(50),
+    device_id VARCHAR(100),
+    -- デバイス種別:デバイスID:セッションID（同じセッションの開始・終了を1行にまとめる冪等キー）
+    session_key VARCHAR(200),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, usage_start_time)
+) PARTITION BY RANGE (usage_start_time);
+
+-- 既存環境の移行: device_usage_logs に session_key を追加する
+ALTER TABLE device_usage_logs ADD COLUMN IF NOT EXISTS session_key VARCHAR(200);
+DO $$
+BEGIN
+    -- パーティションテーブルの一意索引はパーティションの列を含む必要があるため、切り替え前のテーブルのみ
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('device_usage_logs') AND relkind = 'r') THEN
+        CREATE UNIQUE INDEX IF NOT EXISTS uk_device_usage_logs_session_key ON device_usage_logs(session_key);
+    END IF;
+END $$;
+
+-- 既存環境の移行: 利用履歴の検索用に device_type / device_id を追加し、session_key から補完する
+ALTER TABLE device_usage_logs ADD COLUMN IF NOT EXISTS device_type VARCHAR(50);
+ALTER TABLE device_usage_logs ADD COLUMN IF NOT EXISTS device_id VARCHAR(100);
+UPDATE device_usage_logs
+SET device_type = split_part(session_key, ':', 1), device_id = split_part(session_key, ':', 2)
+WHERE device_type IS NULL AND session_key IS NOT NULL;
+
+-- 既存環境の移行: device_usage_logs を利用開始日時の月単位のパーティションテーブルへ切り替える
+SELECT partition_by_month('device_usage_logs', 'usage_start_time');
+SELECT ensure_monthly_partitions('device_usage_logs', 3);
 
 -- 電話サポート履歴
 CREATE TABLE IF NOT EXISTS support_calls (
@@ -296,18 +509,45 @@ CREATE TABLE IF NOT EXISTS support_calls (
 CREATE INDEX idx_members_store_id ON members(store_id);
 CREATE INDEX idx_members_status ON members(status);
 CREATE INDEX idx_members_enrollment_date ON members(enrollment_date);
+-- シーク方式のページング用複合インデックス
+CREATE INDEX IF NOT EXISTS idx_members_store_id_id ON members(store_id, id);
+CREATE INDEX IF NOT EXISTS idx_members_store_id_status_id ON members(store_id, status, id);
+CREATE INDEX IF NOT EXISTS idx_members_enrollment_date_id ON members(enrollment_date, id);
 CREATE INDEX idx_member_cards_member_id ON member_cards(member_id);
 CREATE INDEX idx_locker_contracts_member_id ON locker_contracts(member_id);
 CREATE INDEX idx_membership_contracts_member_id ON membership_contracts(member_id);
+-- 月次請求処理で有効な契約を会員ID順に読み進めるため
+CREATE INDEX IF NOT EXISTS idx_membership_contracts_active_member_id_id
+    ON membership_contracts(member_id, id) WHERE status = 'ACTIVE';
 CREATE INDEX idx_membership_bills_member_id ON membership_bills(member_id);
 CREATE INDEX idx_membership_bills_payment_status ON membership_bills(payment_status);
+-- 口座振替の依頼対象（請求月・未払い）の抽出と、依頼ファイル単位の読み出し用
+CREATE INDEX IF NOT EXISTS idx_membership_bills_billing_month_status ON membership_bills(billing_month, payment_status);
+CREATE INDEX IF NOT EXISTS idx_membership_bills_transfer_file_id ON membership_bills(transfer_file_id);
+CREATE INDEX IF NOT EXISTS idx_bank_accounts_member_id ON bank_accounts(member_id);
 CREATE INDEX idx_sales_member_id ON sales(member_id);
 CREATE INDEX idx_sales_store_id ON sales(store_id);
-CREATE INDEX idx_visit_records_member_id ON visit_records(member_id);
-CREATE INDEX idx_visit_records_visit_date ON visit_records(visit_date);
+-- 集計の月単位の再集計（バックフィル）用
+CREATE INDEX IF NOT EXISTS idx_sales_sale_date ON sales(sale_date);
+-- 全店舗合計の集計値の期間検索用
+CREATE INDEX IF NOT EXISTS idx_analytics_rollups_metric_grain_bucket ON analytics_rollups(metric, grain, bucket_start);
+-- 会員の来場履歴（新しい順）用。索引はパーティションごとに作成され、書き込みは当月分の小さい索引だけを更新する
+CREATE INDEX IF NOT EXISTS idx_visit_records_member_id_visit_date ON visit_records(member_id, visit_date DESC);
+-- 店舗別の期間検索・集計用（期間外のパーティションは読まず、パーティション内は索引のみで集計できる）
+CREATE INDEX IF NOT EXISTS idx_visit_records_store_id_visit_date ON visit_records(store_id, visit_date);
+-- レッスン予定（スクール・期間）の検索と、予定インデックスの差分読み込み用
+CREATE INDEX IF NOT EXISTS idx_lessons_school_id_lesson_date ON lessons(school_id, lesson_date);
+CREATE INDEX IF NOT EXISTS idx_lessons_updated_at ON lessons(updated_at);
 CREATE INDEX idx_lesson_bookings_member_id ON lesson_bookings(member_id);
 CREATE INDEX idx_lesson_bookings_lesson_id ON lesson_bookings(lesson_id);
-CREATE INDEX idx_device_usage_logs_member_id ON device_usage_logs(member_id);
+-- キャンセル待ちを申込順に繰り上げるため
+CREATE INDEX IF NOT EXISTS idx_lesson_bookings_lesson_status_date
+    ON lesson_bookings(lesson_id, status, booking_date, id);
+-- 同じセッションの更新を1行にまとめる冪等キー（パーティションの列を含める）
+CREATE UNIQUE INDEX IF NOT EXISTS uk_device_usage_logs_session_key_start ON device_usage_logs(session_key, usage_start_time);
+-- 利用履歴（会員・デバイス種別ごとの新しい順）のシーク方式ページング用
+CREATE INDEX IF NOT EXISTS idx_device_usage_logs_member_type_start
+    ON device_usage_logs(member_id, device_type, usage_start_time DESC, id DESC);
 
 -- 初期データ挿入
 INSERT INTO stores (store_code, store_name, address, phone, email) VALUES
@@ -0,0 +1,145 @@
+package com.membership.instrumentation;
+
+import com.membership.instrumentation.endpoint.HotPathsEndpoint;
+import com.membership.instrumentation.jdbc.DataSourceTimingPostProcessor;
+import com.membership.instrumentation.jdbc.QueryTimingListener;
+import com.membership.instrumentation.jdbc.SlowQueryLog;
+import com.membership.instrumentation.web.TraceIdResponseFilter;
+import com.membership.instrumentation.web.TraceIdWebFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.ManagementWebSecurityAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.tracing.BraveAutoConfiguration;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.info.InfoEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.servlet.OAuth2ResourceServerAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.util.StringUtils;
+
+/**
+ * 各サービス共通の応答時間の計測
+ * - エンドポイント・リポジトリのメソッド・外部呼び出し・DB接続の取得待ち・SQLのタイマーにパーセンタイルのヒストグラムを付ける
+ * - SQLの実行時間（db.query）と遅いクエリ（db.query.slow とログ）を記録する
+ * - 応答ヘッダーでトレースIDを返す（トレースIDはゲートウェイから下流のサービスへ traceparent で伝播される）
+ * - 種類ごとの遅い順の一覧を /actuator/hotpaths で返す
+ * com.membership 配下はサービスのコンポーネントスキャンの対象になるため、Webの種類ごとの設定は@Configurationを付けずに@Importで読み込む
+ * 監視用のエンドポイントのSecurityFilterChainを足しても既定のセキュリティ設定が残るよう、セキュリティの自動構成の後に読み込む
+ */
+@AutoConfiguration(after = {MetricsAutoConfiguration.class, CompositeMeterRegistryAutoConfiguration.class,
+    BraveAutoConfiguration.class, SecurityAutoConfiguration.class, ManagementWebSecurityAutoConfiguration.class,
+    OAuth2ResourceServerAutoConfiguration.class})
+@EnableConfigurationProperties(InstrumentationProperties.class)
+@Import({InstrumentationAutoConfiguration.ServletConfiguration.class,
+    InstrumentationAutoConfiguration.ServletSecurityConfiguration.class,
+    InstrumentationAutoConfiguration.ReactiveConfiguration.class})
+public class InstrumentationAutoConfiguration {
+    
+    @Bean
+    public LatencyHistogramFilter latencyHistogramFilter(InstrumentationProperties properties) {
+        return new LatencyHistogramFilter(properties);
+    }
+    
+    @Bean
+    public SlowQueryLog slowQueryLog(InstrumentationProperties properties) {
+        return new SlowQueryLog(properties.getSlowQuery());
+    }
+    
+    @Bean
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnProperty(prefix = "instrumentation", name = "query-timing", havingValue = "true")
+    public QueryTimingListener queryTimingListener(MeterRegistry meterRegistry, SlowQueryLog slowQueryLog,
+                                                   InstrumentationProperties properties) {
+        return new QueryTimingListener(meterRegistry, slowQueryLog, properties.getSlowQuery().isEnabled());
+    }
+    
+    /**
+     * BeanPostProcessorは他のBeanより先に作られるため、staticで宣言する
+     * DataSourceを包むため、使うサービスが instrumentation.query-timing で有効にする
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "instrumentation", name = "query-timing", havingValue = "true")
+    public static DataSourceTimingPostProcessor dataSourceTimingPostProcessor(ObjectProvider<QueryTimingListener> listener) {
+        return new DataSourceTimingPostProcessor(listener);
+    }
+    
+    @Bean
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnAvailableEndpoint(endpoint = HotPathsEndpoint.class)
+    public HotPathsEndpoint hotPathsEndpoint(MeterRegistry meterRegistry, SlowQueryLog slowQueryLog,
+                                             InstrumentationProperties properties) {
+        return new HotPathsEndpoint(meterRegistry, slowQueryLog, properties.getHotPathsLimit());
+    }
+    
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class ServletConfiguration {
+        
+        /**
+         * 要求の計測（ServerHttpObservationFilter）でスパンを開始した後に実行する
+         */
+        @Bean
+        @ConditionalOnBean(Tracer.class)
+        public FilterRegistrationBean<TraceIdResponseFilter> traceIdResponseFilter(Tracer tracer,
+                                                                                  InstrumentationProperties properties) {
+            FilterRegistrationBean<TraceIdResponseFilter> registration =
+                new FilterRegistrationBean<>(new TraceIdResponseFilter(tracer, properties.getTraceHeader()));
+            registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+            registration.setEnabled(StringUtils.hasText(properties.getTraceHeader()));
+            return registration;
+        }
+    }
+    
+    /**
+     * 監視用のエンドポイントのセキュリティ（サービスのSecurityFilterChainより先に適用する）
+     * ヘルスチェックとPrometheusの収集に使う health / info / prometheus は認証なしで参照でき、
+     * 内部の情報（SQL・パスなど）を返す metrics / hotpaths はBasic認証を求める
+     */
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnClass(SecurityFilterChain.class)
+    @ConditionalOnProperty(prefix = "instrumentation", name = "public-endpoints", matchIfMissing = true)
+    static class ServletSecurityConfiguration {
+        
+        @Bean
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        public SecurityFilterChain monitoringEndpointsSecurity(HttpSecurity http) throws Exception {
+            http
+                .securityMatcher(EndpointRequest.toAnyEndpoint())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(auth -> auth
+                    .requestMatchers(EndpointRequest.to(HealthEndpoint.class, InfoEndpoint.class,
+                        PrometheusScrapeEndpoint.class)).permitAll()
+                    .anyRequest().authenticated())
+                .httpBasic(Customizer.withDefaults());
+            return http.build();
+        }
+    }
+    
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class ReactiveConfiguration {
+        
+        @Bean
+        public TraceIdWebFilter traceIdWebFilter(InstrumentationProperties properties) {
+            return new TraceIdWebFilter(properties.getTraceHeader());
+        }
+    }
+}
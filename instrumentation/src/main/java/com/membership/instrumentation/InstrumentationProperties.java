@@ -0,0 +1,88 @@
+package com.membership.instrumentation;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 応答時間の計測の設定（instrumentation.*）
+ */
+@Data
+@ConfigurationProperties(prefix = "instrumentation")
+public class InstrumentationProperties {
+    
+    /**
+     * パーセンタイルのヒストグラムを記録するタイマー（名前の前方一致）
+     * エンドポイント・リポジトリのメソッド・外部呼び出し・DB接続の取得待ち・SQLの実行時間
+     */
+    private List<String> histograms = new ArrayList<>(List.of(
+        "http.server.requests",
+        "http.client.requests",
+        "spring.cloud.gateway.requests",
+        "spring.data.repository.invocations",
+        "hikaricp.connections.acquire",
+        "device.calls",
+        "db.query"));
+    
+    /**
+     * アプリケーション側で計算して公開するパーセンタイル（/actuator/metrics と hotpaths で参照する）
+     */
+    private List<Double> percentiles = new ArrayList<>(List.of(0.5, 0.95, 0.99));
+    
+    /**
+     * ヒストグラムのバケットの範囲（ミリ秒）
+     */
+    private long histogramMinMs = 1;
+    private long histogramMaxMs = 30000;
+    
+    /**
+     * トレースIDを返す応答ヘッダー。空の場合は返さない
+     */
+    private String traceHeader = "X-Trace-Id";
+    
+    /**
+     * 監視用のエンドポイントのうち health / info / prometheus を認証なしで参照できるようにする（Servletのサービスのみ）
+     * metrics / hotpaths はBasic認証を求める。無効にした場合はサービスのセキュリティ設定に従う
+     */
+    private boolean publicEndpoints = true;
+    
+    /**
+     * DataSourceをプロキシで包み、SQLの実行時間（db.query）と遅いクエリを記録する（DBを使うサービスで有効にする）
+     */
+    private boolean queryTiming = false;
+    
+    /**
+     * hotpaths エンドポイントで種類ごとに返す件数（p99の遅い順）
+     */
+    private int hotPathsLimit = 20;
+    
+    private SlowQuery slowQuery = new SlowQuery();
+    
+    @Data
+    public static class SlowQuery {
+        
+        private boolean enabled = true;
+        
+        /**
+         * この時間（ミリ秒）以上かかったSQLを遅いクエリとして記録する
+         */
+        private long thresholdMs = 200;
+        
+        /**
+         * 記録するSQLの種類（正規化したSQL）の上限。超えた分はログとメトリクスだけに残す
+         */
+        private int maxQueries = 200;
+        
+        /**
+         * 同じSQLの遅いクエリをログへ出す間隔の下限（ミリ秒）。間隔内の分は件数だけを次のログに含める
+         */
+        private long logIntervalMs = 10000;
+        
+        /**
+         * ログと hotpaths に含めるSQLの長さの上限
+         */
+        private int maxSqlLength = 2000;
+    }
+}
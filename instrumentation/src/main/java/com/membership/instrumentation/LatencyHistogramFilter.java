@@ -0,0 +1,50 @@
+package com.membership.instrumentation;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 計測対象のタイマーにパーセンタイルのヒストグラム（Prometheusのバケット）とパーセンタイル値を付ける
+ */
+public class LatencyHistogramFilter implements MeterFilter {
+    
+    private final List<String> prefixes;
+    private final double[] percentiles;
+    private final double minimumExpectedNanos;
+    private final double maximumExpectedNanos;
+    
+    public LatencyHistogramFilter(InstrumentationProperties properties) {
+        this.prefixes = List.copyOf(properties.getHistograms());
+        this.percentiles = properties.getPercentiles().stream().mapToDouble(Double::doubleValue).toArray();
+        this.minimumExpectedNanos = Duration.ofMillis(properties.getHistogramMinMs()).toNanos();
+        this.maximumExpectedNanos = Duration.ofMillis(properties.getHistogramMaxMs()).toNanos();
+    }
+    
+    @Override
+    public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+        if (id.getType() != Meter.Type.TIMER || !isMeasured(id.getName())) {
+            return config;
+        }
+        // リポジトリのメソッドのタイマーなどはヒストグラムなしを明示して登録されるため、こちらの設定で上書きする
+        return DistributionStatisticConfig.builder()
+            .percentilesHistogram(true)
+            .percentiles(percentiles)
+            .minimumExpectedValue(minimumExpectedNanos)
+            .maximumExpectedValue(maximumExpectedNanos)
+            .build()
+            .merge(config);
+    }
+    
+    private boolean isMeasured(String name) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
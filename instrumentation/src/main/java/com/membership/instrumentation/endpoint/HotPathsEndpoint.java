@@ -0,0 +1,105 @@
+package com.membership.instrumentation.endpoint;
+
+import com.membership.instrumentation.jdbc.SlowQueryLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 応答時間の内訳（/actuator/hotpaths）
+ * エンドポイント・リポジトリのメソッド・外部呼び出し・DB接続の取得待ち・SQLの種類ごとに、p99の遅い順に返す
+ * パーセンタイルと最大値は直近の数分間（Micrometerの既定で2分）の値、件数と平均は起動からの累計
+ */
+@Endpoint(id = "hotpaths")
+public class HotPathsEndpoint {
+    
+    private static final Map<String, List<String>> CATEGORIES = categories();
+    
+    private final MeterRegistry meterRegistry;
+    private final SlowQueryLog slowQueryLog;
+    private final int limit;
+    
+    /**
+     * @param slowQueryLog DataSourceがない（ゲートウェイなど）場合はnull
+     */
+    public HotPathsEndpoint(MeterRegistry meterRegistry, SlowQueryLog slowQueryLog, int limit) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryLog = slowQueryLog;
+        this.limit = limit;
+    }
+    
+    @ReadOperation
+    public HotPaths hotPaths() {
+        Map<String, List<Latency>> latencies = new LinkedHashMap<>();
+        CATEGORIES.forEach((category, names) -> latencies.put(category, names.stream()
+            .flatMap(name -> meterRegistry.find(name).timers().stream())
+            .filter(timer -> timer.count() > 0)
+            .map(HotPathsEndpoint::latency)
+            .sorted(Comparator.comparingDouble(Latency::sortKey).reversed())
+            .limit(limit)
+            .toList()));
+        List<SlowQueryLog.SlowQuery> slowQueries = slowQueryLog != null
+            ? slowQueryLog.snapshot().stream().limit(limit).toList() : List.of();
+        return new HotPaths(latencies, slowQueries);
+    }
+    
+    private static Latency latency(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (Tag tag : timer.getId().getTags()) {
+            tags.put(tag.getKey(), tag.getValue());
+        }
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            percentiles.put("p" + formatPercentile(value.percentile()), value.value(TimeUnit.MILLISECONDS));
+        }
+        return new Latency(timer.getId().getName(), tags, snapshot.count(), snapshot.mean(TimeUnit.MILLISECONDS),
+            snapshot.max(TimeUnit.MILLISECONDS), percentiles);
+    }
+    
+    private static String formatPercentile(double percentile) {
+        String value = String.valueOf(percentile * 100);
+        return value.endsWith(".0") ? value.substring(0, value.length() - 2) : value;
+    }
+    
+    private static Map<String, List<String>> categories() {
+        Map<String, List<String>> categories = new LinkedHashMap<>();
+        categories.put("endpoints", List.of("http.server.requests", "spring.cloud.gateway.requests"));
+        categories.put("repositories", List.of("spring.data.repository.invocations"));
+        categories.put("outboundCalls", List.of("device.calls", "http.client.requests"));
+        categories.put("connectionPools", List.of("hikaricp.connections.acquire"));
+        categories.put("queries", List.of("db.query"));
+        return categories;
+    }
+    
+    public record HotPaths(Map<String, List<Latency>> latencies, List<SlowQueryLog.SlowQuery> slowQueries) {
+    }
+    
+    /**
+     * @param percentiles パーセンタイルごとの応答時間（ミリ秒。instrumentation.percentiles のもの）
+     */
+    public record Latency(String name, Map<String, String> tags, long count, double meanMs, double maxMs,
+                          Map<String, Double> percentiles) {
+        
+        /**
+         * p99（なければ最も高いパーセンタイル、パーセンタイルがなければ平均）
+         */
+        double sortKey() {
+            Double p99 = percentiles.get("p99");
+            if (p99 != null) {
+                return p99;
+            }
+            return percentiles.values().stream().reduce((first, second) -> second).orElse(meanMs);
+        }
+    }
+}
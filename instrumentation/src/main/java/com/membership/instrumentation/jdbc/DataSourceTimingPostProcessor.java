@@ -0,0 +1,65 @@
+package com.membership.instrumentation.jdbc;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * DataSourceをSQLの実行時間を計測するプロキシで包む
+ * JPA（Hibernate）とJdbcTemplateのどちらから実行したSQLも計測できるよう、接続プールの外側で包む
+ * 接続プールのメトリクス（hikaricp.*）はプロキシ越しにunwrapして取得されるため、そのまま記録される
+ * MeterRegistryより先にDataSourceが作られるため、計測は全Beanの作成後に始める（起動中のSQLは計測しない）
+ */
+public class DataSourceTimingPostProcessor implements BeanPostProcessor, SmartInitializingSingleton {
+    
+    private final ObjectProvider<QueryTimingListener> provider;
+    private final DeferredListener listener = new DeferredListener();
+    
+    public DataSourceTimingPostProcessor(ObjectProvider<QueryTimingListener> provider) {
+        this.provider = provider;
+    }
+    
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+            return ProxyDataSourceBuilder.create(beanName, dataSource)
+                .listener(listener)
+                .build();
+        }
+        return bean;
+    }
+    
+    @Override
+    public void afterSingletonsInstantiated() {
+        listener.delegate = provider.getIfAvailable();
+    }
+    
+    private static final class DeferredListener implements QueryExecutionListener {
+        
+        private volatile QueryTimingListener delegate;
+        
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            QueryTimingListener listener = delegate;
+            if (listener != null) {
+                listener.beforeQuery(execInfo, queryInfoList);
+            }
+        }
+        
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            QueryTimingListener listener = delegate;
+            if (listener != null) {
+                listener.afterQuery(execInfo, queryInfoList);
+            }
+        }
+    }
+}
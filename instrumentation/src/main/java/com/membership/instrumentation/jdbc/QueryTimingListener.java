@@ -0,0 +1,65 @@
+package com.membership.instrumentation.jdbc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQLの実行時間の計測（db.query）と遅いクエリの記録（db.query.slow）
+ * 計測するのはStatementの実行まで（結果セットの読み出しは含まない）
+ */
+public class QueryTimingListener implements QueryExecutionListener {
+    
+    private static final String START_NANOS = QueryTimingListener.class.getName() + ".start";
+    
+    private final MeterRegistry meterRegistry;
+    private final SlowQueryLog slowQueryLog;
+    private final boolean slowQueryEnabled;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> slowCounters = new ConcurrentHashMap<>();
+    
+    public QueryTimingListener(MeterRegistry meterRegistry, SlowQueryLog slowQueryLog, boolean slowQueryEnabled) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryLog = slowQueryLog;
+        this.slowQueryEnabled = slowQueryEnabled;
+    }
+    
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.addCustomValue(START_NANOS, System.nanoTime());
+    }
+    
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long start = execInfo.getCustomValue(START_NANOS, Long.class);
+        if (start == null || queryInfoList.isEmpty()) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        String sql = queryInfoList.get(0).getQuery();
+        String operation = SqlFingerprints.operation(sql);
+        String outcome = execInfo.isSuccess() ? "success" : "error";
+        timers.computeIfAbsent(operation + ':' + outcome, key -> Timer.builder("db.query")
+                .description("SQL statement execution time")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry))
+            .record(elapsed, TimeUnit.NANOSECONDS);
+        if (slowQueryEnabled && slowQueryLog.isSlow(elapsed)) {
+            slowCounters.computeIfAbsent(operation, key -> Counter.builder("db.query.slow")
+                    .description("SQL statements slower than instrumentation.slow-query.threshold-ms")
+                    .tag("operation", operation)
+                    .register(meterRegistry))
+                .increment();
+            slowQueryLog.record(sql, operation, elapsed, SqlFingerprints.parameters(queryInfoList.get(0).getParametersList()));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.membership.instrumentation.jdbc;
+
+import com.membership.instrumentation.InstrumentationProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 遅いクエリの記録
+ * 正規化したSQLごとに件数・最大時間・直近のバインド値の指紋を残し、ログは同じSQLにつき一定間隔に1回だけ出す
+ * ログにはMDCのトレースIDが付くため、どの要求のどのSQLが遅かったかをたどれる
+ */
+@Slf4j
+public class SlowQueryLog {
+    
+    private final long thresholdNanos;
+    private final int maxQueries;
+    private final long logIntervalMillis;
+    private final int maxSqlLength;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    
+    public SlowQueryLog(InstrumentationProperties.SlowQuery properties) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(properties.getThresholdMs());
+        this.maxQueries = properties.getMaxQueries();
+        this.logIntervalMillis = properties.getLogIntervalMs();
+        this.maxSqlLength = properties.getMaxSqlLength();
+    }
+    
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+    
+    /**
+     * @param parameters バインド値の指紋（{@link SqlFingerprints#parameters}）
+     */
+    void record(String sql, String operation, long elapsedNanos, String parameters) {
+        String normalized = truncate(SqlFingerprints.normalize(sql));
+        String fingerprint = SqlFingerprints.hash(normalized);
+        Entry entry = entries.get(fingerprint);
+        if (entry == null && entries.size() < maxQueries) {
+            entry = entries.computeIfAbsent(fingerprint, key -> new Entry(key, operation, normalized));
+        }
+        long now = System.currentTimeMillis();
+        long suppressed = 0;
+        boolean logged = true;
+        if (entry != null) {
+            entry.record(elapsedNanos, parameters, now);
+            logged = entry.tryLog(now, logIntervalMillis);
+            suppressed = logged ? entry.suppressed.sumThenReset() : 0;
+            if (!logged) {
+                entry.suppressed.increment();
+            }
+        }
+        if (logged) {
+            log.warn("Slow query {} ms [{}] params {}{}: {}", TimeUnit.NANOSECONDS.toMillis(elapsedNanos), fingerprint,
+                parameters.isEmpty() ? "-" : parameters, suppressed > 0 ? " (" + suppressed + " more since last log)" : "",
+                truncate(sql));
+        }
+    }
+    
+    /**
+     * 記録した遅いクエリ（最大時間の長い順）
+     */
+    public List<SlowQuery> snapshot() {
+        return entries.values().stream()
+            .map(Entry::toSlowQuery)
+            .sorted(Comparator.comparingDouble(SlowQuery::maxMs).reversed())
+            .toList();
+    }
+    
+    private String truncate(String sql) {
+        return sql.length() <= maxSqlLength ? sql : sql.substring(0, maxSqlLength) + "...";
+    }
+    
+    public record SlowQuery(String fingerprint, String operation, String sql, long count, double maxMs,
+                            double lastMs, String lastParameters, Instant lastSeen) {
+    }
+    
+    private static final class Entry {
+        
+        private final String fingerprint;
+        private final String operation;
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong lastLogged = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder suppressed = new LongAdder();
+        private volatile long lastNanos;
+        private volatile String lastParameters;
+        private volatile long lastSeen;
+        
+        private Entry(String fingerprint, String operation, String sql) {
+            this.fingerprint = fingerprint;
+            this.operation = operation;
+            this.sql = sql;
+        }
+        
+        private void record(long elapsedNanos, String parameters, long now) {
+            count.increment();
+            maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+            lastNanos = elapsedNanos;
+            lastParameters = parameters;
+            lastSeen = now;
+        }
+        
+        private boolean tryLog(long now, long intervalMillis) {
+            long last = lastLogged.get();
+            return (last == Long.MIN_VALUE || now - last >= intervalMillis) && lastLogged.compareAndSet(last, now);
+        }
+        
+        private SlowQuery toSlowQuery() {
+            return new SlowQuery(fingerprint, operation, sql, count.sum(), maxNanos.get() / 1_000_000.0,
+                lastNanos / 1_000_000.0, lastParameters, Instant.ofEpochMilli(lastSeen));
+        }
+    }
+}
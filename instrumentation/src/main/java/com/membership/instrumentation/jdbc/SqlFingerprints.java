@@ -0,0 +1,110 @@
+package com.membership.instrumentation.jdbc;
+
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * SQLとバインド値の指紋
+ * SQLはリテラルとINリストの長さを取り除いて正規化し、同じ形のSQLを1種類として数える
+ * バインド値は型の並びと値のハッシュだけを残し、会員情報などの値そのものはログに出さない
+ */
+final class SqlFingerprints {
+    
+    private static final Set<String> OPERATIONS = Set.of("select", "insert", "update", "delete");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern VALUES_ROWS = Pattern.compile("(\\(\\?\\.\\.\\.\\))(?:\\s*,\\s*\\(\\?\\.\\.\\.\\))+");
+    
+    private SqlFingerprints() {
+    }
+    
+    /**
+     * SQLの種類（select / insert / update / delete / other）。メトリクスのタグに使う
+     */
+    static String operation(String sql) {
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        String keyword = trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+        return OPERATIONS.contains(keyword) ? keyword : "other";
+    }
+    
+    /**
+     * リテラルを ? に置き換え、INリストや複数行のVALUESを長さによらない形にまとめたSQL
+     */
+    static String normalize(String sql) {
+        String normalized = WHITESPACE.matcher(sql.strip()).replaceAll(" ");
+        normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = PLACEHOLDER_LIST.matcher(normalized).replaceAll("(?...)");
+        normalized = VALUES_ROWS.matcher(normalized).replaceAll("$1, ...");
+        return normalized.toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * バインド値の指紋（例: Long,String,Timestamp#1a2b3c4d）
+     * 型の並びでどのパラメータの組み合わせが遅いかを、値のハッシュで同じ値による繰り返しかを見分ける
+     * バッチの場合は1件目の型の並びと件数、全件の値のハッシュ
+     */
+    static String parameters(List<List<ParameterSetOperation>> parametersList) {
+        if (parametersList == null || parametersList.isEmpty() || parametersList.get(0).isEmpty()) {
+            return "";
+        }
+        StringJoiner types = new StringJoiner(",");
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < parametersList.size(); i++) {
+            List<ParameterSetOperation> operations = parametersList.get(i).stream()
+                .sorted(Comparator.comparing(SqlFingerprints::parameterIndex))
+                .toList();
+            for (ParameterSetOperation operation : operations) {
+                Object value = ParameterSetOperation.isSetNullParameterOperation(operation) ? null : parameterValue(operation);
+                if (i == 0) {
+                    types.add(value == null ? "null" : value.getClass().getSimpleName());
+                }
+                values.append(value).append('\u0000');
+            }
+        }
+        String batch = parametersList.size() > 1 ? " x" + parametersList.size() : "";
+        return types + batch + "#" + hash(values.toString());
+    }
+    
+    /**
+     * 先頭8桁のSHA-256（16進数）
+     */
+    static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 4);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static String parameterIndex(ParameterSetOperation operation) {
+        Object[] args = operation.getArgs();
+        // 位置指定は数値、名前指定（CallableStatement）は文字列。数値は桁数をそろえて並べる
+        if (args.length > 0 && args[0] instanceof Integer index) {
+            return String.format("%05d", index);
+        }
+        return args.length > 0 ? String.valueOf(args[0]) : "";
+    }
+    
+    private static Object parameterValue(ParameterSetOperation operation) {
+        Object[] args = operation.getArgs();
+        return args.length > 1 ? args[1] : null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.membership.instrumentation.web;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 応答ヘッダーにトレースIDを付ける
+ * ゲートウェイから受け取ったtraceparentを引き継いだ場合は、ゲートウェイと同じトレースIDになる
+ */
+public class TraceIdResponseFilter extends OncePerRequestFilter {
+    
+    private final Tracer tracer;
+    private final String header;
+    
+    public TraceIdResponseFilter(Tracer tracer, String header) {
+        this.tracer = tracer;
+        this.header = header;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        Span span = tracer.currentSpan();
+        if (span != null) {
+            response.setHeader(header, span.context().traceId());
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,46 @@
+package com.membership.instrumentation.web;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.handler.TracingObservationHandler;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.observation.ServerRequestObservationContext;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * 応答ヘッダーにトレースIDを付ける（WebFlux用）
+ * トレースIDは要求の計測（http.server.requests）に紐づくスパンから取得する
+ */
+public class TraceIdWebFilter implements WebFilter, Ordered {
+    
+    private final String header;
+    
+    public TraceIdWebFilter(String header) {
+        this.header = header == null ? "" : header.strip();
+    }
+    
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!StringUtils.hasText(header)) {
+            return chain.filter(exchange);
+        }
+        // 要求の計測は下流のフィルターの購読時に開始されるため、応答の送信直前に参照する
+        exchange.getResponse().beforeCommit(() -> {
+            ServerRequestObservationContext.findCurrent(exchange.getAttributes())
+                .map(context -> context.<TracingObservationHandler.TracingContext>get(TracingObservationHandler.TracingContext.class))
+                .map(TracingObservationHandler.TracingContext::getSpan)
+                .map(Span::context)
+                .ifPresent(context -> exchange.getResponse().getHeaders().set(header, context.traceId()));
+            return Mono.empty();
+        });
+        return chain.filter(exchange);
+    }
+    
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
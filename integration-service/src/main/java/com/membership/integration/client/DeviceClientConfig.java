@@ -0,0 +1,51 @@
+package com.membership.integration.client;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * 外部デバイス用のHTTPクライアント
+ * デバイス種別ごとに専用の接続プールを持つノンブロッキングのWebClientを用意する
+ * 呼び出し側のスレッドは応答を待たないため、遅いデバイスがあってもTomcatのスレッドを占有しない
+ */
+@Configuration
+@EnableConfigurationProperties(DeviceClientProperties.class)
+public class DeviceClientConfig {
+    
+    @Bean
+    public WebClient golfSimulatorWebClient(WebClient.Builder builder, DeviceClientProperties properties) {
+        return deviceWebClient(builder, "golf-simulator", properties.getGolfSimulator());
+    }
+    
+    @Bean
+    public WebClient hydrogenWaterWebClient(WebClient.Builder builder, DeviceClientProperties properties) {
+        return deviceWebClient(builder, "hydrogen-water", properties.getHydrogenWater());
+    }
+    
+    private WebClient deviceWebClient(WebClient.Builder builder, String name, DeviceClientProperties.Device device) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(name)
+            .maxConnections(device.getMaxConnections())
+            .pendingAcquireMaxCount(device.getMaxPendingAcquires())
+            .pendingAcquireTimeout(Duration.ofMillis(device.getPendingAcquireTimeout()))
+            .maxIdleTime(Duration.ofMillis(device.getMaxIdleTime()))
+            .evictInBackground(Duration.ofMillis(device.getMaxIdleTime()))
+            .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, device.getConnectTimeout())
+            .keepAlive(true)
+            .responseTimeout(device.timeoutDuration());
+        // WebClient.Builderはプロトタイプのため、デバイスごとに複製して設定する
+        return builder.clone()
+            .baseUrl(device.getApiUrl())
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+    }
+}
@@ -0,0 +1,65 @@
+package com.membership.integration.client;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 外部デバイス連携の接続設定（integration.*）
+ * デバイス種別ごとに接続プールとタイムアウトを分け、1種別の遅延が他の種別へ波及しないようにする
+ */
+@Data
+@ConfigurationProperties(prefix = "integration")
+public class DeviceClientProperties {
+    
+    private Device golfSimulator = new Device("http://localhost:9001");
+    private Device hydrogenWater = new Device("http://localhost:9002");
+    
+    @Data
+    @NoArgsConstructor
+    public static class Device {
+        
+        private boolean enabled = true;
+        private String apiUrl;
+        
+        /**
+         * 応答タイムアウト（ミリ秒）
+         */
+        private long timeout = 30000;
+        
+        /**
+         * 接続タイムアウト（ミリ秒）
+         */
+        private int connectTimeout = 2000;
+        
+        /**
+         * 同時接続数の上限（keep-aliveで再利用される）
+         */
+        private int maxConnections = 50;
+        
+        /**
+         * 接続の空き待ちを許す要求数。超えた要求は待たずに失敗させる
+         */
+        private int maxPendingAcquires = 100;
+        
+        /**
+         * 接続の空き待ちタイムアウト（ミリ秒）
+         */
+        private long pendingAcquireTimeout = 1000;
+        
+        /**
+         * 未使用の接続を閉じるまでの時間（ミリ秒）。デバイス側のkeep-aliveより短くする
+         */
+        private long maxIdleTime = 30000;
+        
+        Device(String apiUrl) {
+            this.apiUrl = apiUrl;
+        }
+        
+        public Duration timeoutDuration() {
+            return Duration.ofMillis(timeout);
+        }
+    }
+}
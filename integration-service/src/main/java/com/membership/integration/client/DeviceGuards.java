@@ -0,0 +1,126 @@
+package com.membership.integration.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * デバイス呼び出しの保護（バルクヘッド・サーキットブレーカー・リトライ）
+ * 同時実行数はデバイス種別ごとと個々のデバイスごとの二段で制限し、サーキットブレーカーは個々のデバイスごとに持つ
+ * 1台のデバイスの障害は、そのデバイスの枠とブレーカーの中で即座に失敗させ、他のデバイス（他店舗）の待ち時間に影響させない
+ * 状態はresilience4jのレジストリ経由でメトリクス（resilience4j.*）として公開される
+ * 呼び出し全体（待ち・リトライを含む）の時間はデバイス種別と結果ごとに device.calls として記録する
+ * 1回ごとのHTTP要求の時間は http.client.requests に記録される
+ */
+@Component
+public class DeviceGuards {
+    
+    static final String DEVICE_TYPE_CONFIG = "device-type";
+    static final String DEVICE_CONFIG = "device";
+    
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final Retry idempotentRetry;
+    private final Retry connectRetry;
+    private final MeterRegistry meterRegistry;
+    
+    public DeviceGuards(CircuitBreakerRegistry circuitBreakerRegistry,
+                        BulkheadRegistry bulkheadRegistry,
+                        RetryRegistry retryRegistry,
+                        MeterRegistry meterRegistry) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.meterRegistry = meterRegistry;
+        RetryConfig base = retryRegistry.getConfiguration(DEVICE_CONFIG).orElse(retryRegistry.getDefaultConfig());
+        // 冪等な呼び出しは接続・タイムアウト・5xxで再試行する
+        this.idempotentRetry = retryRegistry.retry("device-idempotent", RetryConfig.from(base)
+            .retryOnException(DeviceGuards::isRetryable)
+            .build());
+        // 冪等でない呼び出しは要求が送信されていない接続失敗のみ再試行する
+        this.connectRetry = retryRegistry.retry("device-connect", RetryConfig.from(base)
+            .retryOnException(e -> e instanceof WebClientRequestException && e.getCause() instanceof ConnectException)
+            .build());
+    }
+    
+    /**
+     * デバイス呼び出しを保護付きで実行する
+     *
+     * @param deviceType デバイス種別（golf-simulator など）
+     * @param deviceId   個々のデバイスID。種別全体に対する呼び出しの場合はnull
+     * @param idempotent 再送しても副作用がない呼び出しか
+     */
+    public <T> Mono<T> guard(String deviceType, Long deviceId, boolean idempotent, Supplier<Mono<T>> call) {
+        Bulkhead typeBulkhead = bulkheadRegistry.bulkhead(deviceType, DEVICE_TYPE_CONFIG);
+        if (deviceId == null) {
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(deviceType, DEVICE_CONFIG);
+            return timed(deviceType, Mono.defer(call)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(typeBulkhead))
+                .transformDeferred(RetryOperator.of(idempotent ? idempotentRetry : connectRetry)));
+        }
+        String deviceName = deviceType + "-" + deviceId;
+        Bulkhead deviceBulkhead = bulkheadRegistry.bulkhead(deviceName, DEVICE_CONFIG);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(deviceName, DEVICE_CONFIG);
+        // リトライは最も外側に置き、再試行のたびにバルクヘッドとブレーカーを通す
+        return timed(deviceType, Mono.defer(call)
+            .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+            .transformDeferred(BulkheadOperator.of(deviceBulkhead))
+            .transformDeferred(BulkheadOperator.of(typeBulkhead))
+            .transformDeferred(RetryOperator.of(idempotent ? idempotentRetry : connectRetry)));
+    }
+    
+    /**
+     * 保護によって呼び出し自体を行わなかった失敗か（ログを簡略化する）
+     */
+    public static boolean isRejected(Throwable e) {
+        return e instanceof CallNotPermittedException || e instanceof BulkheadFullException;
+    }
+    
+    /**
+     * 購読から完了までの時間を記録する（結果: success / error / rejected / cancelled）
+     */
+    private <T> Mono<T> timed(String deviceType, Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                .doOnSuccess(result -> record(deviceType, "success", start))
+                .doOnError(e -> record(deviceType, isRejected(e) ? "rejected" : "error", start))
+                .doOnCancel(() -> record(deviceType, "cancelled", start));
+        });
+    }
+    
+    private void record(String deviceType, String outcome, long start) {
+        Timer.builder("device.calls")
+            .description("Device API calls including bulkhead waits and retries")
+            .tag("device.type", deviceType)
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+    
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientRequestException) {
+            return true;
+        }
+        return e instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError();
+    }
+}
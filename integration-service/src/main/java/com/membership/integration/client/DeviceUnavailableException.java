@@ -0,0 +1,15 @@
+package com.membership.integration.client;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * デバイスを利用できない（タイムアウト、接続失敗、サーキットブレーカー遮断、同時実行数超過など）
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DeviceUnavailableException extends RuntimeException {
+    
+    public DeviceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
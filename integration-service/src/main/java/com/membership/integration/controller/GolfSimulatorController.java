@@ -0,0 +1,53 @@
+package com.membership.integration.controller;
+
+import com.membership.integration.dto.UsageHistoryPage;
+import com.membership.integration.service.GolfSimulatorService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * ゴルフシュミレーター連携API
+ * デバイスの応答はノンブロッキングに待つため、応答待ちの間リクエストスレッドは解放される
+ */
+@RestController
+@RequestMapping("/api/integrations/golf-simulator")
+@RequiredArgsConstructor
+@Tag(name = "Golf Simulator", description = "ゴルフシュミレーター連携API")
+public class GolfSimulatorController {
+    
+    private final GolfSimulatorService golfSimulatorService;
+    
+    @PostMapping("/sessions/start")
+    @Operation(summary = "利用開始", description = "ゴルフシュミレーターの利用開始")
+    public Mono<ResponseEntity<Map<String, Object>>> startSession(@RequestParam Long memberId,
+                                                                  @RequestParam Long deviceId) {
+        return golfSimulatorService.startSession(memberId, deviceId).map(ResponseEntity::ok);
+    }
+    
+    @PostMapping("/sessions/end")
+    @Operation(summary = "利用終了", description = "ゴルフシュミレーターの利用終了")
+    public Mono<ResponseEntity<Map<String, Object>>> endSession(@RequestParam Long memberId,
+                                                                @RequestParam Long deviceId,
+                                                                @RequestBody(required = false) Map<String, Object> sessionData) {
+        return golfSimulatorService.endSession(memberId, deviceId, sessionData).map(ResponseEntity::ok);
+    }
+    
+    @GetMapping("/history/{memberId}")
+    @Operation(summary = "利用履歴取得", description = "ゴルフシュミレーターの利用履歴を利用開始日時の新しい順に取得。fromは含み、toは含まない。次ページはnextCursorをafterに指定する")
+    public ResponseEntity<UsageHistoryPage> getUsageHistory(
+            @PathVariable Long memberId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(golfSimulatorService.getUsageHistory(memberId, from, to, after, size));
+    }
+}
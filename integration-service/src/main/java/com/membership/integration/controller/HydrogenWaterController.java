@@ -0,0 +1,53 @@
+package com.membership.integration.controller;
+
+import com.membership.integration.dto.UsageHistoryPage;
+import com.membership.integration.service.HydrogenWaterService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 水素水サーバー連携API
+ * デバイスの応答はノンブロッキングに待つため、応答待ちの間リクエストスレッドは解放される
+ */
+@RestController
+@RequestMapping("/api/integrations/hydrogen-water")
+@RequiredArgsConstructor
+@Tag(name = "Hydrogen Water", description = "水素水サーバー連携API")
+public class HydrogenWaterController {
+    
+    private final HydrogenWaterService hydrogenWaterService;
+    
+    @PostMapping("/usage/start")
+    @Operation(summary = "利用開始", description = "水素水サーバーの利用開始")
+    public Mono<ResponseEntity<Map<String, Object>>> startUsage(@RequestParam Long memberId,
+                                                                @RequestParam Long deviceId,
+                                                                @RequestParam(required = false) Integer amount) {
+        return hydrogenWaterService.startUsage(memberId, deviceId, amount).map(ResponseEntity::ok);
+    }
+    
+    @PostMapping("/usage/end")
+    @Operation(summary = "利用終了", description = "水素水サーバーの利用終了")
+    public Mono<ResponseEntity<Map<String, Object>>> endUsage(@RequestParam Long memberId,
+                                                              @RequestParam Long deviceId) {
+        return hydrogenWaterService.endUsage(memberId, deviceId).map(ResponseEntity::ok);
+    }
+    
+    @GetMapping("/history/{memberId}")
+    @Operation(summary = "利用履歴取得", description = "水素水サーバーの利用履歴を利用開始日時の新しい順に取得。fromは含み、toは含まない。次ページはnextCursorをafterに指定する")
+    public ResponseEntity<UsageHistoryPage> getUsageHistory(
+            @PathVariable Long memberId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(hydrogenWaterService.getUsageHistory(memberId, from, to, after, size));
+    }
+}
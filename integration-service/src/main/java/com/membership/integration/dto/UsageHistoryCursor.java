@@ -0,0 +1,34 @@
+package com.membership.integration.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 利用履歴のシーク位置（最後に返した行の利用開始日時とID）
+ * クライアントには内容を意識させないよう、URLセーフなBase64文字列として受け渡す
+ */
+public record UsageHistoryCursor(LocalDateTime startTime, long id) {
+    
+    /**
+     * @return カーソルが未指定の場合はnull（先頭ページ）
+     */
+    public static UsageHistoryCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('/');
+            return new UsageHistoryCursor(LocalDateTime.parse(value.substring(0, separator)),
+                Long.parseLong(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+    
+    public String encode() {
+        String value = startTime + "/" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,18 @@
+package com.membership.integration.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.LocalDateTime;
+
+/**
+ * デバイス利用履歴の1件
+ * usageDataはDBに保存されたJSONをそのまま出力する（読み込み時に解析しない）
+ */
+public record UsageHistoryItem(
+    long id,
+    String deviceId,
+    LocalDateTime startTime,
+    LocalDateTime endTime,
+    @JsonRawValue String usageData
+) {
+}
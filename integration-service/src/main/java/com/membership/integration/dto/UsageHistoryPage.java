@@ -0,0 +1,14 @@
+package com.membership.integration.dto;
+
+import java.util.List;
+
+/**
+ * デバイス利用履歴のページ（利用開始日時の新しい順、カーソル方式）
+ */
+public record UsageHistoryPage(
+    Long memberId,
+    List<UsageHistoryItem> items,
+    String nextCursor,
+    boolean hasNext
+) {
+}
@@ -1,87 +1,138 @@
 package com.membership.integration.service;
 
-import lombok.RequiredArgsConstructor;
+import com.membership.integration.client.DeviceClientProperties;
+import com.membership.integration.client.DeviceGuards;
+import com.membership.integration.client.DeviceUnavailableException;
+import com.membership.integration.dto.UsageHistoryPage;
+import com.membership.integration.usage.DeviceUsageRecorder;
+import com.membership.integration.usage.UsageHistoryService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class GolfSimulatorService {
     
-    @Value("${integration.golf-simulator.api-url:http://localhost:9001}")
-    private String apiUrl;
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE = new ParameterizedTypeReference<>() {
+    };
     
-    private final RestTemplate restTemplate = new RestTemplate();
+    public static final String DEVICE_TYPE = "golf-simulator";
+    
+    private final WebClient webClient;
+    private final DeviceClientProperties.Device device;
+    private final DeviceGuards deviceGuards;
+    private final DeviceUsageRecorder usageRecorder;
+    private final UsageHistoryService usageHistoryService;
+    
+    public GolfSimulatorService(@Qualifier("golfSimulatorWebClient") WebClient webClient,
+                                DeviceClientProperties properties,
+                                DeviceGuards deviceGuards,
+                                DeviceUsageRecorder usageRecorder,
+                                UsageHistoryService usageHistoryService) {
+        this.webClient = webClient;
+        this.deviceGuards = deviceGuards;
+        this.usageRecorder = usageRecorder;
+        this.usageHistoryService = usageHistoryService;
+        this.device = properties.getGolfSimulator();
+    }
     
     /**
      * ゴルフシュミレーターの利用開始
      */
-    public Map<String, Object> startSession(Long memberId, Long deviceId) {
-        try {
-            Map<String, Object> request = new HashMap<>();
-            request.put("memberId", memberId);
-            request.put("deviceId", deviceId);
-            request.put("action", "start");
-            
-            // TODO: 実際のゴルフシュミレーターAPIとの連携
-            Map<String, Object> response = restTemplate.postForObject(
-                apiUrl + "/sessions/start", 
-                request, 
-                Map.class
-            );
-            
-            return response != null ? response : new HashMap<>();
-        } catch (Exception e) {
-            log.error("Error starting golf simulator session", e);
-            throw new RuntimeException("Failed to start golf simulator session", e);
-        }
+    public Mono<Map<String, Object>> startSession(Long memberId, Long deviceId) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("memberId", memberId);
+        request.put("deviceId", deviceId);
+        request.put("action", "start");
+        
+        // TODO: 実際のゴルフシュミレーターAPIとの連携
+        return post("/sessions/start", deviceId, request)
+            .doOnNext(response -> usageRecorder.started(DEVICE_TYPE, deviceId, memberId, response, Map.of()))
+            .onErrorMap(e -> failure("Error starting golf simulator session", "Failed to start golf simulator session", e));
     }
     
     /**
      * ゴルフシュミレーターの利用終了
      */
-    public Map<String, Object> endSession(Long memberId, Long deviceId, Map<String, Object> sessionData) {
-        try {
-            Map<String, Object> request = new HashMap<>();
-            request.put("memberId", memberId);
-            request.put("deviceId", deviceId);
-            request.put("action", "end");
-            request.put("sessionData", sessionData);
-            
-            // TODO: 実際のゴルフシュミレーターAPIとの連携
-            Map<String, Object> response = restTemplate.postForObject(
-                apiUrl + "/sessions/end", 
-                request, 
-                Map.class
-            );
-            
-            return response != null ? response : new HashMap<>();
-        } catch (Exception e) {
-            log.error("Error ending golf simulator session", e);
-            throw new RuntimeException("Failed to end golf simulator session", e);
-        }
+    public Mono<Map<String, Object>> endSession(Long memberId, Long deviceId, Map<String, Object> sessionData) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("memberId", memberId);
+        request.put("deviceId", deviceId);
+        request.put("action", "end");
+        request.put("sessionData", sessionData);
+        
+        // TODO: 実際のゴルフシュミレーターAPIとの連携
+        return post("/sessions/end", deviceId, request)
+            .doOnNext(response -> usageRecorder.ended(DEVICE_TYPE, deviceId, memberId, usageDetails(sessionData), response))
+            .onErrorMap(e -> failure("Error ending golf simulator session", "Failed to end golf simulator session", e));
     }
     
     /**
      * ゴルフシュミレーターの利用履歴取得
+     * 連携サービスに記録済みの利用ログから返し、デバイスへは問い合わせない
+     */
+    public UsageHistoryPage getUsageHistory(Long memberId, LocalDateTime from, LocalDateTime to, String after, int size) {
+        return usageHistoryService.getHistory(DEVICE_TYPE, memberId, from, to, after, size);
+    }
+    
+    /**
+     * デバイス側に記録された利用履歴のうち、指定日時以降の分を取得する（利用履歴の差分同期用）
+     */
+    public Mono<Map<String, Object>> fetchHistorySince(Long deviceId, LocalDateTime since) {
+        if (!device.isEnabled()) {
+            return Mono.just(new HashMap<>());
+        }
+        // TODO: 実際のゴルフシュミレーターAPIとの連携
+        // 参照のみのため、一時的な失敗は再試行する
+        Mono<Map<String, Object>> history = deviceGuards.guard(DEVICE_TYPE, deviceId, true, () -> webClient.get()
+            .uri(uri -> uri.path("/history")
+                .queryParam("deviceId", deviceId)
+                .queryParamIfPresent("since", Optional.ofNullable(since))
+                .build())
+            .retrieve()
+            .bodyToMono(RESPONSE_TYPE));
+        return history
+            .defaultIfEmpty(new HashMap<>())
+            .onErrorMap(e -> failure("Error syncing golf simulator history", "Failed to sync golf simulator history", e));
+    }
+    
+    /**
+     * 終了時に送られた計測データ（ショット履歴など）を利用ログへ残す
      */
-    public Map<String, Object> getUsageHistory(Long memberId) {
-        try {
-            // TODO: 実際のゴルフシュミレーターAPIとの連携
-            return restTemplate.getForObject(
-                apiUrl + "/history/" + memberId, 
-                Map.class
-            );
-        } catch (Exception e) {
-            log.error("Error getting golf simulator history", e);
-            return new HashMap<>();
+    private static Map<String, Object> usageDetails(Map<String, Object> sessionData) {
+        Map<String, Object> details = new HashMap<>();
+        details.put("sessionData", sessionData);
+        return details;
+    }
+    
+    private Mono<Map<String, Object>> post(String path, Long deviceId, Map<String, Object> request) {
+        if (!device.isEnabled()) {
+            return Mono.error(new IllegalStateException("Golf simulator integration is disabled"));
         }
+        Mono<Map<String, Object>> response = deviceGuards.guard(DEVICE_TYPE, deviceId, false, () -> webClient.post()
+            .uri(path)
+            .bodyValue(request)
+            .retrieve()
+            .bodyToMono(RESPONSE_TYPE));
+        return response.defaultIfEmpty(new HashMap<>());
+    }
+    
+    private static Throwable failure(String logMessage, String message, Throwable e) {
+        if (DeviceGuards.isRejected(e)) {
+            // ブレーカー遮断・同時実行数超過はデバイスへ要求していないため、スタックトレースを出さない
+            log.warn("{}: {}", logMessage, e.getMessage());
+        } else {
+            log.error(logMessage, e);
+        }
+        return new DeviceUnavailableException(message, e);
     }
 }
-
@@ -1,87 +1,138 @@
 package com.membership.integration.service;
 
-import lombok.RequiredArgsConstructor;
+import com.membership.integration.client.DeviceClientProperties;
+import com.membership.integration.client.DeviceGuards;
+import com.membership.integration.client.DeviceUnavailableException;
+import com.membership.integration.dto.UsageHistoryPage;
+import com.membership.integration.usage.DeviceUsageRecorder;
+import com.membership.integration.usage.UsageHistoryService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class HydrogenWaterService {
     
-    @Value("${integration.hydrogen-water.api-url:http://localhost:9002}")
-    private String apiUrl;
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE = new ParameterizedTypeReference<>() {
+    };
     
-    private final RestTemplate restTemplate = new RestTemplate();
+    public static final String DEVICE_TYPE = "hydrogen-water";
+    
+    private final WebClient webClient;
+    private final DeviceClientProperties.Device device;
+    private final DeviceGuards deviceGuards;
+    private final DeviceUsageRecorder usageRecorder;
+    private final UsageHistoryService usageHistoryService;
+    
+    public HydrogenWaterService(@Qualifier("hydrogenWaterWebClient") WebClient webClient,
+                                DeviceClientProperties properties,
+                                DeviceGuards deviceGuards,
+                                DeviceUsageRecorder usageRecorder,
+                                UsageHistoryService usageHistoryService) {
+        this.webClient = webClient;
+        this.deviceGuards = deviceGuards;
+        this.usageRecorder = usageRecorder;
+        this.usageHistoryService = usageHistoryService;
+        this.device = properties.getHydrogenWater();
+    }
     
     /**
      * 水素水サーバーの利用開始
      */
-    public Map<String, Object> startUsage(Long memberId, Long deviceId, Integer amount) {
-        try {
-            Map<String, Object> request = new HashMap<>();
-            request.put("memberId", memberId);
-            request.put("deviceId", deviceId);
-            request.put("amount", amount);
-            request.put("action", "start");
-            
-            // TODO: 実際の水素水サーバーAPIとの連携
-            Map<String, Object> response = restTemplate.postForObject(
-                apiUrl + "/usage/start", 
-                request, 
-                Map.class
-            );
-            
-            return response != null ? response : new HashMap<>();
-        } catch (Exception e) {
-            log.error("Error starting hydrogen water usage", e);
-            throw new RuntimeException("Failed to start hydrogen water usage", e);
-        }
+    public Mono<Map<String, Object>> startUsage(Long memberId, Long deviceId, Integer amount) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("memberId", memberId);
+        request.put("deviceId", deviceId);
+        request.put("amount", amount);
+        request.put("action", "start");
+        
+        // TODO: 実際の水素水サーバーAPIとの連携
+        return post("/usage/start", deviceId, request)
+            .doOnNext(response -> usageRecorder.started(DEVICE_TYPE, deviceId, memberId, response, usageDetails(amount)))
+            .onErrorMap(e -> failure("Error starting hydrogen water usage", "Failed to start hydrogen water usage", e));
     }
     
     /**
      * 水素水サーバーの利用終了
      */
-    public Map<String, Object> endUsage(Long memberId, Long deviceId) {
-        try {
-            Map<String, Object> request = new HashMap<>();
-            request.put("memberId", memberId);
-            request.put("deviceId", deviceId);
-            request.put("action", "end");
-            
-            // TODO: 実際の水素水サーバーAPIとの連携
-            Map<String, Object> response = restTemplate.postForObject(
-                apiUrl + "/usage/end", 
-                request, 
-                Map.class
-            );
-            
-            return response != null ? response : new HashMap<>();
-        } catch (Exception e) {
-            log.error("Error ending hydrogen water usage", e);
-            throw new RuntimeException("Failed to end hydrogen water usage", e);
-        }
+    public Mono<Map<String, Object>> endUsage(Long memberId, Long deviceId) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("memberId", memberId);
+        request.put("deviceId", deviceId);
+        request.put("action", "end");
+        
+        // TODO: 実際の水素水サーバーAPIとの連携
+        return post("/usage/end", deviceId, request)
+            .doOnNext(response -> usageRecorder.ended(DEVICE_TYPE, deviceId, memberId, Map.of(), response))
+            .onErrorMap(e -> failure("Error ending hydrogen water usage", "Failed to end hydrogen water usage", e));
     }
     
     /**
      * 水素水サーバーの利用履歴取得
+     * 連携サービスに記録済みの利用ログから返し、デバイスへは問い合わせない
+     */
+    public UsageHistoryPage getUsageHistory(Long memberId, LocalDateTime from, LocalDateTime to, String after, int size) {
+        return usageHistoryService.getHistory(DEVICE_TYPE, memberId, from, to, after, size);
+    }
+    
+    /**
+     * デバイス側に記録された利用履歴のうち、指定日時以降の分を取得する（利用履歴の差分同期用）
+     */
+    public Mono<Map<String, Object>> fetchHistorySince(Long deviceId, LocalDateTime since) {
+        if (!device.isEnabled()) {
+            return Mono.just(new HashMap<>());
+        }
+        // TODO: 実際の水素水サーバーAPIとの連携
+        // 参照のみのため、一時的な失敗は再試行する
+        Mono<Map<String, Object>> history = deviceGuards.guard(DEVICE_TYPE, deviceId, true, () -> webClient.get()
+            .uri(uri -> uri.path("/history")
+                .queryParam("deviceId", deviceId)
+                .queryParamIfPresent("since", Optional.ofNullable(since))
+                .build())
+            .retrieve()
+            .bodyToMono(RESPONSE_TYPE));
+        return history
+            .defaultIfEmpty(new HashMap<>())
+            .onErrorMap(e -> failure("Error syncing hydrogen water history", "Failed to sync hydrogen water history", e));
+    }
+    
+    /**
+     * 指定された給水量を利用ログへ残す
      */
-    public Map<String, Object> getUsageHistory(Long memberId) {
-        try {
-            // TODO: 実際の水素水サーバーAPIとの連携
-            return restTemplate.getForObject(
-                apiUrl + "/history/" + memberId, 
-                Map.class
-            );
-        } catch (Exception e) {
-            log.error("Error getting hydrogen water history", e);
-            return new HashMap<>();
+    private static Map<String, Object> usageDetails(Integer amount) {
+        Map<String, Object> details = new HashMap<>();
+        details.put("amount", amount);
+        return details;
+    }
+    
+    private Mono<Map<String, Object>> post(String path, Long deviceId, Map<String, Object> request) {
+        if (!device.isEnabled()) {
+            return Mono.error(new IllegalStateException("Hydrogen water integration is disabled"));
         }
+        Mono<Map<String, Object>> response = deviceGuards.guard(DEVICE_TYPE, deviceId, false, () -> webClient.post()
+            .uri(path)
+            .bodyValue(request)
+            .retrieve()
+            .bodyToMono(RESPONSE_TYPE));
+        return response.defaultIfEmpty(new HashMap<>());
+    }
+    
+    private static Throwable failure(String logMessage, String message, Throwable e) {
+        if (DeviceGuards.isRejected(e)) {
+            // ブレーカー遮断・同時実行数超過はデバイスへ要求していないため、スタックトレースを出さない
+            log.warn("{}: {}", logMessage, e.getMessage());
+        } else {
+            log.error(logMessage, e);
+        }
+        return new DeviceUnavailableException(message, e);
     }
 }
-
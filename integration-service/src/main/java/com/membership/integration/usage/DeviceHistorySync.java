@@ -0,0 +1,190 @@
+package com.membership.integration.usage;
+
+import com.membership.integration.service.GolfSimulatorService;
+import com.membership.integration.service.HydrogenWaterService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * デバイス側の利用履歴の差分同期
+ * external_integrationsに登録されたデバイスごとに、前回同期日時（last_sync_at）以降の履歴だけを取得してdevice_usage_logsへ取り込む
+ * 取り込みはセッションキー単位のUPSERTのため、同じ履歴を再取得しても重複しない
+ * 同期日時は取り込んだ全件のDB書き込みが終わってから進めるため、書き込み前に停止した分は次回の同期で再取得する
+ */
+@Component
+@Slf4j
+public class DeviceHistorySync {
+    
+    private static final String SELECT_SQL =
+        "SELECT id, integration_type, device_id, last_sync_at FROM external_integrations ORDER BY id";
+    private static final String UPDATE_SQL = "UPDATE external_integrations " +
+        "SET last_sync_at = COALESCE(?, last_sync_at), connection_status = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final GolfSimulatorService golfSimulatorService;
+    private final HydrogenWaterService hydrogenWaterService;
+    private final DeviceUsageWriter writer;
+    private final boolean enabled;
+    private final int concurrency;
+    private final Duration timeout;
+    
+    private record Integration(long id, String deviceType, String deviceId, LocalDateTime lastSyncAt) {
+    }
+    
+    public DeviceHistorySync(JdbcTemplate jdbcTemplate,
+                             GolfSimulatorService golfSimulatorService,
+                             HydrogenWaterService hydrogenWaterService,
+                             DeviceUsageWriter writer,
+                             @Value("${integration.usage-history.sync-enabled:true}") boolean enabled,
+                             @Value("${integration.usage-history.sync-concurrency:4}") int concurrency,
+                             @Value("${integration.usage-history.sync-timeout-ms:300000}") long timeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.golfSimulatorService = golfSimulatorService;
+        this.hydrogenWaterService = hydrogenWaterService;
+        this.writer = writer;
+        this.enabled = enabled;
+        this.concurrency = concurrency;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+    }
+    
+    @Scheduled(initialDelayString = "${integration.usage-history.sync-interval-ms:60000}",
+        fixedDelayString = "${integration.usage-history.sync-interval-ms:60000}")
+    public void syncAll() {
+        if (!enabled) {
+            return;
+        }
+        List<Integration> integrations = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> {
+            Timestamp lastSyncAt = rs.getTimestamp("last_sync_at");
+            return new Integration(rs.getLong("id"),
+                rs.getString("integration_type").toLowerCase().replace('_', '-'),
+                rs.getString("device_id"),
+                lastSyncAt != null ? lastSyncAt.toLocalDateTime() : null);
+        });
+        if (integrations.isEmpty()) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        Long synced = Flux.fromIterable(integrations)
+            .flatMap(this::sync, concurrency)
+            .filter(Boolean::booleanValue)
+            .count()
+            .block(timeout);
+        log.info("Synced device history for {}/{} integrations in {} ms",
+            synced, integrations.size(), System.currentTimeMillis() - started);
+    }
+    
+    /**
+     * 1台分の差分を取り込む。全件をDBへ書き込めた場合のみ同期日時を進める
+     */
+    private Mono<Boolean> sync(Integration integration) {
+        Long deviceId = parseDeviceId(integration.deviceId());
+        Mono<Map<String, Object>> history;
+        if (deviceId == null) {
+            return Mono.just(false);
+        } else if (GolfSimulatorService.DEVICE_TYPE.equals(integration.deviceType())) {
+            history = golfSimulatorService.fetchHistorySince(deviceId, integration.lastSyncAt());
+        } else if (HydrogenWaterService.DEVICE_TYPE.equals(integration.deviceType())) {
+            history = hydrogenWaterService.fetchHistorySince(deviceId, integration.lastSyncAt());
+        } else {
+            return Mono.just(false);
+        }
+        // 取得中に発生した履歴を取りこぼさないよう、要求前の日時を次回の起点にする
+        LocalDateTime requestedAt = LocalDateTime.now();
+        return history
+            // 取り込みと更新はJDBCを使うため、デバイス応答のイベントループから外す
+            .publishOn(Schedulers.boundedElastic())
+            .flatMap(response -> importItems(integration.deviceType(), deviceId, response.get("items")))
+            // 書き込みの完了は利用ログの書き込み用スレッドで通知されるため、更新は別のスレッドで行う
+            .publishOn(Schedulers.boundedElastic())
+            .map(imported -> {
+                update(integration.id(), imported ? requestedAt : null, "CONNECTED");
+                return imported;
+            })
+            .onErrorResume(e -> {
+                // 詳細はデバイス呼び出し側でログ出力済み
+                update(integration.id(), null, "DISCONNECTED");
+                return Mono.just(false);
+            });
+    }
+    
+    /**
+     * デバイスの履歴1件（sessionId, memberId, startTime, endTime）をセッション単位の利用ログとして取り込む
+     *
+     * @return 全件のDB書き込みが終わった時点でtrue、受け付けられなかった記録があればfalse
+     */
+    private Mono<Boolean> importItems(String deviceType, Long deviceId, Object items) {
+        if (!(items instanceof List<?> list)) {
+            return Mono.just(true);
+        }
+        List<CompletableFuture<Boolean>> written = new ArrayList<>();
+        for (Object element : list) {
+            if (!(element instanceof Map<?, ?> item)) {
+                continue;
+            }
+            Object sessionId = item.get("sessionId");
+            Long memberId = item.get("memberId") instanceof Number number ? number.longValue() : null;
+            LocalDateTime startTime = parseTime(item.get("startTime"));
+            if (sessionId == null || memberId == null || startTime == null) {
+                log.debug("Skipping device history item without session, member or start time: {}", item);
+                continue;
+            }
+            DeviceUsageEvent event = new DeviceUsageEvent(DeviceUsageRecorder.sessionKey(deviceType, deviceId, sessionId),
+                memberId, deviceType, deviceId, startTime, parseTime(item.get("endTime")), Map.of("device", item));
+            written.add(writer.enqueueAndAwait(event));
+        }
+        return Mono.fromFuture(CompletableFuture.allOf(written.toArray(CompletableFuture[]::new)))
+            .then(Mono.fromSupplier(() -> written.stream().allMatch(CompletableFuture::join)));
+    }
+    
+    private void update(long integrationId, LocalDateTime lastSyncAt, String connectionStatus) {
+        jdbcTemplate.update(UPDATE_SQL, lastSyncAt != null ? Timestamp.valueOf(lastSyncAt) : null,
+            connectionStatus, integrationId);
+    }
+    
+    private static Long parseDeviceId(String deviceId) {
+        try {
+            return Long.valueOf(deviceId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * ISO-8601（オフセット有無どちらも可）またはエポックミリ秒
+     */
+    private static LocalDateTime parseTime(Object value) {
+        if (value instanceof Number epochMillis) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis.longValue()), ZoneId.systemDefault());
+        }
+        if (!(value instanceof String text)) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(text);
+        } catch (DateTimeParseException e) {
+            try {
+                return OffsetDateTime.parse(text).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.membership.integration.usage;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * デバイス利用ログ1件分の更新内容
+ * 同じsessionKeyの更新（開始・終了・計測データ）はdevice_usage_logsの1行にまとめられる
+ *
+ * @param sessionKey デバイス種別:デバイスID:セッションID
+ * @param endTime    開始のみの更新ではnull
+ * @param usageData  既存のusage_dataへ上書きマージする項目
+ */
+public record DeviceUsageEvent(String sessionKey,
+                               Long memberId,
+                               String deviceType,
+                               Long deviceId,
+                               LocalDateTime startTime,
+                               LocalDateTime endTime,
+                               Map<String, Object> usageData) {
+    
+    /**
+     * 同じセッションの後続の更新を取り込む（DBへのUPSERTと同じ規則でまとめる）
+     */
+    DeviceUsageEvent merge(DeviceUsageEvent next) {
+        LocalDateTime start = startTime.isAfter(next.startTime) ? next.startTime : startTime;
+        LocalDateTime end = next.endTime != null ? next.endTime : endTime;
+        Map<String, Object> data = new LinkedHashMap<>();
+        if (usageData != null) {
+            data.putAll(usageData);
+        }
+        if (next.usageData != null) {
+            data.putAll(next.usageData);
+        }
+        return new DeviceUsageEvent(sessionKey, Objects.requireNonNullElse(memberId, next.memberId),
+            deviceType, deviceId, start, end, data);
+    }
+}
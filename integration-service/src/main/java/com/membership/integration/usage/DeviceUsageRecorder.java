@@ -0,0 +1,115 @@
+package com.membership.integration.usage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * デバイスの利用開始・終了をdevice_usage_logsへ記録する
+ * セッションキーはデバイスが返したセッションIDから作るため、同じセッションの再送は同じ行の更新になる
+ * セッションIDを返さないデバイスは、開始時に採番したキーを終了まで会員・デバイス単位で保持する
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceUsageRecorder {
+    
+    private static final String SESSION_ID = "sessionId";
+    
+    /**
+     * 終了が届かないセッションで際限なく増えないようにするための上限（超えた分は古いものから追い出す）
+     */
+    private static final int MAX_OPEN_SESSIONS = 10000;
+    
+    /**
+     * 終了が届かないまま保持するセッションの期限（1回の利用時間より十分長くする）
+     */
+    private static final Duration OPEN_SESSION_TTL = Duration.ofDays(1);
+    
+    private final DeviceUsageWriter writer;
+    
+    private final Cache<String, OpenSession> openSessions = Caffeine.newBuilder()
+        .maximumSize(MAX_OPEN_SESSIONS)
+        .expireAfterWrite(OPEN_SESSION_TTL)
+        .build();
+    
+    private record OpenSession(String sessionKey, LocalDateTime startTime) {
+    }
+    
+    /**
+     * 利用開始を記録する
+     *
+     * @param deviceResponse 開始要求に対するデバイスの応答（セッションIDを含む場合がある）
+     * @param details        usage_dataへ記録する開始時の情報
+     */
+    public void started(String deviceType, Long deviceId, Long memberId,
+                        Map<String, Object> deviceResponse, Map<String, Object> details) {
+        LocalDateTime now = LocalDateTime.now();
+        Object sessionId = deviceResponse.get(SESSION_ID);
+        String sessionKey = sessionKey(deviceType, deviceId, sessionId != null ? sessionId : UUID.randomUUID());
+        openSessions.put(openSessionKey(deviceType, deviceId, memberId), new OpenSession(sessionKey, now));
+        
+        Map<String, Object> usageData = new LinkedHashMap<>(details);
+        usageData.put("start", deviceResponse);
+        record(new DeviceUsageEvent(sessionKey, memberId, deviceType, deviceId, now, null, usageData));
+    }
+    
+    /**
+     * 利用終了を記録する
+     * セッションIDは終了時のデータ、デバイスの応答、開始時に保持したキーの順に探す
+     *
+     * @param details        usage_dataへ記録する終了時の情報（計測データなど）
+     * @param deviceResponse 終了要求に対するデバイスの応答
+     */
+    public void ended(String deviceType, Long deviceId, Long memberId,
+                      Map<String, Object> details, Map<String, Object> deviceResponse) {
+        LocalDateTime now = LocalDateTime.now();
+        OpenSession open = openSessions.asMap().remove(openSessionKey(deviceType, deviceId, memberId));
+        Object sessionId = findSessionId(details, deviceResponse);
+        String sessionKey;
+        if (sessionId != null) {
+            sessionKey = sessionKey(deviceType, deviceId, sessionId);
+        } else if (open != null) {
+            sessionKey = open.sessionKey();
+        } else {
+            // 開始を記録していないセッション（再起動をまたいだ場合など）は終了のみの行として残す
+            sessionKey = sessionKey(deviceType, deviceId, UUID.randomUUID());
+        }
+        LocalDateTime startTime = open != null && open.sessionKey().equals(sessionKey) ? open.startTime() : now;
+        
+        Map<String, Object> usageData = new LinkedHashMap<>(details);
+        usageData.put("end", deviceResponse);
+        record(new DeviceUsageEvent(sessionKey, memberId, deviceType, deviceId, startTime, now, usageData));
+    }
+    
+    private void record(DeviceUsageEvent event) {
+        if (!writer.enqueue(event)) {
+            // デバイス側の操作は完了しているため、利用ログが書けなくても要求は失敗させない
+            log.warn("Device usage log dropped: session={}", event.sessionKey());
+        }
+    }
+    
+    private static Object findSessionId(Map<String, Object> details, Map<String, Object> deviceResponse) {
+        Object sessionId = null;
+        if (details.get("sessionData") instanceof Map<?, ?> sessionData) {
+            sessionId = sessionData.get(SESSION_ID);
+        }
+        return sessionId != null ? sessionId : deviceResponse.get(SESSION_ID);
+    }
+    
+    static String sessionKey(String deviceType, Long deviceId, Object sessionId) {
+        return deviceType + ":" + deviceId + ":" + sessionId;
+    }
+    
+    private static String openSessionKey(String deviceType, Long deviceId, Long memberId) {
+        return deviceType + ":" + deviceId + ":" + memberId;
+    }
+}
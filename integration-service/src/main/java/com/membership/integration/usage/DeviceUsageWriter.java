@@ -0,0 +1,495 @@
+package com.membership.integration.usage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * デバイス利用ログの非同期書き込み
+ * 利用開始・終了の記録はメモリ上の有界な受付キューへ追加するだけで戻り（デバイス応答のイベントループでファイルI/Oを行わない）、
+ * 退避用スレッドが受付キューに溜まった分をまとめて退避ファイルへ追記して書き込みキューへ渡し、
+ * 書き込み用スレッドが書き込みキューに溜まった分をセッション単位にまとめてJDBCバッチでUPSERTする
+ * 受付キューにあって退避前の分はプロセスの異常終了で失われうる
+ * 同じセッションの更新はsession_keyで1行に集約されるため、デバイスの再送や退避ファイルの再生で重複しない
+ * （利用開始日時の異なる更新をまとめられる範囲には制限がある。UPSERT_SQLを参照）
+ */
+@Component
+@Slf4j
+public class DeviceUsageWriter implements SmartLifecycle {
+    
+    /**
+     * device_usage_logsは利用開始日時でパーティション分割しており、一意キーは (session_key, usage_start_time) のため、
+     * 開始日時の異なる同じセッションの更新（終了のみの記録、デバイス側の履歴など）は前後の一定期間内の行を探して更新する
+     * 該当する行がなければ登録し、他のインスタンスと同時に同じ行を登録した場合は一意キーで1行にまとめる
+     * 一意キーは利用開始日時まで一致した場合にしか効かないため、報告された利用開始日時が既存の行と
+     * SESSION_MATCH_WINDOW以上離れている場合と、まだ行のないセッションの利用開始日時の異なる更新を複数のインスタンスが
+     * 同時に登録した場合（互いの未確定の行は見えない。1インスタンス内は1スレッドで順に書くため起きない）は2行になりうる
+     */
+    private static final String UPSERT_SQL = "WITH merged AS (UPDATE device_usage_logs SET " +
+        "usage_start_time = LEAST(usage_start_time, ?), " +
+        "usage_end_time = COALESCE(?, usage_end_time), " +
+        "usage_data = COALESCE(usage_data, '{}'::jsonb) || COALESCE(?::jsonb, '{}'::jsonb), " +
+        "integration_id = COALESCE(integration_id, ?) " +
+        "WHERE session_key = ? AND usage_start_time >= ? AND usage_start_time < ? RETURNING id) " +
+        "INSERT INTO device_usage_logs " +
+        "(member_id, integration_id, usage_start_time, usage_end_time, usage_data, session_key, device_type, device_id) " +
+        "SELECT ?::bigint, ?::bigint, ?::timestamp, ?::timestamp, ?::jsonb, ?::varchar, ?::varchar, ?::varchar " +
+        "WHERE NOT EXISTS (SELECT 1 FROM merged) " +
+        "ON CONFLICT (session_key, usage_start_time) DO UPDATE SET " +
+        "usage_end_time = COALESCE(EXCLUDED.usage_end_time, device_usage_logs.usage_end_time), " +
+        "usage_data = COALESCE(device_usage_logs.usage_data, '{}'::jsonb) || COALESCE(EXCLUDED.usage_data, '{}'::jsonb), " +
+        "integration_id = COALESCE(device_usage_logs.integration_id, EXCLUDED.integration_id)";
+    
+    /**
+     * 同じセッションの既存の行を探す利用開始日時の前後の幅（1回の利用時間より十分長くする）
+     */
+    private static final Duration SESSION_MATCH_WINDOW = Duration.ofDays(1);
+    
+    private static final String INTEGRATIONS_SQL =
+        "SELECT id, integration_type, device_id FROM external_integrations ORDER BY id";
+    
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 30_000;
+    private static final int SHUTDOWN_RETRY_ATTEMPTS = 3;
+    private static final long INTEGRATION_REFRESH_INTERVAL_MILLIS = 60_000;
+    
+    /**
+     * 退避ファイルへ追記できなかった記録のセグメント番号（DBへの書き込みは続ける）
+     */
+    private static final long NOT_SPILLED = -1;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final UsageSpillLog spillLog;
+    private final UsageHistoryCache historyCache;
+    private final BlockingQueue<Pending> intake;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final long enqueueTimeoutMillis;
+    
+    /**
+     * 連携種別:デバイスID → external_integrations.id（一覧はフラッシュ用スレッドからのみ更新する）
+     */
+    private Map<String, Long> integrationIds = Map.of();
+    private long integrationsLoadedAt;
+    
+    private volatile boolean running;
+    private Thread spiller;
+    private Thread flusher;
+    
+    /**
+     * キュー内の1件と、その記録を追記した退避ファイルのセグメント
+     * writtenは書き込みの完了を待つ呼び出し元がある場合のみ設定する
+     */
+    private record Pending(DeviceUsageEvent event, long segment, CompletableFuture<Boolean> written) {
+        
+        void acknowledge(boolean result) {
+            if (written != null) {
+                written.complete(result);
+            }
+        }
+    }
+    
+    public DeviceUsageWriter(JdbcTemplate jdbcTemplate,
+                             ObjectMapper objectMapper,
+                             UsageHistoryCache historyCache,
+                             @Value("${integration.usage-log.spill-dir:./data/usage-spill}") String spillDir,
+                             @Value("${integration.usage-log.spill-segment-max-bytes:8388608}") long spillSegmentMaxBytes,
+                             @Value("${integration.usage-log.queue-capacity:20000}") int queueCapacity,
+                             @Value("${integration.usage-log.batch-size:500}") int batchSize,
+                             @Value("${integration.usage-log.poll-interval-ms:200}") long pollIntervalMillis,
+                             @Value("${integration.usage-log.enqueue-timeout-ms:0}") long enqueueTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.historyCache = historyCache;
+        this.spillLog = new UsageSpillLog(Path.of(spillDir), spillSegmentMaxBytes, objectMapper);
+        this.intake = new ArrayBlockingQueue<>(queueCapacity);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+    }
+    
+    /**
+     * 利用ログの更新を受付キューへ追加する（退避ファイルへの追記は退避用スレッドで行う）
+     *
+     * @return キューが一杯のまま待ち時間を過ぎた場合、または停止中の場合はfalse
+     */
+    public boolean enqueue(DeviceUsageEvent event) {
+        return offer(new Pending(event, NOT_SPILLED, null));
+    }
+    
+    /**
+     * 利用ログの更新を受付キューへ追加し、DBへの書き込みが終わった時点で完了するFutureを返す
+     * 制約違反で書き込めず退避した場合も書き込み済みとして扱う（同じ記録を再送しても結果は変わらないため）
+     * Futureは書き込み用スレッドで完了するため、続けてブロッキングする処理は別のスレッドへ移すこと
+     *
+     * @return 書き込んだ場合はtrue、受け付けなかった場合と停止時に退避ファイルへ残した場合はfalseで完了する
+     */
+    public CompletableFuture<Boolean> enqueueAndAwait(DeviceUsageEvent event) {
+        CompletableFuture<Boolean> written = new CompletableFuture<>();
+        if (!offer(new Pending(event, NOT_SPILLED, written))) {
+            written.complete(false);
+        }
+        return written;
+    }
+    
+    private boolean offer(Pending pending) {
+        if (!running) {
+            return false;
+        }
+        try {
+            return intake.offer(pending, enqueueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    public int pending() {
+        return intake.size() + queue.size();
+    }
+    
+    @Override
+    public void start() {
+        List<Path> leftovers;
+        try {
+            leftovers = spillLog.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open device usage spill directory", e);
+        }
+        running = true;
+        spiller = new Thread(this::spillLoop, "device-usage-spill");
+        spiller.start();
+        flusher = new Thread(() -> {
+            replay(leftovers);
+            flushLoop();
+        }, "device-usage-writer");
+        flusher.start();
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            // 受付済みの分を退避し終えてから、書き込みキューを書き切る
+            spiller.join();
+            flusher.join();
+            spillLog.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Failed to close device usage spill file: {}", e.getMessage());
+        }
+        log.info("Device usage writer stopped");
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Webサーバー（グレースフルシャットダウン含む）より後に停止し、受付済みの利用ログを書き切る
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+    
+    /**
+     * 前回の起動時に書き込み切れなかった退避ファイルを再生する
+     */
+    private void replay(List<Path> segments) {
+        for (Path segment : segments) {
+            try {
+                List<DeviceUsageEvent> events = spillLog.read(segment);
+                boolean written = true;
+                for (int from = 0; from < events.size() && written; from += batchSize) {
+                    written = write(coalesce(events.subList(from, Math.min(from + batchSize, events.size()))));
+                }
+                if (!written) {
+                    return;
+                }
+                spillLog.delete(segment);
+                log.info("Replayed {} device usage events from {}", events.size(), segment.getFileName());
+            } catch (IOException | RuntimeException e) {
+                // 読めないセグメントは残しておき、次回起動時に再度試す
+                log.error("Failed to replay device usage spill segment {}", segment, e);
+            }
+        }
+    }
+    
+    /**
+     * 受付キューに溜まった分をまとめて退避ファイルへ追記し、書き込みキューへ渡す
+     * 書き込みキューが一杯の間は待つため、DBに接続できない間は受付キューも埋まり呼び出し側に背圧がかかる
+     */
+    private void spillLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !intake.isEmpty()) {
+            Pending first;
+            try {
+                first = intake.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            intake.drainTo(batch, batchSize - 1);
+            long segment;
+            try {
+                segment = spillLog.append(batch.stream().map(Pending::event).toList());
+            } catch (IOException e) {
+                log.error("Failed to append {} device usage events to spill file: {}", batch.size(), e.getMessage());
+                segment = NOT_SPILLED;
+            }
+            for (Pending accepted : batch) {
+                handOff(new Pending(accepted.event(), segment, accepted.written()));
+            }
+            batch.clear();
+        }
+    }
+    
+    private void handOff(Pending pending) {
+        while (true) {
+            try {
+                queue.put(pending);
+                return;
+            } catch (InterruptedException e) {
+                // 退避済みの分は停止時も書き込みキューへ渡す
+            }
+        }
+    }
+    
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        // 退避用スレッドの終了を確認してから書き込みキューの残りを見る
+        while (running || spiller.isAlive() || !queue.isEmpty()) {
+            Pending first;
+            try {
+                first = queue.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                rollSpillLog();
+                continue;
+            }
+            // 書き込み中に溜まった分をまとめて次のバッチにする
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            boolean written;
+            try {
+                written = write(coalesce(batch.stream().map(Pending::event).toList()));
+            } catch (RuntimeException e) {
+                log.error("Discarding {} device usage events", batch.size(), e);
+                rejectAll(batch.stream().map(Pending::event).toList(), String.valueOf(e.getMessage()));
+                written = true;
+            }
+            if (written) {
+                complete(batch);
+            }
+            for (Pending pending : batch) {
+                pending.acknowledge(written);
+            }
+            batch.clear();
+            if (queue.isEmpty()) {
+                rollSpillLog();
+            }
+        }
+    }
+    
+    /**
+     * 同じセッションの更新を1件にまとめる
+     * 1つのINSERT ... ON CONFLICT DO UPDATEで同じ行を2回更新することはできないため、バッチ内では必ず集約する
+     */
+    private static Collection<DeviceUsageEvent> coalesce(List<DeviceUsageEvent> events) {
+        Map<String, DeviceUsageEvent> sessions = new LinkedHashMap<>();
+        for (DeviceUsageEvent event : events) {
+            sessions.merge(event.sessionKey(), event, DeviceUsageEvent::merge);
+        }
+        return sessions.values();
+    }
+    
+    private void complete(List<Pending> batch) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Pending pending : batch) {
+            if (pending.segment() != NOT_SPILLED) {
+                counts.merge(pending.segment(), 1, Integer::sum);
+            }
+        }
+        counts.forEach(spillLog::completed);
+    }
+    
+    private void rollSpillLog() {
+        try {
+            spillLog.rollIfIdle();
+        } catch (IOException e) {
+            log.warn("Failed to roll device usage spill file: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * DBに接続できない間はバッチを保持したまま再試行する（その間キューが埋まり、呼び出し側に背圧がかかる）
+     *
+     * @return 停止中に書き込めず、退避ファイルに残したままにした場合はfalse
+     */
+    private boolean write(Collection<DeviceUsageEvent> events) {
+        List<DeviceUsageEvent> sessions = List.copyOf(events);
+        List<Object[]> rows = sessions.stream().map(this::toRow).toList();
+        long backoff = pollIntervalMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, rows, rows.size(), DeviceUsageWriter::bind);
+                historyCache.invalidate(events);
+                return true;
+            } catch (DataIntegrityViolationException e) {
+                // 削除済み会員など一部の行が制約違反になった場合は1行ずつ登録し、違反行は退避ディレクトリへ残す
+                upsertIndividually(sessions, rows);
+                historyCache.invalidate(events);
+                return true;
+            } catch (DataAccessException e) {
+                if (!running && attempt >= SHUTDOWN_RETRY_ATTEMPTS) {
+                    // 退避ファイルには残るため、次回起動時に再生される
+                    log.error("Leaving {} device usage events in spill file on shutdown: {}", rows.size(), e.getMessage());
+                    return false;
+                }
+                log.warn("Failed to write {} device usage events (attempt {}), retrying in {} ms: {}",
+                    rows.size(), attempt, backoff, e.getMessage());
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+    
+    private void upsertIndividually(List<DeviceUsageEvent> sessions, List<Object[]> rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            try {
+                jdbcTemplate.update(UPSERT_SQL, ps -> bind(ps, row));
+            } catch (DataIntegrityViolationException e) {
+                rejectAll(List.of(sessions.get(i)), e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 書き込めない記録を退避ディレクトリの別ファイルへ残す（再生の対象外、原因を解消した後に手動で再投入する）
+     */
+    private void rejectAll(List<DeviceUsageEvent> events, String reason) {
+        for (DeviceUsageEvent event : events) {
+            log.warn("Rejected device usage for session {}: {}", event.sessionKey(), reason);
+        }
+        try {
+            spillLog.reject(events);
+        } catch (IOException e) {
+            log.error("Failed to record {} rejected device usage events: {}", events.size(), e.getMessage());
+        }
+    }
+    
+    private Object[] toRow(DeviceUsageEvent event) {
+        String usageData;
+        try {
+            usageData = event.usageData() != null ? objectMapper.writeValueAsString(event.usageData()) : null;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize usage data", e);
+        }
+        return new Object[]{event.memberId(), integrationId(event.deviceType(), event.deviceId()),
+            Timestamp.valueOf(event.startTime()),
+            event.endTime() != null ? Timestamp.valueOf(event.endTime()) : null,
+            usageData, event.sessionKey(), event.deviceType(),
+            event.deviceId() != null ? String.valueOf(event.deviceId()) : null};
+    }
+    
+    private static void bind(PreparedStatement ps, Object[] row) throws SQLException {
+        Timestamp start = (Timestamp) row[2];
+        ps.setTimestamp(1, start);
+        ps.setTimestamp(2, (Timestamp) row[3]);
+        ps.setString(3, (String) row[4]);
+        setLong(ps, 4, (Long) row[1]);
+        ps.setString(5, (String) row[5]);
+        ps.setTimestamp(6, Timestamp.valueOf(start.toLocalDateTime().minus(SESSION_MATCH_WINDOW)));
+        ps.setTimestamp(7, Timestamp.valueOf(start.toLocalDateTime().plus(SESSION_MATCH_WINDOW)));
+        setLong(ps, 8, (Long) row[0]);
+        setLong(ps, 9, (Long) row[1]);
+        ps.setTimestamp(10, start);
+        ps.setTimestamp(11, (Timestamp) row[3]);
+        ps.setString(12, (String) row[4]);
+        ps.setString(13, (String) row[5]);
+        ps.setString(14, (String) row[6]);
+        ps.setString(15, (String) row[7]);
+    }
+    
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+    
+    /**
+     * デバイスに対応するexternal_integrationsのIDを返す（未登録ならnull）
+     * 一覧は件数が少ないためまとめて読み込み、未登録のデバイスがあれば一定間隔で読み直す
+     */
+    private Long integrationId(String deviceType, Long deviceId) {
+        if (deviceId == null) {
+            return null;
+        }
+        String key = integrationKey(deviceType, String.valueOf(deviceId));
+        Long id = integrationIds.get(key);
+        if (id == null && System.currentTimeMillis() - integrationsLoadedAt > INTEGRATION_REFRESH_INTERVAL_MILLIS) {
+            Map<String, Long> loaded = new HashMap<>();
+            jdbcTemplate.query(INTEGRATIONS_SQL, rs -> {
+                loaded.putIfAbsent(integrationKey(rs.getString("integration_type"), rs.getString("device_id")),
+                    rs.getLong("id"));
+            });
+            integrationIds = loaded;
+            integrationsLoadedAt = System.currentTimeMillis();
+            id = loaded.get(key);
+        }
+        return id;
+    }
+    
+    /**
+     * 連携種別は「golf-simulator」「GOLF_SIMULATOR」のどちらの表記でも一致させる
+     */
+    private static String integrationKey(String integrationType, String deviceId) {
+        return integrationType.toUpperCase().replace('-', '_') + ":" + deviceId;
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
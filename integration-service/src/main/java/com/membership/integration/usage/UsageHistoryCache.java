@@ -0,0 +1,88 @@
+package com.membership.integration.usage;
+
+import com.membership.integration.dto.UsageHistoryPage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 会員・デバイス種別ごとの利用履歴の先頭ページのキャッシュ（LRU）
+ * 会員アプリは履歴画面を繰り返し読み込むため、範囲・カーソル指定のない先頭ページだけを保持する
+ * 利用ログの書き込み後に該当会員の分を破棄する。他のインスタンスが書き込んだ分は有効期限で反映される
+ */
+@Component
+public class UsageHistoryCache {
+    
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<Key, Entry> pages;
+    
+    /**
+     * 破棄のたびに進める世代番号。DB読み込み中に破棄された場合、読み込んだページを格納しない
+     */
+    private long generation;
+    
+    public UsageHistoryCache(@Value("${integration.usage-history.cache-max-entries:10000}") int maxEntries,
+                             @Value("${integration.usage-history.cache-ttl-seconds:30}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.pages = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > UsageHistoryCache.this.maxEntries;
+            }
+        };
+    }
+    
+    private record Key(String deviceType, Long memberId) {
+    }
+    
+    private record Entry(UsageHistoryPage page, long expiresAt) {
+    }
+    
+    public synchronized UsageHistoryPage get(String deviceType, Long memberId) {
+        Key key = new Key(deviceType, memberId);
+        Entry entry = pages.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() < System.currentTimeMillis()) {
+            pages.remove(key);
+            return null;
+        }
+        return entry.page();
+    }
+    
+    /**
+     * DBから読み込む前の世代番号を返す
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+    
+    /**
+     * 読み込み開始後に破棄が発生していなければ格納する
+     */
+    public synchronized void put(String deviceType, Long memberId, UsageHistoryPage page, long readGeneration) {
+        if (readGeneration == generation) {
+            pages.put(new Key(deviceType, memberId), new Entry(page, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+    
+    /**
+     * 書き込んだ利用ログの会員分を破棄する
+     */
+    synchronized void invalidate(Collection<DeviceUsageEvent> events) {
+        generation++;
+        for (DeviceUsageEvent event : events) {
+            pages.remove(new Key(event.deviceType(), event.memberId()));
+        }
+    }
+    
+    public synchronized int size() {
+        return pages.size();
+    }
+}
@@ -0,0 +1,99 @@
+package com.membership.integration.usage;
+
+import com.membership.integration.dto.UsageHistoryCursor;
+import com.membership.integration.dto.UsageHistoryItem;
+import com.membership.integration.dto.UsageHistoryPage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * デバイス利用履歴の参照
+ * device_usage_logsを会員・デバイス種別・利用開始日時の索引でシーク方式に読み出し、デバイスへは問い合わせない
+ * （デバイス側の履歴はDeviceHistorySyncが差分だけ取り込む）
+ */
+@Service
+@RequiredArgsConstructor
+public class UsageHistoryService {
+    
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    
+    private static final String SELECT_SQL = "SELECT id, device_id, usage_start_time, usage_end_time, usage_data::text AS usage_data " +
+        "FROM device_usage_logs WHERE member_id = ? AND device_type = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final UsageHistoryCache cache;
+    
+    /**
+     * 利用履歴を利用開始日時の新しい順に返す
+     *
+     * @param from  利用開始日時の下限（含む）
+     * @param to    利用開始日時の上限（含まない）
+     * @param after 前のページのnextCursor
+     */
+    public UsageHistoryPage getHistory(String deviceType, Long memberId, LocalDateTime from, LocalDateTime to,
+                                       String after, int size) {
+        UsageHistoryCursor cursor = UsageHistoryCursor.decode(after);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        boolean firstPage = from == null && to == null && cursor == null && pageSize == DEFAULT_PAGE_SIZE;
+        if (!firstPage) {
+            return query(deviceType, memberId, from, to, cursor, pageSize);
+        }
+        UsageHistoryPage cached = cache.get(deviceType, memberId);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cache.generation();
+        UsageHistoryPage page = query(deviceType, memberId, null, null, null, pageSize);
+        cache.put(deviceType, memberId, page, generation);
+        return page;
+    }
+    
+    private UsageHistoryPage query(String deviceType, Long memberId, LocalDateTime from, LocalDateTime to,
+                                   UsageHistoryCursor cursor, int size) {
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<Object> args = new ArrayList<>();
+        args.add(memberId);
+        args.add(deviceType);
+        if (from != null) {
+            sql.append(" AND usage_start_time >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND usage_start_time < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        if (cursor != null) {
+            // 行値の比較ではパーティションを絞り込めないため、利用開始日時の上限も条件に加える
+            sql.append(" AND usage_start_time <= ? AND (usage_start_time, id) < (?, ?)");
+            args.add(Timestamp.valueOf(cursor.startTime()));
+            args.add(Timestamp.valueOf(cursor.startTime()));
+            args.add(cursor.id());
+        }
+        // 次ページの有無を判定するため1件多く読む
+        sql.append(" ORDER BY usage_start_time DESC, id DESC LIMIT ?");
+        args.add(size + 1);
+        
+        List<UsageHistoryItem> rows = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            Timestamp end = rs.getTimestamp("usage_end_time");
+            return new UsageHistoryItem(rs.getLong("id"), rs.getString("device_id"),
+                rs.getTimestamp("usage_start_time").toLocalDateTime(), end != null ? end.toLocalDateTime() : null,
+                rs.getString("usage_data"));
+        }, args.toArray());
+        
+        boolean hasNext = rows.size() > size;
+        List<UsageHistoryItem> items = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            UsageHistoryItem last = items.get(items.size() - 1);
+            nextCursor = new UsageHistoryCursor(last.startTime(), last.id()).encode();
+        }
+        return new UsageHistoryPage(memberId, List.copyOf(items), nextCursor, hasNext);
+    }
+}
@@ -0,0 +1,50 @@
+package com.membership.integration.usage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * device_usage_logsの月パーティションの保守
+ * 先の月のパーティションを作成しておき、保持期間を過ぎた月はarchiveスキーマへ切り離す
+ * デバイス側の履歴の取り込みで保持期間より古い利用ログが届いた場合は、書き込み先がないため破棄される
+ */
+@Component
+@Slf4j
+public class UsageLogPartitions {
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    
+    public UsageLogPartitions(JdbcTemplate jdbcTemplate,
+                              @Value("${integration.usage-log.partition-months-ahead:3}") int monthsAhead,
+                              @Value("${integration.usage-log.retention-months:24}") int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+    
+    @Scheduled(fixedDelayString = "${integration.usage-log.partition-check-interval-ms:3600000}")
+    public void maintain() {
+        try {
+            Integer created = jdbcTemplate.queryForObject("SELECT ensure_monthly_partitions('device_usage_logs', ?)",
+                Integer.class, monthsAhead);
+            if (created != null && created > 0) {
+                log.info("Created {} monthly partitions of device_usage_logs", created);
+            }
+            List<String> archived = jdbcTemplate.queryForList(
+                "SELECT detach_expired_partitions('device_usage_logs', ?)", String.class, retentionMonths);
+            if (!archived.isEmpty()) {
+                log.info("Detached expired partitions of device_usage_logs: {}", archived);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to maintain device_usage_logs partitions: {}", e.getMessage());
+        }
+    }
+}
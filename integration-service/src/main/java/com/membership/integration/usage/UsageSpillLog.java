@@ -0,0 +1,198 @@
+package com.membership.integration.usage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * デバイス利用ログの退避ファイル（追記専用）
+ * 受付キューから取り出した分をまとめて1件1行のJSONで追記し、含まれる全件のDB書き込みが終わったセグメントから削除する
+ * プロセスが異常終了した場合は、次回起動時に残っているセグメントを読み直して書き込む（UPSERTのため重複しても結果は変わらない）
+ * まとめて追記するたびにflushするのでプロセスの異常終了では失われないが、OSごと停止した場合はページキャッシュ上の分が失われうる
+ */
+@Slf4j
+class UsageSpillLog {
+    
+    private static final String PREFIX = "device-usage-";
+    private static final String SUFFIX = ".log";
+    
+    /**
+     * DBの制約違反などで書き込めなかった記録の保管先（セグメントと同じ形式だが、起動時の再生の対象外）
+     */
+    private static final String REJECTED_FILE = PREFIX + "rejected" + SUFFIX;
+    
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final ObjectMapper objectMapper;
+    
+    /**
+     * セグメント番号ごとの未完了件数
+     */
+    private final Map<Long, Integer> pending = new HashMap<>();
+    private long currentSegment;
+    private long currentBytes;
+    private OutputStream out;
+    
+    UsageSpillLog(Path directory, long maxSegmentBytes, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.objectMapper = objectMapper;
+    }
+    
+    /**
+     * 新しいセグメントを開き、前回の起動から残っているセグメントを古い順に返す
+     */
+    synchronized List<Path> open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> leftovers;
+        try (Stream<Path> files = Files.list(directory)) {
+            leftovers = files
+                .filter(file -> segmentNumber(file) >= 0)
+                .sorted(Comparator.comparingLong(UsageSpillLog::segmentNumber))
+                .toList();
+        }
+        currentSegment = leftovers.isEmpty() ? 1 : segmentNumber(leftovers.get(leftovers.size() - 1)) + 1;
+        openSegment();
+        return leftovers;
+    }
+    
+    /**
+     * まとめて追記してflushし、書き込んだセグメントの番号を返す
+     * セグメントの大きさは文字数ではなくUTF-8のバイト数で数える
+     */
+    synchronized long append(List<DeviceUsageEvent> events) throws IOException {
+        for (DeviceUsageEvent event : events) {
+            byte[] line = objectMapper.writeValueAsBytes(event);
+            out.write(line);
+            out.write('\n');
+            currentBytes += line.length + 1;
+        }
+        out.flush();
+        long segment = currentSegment;
+        pending.merge(segment, events.size(), Integer::sum);
+        if (currentBytes >= maxSegmentBytes) {
+            roll();
+        }
+        return segment;
+    }
+    
+    /**
+     * 書き込めなかった記録を保管ファイルへ追記する
+     * セグメントと同じ形式のため、原因を解消した後に番号付きのファイル名で置けば次回起動時に再生される
+     */
+    synchronized void reject(List<DeviceUsageEvent> events) throws IOException {
+        try (OutputStream rejected = new BufferedOutputStream(Files.newOutputStream(directory.resolve(REJECTED_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            for (DeviceUsageEvent event : events) {
+                rejected.write(objectMapper.writeValueAsBytes(event));
+                rejected.write('\n');
+            }
+        }
+    }
+    
+    /**
+     * DBへの書き込みが終わった（または保管ファイルへ移した）件数を差し引き、閉じたセグメントが空になれば削除する
+     */
+    synchronized void completed(long segment, int count) {
+        Integer remaining = pending.merge(segment, -count, Integer::sum);
+        if (remaining != null && remaining <= 0) {
+            pending.remove(segment);
+            if (segment != currentSegment) {
+                delete(segmentPath(segment));
+            }
+        }
+    }
+    
+    /**
+     * 現在のセグメントの全件が書き込み済みなら新しいセグメントへ切り替え、古いものを削除する
+     * キューが空になったときに呼び出し、退避ファイルが際限なく大きくならないようにする
+     */
+    synchronized void rollIfIdle() throws IOException {
+        if (currentBytes > 0 && !pending.containsKey(currentSegment)) {
+            roll();
+        }
+    }
+    
+    synchronized void close() throws IOException {
+        out.close();
+        if (currentBytes == 0 || !pending.containsKey(currentSegment)) {
+            delete(segmentPath(currentSegment));
+        }
+    }
+    
+    /**
+     * 残っていたセグメントを読み込む。異常終了時に書きかけだった末尾の行は読み飛ばす
+     */
+    List<DeviceUsageEvent> read(Path segment) throws IOException {
+        List<DeviceUsageEvent> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    events.add(objectMapper.readValue(line, DeviceUsageEvent.class));
+                } catch (JsonProcessingException e) {
+                    log.warn("Skipping unreadable line in {}: {}", segment.getFileName(), e.getOriginalMessage());
+                }
+            }
+        }
+        return events;
+    }
+    
+    void delete(Path segment) {
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            log.warn("Failed to delete spill segment {}: {}", segment, e.getMessage());
+        }
+    }
+    
+    private void roll() throws IOException {
+        out.close();
+        long closed = currentSegment;
+        currentSegment++;
+        openSegment();
+        if (!pending.containsKey(closed)) {
+            delete(segmentPath(closed));
+        }
+    }
+    
+    private void openSegment() throws IOException {
+        out = new BufferedOutputStream(Files.newOutputStream(segmentPath(currentSegment),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        currentBytes = 0;
+    }
+    
+    private Path segmentPath(long segment) {
+        return directory.resolve(PREFIX + String.format("%012d", segment) + SUFFIX);
+    }
+    
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
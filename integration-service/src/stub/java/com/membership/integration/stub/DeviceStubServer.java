@@ -0,0 +1,198 @@
+package com.membership.integration.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 負荷試験用のデバイススタブサーバー
+ * ゴルフシュミレーター・水素水サーバーのAPIと同じパスに固定のJSONを返す
+ * 応答は遅延時間の経過後に別スレッドから返すため、同時接続数が多くてもスレッドを消費しない
+ *
+ * <pre>
+ * gradle :integration-service:runDeviceStub -PstubArgs="--port=9001 --latency-ms=20 --slow-device-id=3 --slow-latency-ms=60000"
+ * </pre>
+ *
+ * オプション:
+ * --port              待ち受けポート（既定 9001）
+ * --latency-ms        通常の応答遅延（既定 20）
+ * --jitter-ms         応答遅延に加える乱数の上限（既定 10）
+ * --slow-device-id    このdeviceIdへの要求だけslow-latency-msで応答する（遅いデバイスの再現）
+ * --slow-latency-ms   遅いデバイスの応答遅延（既定 60000）
+ * --error-rate        500を返す割合 0.0〜1.0（既定 0）
+ *
+ * 障害注入（起動中に切り替え可能。deviceIdを省略すると全デバイスが対象）:
+ * <pre>
+ * curl -X POST "localhost:9001/__faults?deviceId=3&amp;mode=hang"      応答しない
+ * curl -X POST "localhost:9001/__faults?deviceId=3&amp;mode=error"     500を返す
+ * curl -X POST "localhost:9001/__faults?mode=slow&amp;latency-ms=8000" 指定時間後に応答する
+ * curl -X POST "localhost:9001/__faults?deviceId=3&amp;mode=reset"     応答せずに接続を切る
+ * curl -X DELETE "localhost:9001/__faults"                          障害注入を解除する
+ * </pre>
+ */
+public final class DeviceStubServer {
+    
+    private static final Pattern DEVICE_ID = Pattern.compile("\"deviceId\"\\s*:\\s*(\\d+)");
+    private static final String ALL_DEVICES = "*";
+    
+    private enum FaultMode {
+        HANG, ERROR, SLOW, RESET
+    }
+    
+    private record Fault(FaultMode mode, long latencyMillis) {
+    }
+    
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final String slowDeviceId;
+    private final long slowLatencyMillis;
+    private final double errorRate;
+    private final ScheduledExecutorService responder = Executors.newScheduledThreadPool(
+        Runtime.getRuntime().availableProcessors());
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong sessions = new AtomicLong();
+    private final Map<String, Fault> faults = new ConcurrentHashMap<>();
+    
+    private DeviceStubServer(Map<String, String> options) {
+        this.latencyMillis = Long.parseLong(options.getOrDefault("latency-ms", "20"));
+        this.jitterMillis = Long.parseLong(options.getOrDefault("jitter-ms", "10"));
+        this.slowDeviceId = options.get("slow-device-id");
+        this.slowLatencyMillis = Long.parseLong(options.getOrDefault("slow-latency-ms", "60000"));
+        this.errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+    }
+    
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int port = Integer.parseInt(options.getOrDefault("port", "9001"));
+        DeviceStubServer stub = new DeviceStubServer(options);
+        
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/", stub::handle);
+        server.createContext("/__faults", stub::handleFaults);
+        server.setExecutor(Executors.newSingleThreadExecutor());
+        server.start();
+        stub.responder.scheduleAtFixedRate(
+            () -> System.out.printf("device stub :%d requests=%d%n", port, stub.requests.get()), 10, 10, TimeUnit.SECONDS);
+        System.out.printf("Device stub listening on :%d (latency=%dms, slow-device-id=%s)%n",
+            port, stub.latencyMillis, stub.slowDeviceId);
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String body = readBody(exchange.getRequestBody());
+        String path = exchange.getRequestURI().getPath();
+        
+        Matcher matcher = DEVICE_ID.matcher(body);
+        String deviceId = matcher.find() ? matcher.group(1) : null;
+        long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (slowDeviceId != null && slowDeviceId.equals(deviceId)) {
+            delay = slowLatencyMillis;
+        }
+        boolean error = errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+        
+        Fault fault = deviceId != null && faults.containsKey(deviceId) ? faults.get(deviceId) : faults.get(ALL_DEVICES);
+        if (fault != null) {
+            switch (fault.mode()) {
+                case HANG -> {
+                    // 応答を返さない（クライアント側のタイムアウトで切断される）
+                    return;
+                }
+                case RESET -> {
+                    exchange.close();
+                    return;
+                }
+                case ERROR -> error = true;
+                case SLOW -> delay = fault.latencyMillis();
+            }
+        }
+        String response = error ? "{\"error\":\"stub failure\"}" : responseFor(path);
+        int status = error ? 500 : 200;
+        responder.schedule(() -> respond(exchange, status, response), delay, TimeUnit.MILLISECONDS);
+    }
+    
+    private void handleFaults(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String deviceId = query.getOrDefault("deviceId", ALL_DEVICES);
+        if ("DELETE".equals(exchange.getRequestMethod())) {
+            if (query.containsKey("deviceId")) {
+                faults.remove(deviceId);
+            } else {
+                faults.clear();
+            }
+        } else {
+            FaultMode mode = FaultMode.valueOf(query.getOrDefault("mode", "error").toUpperCase());
+            long latency = Long.parseLong(query.getOrDefault("latency-ms", String.valueOf(slowLatencyMillis)));
+            faults.put(deviceId, new Fault(mode, latency));
+        }
+        System.out.printf("device stub faults: %s%n", faults);
+        respond(exchange, 200, "{\"faults\":\"" + faults + "\"}");
+    }
+    
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+    
+    private String responseFor(String path) {
+        if (path.equals("/history")) {
+            // デバイス単位の差分履歴（?deviceId=&since=）。スタブは履歴を持たない
+            return "{\"items\":[]}";
+        }
+        if (path.startsWith("/history/")) {
+            return "{\"memberId\":" + path.substring("/history/".length()) + ",\"items\":[]}";
+        }
+        if (path.endsWith("/start")) {
+            // 実機と同様に開始要求ではデバイス側のセッションIDを返す
+            return "{\"status\":\"OK\",\"path\":\"" + path + "\",\"sessionId\":\"S" + sessions.incrementAndGet()
+                + "\",\"timestamp\":" + System.currentTimeMillis() + "}";
+        }
+        return "{\"status\":\"OK\",\"path\":\"" + path + "\",\"timestamp\":" + System.currentTimeMillis() + "}";
+    }
+    
+    private static void respond(HttpExchange exchange, int status, String response) {
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            // クライアントがタイムアウトで切断した場合
+            exchange.close();
+        }
+    }
+    
+    private static String readBody(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,251 @@
+package com.membership.integration.client;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * 障害を起こす偽のデバイスサーバー（MockWebServer）に対して、タイムアウト・リトライ・サーキットブレーカー・
+ * バルクヘッドの経路を確認する
+ * 保護の設定はapplication.ymlと同じ値で、待ち時間とタイムアウトだけを試験用に短くしている
+ */
+class DeviceGuardsFaultInjectionTest {
+    
+    private static final String DEVICE_TYPE = "golf-simulator";
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE = new ParameterizedTypeReference<>() {
+    };
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(300);
+    private static final Duration OPEN_STATE_WAIT = Duration.ofMillis(300);
+    private static final Pattern HUNG_DEVICE = Pattern.compile("\"deviceId\":1[,}]");
+    
+    private MockWebServer device;
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private RetryRegistry retryRegistry;
+    private DeviceGuards guards;
+    private WebClient webClient;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        device = new MockWebServer();
+        device.start();
+        webClient = webClient(device.url("/").toString());
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(Map.of(DeviceGuards.DEVICE_CONFIG, CircuitBreakerConfig.custom()
+            .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+            .slidingWindowSize(20)
+            .minimumNumberOfCalls(10)
+            .failureRateThreshold(50)
+            .slowCallDurationThreshold(Duration.ofSeconds(5))
+            .slowCallRateThreshold(80)
+            .waitDurationInOpenState(OPEN_STATE_WAIT)
+            .permittedNumberOfCallsInHalfOpenState(3)
+            .automaticTransitionFromOpenToHalfOpenEnabled(true)
+            .build()));
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.of(Map.of(
+            DeviceGuards.DEVICE_TYPE_CONFIG, BulkheadConfig.custom().maxConcurrentCalls(40).maxWaitDuration(Duration.ZERO).build(),
+            DeviceGuards.DEVICE_CONFIG, BulkheadConfig.custom().maxConcurrentCalls(4).maxWaitDuration(Duration.ZERO).build()));
+        retryRegistry = RetryRegistry.of(Map.of(DeviceGuards.DEVICE_CONFIG, RetryConfig.custom()
+            .maxAttempts(3)
+            .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(Duration.ofMillis(10), 2, 0.5))
+            .build()));
+        guards = new DeviceGuards(circuitBreakerRegistry, bulkheadRegistry, retryRegistry, new SimpleMeterRegistry());
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        device.shutdown();
+    }
+    
+    @Test
+    void hungDeviceTimesOutAndNonIdempotentCallIsNotResent() {
+        device.enqueue(new MockResponse().setBody("{}").setHeadersDelay(2, TimeUnit.SECONDS));
+        
+        long start = System.nanoTime();
+        Throwable error = catchThrowable(() -> start(1L).block());
+        
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+        assertThat(error).isInstanceOf(WebClientRequestException.class);
+        assertThat(device.getRequestCount()).isEqualTo(1);
+    }
+    
+    @Test
+    void idempotentCallRetriesTimeoutsAndServerErrorsUntilSuccess() {
+        device.enqueue(new MockResponse().setBody("{}").setHeadersDelay(2, TimeUnit.SECONDS));
+        device.enqueue(new MockResponse().setResponseCode(503));
+        device.enqueue(json("{\"sessions\":[]}"));
+        
+        Map<String, Object> history = history(1L).block();
+        
+        assertThat(history).containsKey("sessions");
+        assertThat(device.getRequestCount()).isEqualTo(3);
+    }
+    
+    @Test
+    void idempotentCallGivesUpAfterMaxAttempts() {
+        IntStream.range(0, 3).forEach(i -> device.enqueue(new MockResponse().setResponseCode(500)));
+        
+        Throwable error = catchThrowable(() -> history(1L).block());
+        
+        assertThat(error).isInstanceOf(WebClientResponseException.InternalServerError.class);
+        assertThat(device.getRequestCount()).isEqualTo(3);
+    }
+    
+    @Test
+    void nonIdempotentCallIsNotRetriedOnServerError() {
+        device.enqueue(new MockResponse().setResponseCode(500));
+        device.enqueue(json("{}"));
+        
+        Throwable error = catchThrowable(() -> start(1L).block());
+        
+        assertThat(error).isInstanceOf(WebClientResponseException.InternalServerError.class);
+        assertThat(device.getRequestCount()).isEqualTo(1);
+    }
+    
+    @Test
+    void nonIdempotentCallIsRetriedWhenConnectionIsRefused() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        WebClient unreachable = webClient("http://localhost:" + closedPort);
+        
+        Throwable error = catchThrowable(() -> guards.guard(DEVICE_TYPE, 1L, false, () -> unreachable.post()
+            .uri("/session/start").bodyValue(Map.of("deviceId", 1)).retrieve().bodyToMono(RESPONSE_TYPE)).block());
+        
+        assertThat(error).isInstanceOf(WebClientRequestException.class).hasCauseInstanceOf(ConnectException.class);
+        assertThat(retryRegistry.retry("device-connect").getMetrics().getNumberOfFailedCallsWithRetryAttempt()).isEqualTo(1);
+    }
+    
+    @Test
+    void circuitOpensOnRepeatedFailuresAndRejectsWithoutCallingDevice() {
+        IntStream.range(0, 10).forEach(i -> device.enqueue(new MockResponse().setResponseCode(500)));
+        for (int i = 0; i < 10; i++) {
+            catchThrowable(() -> start(1L).block());
+        }
+        
+        Throwable rejected = catchThrowable(() -> start(1L).block());
+        
+        assertThat(rejected).isInstanceOf(CallNotPermittedException.class);
+        assertThat(DeviceGuards.isRejected(rejected)).isTrue();
+        assertThat(device.getRequestCount()).isEqualTo(10);
+        assertThat(breaker(1L).getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        // 他のデバイスのブレーカーは影響を受けない
+        device.enqueue(json("{}"));
+        assertThat(start(2L).block()).isNotNull();
+    }
+    
+    @Test
+    void halfOpenProbesCloseCircuitAfterDeviceRecovers() throws InterruptedException {
+        IntStream.range(0, 10).forEach(i -> device.enqueue(new MockResponse().setResponseCode(500)));
+        for (int i = 0; i < 10; i++) {
+            catchThrowable(() -> start(1L).block());
+        }
+        assertThat(breaker(1L).getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        
+        Thread.sleep(OPEN_STATE_WAIT.toMillis() * 2);
+        assertThat(breaker(1L).getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        IntStream.range(0, 3).forEach(i -> device.enqueue(json("{}")));
+        for (int i = 0; i < 3; i++) {
+            assertThat(start(1L).block()).isNotNull();
+        }
+        
+        assertThat(breaker(1L).getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+    
+    /**
+     * 応答しないデバイスは自身の同時実行枠（4）だけを使い、超えた呼び出しは待たずに拒否される
+     * 同じ種別の他のデバイスへの呼び出しはその間も成功する
+     */
+    @Test
+    void hungDeviceIsIsolatedByItsOwnBulkhead() {
+        device.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (HUNG_DEVICE.matcher(request.getBody().readUtf8()).find()) {
+                    return json("{}").setHeadersDelay(2, TimeUnit.SECONDS);
+                }
+                return json("{}");
+            }
+        });
+        
+        List<Signal<Map<String, Object>>> hung = Flux.merge(IntStream.range(0, 10)
+                .mapToObj(i -> start(1L).materialize())
+                .toList())
+            .collectList()
+            .block(Duration.ofSeconds(5));
+        List<Signal<Map<String, Object>>> others = Flux.merge(IntStream.rangeClosed(2, 31)
+                .mapToObj(deviceId -> start((long) deviceId).materialize())
+                .toList())
+            .collectList()
+            .block(Duration.ofSeconds(5));
+        
+        assertThat(hung).filteredOn(signal -> signal.getThrowable() instanceof BulkheadFullException).hasSize(6);
+        assertThat(hung).filteredOn(signal -> signal.getThrowable() instanceof WebClientRequestException).hasSize(4);
+        assertThat(others).allMatch(Signal::isOnNext);
+    }
+    
+    private Mono<Map<String, Object>> start(Long deviceId) {
+        return guards.guard(DEVICE_TYPE, deviceId, false, () -> webClient.post()
+            .uri("/session/start")
+            .bodyValue(Map.of("deviceId", deviceId, "memberId", 100))
+            .retrieve()
+            .bodyToMono(RESPONSE_TYPE));
+    }
+    
+    private Mono<Map<String, Object>> history(Long deviceId) {
+        return guards.guard(DEVICE_TYPE, deviceId, true, () -> webClient.get()
+            .uri(uri -> uri.path("/history").queryParam("deviceId", deviceId).build())
+            .retrieve()
+            .bodyToMono(RESPONSE_TYPE));
+    }
+    
+    private CircuitBreaker breaker(long deviceId) {
+        return circuitBreakerRegistry.circuitBreaker(DEVICE_TYPE + "-" + deviceId, DeviceGuards.DEVICE_CONFIG);
+    }
+    
+    private static WebClient webClient(String apiUrl) {
+        DeviceClientProperties properties = new DeviceClientProperties();
+        properties.getGolfSimulator().setApiUrl(apiUrl);
+        properties.getGolfSimulator().setTimeout(RESPONSE_TIMEOUT.toMillis());
+        properties.getGolfSimulator().setConnectTimeout(500);
+        return new DeviceClientConfig().golfSimulatorWebClient(WebClient.builder(), properties);
+    }
+    
+    private static MockResponse json(String body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+}
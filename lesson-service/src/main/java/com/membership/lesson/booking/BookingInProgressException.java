@@ -0,0 +1,15 @@
+package com.membership.lesson.booking;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 受け付けた予約のDBへの書き込みが終わっていない（時間をおいて再試行）
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class BookingInProgressException extends RuntimeException {
+    
+    public BookingInProgressException(String message) {
+        super(message);
+    }
+}
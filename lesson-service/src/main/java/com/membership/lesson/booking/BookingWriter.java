@@ -0,0 +1,206 @@
+package com.membership.lesson.booking;
+
+import com.membership.lesson.schedule.LessonScheduleIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 受け付けた予約を非同期にまとめてDBへ書き込む
+ * キューに溜まった分をレッスンごとにまとめ、1レッスン1トランザクション（行ロック1回）で書き込む
+ */
+@Component
+@Slf4j
+class BookingWriter implements SmartLifecycle {
+    
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 30_000;
+    private static final int SHUTDOWN_RETRY_ATTEMPTS = 3;
+    
+    private final LessonBookingStore store;
+    private final LessonScheduleIndex scheduleIndex;
+    private final BlockingQueue<PendingBooking> queue;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final long enqueueTimeoutMillis;
+    
+    private volatile boolean running;
+    private Thread flusher;
+    
+    BookingWriter(LessonBookingStore store,
+                  LessonScheduleIndex scheduleIndex,
+                  @Value("${lesson.booking.queue-capacity:10000}") int queueCapacity,
+                  @Value("${lesson.booking.batch-size:500}") int batchSize,
+                  @Value("${lesson.booking.poll-interval-ms:20}") long pollIntervalMillis,
+                  @Value("${lesson.booking.enqueue-timeout-ms:50}") long enqueueTimeoutMillis) {
+        this.store = store;
+        this.scheduleIndex = scheduleIndex;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+    }
+    
+    /**
+     * 予約を書き込みキューへ追加する
+     *
+     * @return キューが一杯のまま待ち時間を過ぎた場合、または停止中の場合はfalse
+     */
+    boolean enqueue(PendingBooking booking) {
+        if (!running) {
+            return false;
+        }
+        try {
+            return queue.offer(booking, enqueueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    long pollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+    
+    @Override
+    public void start() {
+        running = true;
+        flusher = new Thread(this::flushLoop, "lesson-booking-writer");
+        flusher.start();
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Lesson booking writer stopped");
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Webサーバー（グレースフルシャットダウン含む）より後に停止し、受付済みの予約を書き切る
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+    
+    private void flushLoop() {
+        List<PendingBooking> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            PendingBooking first;
+            try {
+                first = queue.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            // 書き込み中に溜まった分をまとめて次のバッチにする
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            Map<LessonSeats, List<PendingBooking>> byLesson = new LinkedHashMap<>();
+            for (PendingBooking booking : batch) {
+                byLesson.computeIfAbsent(booking.seats(), seats -> new ArrayList<>()).add(booking);
+            }
+            for (List<PendingBooking> bookings : byLesson.values()) {
+                try {
+                    write(bookings);
+                } catch (RuntimeException e) {
+                    log.error("Discarding {} bookings for lesson {}", bookings.size(), bookings.get(0).seats().lessonId(), e);
+                    discard(bookings);
+                }
+            }
+            batch.clear();
+        }
+    }
+    
+    /**
+     * DBに接続できない間はバッチを保持したまま再試行する（その間キューが埋まり、予約受付に背圧がかかる）
+     */
+    private void write(List<PendingBooking> bookings) {
+        long backoff = pollIntervalMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                persist(bookings);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // 存在しない会員など一部の予約が制約違反になった場合は1件ずつ書き込み、違反した予約のみ破棄する
+                persistIndividually(bookings);
+                return;
+            } catch (DataAccessException e) {
+                if (!running && attempt >= SHUTDOWN_RETRY_ATTEMPTS) {
+                    log.error("Discarding {} bookings for lesson {} on shutdown: {}",
+                        bookings.size(), bookings.get(0).seats().lessonId(), e.getMessage());
+                    discard(bookings);
+                    return;
+                }
+                log.warn("Failed to write {} bookings (attempt {}), retrying in {} ms: {}",
+                    bookings.size(), attempt, backoff, e.getMessage());
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+    
+    private void persist(List<PendingBooking> bookings) {
+        LessonSeats seats = bookings.get(0).seats();
+        LessonBookingStore.Persisted persisted = store.persist(seats.lessonId(), bookings);
+        Map<Long, String> statuses = persisted != null ? persisted.statuses() : Map.of();
+        for (PendingBooking booking : bookings) {
+            seats.persisted(booking.memberId(), booking.status(), statuses.get(booking.memberId()));
+        }
+        if (persisted != null) {
+            seats.promoted(persisted.promoted());
+            scheduleIndex.bookedChanged(seats.lessonId(), persisted.bookedCount(), persisted.updatedAt());
+        }
+    }
+    
+    private void persistIndividually(List<PendingBooking> bookings) {
+        for (PendingBooking booking : bookings) {
+            try {
+                persist(List.of(booking));
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Discarding booking of lesson {} for member {}: {}", booking.seats().lessonId(),
+                    booking.memberId(), e.getMostSpecificCause().getMessage());
+                discard(List.of(booking));
+            }
+        }
+    }
+    
+    private static void discard(List<PendingBooking> bookings) {
+        for (PendingBooking booking : bookings) {
+            // 1件ずつの書き込みの途中で失敗した場合は、書き込み済みの予約を残す
+            if (booking.seats().isUnsaved(booking.memberId())) {
+                booking.seats().persisted(booking.memberId(), booking.status(), null);
+            }
+        }
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
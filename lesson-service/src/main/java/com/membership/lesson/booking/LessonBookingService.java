@@ -0,0 +1,176 @@
+package com.membership.lesson.booking;
+
+import com.membership.lesson.dto.BookingCancellation;
+import com.membership.lesson.dto.BookingResult;
+import com.membership.lesson.dto.BookingResult.Rejection;
+import com.membership.lesson.dto.LessonAvailability;
+import com.membership.lesson.schedule.LessonScheduleIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * レッスン予約の受付
+ * 定員の判定はレッスンごとのメモリ上の座席数で行い、予約は非同期に書き込むため、申込はDBの応答を待たない
+ * 定員を超えないことはDB側（レッスンの行ロックとbooked_countのCHECK制約）で保証し、
+ * 複数インスタンスの受付が競合して定員を超えた分は書き込み時にキャンセル待ちへ回す
+ */
+@Service
+public class LessonBookingService {
+    
+    private final LessonBookingStore store;
+    private final BookingWriter writer;
+    private final LessonScheduleIndex scheduleIndex;
+    private final int waitlistMax;
+    private final long stateTtlNanos;
+    private final long cancelWaitMillis;
+    private final Map<Long, LessonSeats> lessons = new ConcurrentHashMap<>();
+    private volatile long lastSweep = System.nanoTime();
+    
+    public LessonBookingService(LessonBookingStore store,
+                                BookingWriter writer,
+                                LessonScheduleIndex scheduleIndex,
+                                @Value("${lesson.booking.waitlist-max:50}") int waitlistMax,
+                                @Value("${lesson.booking.state-ttl-ms:30000}") long stateTtlMillis,
+                                @Value("${lesson.booking.cancel-wait-ms:2000}") long cancelWaitMillis) {
+        this.store = store;
+        this.writer = writer;
+        this.scheduleIndex = scheduleIndex;
+        this.waitlistMax = waitlistMax;
+        this.stateTtlNanos = TimeUnit.MILLISECONDS.toNanos(stateTtlMillis);
+        this.cancelWaitMillis = cancelWaitMillis;
+    }
+    
+    public BookingResult book(Long lessonId, Long memberId) {
+        if (memberId == null) {
+            return BookingResult.rejected(Rejection.INVALID_MEMBER, lessonId, null);
+        }
+        LessonSeats seats = seats(lessonId);
+        if (seats == null) {
+            return BookingResult.rejected(Rejection.LESSON_NOT_FOUND, lessonId, memberId);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (!seats.isOpen(now)) {
+            return BookingResult.rejected(Rejection.LESSON_CLOSED, lessonId, memberId);
+        }
+        LessonSeats.Admission admission = seats.admit(memberId, waitlistMax);
+        if (admission == null) {
+            return BookingResult.rejected(Rejection.WAITLIST_FULL, lessonId, memberId);
+        }
+        if (admission.accepted()
+            && !writer.enqueue(new PendingBooking(seats, memberId, admission.status(), now))) {
+            seats.revoke(memberId, admission.status());
+            return BookingResult.rejected(Rejection.BUSY, lessonId, memberId);
+        }
+        return BookingResult.accepted(lessonId, memberId, admission.status(), admission.waitlistPosition());
+    }
+    
+    /**
+     * 会員の予約状況。DBへの書き込み前の予約は受付時の状態を返す
+     *
+     * @return 予約がない場合はnull
+     */
+    public BookingResult getBooking(Long lessonId, Long memberId) {
+        LessonBookingStore.Booking booking = store.findBooking(lessonId, memberId);
+        if (booking != null) {
+            return BookingResult.accepted(lessonId, memberId, booking.status(), booking.waitlistPosition());
+        }
+        LessonSeats seats = lessons.get(lessonId);
+        String status = seats != null && seats.isUnsaved(memberId) ? seats.statusOf(memberId) : null;
+        return status != null ? BookingResult.accepted(lessonId, memberId, status, null) : null;
+    }
+    
+    /**
+     * 予約を取り消す。DBへの書き込み待ちの予約は書き込みを待ってから取り消す
+     *
+     * @return 取り消す予約がない場合はnull
+     */
+    public BookingCancellation cancel(Long lessonId, Long memberId) {
+        LessonSeats seats = lessons.get(lessonId);
+        if (seats != null && !awaitPersisted(seats, memberId)) {
+            throw new BookingInProgressException(
+                "Booking of lesson " + lessonId + " for member " + memberId + " is still being saved");
+        }
+        LessonBookingStore.Cancelled cancelled = store.cancel(lessonId, memberId);
+        if (cancelled == null) {
+            return null;
+        }
+        if (seats != null) {
+            seats.cancelled(memberId, cancelled.previousStatus());
+            seats.promoted(cancelled.promoted());
+        }
+        if (cancelled.updatedAt() != null) {
+            scheduleIndex.bookedChanged(lessonId, cancelled.bookedCount(), cancelled.updatedAt());
+        }
+        return new BookingCancellation(lessonId, memberId, cancelled.previousStatus(), cancelled.promoted());
+    }
+    
+    /**
+     * @return レッスンがない場合はnull
+     */
+    public LessonAvailability getAvailability(Long lessonId) {
+        LessonSeats seats = seats(lessonId);
+        if (seats == null) {
+            return null;
+        }
+        return new LessonAvailability(lessonId, seats.capacity(), Math.min(seats.booked(), seats.capacity()),
+            seats.waitlisted(), seats.isOpen(LocalDateTime.now()));
+    }
+    
+    /**
+     * レッスンの座席状況。未読み込み、または読み直しが必要な場合はDBから読み込む
+     */
+    private LessonSeats seats(long lessonId) {
+        sweep();
+        LessonSeats seats = lessons.get(lessonId);
+        if (seats != null && !seats.isReloadable(stateTtlNanos)) {
+            return seats;
+        }
+        return lessons.compute(lessonId, (id, current) ->
+            current != null && !current.isReloadable(stateTtlNanos) ? current : load(id));
+    }
+    
+    private LessonSeats load(long lessonId) {
+        LessonBookingStore.Lesson lesson = store.findLesson(lessonId);
+        if (lesson == null) {
+            return null;
+        }
+        return new LessonSeats(lessonId, lesson.capacity(), lesson.status(), lesson.lessonDate(),
+            lesson.bookedCount(), store.findActiveMembers(lessonId));
+    }
+    
+    /**
+     * 予約のなくなった過去のレッスンなどが残り続けないよう、読み直しが必要な状態を定期的に捨てる
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        if (now - lastSweep < stateTtlNanos) {
+            return;
+        }
+        lastSweep = now;
+        lessons.values().removeIf(seats -> seats.isReloadable(stateTtlNanos));
+    }
+    
+    /**
+     * @return 待ち時間内に書き込まれた（または書き込み待ちの予約がない）場合はtrue
+     */
+    private boolean awaitPersisted(LessonSeats seats, long memberId) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cancelWaitMillis);
+        while (seats.isUnsaved(memberId)) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(writer.pollIntervalMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
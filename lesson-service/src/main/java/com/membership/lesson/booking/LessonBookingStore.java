@@ -0,0 +1,206 @@
+package com.membership.lesson.booking;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * レッスン予約の読み書き（lessons / lesson_bookings）
+ * 予約確定数を変える処理はすべてレッスンの行ロックを取ってから行い、lessons.booked_countの
+ * CHECK制約（定員以下）と合わせて、複数インスタンスから同時に書き込んでも定員を超えないようにする
+ */
+@Component
+class LessonBookingStore {
+    
+    private static final String INSERT_SQL = "INSERT INTO lesson_bookings (member_id, lesson_id, booking_date, status) " +
+        "SELECT t.member_id, ?, t.booking_date, t.status " +
+        "FROM unnest(?::bigint[], ?::timestamp[], ?::varchar[]) AS t(member_id, booking_date, status) " +
+        // 取り消し済みの予約は申し込み直しとして上書きし、有効な予約がある会員は書き込まない
+        "ON CONFLICT (member_id, lesson_id) DO UPDATE SET status = EXCLUDED.status, " +
+        "booking_date = EXCLUDED.booking_date, attendance_status = NULL, cancelled_at = NULL, " +
+        "updated_at = CURRENT_TIMESTAMP WHERE lesson_bookings.status = 'CANCELLED' " +
+        "RETURNING member_id, status";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    LessonBookingStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    record Lesson(long id, int capacity, int bookedCount, String status, LocalDateTime lessonDate) {
+    }
+    
+    record Booking(String status, LocalDateTime bookingDate, Integer waitlistPosition) {
+    }
+    
+    /**
+     * 書き込み結果
+     *
+     * @param statuses    書き込んだ会員ごとのDB上の状態（書き込まなかった会員は含まない）
+     * @param promoted    キャンセル待ちから予約確定に繰り上げた会員
+     * @param bookedCount 書き込み後の予約確定数
+     * @param updatedAt   予約確定数を更新したlessons.updated_at
+     */
+    record Persisted(Map<Long, String> statuses, List<Long> promoted, int bookedCount, LocalDateTime updatedAt) {
+    }
+    
+    /**
+     * @param bookedCount 取消後の予約確定数
+     * @param updatedAt   予約確定数を更新したlessons.updated_at（キャンセル待ちの取消で更新していない場合はnull）
+     */
+    record Cancelled(String previousStatus, List<Long> promoted, int bookedCount, LocalDateTime updatedAt) {
+    }
+    
+    Lesson findLesson(long lessonId) {
+        List<Lesson> lessons = jdbcTemplate.query("SELECT id, capacity, booked_count, status, lesson_date " +
+            "FROM lessons WHERE id = ?", (rs, rowNum) -> new Lesson(rs.getLong("id"), rs.getInt("capacity"),
+                rs.getInt("booked_count"), rs.getString("status"), rs.getTimestamp("lesson_date").toLocalDateTime()),
+            lessonId);
+        return lessons.isEmpty() ? null : lessons.get(0);
+    }
+    
+    /**
+     * 予約確定・キャンセル待ちの会員
+     */
+    Map<Long, String> findActiveMembers(long lessonId) {
+        Map<Long, String> members = new HashMap<>();
+        jdbcTemplate.query("SELECT member_id, status FROM lesson_bookings WHERE lesson_id = ? AND status IN (?, ?)",
+            rs -> {
+                members.put(rs.getLong("member_id"), rs.getString("status"));
+            }, lessonId, LessonSeats.BOOKED, LessonSeats.WAITLISTED);
+        return members;
+    }
+    
+    /**
+     * 会員の予約（キャンセル待ちの場合は申込順の順番付き）
+     */
+    Booking findBooking(long lessonId, long memberId) {
+        List<Booking> bookings = jdbcTemplate.query("SELECT b.status, b.booking_date, " +
+            "CASE WHEN b.status = ? THEN (SELECT COUNT(*) FROM lesson_bookings w WHERE w.lesson_id = b.lesson_id " +
+            "AND w.status = ? AND (w.booking_date, w.id) <= (b.booking_date, b.id)) END AS waitlist_position " +
+            "FROM lesson_bookings b WHERE b.lesson_id = ? AND b.member_id = ?", (rs, rowNum) -> {
+                int position = rs.getInt("waitlist_position");
+                return new Booking(rs.getString("status"), rs.getTimestamp("booking_date").toLocalDateTime(),
+                    rs.wasNull() ? null : position);
+            }, LessonSeats.WAITLISTED, LessonSeats.WAITLISTED, lessonId, memberId);
+        return bookings.isEmpty() ? null : bookings.get(0);
+    }
+    
+    /**
+     * 受け付けた予約を申込順に書き込む
+     * 行ロックを取った時点の空席数までを予約確定とし、他インスタンスの予約で埋まっていた分はキャンセル待ちにする
+     * 空席が残った場合（他インスタンスで取り消された場合など）はキャンセル待ちを繰り上げる
+     *
+     * @return レッスンが削除されていた場合はnull
+     */
+    Persisted persist(long lessonId, List<PendingBooking> bookings) {
+        return transactionTemplate.execute(status -> {
+            int[] seats = lockSeats(lessonId);
+            if (seats == null) {
+                return null;
+            }
+            int free = seats[0] - seats[1];
+            Long[] memberIds = new Long[bookings.size()];
+            Timestamp[] bookingDates = new Timestamp[bookings.size()];
+            String[] statuses = new String[bookings.size()];
+            for (int i = 0; i < bookings.size(); i++) {
+                PendingBooking booking = bookings.get(i);
+                memberIds[i] = booking.memberId();
+                bookingDates[i] = Timestamp.valueOf(booking.requestedAt());
+                statuses[i] = LessonSeats.BOOKED.equals(booking.status()) && free-- > 0
+                    ? LessonSeats.BOOKED : LessonSeats.WAITLISTED;
+            }
+            Map<Long, String> persisted = jdbcTemplate.execute((Connection con) -> {
+                try (PreparedStatement ps = con.prepareStatement(INSERT_SQL)) {
+                    ps.setLong(1, lessonId);
+                    ps.setArray(2, con.createArrayOf("bigint", memberIds));
+                    ps.setArray(3, con.createArrayOf("timestamp", bookingDates));
+                    ps.setArray(4, con.createArrayOf("varchar", statuses));
+                    Map<Long, String> result = new LinkedHashMap<>();
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            result.put(rs.getLong("member_id"), rs.getString("status"));
+                        }
+                    }
+                    return result;
+                }
+            });
+            int booked = seats[1] + (int) persisted.values().stream().filter(LessonSeats.BOOKED::equals).count();
+            List<Long> promoted = promote(lessonId, seats[0] - booked);
+            int bookedCount = booked + promoted.size();
+            return new Persisted(persisted, promoted, bookedCount, updateBookedCount(lessonId, bookedCount));
+        });
+    }
+    
+    /**
+     * 予約を取り消し、予約確定を取り消した場合は空いた席にキャンセル待ちを申込順に繰り上げる
+     *
+     * @return 取り消す予約がない場合はnull
+     */
+    Cancelled cancel(long lessonId, long memberId) {
+        return transactionTemplate.execute(status -> {
+            int[] seats = lockSeats(lessonId);
+            if (seats == null) {
+                return null;
+            }
+            List<String> previous = jdbcTemplate.queryForList("UPDATE lesson_bookings b SET status = ?, " +
+                "cancelled_at = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP " +
+                "FROM (SELECT id, status FROM lesson_bookings WHERE lesson_id = ? AND member_id = ? AND status IN (?, ?)) old " +
+                "WHERE b.id = old.id RETURNING old.status", String.class,
+                LessonSeats.CANCELLED, lessonId, memberId, LessonSeats.BOOKED, LessonSeats.WAITLISTED);
+            if (previous.isEmpty()) {
+                return null;
+            }
+            String previousStatus = previous.get(0);
+            if (!LessonSeats.BOOKED.equals(previousStatus)) {
+                return new Cancelled(previousStatus, List.of(), seats[1], null);
+            }
+            int booked = seats[1] - 1;
+            List<Long> promoted = promote(lessonId, seats[0] - booked);
+            int bookedCount = booked + promoted.size();
+            return new Cancelled(previousStatus, promoted, bookedCount, updateBookedCount(lessonId, bookedCount));
+        });
+    }
+    
+    /**
+     * レッスンの行ロックを取り、定員と予約確定数を返す
+     */
+    private int[] lockSeats(long lessonId) {
+        List<int[]> seats = jdbcTemplate.query("SELECT capacity, booked_count FROM lessons WHERE id = ? FOR UPDATE",
+            (rs, rowNum) -> new int[]{rs.getInt("capacity"), rs.getInt("booked_count")}, lessonId);
+        return seats.isEmpty() ? null : seats.get(0);
+    }
+    
+    private List<Long> promote(long lessonId, int free) {
+        if (free <= 0) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList("UPDATE lesson_bookings SET status = ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id IN (SELECT id FROM lesson_bookings WHERE lesson_id = ? AND status = ? " +
+            "ORDER BY booking_date, id LIMIT ?) RETURNING member_id", Long.class,
+            LessonSeats.BOOKED, lessonId, LessonSeats.WAITLISTED, free);
+    }
+    
+    /**
+     * 予約確定数を更新する。更新日時は行ロック取得後の時刻とし、同じレッスンの更新の順序と一致させる
+     *
+     * @return 更新日時
+     */
+    private LocalDateTime updateBookedCount(long lessonId, int bookedCount) {
+        return jdbcTemplate.queryForObject("UPDATE lessons SET booked_count = ?, updated_at = clock_timestamp() " +
+            "WHERE id = ? RETURNING updated_at", Timestamp.class, bookedCount, lessonId).toLocalDateTime();
+    }
+}
@@ -0,0 +1,186 @@
+package com.membership.lesson.booking;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 1レッスン分の座席の受付状況
+ * 予約確定数とキャンセル待ち数をCASで増減し、同じ会員の二重受付を会員ID単位で弾く（ロックは取らない）
+ * DBへ書き込み済みの予約から読み込み、未書き込みの受付が残っている間は読み直さない
+ */
+final class LessonSeats {
+    
+    static final String BOOKED = "BOOKED";
+    static final String WAITLISTED = "WAITLISTED";
+    static final String CANCELLED = "CANCELLED";
+    
+    /**
+     * 受付結果。accepted=falseの場合は受付済みの予約があり、statusはその状態
+     */
+    record Admission(String status, Integer waitlistPosition, boolean accepted) {
+    }
+    
+    private final long lessonId;
+    private final int capacity;
+    private final String lessonStatus;
+    private final LocalDateTime lessonDate;
+    private final long loadedAt;
+    private final AtomicInteger booked;
+    private final AtomicInteger waitlisted;
+    private final Map<Long, String> members;
+    private final Set<Long> unsaved = ConcurrentHashMap.newKeySet();
+    private volatile boolean stale;
+    
+    LessonSeats(long lessonId, int capacity, String lessonStatus, LocalDateTime lessonDate,
+                int booked, Map<Long, String> members) {
+        this.lessonId = lessonId;
+        this.capacity = capacity;
+        this.lessonStatus = lessonStatus;
+        this.lessonDate = lessonDate;
+        this.loadedAt = System.nanoTime();
+        this.booked = new AtomicInteger(booked);
+        this.waitlisted = new AtomicInteger((int) members.values().stream().filter(WAITLISTED::equals).count());
+        this.members = new ConcurrentHashMap<>(members);
+    }
+    
+    long lessonId() {
+        return lessonId;
+    }
+    
+    int capacity() {
+        return capacity;
+    }
+    
+    int booked() {
+        return booked.get();
+    }
+    
+    int waitlisted() {
+        return waitlisted.get();
+    }
+    
+    boolean isOpen(LocalDateTime now) {
+        return "SCHEDULED".equals(lessonStatus) && lessonDate.isAfter(now);
+    }
+    
+    String statusOf(long memberId) {
+        return members.get(memberId);
+    }
+    
+    boolean isUnsaved(long memberId) {
+        return unsaved.contains(memberId);
+    }
+    
+    /**
+     * 読み込みから一定時間が経った状態、または他インスタンスとの競合が分かった状態は、未書き込みの受付がなければ読み直す
+     */
+    boolean isReloadable(long ttlNanos) {
+        return unsaved.isEmpty() && (stale || System.nanoTime() - loadedAt > ttlNanos);
+    }
+    
+    /**
+     * 空席があれば予約確定、なければ上限までキャンセル待ちとして受け付ける
+     *
+     * @return キャンセル待ちも上限に達している場合はnull
+     */
+    Admission admit(long memberId, int waitlistMax) {
+        String existing = members.get(memberId);
+        if (existing != null) {
+            return new Admission(existing, null, false);
+        }
+        String status;
+        Integer position = null;
+        if (reserve(booked, capacity)) {
+            status = BOOKED;
+        } else if (reserve(waitlisted, waitlistMax)) {
+            status = WAITLISTED;
+            position = waitlisted.get();
+        } else {
+            return null;
+        }
+        existing = members.putIfAbsent(memberId, status);
+        if (existing != null) {
+            // 同じ会員の同時申込で先に受け付けた側を優先し、確保した枠は戻す
+            release(status);
+            return new Admission(existing, null, false);
+        }
+        unsaved.add(memberId);
+        return new Admission(status, position, true);
+    }
+    
+    /**
+     * 書き込みキューに積めなかった受付を取り消す
+     */
+    void revoke(long memberId, String status) {
+        if (members.remove(memberId, status)) {
+            release(status);
+        }
+        unsaved.remove(memberId);
+    }
+    
+    /**
+     * 受付をDBへ書き込んだ結果を反映する
+     *
+     * @param persistedStatus DB上の状態（定員に達していた場合はBOOKEDで受け付けてもWAITLISTEDになり、その逆はない）。
+     *                        既に予約があったなどで書き込まれなかった場合はnull
+     */
+    void persisted(long memberId, String admittedStatus, String persistedStatus) {
+        if (persistedStatus == null) {
+            if (members.remove(memberId, admittedStatus)) {
+                release(admittedStatus);
+            }
+            stale = true;
+        } else if (!persistedStatus.equals(admittedStatus) && members.replace(memberId, admittedStatus, persistedStatus)) {
+            // 他インスタンスの予約で満席だった。確保した席はその予約の分として数えたまま、キャンセル待ちに加える
+            waitlisted.incrementAndGet();
+            stale = true;
+        }
+        unsaved.remove(memberId);
+    }
+    
+    /**
+     * 予約の取消を反映する
+     */
+    void cancelled(long memberId, String cancelledStatus) {
+        if (members.remove(memberId, cancelledStatus)) {
+            release(cancelledStatus);
+        } else {
+            stale = true;
+        }
+    }
+    
+    /**
+     * キャンセル待ちからの繰り上げを反映する
+     */
+    void promoted(Collection<Long> memberIds) {
+        for (Long memberId : memberIds) {
+            if (members.replace(memberId, WAITLISTED, BOOKED)) {
+                waitlisted.decrementAndGet();
+                booked.incrementAndGet();
+            } else {
+                // 他インスタンスで受け付けた会員
+                stale = true;
+            }
+        }
+    }
+    
+    private void release(String status) {
+        (BOOKED.equals(status) ? booked : waitlisted).decrementAndGet();
+    }
+    
+    private static boolean reserve(AtomicInteger counter, int limit) {
+        while (true) {
+            int current = counter.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.membership.lesson.booking;
+
+import java.time.LocalDateTime;
+
+/**
+ * 受け付け済みでDBへの書き込みを待つ予約
+ *
+ * @param status      受付時の状態（BOOKEDまたはWAITLISTED）
+ * @param requestedAt 申込日時（キャンセル待ちの繰り上げ順）
+ */
+record PendingBooking(LessonSeats seats, long memberId, String status, LocalDateTime requestedAt) {
+}
@@ -0,0 +1,61 @@
+package com.membership.lesson.controller;
+
+import com.membership.lesson.booking.LessonBookingService;
+import com.membership.lesson.dto.BookingCancellation;
+import com.membership.lesson.dto.BookingRequest;
+import com.membership.lesson.dto.BookingResult;
+import com.membership.lesson.dto.LessonAvailability;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/lessons/{lessonId}")
+@RequiredArgsConstructor
+@Tag(name = "Lesson Booking", description = "レッスン予約API")
+public class LessonBookingController {
+    
+    private final LessonBookingService lessonBookingService;
+    
+    @PostMapping("/bookings")
+    @Operation(summary = "レッスンの予約", description = "空席があれば予約確定、満席の場合はキャンセル待ちとして受け付ける。予約は非同期に登録する")
+    public ResponseEntity<BookingResult> book(@PathVariable Long lessonId, @RequestBody BookingRequest request) {
+        BookingResult result = lessonBookingService.book(lessonId, request.getMemberId());
+        if (result.rejection() == null) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(result);
+        }
+        return switch (result.rejection()) {
+            case INVALID_MEMBER -> ResponseEntity.badRequest().body(result);
+            case LESSON_NOT_FOUND -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(result);
+            case LESSON_CLOSED, WAITLIST_FULL -> ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+            case BUSY -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(result);
+        };
+    }
+    
+    @GetMapping("/bookings/{memberId}")
+    @Operation(summary = "予約状況の照会", description = "会員の予約状況（キャンセル待ちの場合は順番）")
+    public ResponseEntity<BookingResult> getBooking(@PathVariable Long lessonId, @PathVariable Long memberId) {
+        BookingResult result = lessonBookingService.getBooking(lessonId, memberId);
+        return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+    }
+    
+    @DeleteMapping("/bookings/{memberId}")
+    @Operation(summary = "予約の取消", description = "予約またはキャンセル待ちを取り消す。予約確定を取り消した場合はキャンセル待ちを申込順に繰り上げる")
+    public ResponseEntity<BookingCancellation> cancel(@PathVariable Long lessonId, @PathVariable Long memberId) {
+        BookingCancellation cancellation = lessonBookingService.cancel(lessonId, memberId);
+        return cancellation != null ? ResponseEntity.ok(cancellation) : ResponseEntity.notFound().build();
+    }
+    
+    @GetMapping("/availability")
+    @Operation(summary = "空き状況", description = "定員・予約確定数・キャンセル待ち数")
+    public ResponseEntity<LessonAvailability> getAvailability(@PathVariable Long lessonId) {
+        LessonAvailability availability = lessonBookingService.getAvailability(lessonId);
+        return availability != null ? ResponseEntity.ok(availability) : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,42 @@
+package com.membership.lesson.controller;
+
+import com.membership.lesson.dto.LessonScheduleEntry;
+import com.membership.lesson.schedule.LessonScheduleService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/lessons")
+@Tag(name = "Lesson Schedule", description = "レッスン予定API")
+public class LessonScheduleController {
+    
+    private final LessonScheduleService lessonScheduleService;
+    private final int maxRangeDays;
+    
+    public LessonScheduleController(LessonScheduleService lessonScheduleService,
+                                    @Value("${lesson.schedule.max-range-days:62}") int maxRangeDays) {
+        this.lessonScheduleService = lessonScheduleService;
+        this.maxRangeDays = maxRangeDays;
+    }
+    
+    @GetMapping
+    @Operation(summary = "店舗のレッスン予定", description = "店舗の期間（from〜to、日付）のレッスンを開始日時順に残席数付きで返す")
+    public ResponseEntity<List<LessonScheduleEntry>> getLessons(
+            @RequestParam Long storeId,
+            @RequestParam(required = false) Long schoolId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(lessonScheduleService.findLessons(storeId, schoolId, from, to));
+    }
+}
@@ -0,0 +1,17 @@
+package com.membership.lesson.dto;
+
+import java.util.List;
+
+/**
+ * レッスン予約の取消結果
+ *
+ * @param cancelledStatus   取り消した予約の状態（BOOKEDまたはWAITLISTED）
+ * @param promotedMemberIds キャンセル待ちから予約確定に繰り上がった会員
+ */
+public record BookingCancellation(
+    Long lessonId,
+    Long memberId,
+    String cancelledStatus,
+    List<Long> promotedMemberIds
+) {
+}
@@ -0,0 +1,12 @@
+package com.membership.lesson.dto;
+
+import lombok.Data;
+
+/**
+ * レッスン予約の申込内容
+ */
+@Data
+public class BookingRequest {
+    
+    private Long memberId;
+}
@@ -0,0 +1,40 @@
+package com.membership.lesson.dto;
+
+/**
+ * レッスン予約の受付結果
+ * 受付できなかった場合はrejectionに理由が入る。受付済みの予約は非同期にDBへ書き込まれ、
+ * 他インスタンスとの競合で定員を超えた場合はDB側でキャンセル待ちに回る（確定状況は予約照会で確認する）
+ *
+ * @param status           BOOKED（予約確定）またはWAITLISTED（キャンセル待ち）
+ * @param waitlistPosition キャンセル待ちの順番（1始まり、予約確定の場合はnull）
+ */
+public record BookingResult(
+    Long lessonId,
+    Long memberId,
+    String status,
+    Integer waitlistPosition,
+    Rejection rejection
+) {
+    
+    public enum Rejection {
+        INVALID_MEMBER,
+        LESSON_NOT_FOUND,
+        /**
+         * 開講予定でない、または開始時刻を過ぎたレッスン
+         */
+        LESSON_CLOSED,
+        WAITLIST_FULL,
+        /**
+         * 予約の書き込みが追いついていない（時間をおいて再試行）
+         */
+        BUSY
+    }
+    
+    public static BookingResult accepted(Long lessonId, Long memberId, String status, Integer waitlistPosition) {
+        return new BookingResult(lessonId, memberId, status, waitlistPosition, null);
+    }
+    
+    public static BookingResult rejected(Rejection rejection, Long lessonId, Long memberId) {
+        return new BookingResult(lessonId, memberId, null, null, rejection);
+    }
+}
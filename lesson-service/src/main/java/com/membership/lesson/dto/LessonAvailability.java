@@ -0,0 +1,13 @@
+package com.membership.lesson.dto;
+
+/**
+ * レッスンの空き状況（受付中の予約を含む）
+ */
+public record LessonAvailability(
+    Long lessonId,
+    int capacity,
+    int booked,
+    int waitlisted,
+    boolean open
+) {
+}
@@ -0,0 +1,33 @@
+package com.membership.lesson.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * カレンダーに表示するレッスン
+ *
+ * @param booked    予約確定数
+ * @param remaining 残席数
+ */
+public record LessonScheduleEntry(
+    Long lessonId,
+    Long storeId,
+    Long schoolId,
+    String schoolName,
+    String lessonCode,
+    String lessonName,
+    LocalDateTime lessonDate,
+    int durationMinutes,
+    String instructorName,
+    BigDecimal price,
+    String status,
+    int capacity,
+    int booked,
+    int remaining
+) {
+    
+    public LessonScheduleEntry withBooked(int booked) {
+        return new LessonScheduleEntry(lessonId, storeId, schoolId, schoolName, lessonCode, lessonName, lessonDate,
+            durationMinutes, instructorName, price, status, capacity, booked, Math.max(capacity - booked, 0));
+    }
+}
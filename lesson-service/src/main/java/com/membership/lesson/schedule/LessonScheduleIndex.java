@@ -0,0 +1,191 @@
+package com.membership.lesson.schedule;
+
+import com.membership.lesson.dto.LessonScheduleEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * カレンダー表示用のレッスン予定インデックス
+ * 今日から一定期間先までのレッスンを店舗ごとに開始日時順でメモリへ読み込み、期間指定の検索をDBに問い合わせずに返す
+ * 残席数は自インスタンスでの予約・取消の確定時に反映し、他インスタンスでの変更と新しいレッスンは
+ * lessons.updated_atによる差分読み込みで反映する
+ */
+@Component
+@Slf4j
+public class LessonScheduleIndex {
+    
+    private final LessonScheduleStore store;
+    private final int horizonDays;
+    private final long syncOverlapMillis;
+    private final Map<Long, NavigableMap<Slot, LessonScheduleEntry>> byStore = new ConcurrentHashMap<>();
+    private final Map<Long, Indexed> byLesson = new ConcurrentHashMap<>();
+    
+    /**
+     * インデックスに読み込んだ期間 [windowFrom, windowUntil)。読み込み前はnull
+     */
+    private volatile LocalDate windowFrom;
+    private volatile LocalDate windowUntil;
+    private LocalDateTime syncedAt;
+    
+    public LessonScheduleIndex(LessonScheduleStore store,
+                               @Value("${lesson.schedule.horizon-days:92}") int horizonDays,
+                               @Value("${lesson.schedule.sync-overlap-ms:60000}") long syncOverlapMillis) {
+        this.store = store;
+        this.horizonDays = horizonDays;
+        this.syncOverlapMillis = syncOverlapMillis;
+    }
+    
+    /**
+     * 同じ開始日時のレッスンをIDで並べるためのキー
+     */
+    private record Slot(LocalDateTime lessonDate, long lessonId) implements Comparable<Slot> {
+        
+        @Override
+        public int compareTo(Slot other) {
+            int result = lessonDate.compareTo(other.lessonDate);
+            return result != 0 ? result : Long.compare(lessonId, other.lessonId);
+        }
+    }
+    
+    /**
+     * インデックス上のレッスンと、その内容を読み込んだ時点のlessons.updated_at
+     */
+    private record Indexed(LessonScheduleEntry entry, LocalDateTime updatedAt) {
+    }
+    
+    /**
+     * 起動時に今日から一定期間先までのレッスンを読み込む
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        LocalDate today = LocalDate.now();
+        LocalDate until = today.plusDays(horizonDays);
+        syncedAt = store.now();
+        store.findAll(today, until, row -> put(row, today, until));
+        windowFrom = today;
+        windowUntil = until;
+        log.info("Loaded {} lessons from {} to {} into schedule index", byLesson.size(), today, until);
+    }
+    
+    /**
+     * 店舗の期間 [from, to] のレッスン（開始日時順）
+     *
+     * @return 読み込み前、またはインデックスの期間外を含む場合はnull
+     */
+    public List<LessonScheduleEntry> find(long storeId, LocalDate from, LocalDate to) {
+        LocalDate loadedFrom = windowFrom;
+        LocalDate loadedUntil = windowUntil;
+        if (loadedFrom == null || from.isBefore(loadedFrom) || !to.isBefore(loadedUntil)) {
+            return null;
+        }
+        NavigableMap<Slot, LessonScheduleEntry> lessons = byStore.get(storeId);
+        if (lessons == null) {
+            return List.of();
+        }
+        return new ArrayList<>(lessons.subMap(
+            new Slot(from.atStartOfDay(), Long.MIN_VALUE), true,
+            new Slot(to.plusDays(1).atStartOfDay(), Long.MIN_VALUE), false).values());
+    }
+    
+    /**
+     * 予約・取消の確定後の予約確定数を反映する
+     *
+     * @param updatedAt 予約確定数を更新したlessons.updated_at
+     */
+    public void bookedChanged(long lessonId, int bookedCount, LocalDateTime updatedAt) {
+        byLesson.computeIfPresent(lessonId, (id, current) -> {
+            if (updatedAt.isBefore(current.updatedAt())) {
+                return current;
+            }
+            LessonScheduleEntry updated = current.entry().withBooked(bookedCount);
+            storeLessons(updated.storeId()).put(slot(updated), updated);
+            return new Indexed(updated, updatedAt);
+        });
+    }
+    
+    /**
+     * 前回以降に更新・追加されたレッスンを読み込み、過ぎた日のレッスンを捨てて期間を進める
+     */
+    @Scheduled(initialDelayString = "${lesson.schedule.sync-interval-ms:10000}",
+        fixedDelayString = "${lesson.schedule.sync-interval-ms:10000}")
+    public synchronized void sync() {
+        if (windowFrom == null) {
+            return;
+        }
+        try {
+            LocalDate today = LocalDate.now();
+            LocalDate until = today.plusDays(horizonDays);
+            LocalDateTime now = store.now();
+            // 更新日時はトランザクション開始時刻のため、前回の読み込み後にコミットされた長いトランザクションの分を重ねて読む
+            store.findUpdated(syncedAt.minusNanos(syncOverlapMillis * 1_000_000), row -> put(row, today, until));
+            if (until.isAfter(windowUntil)) {
+                store.findAll(windowUntil, until, row -> put(row, today, until));
+            }
+            syncedAt = now;
+            windowUntil = until;
+            if (today.isAfter(windowFrom)) {
+                windowFrom = today;
+                evictBefore(today.atStartOfDay());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to sync lesson schedule index: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 読み込んだレッスンを追加・更新する。期間外へ日時が変わったレッスンは外し、
+     * 読み込み後に反映された予約・取消より古い内容は無視する
+     */
+    private void put(LessonScheduleStore.Row row, LocalDate from, LocalDate until) {
+        LessonScheduleEntry entry = row.entry();
+        boolean inWindow = !entry.lessonDate().isBefore(from.atStartOfDay())
+            && entry.lessonDate().isBefore(until.atStartOfDay());
+        byLesson.compute(entry.lessonId(), (id, current) -> {
+            if (current != null && row.updatedAt().isBefore(current.updatedAt())) {
+                return current;
+            }
+            // 同じ位置の更新は置き換えのみとし、検索中に一時的に消えないようにする
+            if (current != null && (!inWindow || !current.entry().storeId().equals(entry.storeId())
+                || !current.entry().lessonDate().equals(entry.lessonDate()))) {
+                storeLessons(current.entry().storeId()).remove(slot(current.entry()));
+            }
+            if (!inWindow) {
+                return null;
+            }
+            storeLessons(entry.storeId()).put(slot(entry), entry);
+            return new Indexed(entry, row.updatedAt());
+        });
+    }
+    
+    private void evictBefore(LocalDateTime start) {
+        for (NavigableMap<Slot, LessonScheduleEntry> lessons : byStore.values()) {
+            NavigableMap<Slot, LessonScheduleEntry> past = lessons.headMap(new Slot(start, Long.MIN_VALUE), false);
+            for (LessonScheduleEntry entry : past.values()) {
+                byLesson.remove(entry.lessonId());
+            }
+            past.clear();
+        }
+    }
+    
+    private NavigableMap<Slot, LessonScheduleEntry> storeLessons(Long storeId) {
+        return byStore.computeIfAbsent(storeId, id -> new ConcurrentSkipListMap<>());
+    }
+    
+    private static Slot slot(LessonScheduleEntry entry) {
+        return new Slot(entry.lessonDate(), entry.lessonId());
+    }
+}
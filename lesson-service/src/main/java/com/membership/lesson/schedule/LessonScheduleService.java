@@ -0,0 +1,39 @@
+package com.membership.lesson.schedule;
+
+import com.membership.lesson.dto.LessonScheduleEntry;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 店舗のレッスン予定（カレンダー表示）
+ * 今日から一定期間先まではインデックスから返し、過去や期間外を含む範囲のみDBへ問い合わせる
+ */
+@Service
+public class LessonScheduleService {
+    
+    private final LessonScheduleIndex index;
+    private final LessonScheduleStore store;
+    
+    public LessonScheduleService(LessonScheduleIndex index, LessonScheduleStore store) {
+        this.index = index;
+        this.store = store;
+    }
+    
+    /**
+     * 店舗の期間 [from, to] のレッスン（開始日時順）
+     *
+     * @param schoolId 指定した場合はそのスクールのレッスンのみ
+     */
+    public List<LessonScheduleEntry> findLessons(long storeId, Long schoolId, LocalDate from, LocalDate to) {
+        List<LessonScheduleEntry> lessons = index.find(storeId, from, to);
+        if (lessons == null) {
+            lessons = store.findByStore(storeId, from, to.plusDays(1));
+        }
+        if (schoolId == null) {
+            return lessons;
+        }
+        return lessons.stream().filter(lesson -> schoolId.equals(lesson.schoolId())).toList();
+    }
+}
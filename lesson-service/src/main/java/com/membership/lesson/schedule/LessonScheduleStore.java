@@ -0,0 +1,85 @@
+package com.membership.lesson.schedule;
+
+import com.membership.lesson.dto.LessonScheduleEntry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 店舗のレッスン予定の読み込み（lessons / schools）
+ */
+@Component
+class LessonScheduleStore {
+    
+    private static final String SELECT_SQL = "SELECT l.id, s.store_id, l.school_id, s.school_name, l.lesson_code, " +
+        "l.lesson_name, l.lesson_date, l.duration_minutes, l.instructor_name, l.price, l.status, l.capacity, " +
+        "l.booked_count, l.updated_at " +
+        "FROM lessons l JOIN schools s ON s.id = l.school_id ";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    LessonScheduleStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * レッスンと、読み込んだ時点のlessons.updated_at（新しい更新を古い読み込み結果で戻さないための版）
+     */
+    record Row(LessonScheduleEntry entry, LocalDateTime updatedAt) {
+    }
+    
+    /**
+     * 期間 [from, until) のレッスン（全店舗）
+     */
+    void findAll(LocalDate from, LocalDate until, Consumer<Row> consumer) {
+        jdbcTemplate.query(SELECT_SQL + "WHERE l.lesson_date >= ? AND l.lesson_date < ?",
+            (RowCallbackHandler) rs -> consumer.accept(map(rs)), startOf(from), startOf(until));
+    }
+    
+    /**
+     * updatedSince以降に更新されたレッスン
+     */
+    void findUpdated(LocalDateTime updatedSince, Consumer<Row> consumer) {
+        jdbcTemplate.query(SELECT_SQL + "WHERE l.updated_at >= ?",
+            (RowCallbackHandler) rs -> consumer.accept(map(rs)), Timestamp.valueOf(updatedSince));
+    }
+    
+    /**
+     * 店舗の期間 [from, until) のレッスン（開始日時順）
+     */
+    List<LessonScheduleEntry> findByStore(long storeId, LocalDate from, LocalDate until) {
+        return jdbcTemplate.query(SELECT_SQL + "WHERE s.store_id = ? AND l.lesson_date >= ? AND l.lesson_date < ? " +
+            "ORDER BY l.lesson_date, l.id", (rs, rowNum) -> map(rs).entry(), storeId, startOf(from), startOf(until));
+    }
+    
+    /**
+     * DBの現在日時（差分読み込みの起点。アプリケーションサーバーとの時計のずれを避ける）
+     */
+    LocalDateTime now() {
+        return jdbcTemplate.queryForObject("SELECT LOCALTIMESTAMP", Timestamp.class).toLocalDateTime();
+    }
+    
+    private static Row map(ResultSet rs) throws SQLException {
+        int capacity = rs.getInt("capacity");
+        int booked = rs.getInt("booked_count");
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        return new Row(new LessonScheduleEntry(rs.getLong("id"), rs.getLong("store_id"), rs.getLong("school_id"),
+            rs.getString("school_name"), rs.getString("lesson_code"), rs.getString("lesson_name"),
+            rs.getTimestamp("lesson_date").toLocalDateTime(), rs.getInt("duration_minutes"),
+            rs.getString("instructor_name"), rs.getBigDecimal("price"), rs.getString("status"),
+            capacity, booked, Math.max(capacity - booked, 0)),
+            updatedAt != null ? updatedAt.toLocalDateTime() : LocalDateTime.MIN);
+    }
+    
+    private static Timestamp startOf(LocalDate date) {
+        return Timestamp.valueOf(date.atStartOfDay());
+    }
+}
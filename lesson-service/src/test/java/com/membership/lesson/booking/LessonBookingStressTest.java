@@ -0,0 +1,198 @@
+package com.membership.lesson.booking;
+
+import com.membership.lesson.LessonServiceApplication;
+import com.membership.lesson.dto.BookingCancellation;
+import com.membership.lesson.dto.BookingResult;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 同じDBを使う2つのインスタンスへ1,000件の予約を同時に申し込み、定員を超えて予約が確定しないことを確認する
+ * 各インスタンスはメモリ上の座席数で受付を判定するため、インスタンス間の競合で定員を超えた分は
+ * 書き込み時にキャンセル待ちへ回ることと、取消による繰り上げ後も定員を守ることを合わせて確認する
+ */
+class LessonBookingStressTest {
+    
+    private static final int CAPACITY = 20;
+    private static final int WAITLIST_MAX = 50;
+    private static final int REQUESTS = 1_000;
+    private static final Duration PERSIST_TIMEOUT = Duration.ofSeconds(30);
+    
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+    private static long lessonId;
+    private static List<Long> memberIds;
+    
+    @BeforeAll
+    static void startInstances() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        jdbcTemplate.execute(Files.readString(Path.of("../init.sql")));
+        memberIds = jdbcTemplate.queryForList("""
+            INSERT INTO members (member_code, store_id, first_name, last_name, email, member_type, status, enrollment_date,
+                enrollment_method)
+            SELECT 'STRESS' || lpad(i::text, 9, '0'), (SELECT id FROM stores ORDER BY id LIMIT 1), '太郎', '山田',
+                'stress-' || i || '@example.com', 'REGULAR', 'ACTIVE', CURRENT_DATE, 'STORE'
+            FROM generate_series(1, ?) AS i
+            RETURNING id
+            """, Long.class, REQUESTS);
+        long schoolId = jdbcTemplate.queryForObject("""
+            INSERT INTO schools (store_id, school_code, school_name, capacity)
+            VALUES ((SELECT id FROM stores ORDER BY id LIMIT 1), 'STRESS', '負荷試験スクール', ?)
+            RETURNING id
+            """, Long.class, CAPACITY);
+        lessonId = jdbcTemplate.queryForObject("""
+            INSERT INTO lessons (school_id, lesson_code, lesson_name, lesson_date, duration_minutes, capacity)
+            VALUES (?, 'STRESS-001', '負荷試験レッスン', CURRENT_TIMESTAMP + INTERVAL '7 days', 60, ?)
+            RETURNING id
+            """, Long.class, schoolId, CAPACITY);
+        
+        first = start();
+        second = start();
+    }
+    
+    @AfterAll
+    static void stopInstances() throws IOException {
+        if (first != null) {
+            first.close();
+        }
+        if (second != null) {
+            second.close();
+        }
+        postgres.close();
+    }
+    
+    @Test
+    void concurrentBookingsNeverExceedCapacity() throws Exception {
+        LessonBookingService firstService = first.getBean(LessonBookingService.class);
+        LessonBookingService secondService = second.getBean(LessonBookingService.class);
+        
+        List<BookingResult> results = runConcurrently(memberIds.size(), i ->
+            (i % 2 == 0 ? firstService : secondService).book(lessonId, memberIds.get(i)));
+        
+        List<BookingResult> accepted = results.stream().filter(r -> r.rejection() == null).toList();
+        // インスタンスごとの受付は定員とキャンセル待ちの上限を超えない
+        for (int instance = 0; instance < 2; instance++) {
+            List<BookingResult> own = new ArrayList<>();
+            for (int i = instance; i < results.size(); i += 2) {
+                if (results.get(i).rejection() == null) {
+                    own.add(results.get(i));
+                }
+            }
+            assertThat(own.stream().filter(r -> LessonSeats.BOOKED.equals(r.status())).count())
+                .isLessThanOrEqualTo(CAPACITY);
+            assertThat(own.stream().filter(r -> LessonSeats.WAITLISTED.equals(r.status())).count())
+                .isLessThanOrEqualTo(WAITLIST_MAX);
+        }
+        assertThat(results).filteredOn(r -> r.rejection() != null)
+            .allSatisfy(r -> assertThat(r.rejection()).isEqualTo(BookingResult.Rejection.WAITLIST_FULL));
+        
+        awaitPersisted(accepted.size());
+        
+        // 受け付けた会員はすべて1件ずつ書き込まれ、予約確定はDB全体で定員ちょうど
+        assertThat(jdbcTemplate.queryForList("SELECT member_id FROM lesson_bookings WHERE lesson_id = ?",
+            Long.class, lessonId))
+            .containsExactlyInAnyOrderElementsOf(accepted.stream().map(BookingResult::memberId).toList());
+        assertThat(countBooked()).isEqualTo(CAPACITY);
+        assertThat(bookedCount()).isEqualTo(CAPACITY);
+        
+        // 確定した全員の取消を両インスタンスから同時に行い、キャンセル待ちからの繰り上げ後も定員を守る
+        List<Long> booked = jdbcTemplate.queryForList(
+            "SELECT member_id FROM lesson_bookings WHERE lesson_id = ? AND status = 'BOOKED'", Long.class, lessonId);
+        List<BookingCancellation> cancellations = runConcurrently(booked.size(), i ->
+            (i % 2 == 0 ? firstService : secondService).cancel(lessonId, booked.get(i)));
+        
+        assertThat(cancellations).allSatisfy(c -> assertThat(c.cancelledStatus()).isEqualTo(LessonSeats.BOOKED));
+        List<Long> promoted = cancellations.stream().flatMap(c -> c.promotedMemberIds().stream()).toList();
+        assertThat(promoted).hasSize(CAPACITY).doesNotHaveDuplicates().doesNotContainAnyElementsOf(booked);
+        assertThat(countBooked()).isEqualTo(CAPACITY);
+        assertThat(bookedCount()).isEqualTo(CAPACITY);
+    }
+    
+    private interface Call<T> {
+        T call(int index);
+    }
+    
+    /**
+     * 全スレッドを待ち合わせてから一斉に呼び出す
+     */
+    private static <T> List<T> runConcurrently(int count, Call<T> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        try {
+            CountDownLatch ready = new CountDownLatch(count);
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    ready.countDown();
+                    go.await();
+                    return call.call(index);
+                }));
+            }
+            ready.await();
+            go.countDown();
+            List<T> results = new ArrayList<>(count);
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private static void awaitPersisted(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + PERSIST_TIMEOUT.toNanos();
+        while (countBookings() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(countBookings()).isEqualTo(expected);
+    }
+    
+    private static int countBookings() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM lesson_bookings WHERE lesson_id = ?",
+            Integer.class, lessonId);
+    }
+    
+    private static int countBooked() {
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM lesson_bookings WHERE lesson_id = ? AND status = 'BOOKED'", Integer.class, lessonId);
+    }
+    
+    private static int bookedCount() {
+        return jdbcTemplate.queryForObject("SELECT booked_count FROM lessons WHERE id = ?", Integer.class, lessonId);
+    }
+    
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(LessonServiceApplication.class).run(
+            "--server.port=0",
+            "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+            "--spring.datasource.username=postgres",
+            "--spring.datasource.password=",
+            "--spring.jpa.hibernate.ddl-auto=none",
+            "--eureka.client.enabled=false",
+            "--lesson.booking.waitlist-max=" + WAITLIST_MAX,
+            "--logging.level.root=WARN");
+    }
+}
@@ -0,0 +1,31 @@
+package com.membership.controller;
+
+import com.membership.service.cache.MemberCacheInvalidator;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/internal/cache")
+@RequiredArgsConstructor
+@Tag(name = "Cache", description = "インスタンス間のキャッシュ破棄通知API（ゲートウェイからは公開しない）")
+public class CacheInvalidationController {
+    
+    private final MemberCacheInvalidator memberCacheInvalidator;
+    
+    @PostMapping("/members/{memberId}/invalidate")
+    @Operation(summary = "会員キャッシュの破棄", description = "他インスタンスで更新された会員のキャッシュを破棄し、入館判定用の状態を読み直す")
+    public ResponseEntity<Void> invalidateMember(
+            @PathVariable Long memberId,
+            HttpServletRequest request) {
+        if (!memberCacheInvalidator.isAuthorized(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        memberCacheInvalidator.onRemoteInvalidation(memberId);
+        return ResponseEntity.noContent().build();
+    }
+}
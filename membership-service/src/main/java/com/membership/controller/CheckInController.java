@@ -0,0 +1,43 @@
+package com.membership.controller;
+
+import com.membership.dto.CheckInRequest;
+import com.membership.dto.CheckInResult;
+import com.membership.service.CheckInService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/check-ins")
+@RequiredArgsConstructor
+@Tag(name = "Check-in", description = "入館API")
+public class CheckInController {
+    
+    private final CheckInService checkInService;
+    
+    @PostMapping
+    @Operation(summary = "会員証による入館", description = "会員証番号またはQRコードの内容で入館判定を行い、入館記録を登録する")
+    public ResponseEntity<CheckInResult> checkIn(@RequestBody CheckInRequest request, HttpServletRequest httpRequest) {
+        CheckInResult result = checkInService.checkIn(request, getClientIpAddress(httpRequest));
+        if (result.rejection() == CheckInResult.Rejection.BUSY) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+    
+    private String getClientIpAddress(HttpServletRequest request) {
+        String ip = request.getHeader("X-Forwarded-For");
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            return request.getRemoteAddr();
+        }
+        int comma = ip.indexOf(',');
+        return (comma < 0 ? ip : ip.substring(0, comma)).trim();
+    }
+}
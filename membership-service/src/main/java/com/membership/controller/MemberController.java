@@ -1,17 +1,38 @@
 package com.membership.controller;
 
+import com.membership.dto.CursorPage;
+import com.membership.dto.MemberImportResult;
 import com.membership.entity.Member;
 import com.membership.entity.MemberCard;
+import com.membership.repository.projection.MemberCardView;
+import com.membership.repository.projection.MemberSummary;
+import com.membership.service.FaceRecognitionService;
+import com.membership.service.MemberCardQrService;
+import com.membership.service.MemberExportService;
+import com.membership.service.MemberImportService;
 import com.membership.service.MemberService;
+import com.membership.service.qr.QrCodeRenderer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -20,7 +41,15 @@ import java.util.List;
 @Tag(name = "Member Management", description = "会員管理API")
 public class MemberController {
     
+    private static final int MAX_CURSOR_PAGE_SIZE = 1000;
+    private static final int MAX_QR_SCALE = 32;
+    private static final CacheControl QR_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(1)).cachePrivate();
+    
     private final MemberService memberService;
+    private final FaceRecognitionService faceRecognitionService;
+    private final MemberExportService memberExportService;
+    private final MemberImportService memberImportService;
+    private final MemberCardQrService memberCardQrService;
     
     @PostMapping
     @Operation(summary = "新規会員登録", description = "Webまたはタブレットからの会員登録")
@@ -29,6 +58,15 @@ public class MemberController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
     
+    @PostMapping("/bulk")
+    @Operation(summary = "会員一括登録", description = "NDJSONまたはCSVの会員データをチャンク単位でバッチ登録し、行ごとのエラーを返す")
+    public ResponseEntity<MemberImportResult> importMembers(@RequestParam(defaultValue = "ndjson") String format,
+                                                            InputStream body) throws IOException {
+        MemberExportService.Format importFormat = MemberExportService.Format.valueOf(format.toUpperCase());
+        MemberImportResult result = memberImportService.importMembers(importFormat, body);
+        return ResponseEntity.ok(result);
+    }
+    
     @GetMapping("/{id}")
     @Operation(summary = "会員情報取得", description = "IDによる会員情報取得")
     public ResponseEntity<Member> getMember(@PathVariable Long id) {
@@ -45,15 +83,54 @@ public class MemberController {
     
     @GetMapping
     @Operation(summary = "会員一覧取得", description = "ページネーション対応の会員一覧取得")
-    public ResponseEntity<Page<Member>> getAllMembers(Pageable pageable) {
-        Page<Member> members = memberService.getAllMembers(pageable);
+    public ResponseEntity<Page<MemberSummary>> getAllMembers(Pageable pageable) {
+        Page<MemberSummary> members = memberService.getAllMembers(pageable);
+        return ResponseEntity.ok(members);
+    }
+    
+    @GetMapping(params = "after")
+    @Operation(summary = "会員一覧取得（カーソル）", description = "シーク方式のページングによる会員一覧取得。afterを空で指定すると先頭ページ")
+    public ResponseEntity<CursorPage<MemberSummary>> getMembersAfter(@RequestParam String after,
+                                                                     @RequestParam(required = false) Long storeId,
+                                                                     @RequestParam(required = false) String status,
+                                                                     @RequestParam(defaultValue = "20") int size,
+                                                                     @RequestParam(defaultValue = "false") boolean count) {
+        CursorPage<MemberSummary> members = memberService.getMembersAfter(storeId, status, after, clampSize(size), count);
+        return ResponseEntity.ok(members);
+    }
+    
+    @GetMapping("/enrollments")
+    @Operation(summary = "入会日別会員一覧取得（カーソル）", description = "入会日範囲によるシーク方式の会員一覧取得")
+    public ResponseEntity<CursorPage<MemberSummary>> getMembersByEnrollmentDate(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean count) {
+        CursorPage<MemberSummary> members = memberService.getMembersByEnrollmentDateAfter(from, to, after, clampSize(size), count);
         return ResponseEntity.ok(members);
     }
     
+    @GetMapping("/export")
+    @Operation(summary = "会員一括エクスポート", description = "全会員をNDJSONまたはCSVでストリーミング出力")
+    public ResponseEntity<StreamingResponseBody> exportMembers(@RequestParam(defaultValue = "ndjson") String format,
+                                                               @RequestParam(required = false) Long storeId) {
+        MemberExportService.Format exportFormat = MemberExportService.Format.valueOf(format.toUpperCase());
+        MediaType contentType = exportFormat == MemberExportService.Format.CSV
+            ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+            : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+        String fileName = "members." + (exportFormat == MemberExportService.Format.CSV ? "csv" : "ndjson");
+        StreamingResponseBody body = out -> memberExportService.export(exportFormat, storeId, out);
+        return ResponseEntity.ok()
+            .contentType(contentType)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+            .body(body);
+    }
+    
     @GetMapping("/store/{storeId}")
     @Operation(summary = "店舗別会員一覧取得", description = "店舗IDによる会員一覧取得")
-    public ResponseEntity<Page<Member>> getMembersByStore(@PathVariable Long storeId, Pageable pageable) {
-        Page<Member> members = memberService.getMembersByStore(storeId, pageable);
+    public ResponseEntity<Page<MemberSummary>> getMembersByStore(@PathVariable Long storeId, Pageable pageable) {
+        Page<MemberSummary> members = memberService.getMembersByStore(storeId, pageable);
         return ResponseEntity.ok(members);
     }
     
@@ -85,5 +162,65 @@ public class MemberController {
         List<MemberCard> cards = memberService.getMemberCards(memberId);
         return ResponseEntity.ok(cards);
     }
+    
+    @GetMapping("/{memberId}/cards/{cardId}/qr.png")
+    @Operation(summary = "会員証QRコード画像取得（PNG）", description = "会員証のQRコードをPNG画像で取得。scaleは1モジュールあたりのピクセル数")
+    public ResponseEntity<byte[]> getMemberCardQrPng(@PathVariable Long memberId, @PathVariable Long cardId,
+                                                     @RequestParam(defaultValue = "8") int scale,
+                                                     WebRequest request) {
+        return memberCardQr(memberId, cardId, QrCodeRenderer.Format.PNG, scale, request);
+    }
+    
+    @GetMapping("/{memberId}/cards/{cardId}/qr.svg")
+    @Operation(summary = "会員証QRコード画像取得（SVG）", description = "会員証のQRコードをSVG画像で取得。scaleは1モジュールあたりのピクセル数")
+    public ResponseEntity<byte[]> getMemberCardQrSvg(@PathVariable Long memberId, @PathVariable Long cardId,
+                                                     @RequestParam(defaultValue = "8") int scale,
+                                                     WebRequest request) {
+        return memberCardQr(memberId, cardId, QrCodeRenderer.Format.SVG, scale, request);
+    }
+    
+    @GetMapping("/cards/{cardNumber}")
+    @Operation(summary = "会員証情報取得", description = "会員証番号による会員証と会員の表示情報取得")
+    public ResponseEntity<MemberCardView> getMemberCardView(@PathVariable String cardNumber) {
+        MemberCardView card = memberService.getMemberCardView(cardNumber);
+        return ResponseEntity.ok(card);
+    }
+    
+    @PostMapping(value = "/{memberId}/face", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "顔認証データ登録", description = "顔画像から特徴量を抽出して会員に登録")
+    public ResponseEntity<Void> registerFace(@PathVariable Long memberId, @RequestParam("image") MultipartFile image) {
+        faceRecognitionService.registerFaceData(memberId, image);
+        return ResponseEntity.noContent().build();
+    }
+    
+    @PostMapping(value = "/face/recognize", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "顔認証による会員識別", description = "顔画像に一致する会員情報を取得")
+    public ResponseEntity<Member> recognizeFace(@RequestParam("image") MultipartFile image) {
+        String memberId = faceRecognitionService.recognizeFace(image);
+        if (memberId == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(memberService.getMemberById(Long.valueOf(memberId)));
+    }
+    
+    private ResponseEntity<byte[]> memberCardQr(Long memberId, Long cardId, QrCodeRenderer.Format format,
+                                                int scale, WebRequest request) {
+        String content = memberCardQrService.getQrContent(memberId, cardId);
+        int clampedScale = Math.max(1, Math.min(scale, MAX_QR_SCALE));
+        String etag = memberCardQrService.etag(content, format, clampedScale);
+        if (request.checkNotModified(etag)) {
+            // 描画せずに304を返す
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(QR_CACHE_CONTROL).build();
+        }
+        byte[] image = memberCardQrService.getQrImage(content, format, clampedScale);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(format.mediaType()))
+            .eTag(etag)
+            .cacheControl(QR_CACHE_CONTROL)
+            .body(image);
+    }
+    
+    private int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+    }
 }
-
@@ -0,0 +1,14 @@
+package com.membership.dto;
+
+import lombok.Data;
+
+/**
+ * 入館ゲートからの読み取り内容
+ * cardNumberには会員証番号、または会員証QRコードの内容（QR:会員コード:会員証番号）を指定する
+ */
+@Data
+public class CheckInRequest {
+    
+    private String cardNumber;
+    private Long storeId;
+}
@@ -0,0 +1,33 @@
+package com.membership.dto;
+
+/**
+ * 入館判定の結果
+ * 入館不可の場合はrejectionに理由が入り、会員が特定できた場合は会員ID・会員コードも返す
+ */
+public record CheckInResult(
+    boolean admitted,
+    Rejection rejection,
+    Long memberId,
+    String memberCode
+) {
+    
+    public enum Rejection {
+        INVALID_CARD_NUMBER,
+        CARD_NOT_FOUND,
+        CARD_INACTIVE,
+        CARD_EXPIRED,
+        MEMBER_INACTIVE,
+        /**
+         * 入館記録の書き込みが追いついていない（時間をおいて再試行）
+         */
+        BUSY
+    }
+    
+    public static CheckInResult admitted(Long memberId, String memberCode) {
+        return new CheckInResult(true, null, memberId, memberCode);
+    }
+    
+    public static CheckInResult rejected(Rejection rejection, Long memberId, String memberCode) {
+        return new CheckInResult(false, rejection, memberId, memberCode);
+    }
+}
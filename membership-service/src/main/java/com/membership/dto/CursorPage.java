@@ -0,0 +1,15 @@
+package com.membership.dto;
+
+import java.util.List;
+
+/**
+ * カーソル（シーク）方式のページ
+ * totalElementsは件数取得を指定した場合のみ設定される
+ */
+public record CursorPage<T>(
+    List<T> content,
+    String nextCursor,
+    boolean hasNext,
+    Long totalElements
+) {
+}
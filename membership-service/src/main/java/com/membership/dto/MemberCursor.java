@@ -0,0 +1,39 @@
+package com.membership.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * 会員一覧のシーク位置（最後に返した行のソートキー）
+ * クライアントには内容を意識させないよう、URLセーフなBase64文字列として受け渡す
+ */
+public record MemberCursor(LocalDate enrollmentDate, long id) {
+    
+    /**
+     * 先頭ページを表すカーソル
+     */
+    public static final MemberCursor FIRST = new MemberCursor(null, 0L);
+    
+    public static MemberCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(':');
+            if (separator < 0) {
+                return new MemberCursor(null, Long.parseLong(value));
+            }
+            return new MemberCursor(LocalDate.parse(value.substring(0, separator)),
+                Long.parseLong(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+    
+    public String encode() {
+        String value = enrollmentDate == null ? String.valueOf(id) : enrollmentDate + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
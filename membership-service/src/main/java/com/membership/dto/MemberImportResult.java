@@ -0,0 +1,18 @@
+package com.membership.dto;
+
+import java.util.List;
+
+/**
+ * 一括登録の結果
+ * errorsは行番号（1始まり、CSVはヘッダー行を除く）ごとのエラー内容で、件数は上限で打ち切られる
+ */
+public record MemberImportResult(
+    long total,
+    long imported,
+    long failed,
+    List<RowError> errors
+) {
+    
+    public record RowError(long line, String email, String message) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.membership.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * 一括登録の1行分の入力（NDJSONの1行、またはCSVの1レコード）
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MemberImportRow {
+    
+    private String memberCode;
+    private Long storeId;
+    private String firstName;
+    private String lastName;
+    private String firstNameKana;
+    private String lastNameKana;
+    private String email;
+    private String phone;
+    private LocalDate birthday;
+    private String gender;
+    private String address;
+    private String postalCode;
+    private String memberType;
+    private String status;
+    private LocalDate enrollmentDate;
+    private String enrollmentMethod;
+    private String profileImageUrl;
+}
@@ -15,7 +15,10 @@ import java.time.LocalDateTime;
 @Table(name = "members", indexes = {
     @Index(name = "idx_members_store_id", columnList = "store_id"),
     @Index(name = "idx_members_status", columnList = "status"),
-    @Index(name = "idx_members_enrollment_date", columnList = "enrollment_date")
+    @Index(name = "idx_members_enrollment_date", columnList = "enrollment_date"),
+    @Index(name = "idx_members_store_id_id", columnList = "store_id, id"),
+    @Index(name = "idx_members_store_id_status_id", columnList = "store_id, status, id"),
+    @Index(name = "idx_members_enrollment_date_id", columnList = "enrollment_date, id")
 })
 @Data
 @NoArgsConstructor
@@ -75,9 +78,6 @@ public class Member {
     @Column(name = "enrollment_method", nullable = false, length = 50)
     private String enrollmentMethod;
     
-    @Column(name = "face_recognition_data", columnDefinition = "TEXT")
-    private String faceRecognitionData;
-    
     @Column(name = "profile_image_url", length = 500)
     private String profileImageUrl;
     
@@ -0,0 +1,34 @@
+package com.membership.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * 会員の顔認証データ
+ * サイズが大きいため会員マスタから分離し、顔認証の処理でのみ読み込む
+ */
+@Entity
+@Table(name = "member_face_data")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class MemberFace {
+    
+    @Id
+    @Column(name = "member_id")
+    private Long memberId;
+    
+    @Column(name = "face_recognition_data", columnDefinition = "TEXT", nullable = false)
+    private String faceRecognitionData;
+    
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -1,7 +1,10 @@
 package com.membership.repository;
 
 import com.membership.entity.MemberCard;
+import com.membership.repository.projection.MemberCardView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,5 +18,13 @@ public interface MemberCardRepository extends JpaRepository<MemberCard, Long> {
     List<MemberCard> findByMemberId(Long memberId);
     
     List<MemberCard> findByMemberIdAndStatus(Long memberId, String status);
+    
+    @Query("SELECT c.qrCode FROM MemberCard c WHERE c.id = :cardId AND c.memberId = :memberId AND c.qrCode IS NOT NULL")
+    Optional<String> findQrCodeByIdAndMemberId(@Param("cardId") Long cardId, @Param("memberId") Long memberId);
+    
+    @Query("SELECT new com.membership.repository.projection.MemberCardView(" +
+           "c.id, c.cardNumber, c.cardType, c.issuedDate, c.expiryDate, c.status, c.qrCode, " +
+           "m.id, m.memberCode, m.storeId, m.firstName, m.lastName, m.memberType, m.status) " +
+           "FROM MemberCard c, Member m WHERE m.id = c.memberId AND c.cardNumber = :cardNumber")
+    Optional<MemberCardView> findCardViewByCardNumber(@Param("cardNumber") String cardNumber);
 }
-
@@ -0,0 +1,17 @@
+package com.membership.repository;
+
+import com.membership.entity.MemberFace;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MemberFaceRepository extends JpaRepository<MemberFace, Long> {
+    
+    @Query("SELECT f FROM MemberFace f WHERE f.memberId > :afterId ORDER BY f.memberId")
+    List<MemberFace> findAfter(@Param("afterId") Long afterId, Pageable pageable);
+}
@@ -1,6 +1,8 @@
 package com.membership.repository;
 
 import com.membership.entity.Member;
+import com.membership.repository.projection.MemberIpWhitelist;
+import com.membership.repository.projection.MemberSummary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -31,5 +34,36 @@ public interface MemberRepository extends JpaRepository<Member, Long> {
     Page<Member> findByEnrollmentDateBetween(@Param("startDate") LocalDate startDate,
                                               @Param("endDate") LocalDate endDate,
                                               Pageable pageable);
+    
+    Page<MemberSummary> findAllProjectedBy(Pageable pageable);
+    
+    Page<MemberSummary> findProjectedByStoreId(Long storeId, Pageable pageable);
+    
+    @Query("SELECT m.id AS id, m.ipWhitelist AS ipWhitelist FROM Member m WHERE m.id = :id")
+    Optional<MemberIpWhitelist> findIpWhitelistById(@Param("id") Long id);
+    
+    // シーク方式のページング（OFFSETとCOUNTを使わず、直前ページ最終行のキーから読み進める）
+    
+    List<MemberSummary> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+    
+    List<MemberSummary> findByStoreIdAndIdGreaterThanOrderByIdAsc(Long storeId, Long afterId, Pageable pageable);
+    
+    List<MemberSummary> findByStoreIdAndStatusAndIdGreaterThanOrderByIdAsc(Long storeId, String status,
+                                                                          Long afterId, Pageable pageable);
+    
+    @Query("SELECT " + MemberSummary.SELECT_COLUMNS + " FROM Member m " +
+           "WHERE m.enrollmentDate BETWEEN :startDate AND :endDate " +
+           "AND (m.enrollmentDate > :afterDate OR (m.enrollmentDate = :afterDate AND m.id > :afterId)) " +
+           "ORDER BY m.enrollmentDate, m.id")
+    List<MemberSummary> findByEnrollmentDateBetweenAfter(@Param("startDate") LocalDate startDate,
+                                                         @Param("endDate") LocalDate endDate,
+                                                         @Param("afterDate") LocalDate afterDate,
+                                                         @Param("afterId") Long afterId,
+                                                         Pageable pageable);
+    
+    long countByStoreId(Long storeId);
+    
+    long countByStoreIdAndStatus(Long storeId, String status);
+    
+    long countByEnrollmentDateBetween(LocalDate startDate, LocalDate endDate);
 }
-
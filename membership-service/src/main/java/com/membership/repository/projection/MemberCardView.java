@@ -0,0 +1,24 @@
+package com.membership.repository.projection;
+
+import java.time.LocalDate;
+
+/**
+ * 会員証表示用の射影（会員証と会員の表示項目のみ）
+ */
+public record MemberCardView(
+    Long cardId,
+    String cardNumber,
+    String cardType,
+    LocalDate issuedDate,
+    LocalDate expiryDate,
+    String cardStatus,
+    String qrCode,
+    Long memberId,
+    String memberCode,
+    Long storeId,
+    String firstName,
+    String lastName,
+    String memberType,
+    String memberStatus
+) {
+}
@@ -0,0 +1,11 @@
+package com.membership.repository.projection;
+
+/**
+ * IP制限チェック用の射影（会員IDとIPホワイトリストのみ）
+ */
+public interface MemberIpWhitelist {
+    
+    Long getId();
+    
+    String[] getIpWhitelist();
+}
@@ -0,0 +1,44 @@
+package com.membership.repository.projection;
+
+import java.time.LocalDate;
+
+/**
+ * 会員一覧表示用の射影
+ */
+public interface MemberSummary {
+    
+    /**
+     * JPQLで射影する場合の選択項目（エイリアスmの会員に対して使用）
+     */
+    String SELECT_COLUMNS = "m.id AS id, m.memberCode AS memberCode, m.storeId AS storeId, "
+        + "m.firstName AS firstName, m.lastName AS lastName, "
+        + "m.firstNameKana AS firstNameKana, m.lastNameKana AS lastNameKana, "
+        + "m.email AS email, m.phone AS phone, m.memberType AS memberType, m.status AS status, "
+        + "m.enrollmentDate AS enrollmentDate, m.enrollmentMethod AS enrollmentMethod";
+    
+    Long getId();
+    
+    String getMemberCode();
+    
+    Long getStoreId();
+    
+    String getFirstName();
+    
+    String getLastName();
+    
+    String getFirstNameKana();
+    
+    String getLastNameKana();
+    
+    String getEmail();
+    
+    String getPhone();
+    
+    String getMemberType();
+    
+    String getStatus();
+    
+    LocalDate getEnrollmentDate();
+    
+    String getEnrollmentMethod();
+}
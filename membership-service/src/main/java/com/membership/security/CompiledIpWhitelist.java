@@ -0,0 +1,178 @@
+package com.membership.security;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 会員ごとのIPホワイトリストを照合用に変換したもの
+ * IPv4はマージ済みのソート範囲配列（二分探索）、IPv6はプレフィックスとマスクの配列で保持する
+ * 単一アドレス、CIDR表記（192.168.0.0/24, 2001:db8::/32）、"*"（全許可）に対応する
+ */
+final class CompiledIpWhitelist {
+    
+    /**
+     * 制限なし（会員が存在しない、またはホワイトリスト未設定）
+     */
+    static final CompiledIpWhitelist UNRESTRICTED = new CompiledIpWhitelist(true, new long[0], new long[0], new long[0], new String[0]);
+    
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
+    
+    private final boolean allowAll;
+    private final long[] ipv4Starts;
+    private final long[] ipv4Ends;
+    private final long[] ipv6Rules;
+    private final String[] literals;
+    
+    private CompiledIpWhitelist(boolean allowAll, long[] ipv4Starts, long[] ipv4Ends, long[] ipv6Rules, String[] literals) {
+        this.allowAll = allowAll;
+        this.ipv4Starts = ipv4Starts;
+        this.ipv4Ends = ipv4Ends;
+        this.ipv6Rules = ipv6Rules;
+        this.literals = literals;
+    }
+    
+    static CompiledIpWhitelist compile(String[] entries) {
+        if (entries == null || entries.length == 0) {
+            return UNRESTRICTED;
+        }
+        List<long[]> ipv4Ranges = new ArrayList<>();
+        List<Long> ipv6Rules = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        long[] scratch = new long[2];
+        for (String raw : entries) {
+            if (raw == null || raw.isBlank()) {
+                continue;
+            }
+            String entry = raw.trim();
+            if ("*".equals(entry)) {
+                return UNRESTRICTED;
+            }
+            int slash = entry.indexOf('/');
+            int addressEnd = slash < 0 ? entry.length() : slash;
+            int prefix = parsePrefix(entry, slash);
+            if (IpAddresses.isIpv6(entry, 0, addressEnd)) {
+                if (prefix <= 128 && IpAddresses.parseIpv6(entry, 0, addressEnd, scratch)) {
+                    int bits = prefix < 0 ? 128 : prefix;
+                    long maskHi = bits == 0 ? 0 : bits >= 64 ? -1L : -1L << (64 - bits);
+                    long maskLo = bits <= 64 ? 0 : bits == 128 ? -1L : -1L << (128 - bits);
+                    ipv6Rules.add(scratch[0] & maskHi);
+                    ipv6Rules.add(scratch[1] & maskLo);
+                    ipv6Rules.add(maskHi);
+                    ipv6Rules.add(maskLo);
+                    continue;
+                }
+            } else {
+                long address = IpAddresses.parseIpv4(entry, 0, addressEnd);
+                if (address >= 0 && prefix <= 32) {
+                    int bits = prefix < 0 ? 32 : prefix;
+                    long size = 1L << (32 - bits);
+                    long start = address & ~(size - 1);
+                    ipv4Ranges.add(new long[]{start, start + size - 1});
+                    continue;
+                }
+            }
+            // 解析できない値は従来通り文字列の完全一致で照合する
+            literals.add(entry);
+        }
+        List<long[]> merged = merge(ipv4Ranges);
+        long[] ipv4Starts = new long[merged.size()];
+        long[] ipv4Ends = new long[merged.size()];
+        for (int i = 0; i < merged.size(); i++) {
+            ipv4Starts[i] = merged.get(i)[0];
+            ipv4Ends[i] = merged.get(i)[1];
+        }
+        return new CompiledIpWhitelist(false, ipv4Starts, ipv4Ends,
+            ipv6Rules.stream().mapToLong(Long::longValue).toArray(), literals.toArray(new String[0]));
+    }
+    
+    /**
+     * クライアントIP（文字列の指定範囲）が許可されているか判定する
+     */
+    boolean allows(String ip, int start, int end) {
+        if (allowAll) {
+            return true;
+        }
+        if (start >= end) {
+            return false;
+        }
+        if (IpAddresses.isIpv6(ip, start, end)) {
+            long[] scratch = SCRATCH.get();
+            if (IpAddresses.parseIpv6(ip, start, end, scratch)) {
+                // IPv4射影アドレス（::ffff:a.b.c.d）はIPv4の範囲でも照合する
+                if (scratch[0] == 0 && (scratch[1] >>> 32) == 0xFFFFL && containsIpv4(scratch[1] & 0xFFFFFFFFL)) {
+                    return true;
+                }
+                if (containsIpv6(scratch[0], scratch[1])) {
+                    return true;
+                }
+            }
+        } else {
+            long address = IpAddresses.parseIpv4(ip, start, end);
+            if (address >= 0 && containsIpv4(address)) {
+                return true;
+            }
+        }
+        return literals.length > 0 && matchesLiteral(ip, start, end);
+    }
+    
+    private boolean containsIpv4(long address) {
+        int low = 0;
+        int high = ipv4Starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (ipv4Ends[mid] < address) {
+                low = mid + 1;
+            } else if (ipv4Starts[mid] > address) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean containsIpv6(long hi, long lo) {
+        for (int i = 0; i < ipv6Rules.length; i += 4) {
+            if ((hi & ipv6Rules[i + 2]) == ipv6Rules[i] && (lo & ipv6Rules[i + 3]) == ipv6Rules[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean matchesLiteral(String ip, int start, int end) {
+        for (String literal : literals) {
+            if (literal.length() == end - start && ip.regionMatches(start, literal, 0, literal.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static int parsePrefix(String entry, int slash) {
+        if (slash < 0) {
+            return -1;
+        }
+        try {
+            int prefix = Integer.parseInt(entry.substring(slash + 1));
+            return prefix < 0 ? Integer.MAX_VALUE : prefix;
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+    
+    private static List<long[]> merge(List<long[]> ranges) {
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,153 @@
+package com.membership.security;
+
+/**
+ * IPアドレス文字列の解析
+ * リクエストごとに呼ばれるため、文字列の範囲を直接走査してオブジェクトを生成しない
+ */
+final class IpAddresses {
+    
+    private IpAddresses() {
+    }
+    
+    /**
+     * IPv4アドレスを符号なし32bit値として解析する（不正な形式の場合は-1）
+     */
+    static long parseIpv4(CharSequence s, int start, int end) {
+        long address = 0;
+        int octets = 0;
+        int i = start;
+        while (i < end) {
+            int value = 0;
+            int digits = 0;
+            while (i < end && s.charAt(i) != '.') {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9' || ++digits > 3) {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+                i++;
+            }
+            if (digits == 0 || value > 255 || ++octets > 4) {
+                return -1;
+            }
+            address = (address << 8) | value;
+            if (i < end) {
+                i++;
+                if (i == end) {
+                    return -1;
+                }
+            }
+        }
+        return octets == 4 ? address : -1;
+    }
+    
+    /**
+     * IPv6アドレスを128bit値として解析し、上位64bitをout[0]、下位64bitをout[1]に格納する
+     * 省略表記（::）、末尾のIPv4表記、ゾーンID（%eth0）に対応する
+     */
+    static boolean parseIpv6(CharSequence s, int start, int end, long[] out) {
+        for (int k = start; k < end; k++) {
+            if (s.charAt(k) == '%') {
+                end = k;
+                break;
+            }
+        }
+        if (end - start < 2) {
+            return false;
+        }
+        long headHi = 0, headLo = 0, tailHi = 0, tailLo = 0;
+        int headGroups = 0, tailGroups = 0;
+        boolean compressed = false;
+        int i = start;
+        if (s.charAt(i) == ':') {
+            if (s.charAt(i + 1) != ':') {
+                return false;
+            }
+            compressed = true;
+            i += 2;
+        }
+        while (i < end) {
+            int j = i;
+            boolean dotted = false;
+            while (j < end && s.charAt(j) != ':') {
+                if (s.charAt(j) == '.') {
+                    dotted = true;
+                }
+                j++;
+            }
+            long bits;
+            int groups;
+            if (dotted) {
+                bits = j == end ? parseIpv4(s, i, j) : -1;
+                if (bits < 0) {
+                    return false;
+                }
+                groups = 2;
+            } else {
+                if (j == i || j - i > 4) {
+                    return false;
+                }
+                bits = 0;
+                for (int k = i; k < j; k++) {
+                    int digit = Character.digit(s.charAt(k), 16);
+                    if (digit < 0) {
+                        return false;
+                    }
+                    bits = (bits << 4) | digit;
+                }
+                groups = 1;
+            }
+            int shift = 16 * groups;
+            if (compressed) {
+                tailHi = (tailHi << shift) | (tailLo >>> (64 - shift));
+                tailLo = (tailLo << shift) | bits;
+                tailGroups += groups;
+            } else {
+                headHi = (headHi << shift) | (headLo >>> (64 - shift));
+                headLo = (headLo << shift) | bits;
+                headGroups += groups;
+            }
+            i = j;
+            if (i < end) {
+                i++;
+                if (i == end) {
+                    return false;
+                }
+                if (s.charAt(i) == ':') {
+                    if (compressed) {
+                        return false;
+                    }
+                    compressed = true;
+                    i++;
+                }
+            }
+        }
+        int total = headGroups + tailGroups;
+        if (compressed ? total > 7 : total != 8) {
+            return false;
+        }
+        int shift = 16 * (8 - headGroups);
+        if (shift >= 128) {
+            headHi = 0;
+            headLo = 0;
+        } else if (shift >= 64) {
+            headHi = headLo << (shift - 64);
+            headLo = 0;
+        } else if (shift > 0) {
+            headHi = (headHi << shift) | (headLo >>> (64 - shift));
+            headLo = headLo << shift;
+        }
+        out[0] = headHi | tailHi;
+        out[1] = headLo | tailLo;
+        return true;
+    }
+    
+    static boolean isIpv6(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == ':') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
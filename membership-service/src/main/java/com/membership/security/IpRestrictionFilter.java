@@ -1,7 +1,5 @@
 package com.membership.security;
 
-import com.membership.entity.Member;
-import com.membership.repository.MemberRepository;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,35 +9,41 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 public class IpRestrictionFilter extends OncePerRequestFilter {
     
-    private final MemberRepository memberRepository;
+    private final IpWhitelistCache ipWhitelistCache;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                    FilterChain filterChain) throws ServletException, IOException {
         
-        String clientIp = getClientIpAddress(request);
         String memberId = request.getHeader("X-Member-Id");
         
         if (memberId != null) {
             try {
-                Long id = Long.parseLong(memberId);
-                Member member = memberRepository.findById(id).orElse(null);
+                long id = Long.parseLong(memberId);
+                String ip = getClientIpAddress(request);
                 
-                if (member != null && member.getIpWhitelist() != null && member.getIpWhitelist().length > 0) {
-                    List<String> allowedIps = Arrays.asList(member.getIpWhitelist());
-                    
-                    if (!allowedIps.contains(clientIp) && !allowedIps.contains("*")) {
-                        response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-                        response.getWriter().write("IP address not allowed");
-                        return;
-                    }
+                // Multiple IPs can be in X-Forwarded-For header
+                int end = ip == null ? 0 : ip.indexOf(',');
+                if (end < 0) {
+                    end = ip.length();
+                }
+                int start = 0;
+                while (start < end && ip.charAt(start) <= ' ') {
+                    start++;
+                }
+                while (end > start && ip.charAt(end - 1) <= ' ') {
+                    end--;
+                }
+                
+                if (!ipWhitelistCache.isAllowed(id, ip, start, end)) {
+                    response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                    response.getWriter().write("IP address not allowed");
+                    return;
                 }
             } catch (NumberFormatException e) {
                 // Invalid member ID, continue with normal flow
@@ -57,13 +61,6 @@ public class IpRestrictionFilter extends OncePerRequestFilter {
         if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
             ip = request.getRemoteAddr();
         }
-        
-        // Multiple IPs can be in X-Forwarded-For header
-        if (ip != null && ip.contains(",")) {
-            ip = ip.split(",")[0].trim();
-        }
-        
         return ip;
     }
 }
-
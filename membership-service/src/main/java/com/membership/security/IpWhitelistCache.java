@@ -0,0 +1,75 @@
+package com.membership.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.membership.repository.MemberRepository;
+import com.membership.repository.projection.MemberIpWhitelist;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * 会員ごとのIPホワイトリストキャッシュ
+ * 初回参照時にホワイトリスト列のみを読み込んで照合用に変換し、以降はDBを参照しない
+ * 会員情報の更新・削除時にMemberServiceからコミット後に無効化される
+ * 上限件数を超えた場合は参照頻度の低い会員から追い出し、更新の取りこぼしに備えて一定時間で読み直す
+ */
+@Component
+public class IpWhitelistCache {
+    
+    private final MemberRepository memberRepository;
+    private final Cache<Long, CompiledIpWhitelist> whitelists;
+    
+    public IpWhitelistCache(MemberRepository memberRepository,
+                            @Value("${membership.ip-whitelist.cache-max-entries:100000}") int maxEntries,
+                            @Value("${membership.ip-whitelist.cache-ttl-seconds:600}") long ttlSeconds) {
+        this.memberRepository = memberRepository;
+        this.whitelists = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .build();
+    }
+    
+    /**
+     * 会員のホワイトリストに対してクライアントIP（文字列の指定範囲）が許可されているか判定する
+     */
+    public boolean isAllowed(long memberId, String ip, int start, int end) {
+        CompiledIpWhitelist whitelist = whitelists.getIfPresent(memberId);
+        if (whitelist == null) {
+            whitelist = whitelists.get(memberId, this::load);
+        }
+        return whitelist.allows(ip, start, end);
+    }
+    
+    /**
+     * 会員のホワイトリストを無効化する
+     * トランザクション内で呼ばれた場合はコミット後に無効化し、コミット前の読み込みで古い内容が残らないようにする
+     * （読み込み中の無効化は読み込みの完了を待ってから行われる）
+     */
+    public void invalidate(Long memberId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            whitelists.invalidate(memberId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                whitelists.invalidate(memberId);
+            }
+        });
+    }
+    
+    public void invalidateAll() {
+        whitelists.invalidateAll();
+    }
+    
+    private CompiledIpWhitelist load(long memberId) {
+        return memberRepository.findIpWhitelistById(memberId)
+            .map(MemberIpWhitelist::getIpWhitelist)
+            .map(CompiledIpWhitelist::compile)
+            .orElse(CompiledIpWhitelist.UNRESTRICTED);
+    }
+}
@@ -25,7 +25,8 @@ public class SecurityConfig {
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
-                .requestMatchers("/actuator/**").permitAll()
+                // インスタンス間のキャッシュ破棄通知（通知トークン、未設定時は送信元のネットワークをMemberCacheInvalidatorで検証する）
+                .requestMatchers("/internal/cache/**").permitAll()
                 .anyRequest().authenticated()
             );
         
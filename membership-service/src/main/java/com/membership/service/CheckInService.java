@@ -0,0 +1,92 @@
+package com.membership.service;
+
+import com.membership.dto.CheckInRequest;
+import com.membership.dto.CheckInResult;
+import com.membership.dto.CheckInResult.Rejection;
+import com.membership.service.checkin.MemberCardIndex;
+import com.membership.service.checkin.VisitRecord;
+import com.membership.service.checkin.VisitRecordWriter;
+import com.membership.service.id.MembershipCodes;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 会員証による入館
+ * 会員証の判定はメモリ上のインデックスで行い、入館記録は非同期に書き込むため、ゲートはDBの応答を待たない
+ */
+@Service
+@RequiredArgsConstructor
+public class CheckInService {
+    
+    static final String QR_CODE_PREFIX = "QR:";
+    private static final String STATUS_ACTIVE = "ACTIVE";
+    
+    private final MemberCardIndex memberCardIndex;
+    private final VisitRecordWriter visitRecordWriter;
+    
+    public CheckInResult checkIn(CheckInRequest request, String ipAddress) {
+        String scanned = request.getCardNumber();
+        if (scanned == null || scanned.isBlank()) {
+            return CheckInResult.rejected(Rejection.INVALID_CARD_NUMBER, null, null);
+        }
+        String cardNumber = scanned.trim();
+        String entryMethod = "CARD";
+        String qrMemberCode = null;
+        if (cardNumber.startsWith(QR_CODE_PREFIX)) {
+            // QRコードの内容は「QR:会員コード:会員証番号」
+            int separator = cardNumber.lastIndexOf(':');
+            qrMemberCode = cardNumber.substring(QR_CODE_PREFIX.length(), Math.max(separator, QR_CODE_PREFIX.length()));
+            cardNumber = cardNumber.substring(separator + 1);
+            entryMethod = "QR";
+        }
+        if (hasInvalidCheckDigit(cardNumber)) {
+            // 読み取り誤りはインデックスにもDBにも問い合わせずに弾く
+            return CheckInResult.rejected(Rejection.INVALID_CARD_NUMBER, null, null);
+        }
+        
+        MemberCardIndex.CardHolder holder = memberCardIndex.find(cardNumber);
+        if (holder == null || (qrMemberCode != null && !qrMemberCode.equals(holder.member().memberCode()))) {
+            return CheckInResult.rejected(Rejection.CARD_NOT_FOUND, null, null);
+        }
+        MemberCardIndex.CardEntry card = holder.card();
+        MemberCardIndex.MemberEntry member = holder.member();
+        Rejection rejection = null;
+        if (!STATUS_ACTIVE.equals(card.status())) {
+            rejection = Rejection.CARD_INACTIVE;
+        } else if (card.expiryDate() != null && card.expiryDate().isBefore(LocalDate.now())) {
+            rejection = Rejection.CARD_EXPIRED;
+        } else if (!STATUS_ACTIVE.equals(member.status())) {
+            rejection = Rejection.MEMBER_INACTIVE;
+        }
+        if (rejection != null) {
+            return CheckInResult.rejected(rejection, member.memberId(), member.memberCode());
+        }
+        
+        Long storeId = request.getStoreId() != null ? request.getStoreId() : member.storeId();
+        VisitRecord visit = new VisitRecord(member.memberId(), storeId, LocalDateTime.now(), entryMethod, false, ipAddress);
+        if (!visitRecordWriter.enqueue(visit)) {
+            return CheckInResult.rejected(Rejection.BUSY, member.memberId(), member.memberCode());
+        }
+        return CheckInResult.admitted(member.memberId(), member.memberCode());
+    }
+    
+    /**
+     * 発行形式（数字20桁）の会員証番号でチェックディジットが一致しないものを判定する
+     * 旧形式の会員証番号は対象外
+     */
+    private static boolean hasInvalidCheckDigit(String cardNumber) {
+        if (cardNumber.length() != MembershipCodes.CARD_NUMBER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < cardNumber.length(); i++) {
+            char c = cardNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return !MembershipCodes.isValidCardNumber(cardNumber);
+    }
+}
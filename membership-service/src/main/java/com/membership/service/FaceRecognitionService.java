@@ -1,35 +1,110 @@
 package com.membership.service;
 
+import com.membership.entity.MemberFace;
+import com.membership.repository.MemberFaceRepository;
+import com.membership.repository.MemberRepository;
+import com.membership.service.face.FaceEmbeddingExtractor;
+import com.membership.service.face.FaceEmbeddingIndex;
+import com.membership.service.face.FaceVectors;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.Base64;
+import java.util.List;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class FaceRecognitionService {
     
+    private static final int LOAD_BATCH_SIZE = 1000;
+    
+    private final MemberRepository memberRepository;
+    private final MemberFaceRepository memberFaceRepository;
+    private final FaceEmbeddingExtractor faceEmbeddingExtractor;
+    private final FaceEmbeddingIndex faceEmbeddingIndex;
+    
+    @Value("${membership.face.match-threshold:0.92}")
+    private float matchThreshold;
+    
+    /**
+     * 起動時に登録済みの顔認証データをインデックスへ読み込む
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        long lastId = 0L;
+        List<MemberFace> batch;
+        do {
+            batch = memberFaceRepository.findAfter(lastId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (MemberFace face : batch) {
+                float[] vector = toEmbedding(face.getFaceRecognitionData());
+                if (vector != null) {
+                    faceEmbeddingIndex.put(face.getMemberId(), vector);
+                }
+                lastId = face.getMemberId();
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+        log.info("Loaded {} face embeddings into index", faceEmbeddingIndex.size());
+        maintainIndex();
+    }
+    
+    /**
+     * 登録件数の増加に合わせてインデックスの区画を作り直す（分割中も照合は全件スキャンで続けられる）
+     */
+    @Scheduled(fixedDelayString = "${membership.face.partition.check-interval-ms:600000}",
+               initialDelayString = "${membership.face.partition.check-interval-ms:600000}")
+    public void maintainIndex() {
+        boolean partitioned = faceEmbeddingIndex.isPartitioned();
+        faceEmbeddingIndex.maintainPartitions();
+        if (faceEmbeddingIndex.isPartitioned() && !partitioned) {
+            log.info("Partitioned face index of {} embeddings", faceEmbeddingIndex.size());
+        }
+    }
+    
     /**
      * 顔認証データの登録
-     * 実際の実装では、顔認識ライブラリ（例: OpenCV、Face++など）を使用
+     * 画像から特徴量を抽出し、固定長ベクトルをBase64エンコードした文字列を返す
      */
     public String registerFaceData(MultipartFile imageFile) {
-        try {
-            // 画像をBase64エンコードして保存
-            // 実際の実装では、顔認識特徴量を抽出して保存
-            byte[] imageBytes = imageFile.getBytes();
-            String encodedImage = Base64.getEncoder().encodeToString(imageBytes);
-            
-            // TODO: 実際の顔認識エンジンとの統合
-            // 例: Face recognition feature extraction
-            
-            return encodedImage;
-        } catch (IOException e) {
-            log.error("Error processing face image", e);
-            throw new RuntimeException("Failed to process face image", e);
+        return FaceVectors.encode(extract(imageFile));
+    }
+    
+    /**
+     * 会員への顔認証データの登録
+     * 特徴量を顔認証データとして保存し、コミット後にインデックスへ反映する
+     */
+    @Transactional
+    public MemberFace registerFaceData(Long memberId, MultipartFile imageFile) {
+        if (!memberRepository.existsById(memberId)) {
+            throw new RuntimeException("Member not found with id: " + memberId);
         }
+        float[] vector = extract(imageFile);
+        MemberFace face = memberFaceRepository.findById(memberId).orElseGet(MemberFace::new);
+        face.setMemberId(memberId);
+        face.setFaceRecognitionData(FaceVectors.encode(vector));
+        MemberFace saved = memberFaceRepository.save(face);
+        afterCommit(() -> faceEmbeddingIndex.put(memberId, vector));
+        return saved;
+    }
+    
+    /**
+     * 顔認証データの削除（インデックスからはコミット後に取り除く）
+     */
+    @Transactional
+    public void removeFaceData(Long memberId) {
+        memberFaceRepository.deleteById(memberId);
+        afterCommit(() -> faceEmbeddingIndex.remove(memberId));
     }
     
     /**
@@ -37,12 +112,8 @@ public class FaceRecognitionService {
      */
     public String recognizeFace(MultipartFile imageFile) {
         try {
-            // 実際の実装では、アップロードされた画像から顔特徴を抽出し、
-            // 登録済みの会員データベースと照合
-            
-            // TODO: 実際の顔認識エンジンとの統合
-            
-            return null; // 一致する会員IDを返す、見つからない場合はnull
+            FaceEmbeddingIndex.FaceMatch match = faceEmbeddingIndex.findNearest(extract(imageFile), matchThreshold);
+            return match != null ? String.valueOf(match.memberId()) : null; // 一致する会員IDを返す、見つからない場合はnull
         } catch (Exception e) {
             log.error("Error recognizing face", e);
             return null;
@@ -53,10 +124,53 @@ public class FaceRecognitionService {
      * 顔認証データの検証
      */
     public boolean verifyFace(String storedFaceData, MultipartFile imageFile) {
-        // 保存済みの顔認証データと新しくアップロードされた画像を比較
-        // TODO: 実際の顔認識エンジンとの統合
-        
-        return false;
+        // 保存済みの顔認証データと新しくアップロードされた画像の特徴量を比較
+        float[] stored = toEmbedding(storedFaceData);
+        if (stored == null) {
+            return false;
+        }
+        return FaceVectors.dot(stored, extract(imageFile)) >= matchThreshold;
+    }
+    
+    private float[] extract(MultipartFile imageFile) {
+        try {
+            return faceEmbeddingExtractor.extract(imageFile.getBytes());
+        } catch (IOException e) {
+            log.error("Error processing face image", e);
+            throw new RuntimeException("Failed to process face image", e);
+        }
+    }
+    
+    /**
+     * 保存済みデータを特徴量に変換する
+     * 旧形式（画像そのもののBase64）の場合はその場で特徴量を抽出する
+     */
+    private float[] toEmbedding(String storedFaceData) {
+        float[] vector = FaceVectors.decode(storedFaceData, faceEmbeddingExtractor.dimension());
+        if (vector != null || storedFaceData == null || storedFaceData.isEmpty()) {
+            return vector;
+        }
+        try {
+            return faceEmbeddingExtractor.extract(Base64.getDecoder().decode(storedFaceData));
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping undecodable face recognition data");
+            return null;
+        }
+    }
+    
+    /**
+     * トランザクション内で呼ばれた場合はコミット後に反映し、ロールバックされた登録・削除を照合に使わない
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
-
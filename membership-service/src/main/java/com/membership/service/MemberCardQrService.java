@@ -0,0 +1,49 @@
+package com.membership.service;
+
+import com.membership.repository.MemberCardRepository;
+import com.membership.service.qr.QrCodeRenderer;
+import com.membership.service.qr.QrImageCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 会員証QRコード画像の提供
+ * 同じ内容・形式・倍率の画像は一度だけ描画し、以降はキャッシュから返す
+ */
+@Service
+@RequiredArgsConstructor
+public class MemberCardQrService {
+    
+    private final MemberCardRepository memberCardRepository;
+    private final QrCodeRenderer qrCodeRenderer;
+    private final QrImageCache qrImageCache;
+    
+    @Transactional(readOnly = true)
+    public String getQrContent(Long memberId, Long cardId) {
+        return memberCardRepository.findQrCodeByIdAndMemberId(cardId, memberId)
+            .orElseThrow(() -> new RuntimeException("Member card not found with id: " + cardId));
+    }
+    
+    /**
+     * 画像のETag
+     * 内容から算出するため、画像を描画せずに条件付きリクエストを判定できる
+     */
+    public String etag(String content, QrCodeRenderer.Format format, int scale) {
+        String source = format.name() + ":" + scale + ":" + content;
+        return "\"" + DigestUtils.md5DigestAsHex(source.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+    
+    public byte[] getQrImage(String content, QrCodeRenderer.Format format, int scale) {
+        QrImageCache.Key key = new QrImageCache.Key(content, format, scale);
+        byte[] image = qrImageCache.get(key);
+        if (image == null) {
+            image = qrCodeRenderer.render(content, format, scale);
+            qrImageCache.put(key, image);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,190 @@
+package com.membership.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * 会員データの一括エクスポート
+ * サーバーサイドカーソル（フェッチサイズ指定）で1行ずつ読み出してそのまま出力へ書き込むため、
+ * 件数に関わらずヒープ使用量は一定になる。顔認証データは別テーブルのため含まれない
+ */
+@Service
+@Slf4j
+public class MemberExportService {
+    
+    private static final String EXPORT_COLUMNS = "id, member_code, store_id, first_name, last_name, " +
+        "first_name_kana, last_name_kana, email, phone, birthday, gender, address, postal_code, " +
+        "member_type, status, enrollment_date, enrollment_method, profile_image_url, created_at, updated_at";
+    
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    
+    public MemberExportService(DataSource dataSource,
+                               PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper,
+                               @Value("${membership.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // PostgreSQLはトランザクション内（autocommit無効）でのみフェッチサイズ単位のカーソル読み出しになる
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+    
+    public enum Format {
+        NDJSON, CSV
+    }
+    
+    /**
+     * 会員データを指定形式で出力ストリームへ書き込む
+     */
+    public void export(Format format, Long storeId, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+        String sql = "SELECT " + EXPORT_COLUMNS + " FROM members" +
+            (storeId != null ? " WHERE store_id = ?" : "") + " ORDER BY id";
+        Object[] args = storeId != null ? new Object[]{storeId} : new Object[0];
+        
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                    try {
+                        rowWriter.write(rs);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, args));
+        } catch (UncheckedIOException e) {
+            // クライアント切断などで書き込めなくなった場合はカーソルを閉じて終了する
+            log.warn("Member export aborted: {}", e.getCause().getMessage());
+            throw e.getCause();
+        }
+        rowWriter.finish();
+        writer.flush();
+    }
+    
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+        
+        default void finish() throws IOException {
+        }
+    }
+    
+    private class NdjsonRowWriter implements RowWriter {
+        
+        private final JsonGenerator generator;
+        
+        NdjsonRowWriter(Writer writer) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // 行区切りは改行のみとする（既定のルート値区切りの空白を出力しない）
+            this.generator.setRootValueSeparator(null);
+        }
+        
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            ResultSetMetaData meta = rs.getMetaData();
+            generator.writeStartObject();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                generator.writeFieldName(meta.getColumnLabel(i));
+                switch (meta.getColumnType(i)) {
+                    case Types.BIGINT -> {
+                        long value = rs.getLong(i);
+                        if (rs.wasNull()) {
+                            generator.writeNull();
+                        } else {
+                            generator.writeNumber(value);
+                        }
+                    }
+                    default -> {
+                        String value = rs.getString(i);
+                        if (value == null) {
+                            generator.writeNull();
+                        } else {
+                            generator.writeString(value);
+                        }
+                    }
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+    
+    private static class CsvRowWriter implements RowWriter {
+        
+        private final Writer writer;
+        
+        CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            // Excelで文字化けしないようBOMを付与する
+            writer.write('\uFEFF');
+            writer.write(EXPORT_COLUMNS.replace(" ", ""));
+            writer.write("\r\n");
+        }
+        
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if (i > 1) {
+                    writer.write(',');
+                }
+                String value = rs.getString(i);
+                if (value != null) {
+                    writeEscaped(value);
+                }
+            }
+            writer.write("\r\n");
+        }
+        
+        private void writeEscaped(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    writer.write('"');
+                }
+                writer.write(c);
+            }
+            writer.write('"');
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.membership.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.membership.dto.MemberImportResult;
+import com.membership.dto.MemberImportRow;
+import com.membership.security.IpWhitelistCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 会員の一括登録
+ * 入力をストリームのまま読み進め、チャンク単位で検証・ID採番・JDBCバッチ登録を行う
+ * IDはmembersのシーケンスからチャンク分をまとめて取得するため、IDENTITY採番によるバッチ無効化の影響を受けない
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MemberImportService {
+    
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    
+    private static final String INSERT_SQL = "INSERT INTO members (id, member_code, store_id, first_name, last_name, " +
+        "first_name_kana, last_name_kana, email, phone, birthday, gender, address, postal_code, member_type, status, " +
+        "enrollment_date, enrollment_method, profile_image_url, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MemberService memberService;
+    private final IpWhitelistCache ipWhitelistCache;
+    
+    @Value("${membership.import.chunk-size:1000}")
+    private int chunkSize;
+    
+    /**
+     * NDJSONまたはCSVの入力ストリームから会員を一括登録する
+     */
+    public MemberImportResult importMembers(MemberExportService.Format format, InputStream inputStream) throws IOException {
+        ImportContext context = new ImportContext();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        List<PendingRow> chunk = new ArrayList<>(chunkSize);
+        if (format == MemberExportService.Format.CSV) {
+            readCsv(reader, context, chunk);
+        } else {
+            readNdjson(reader, context, chunk);
+        }
+        if (!chunk.isEmpty()) {
+            flushChunk(chunk, context);
+        }
+        return new MemberImportResult(context.total, context.imported, context.failed, context.errors);
+    }
+    
+    private void readNdjson(BufferedReader reader, ImportContext context, List<PendingRow> chunk) throws IOException {
+        ObjectReader rowReader = objectMapper.readerFor(MemberImportRow.class);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            context.total++;
+            try {
+                addRow(chunk, new PendingRow(lineNumber, rowReader.readValue(line)), context);
+            } catch (JsonProcessingException e) {
+                context.reject(lineNumber, null, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+    
+    private void readCsv(BufferedReader reader, ImportContext context, List<PendingRow> chunk) throws IOException {
+        List<String> header = readCsvRecord(reader);
+        if (header == null) {
+            return;
+        }
+        if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+            header.set(0, header.get(0).substring(1));
+        }
+        List<String> fields = header.stream().map(MemberImportService::toFieldName).toList();
+        List<String> values;
+        long lineNumber = 0;
+        while ((values = readCsvRecord(reader)) != null) {
+            lineNumber++;
+            if (values.size() == 1 && values.get(0).isEmpty()) {
+                continue;
+            }
+            context.total++;
+            Map<String, String> record = new HashMap<>();
+            for (int i = 0; i < fields.size() && i < values.size(); i++) {
+                if (!values.get(i).isEmpty()) {
+                    record.put(fields.get(i), values.get(i));
+                }
+            }
+            try {
+                addRow(chunk, new PendingRow(lineNumber, objectMapper.convertValue(record, MemberImportRow.class)), context);
+            } catch (IllegalArgumentException e) {
+                context.reject(lineNumber, record.get("email"), "Invalid value: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void addRow(List<PendingRow> chunk, PendingRow row, ImportContext context) {
+        chunk.add(row);
+        if (chunk.size() >= chunkSize) {
+            flushChunk(chunk, context);
+            chunk.clear();
+        }
+    }
+    
+    /**
+     * チャンク単位の検証と登録
+     */
+    private void flushChunk(List<PendingRow> chunk, ImportContext context) {
+        List<PendingRow> valid = new ArrayList<>(chunk.size());
+        Set<String> emails = new HashSet<>();
+        Set<String> codes = new HashSet<>();
+        for (PendingRow pending : chunk) {
+            String error = validate(pending.row);
+            if (error == null && !emails.add(pending.row.getEmail())) {
+                error = "Duplicate email in import: " + pending.row.getEmail();
+            }
+            if (error == null && pending.row.getMemberCode() != null && !codes.add(pending.row.getMemberCode())) {
+                error = "Duplicate member code in import: " + pending.row.getMemberCode();
+            }
+            if (error != null) {
+                context.reject(pending.line, pending.row.getEmail(), error);
+            } else {
+                valid.add(pending);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+        
+        Set<String> existingEmails = findExisting("email", emails);
+        Set<String> existingCodes = findExisting("member_code", codes);
+        List<PendingRow> insertable = new ArrayList<>(valid.size());
+        for (PendingRow pending : valid) {
+            if (existingEmails.contains(pending.row.getEmail())) {
+                context.reject(pending.line, pending.row.getEmail(), "Email already registered");
+            } else if (pending.row.getMemberCode() != null && existingCodes.contains(pending.row.getMemberCode())) {
+                context.reject(pending.line, pending.row.getEmail(), "Member code already registered: " + pending.row.getMemberCode());
+            } else {
+                insertable.add(pending);
+            }
+        }
+        if (insertable.isEmpty()) {
+            return;
+        }
+        
+        List<Long> ids = jdbcTemplate.queryForList(
+            "SELECT nextval(pg_get_serial_sequence('members', 'id')) FROM generate_series(1, ?)",
+            Long.class, insertable.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < insertable.size(); i++) {
+            PendingRow pending = insertable.get(i);
+            pending.id = ids.get(i);
+            if (pending.row.getMemberCode() == null || pending.row.getMemberCode().isEmpty()) {
+                pending.row.setMemberCode(memberService.generateMemberCode());
+            }
+            if (pending.row.getEnrollmentDate() == null) {
+                pending.row.setEnrollmentDate(LocalDate.now());
+            }
+            if (pending.row.getStatus() == null || pending.row.getStatus().isEmpty()) {
+                pending.row.setStatus("ACTIVE");
+            }
+        }
+        
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, insertable, insertable.size(), (ps, pending) -> bind(ps, pending, now)));
+            context.imported += insertable.size();
+        } catch (DataAccessException e) {
+            // 同時登録などでバッチが失敗した場合は1行ずつ登録してエラー行を特定する
+            log.warn("Batch insert failed, retrying chunk row by row: {}", e.getMostSpecificCause().getMessage());
+            for (PendingRow pending : insertable) {
+                try {
+                    transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, pending, now)));
+                    context.imported++;
+                } catch (DataAccessException rowError) {
+                    context.reject(pending.line, pending.row.getEmail(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        for (PendingRow pending : insertable) {
+            ipWhitelistCache.invalidate(pending.id);
+        }
+    }
+    
+    private Set<String> findExisting(String column, Set<String> values) {
+        if (values.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(namedParameterJdbcTemplate.queryForList(
+            "SELECT " + column + " FROM members WHERE " + column + " IN (:values)",
+            Map.of("values", values), String.class));
+    }
+    
+    private void bind(PreparedStatement ps, PendingRow pending, LocalDateTime now) throws SQLException {
+        MemberImportRow row = pending.row;
+        ps.setLong(1, pending.id);
+        ps.setString(2, row.getMemberCode());
+        if (row.getStoreId() != null) {
+            ps.setLong(3, row.getStoreId());
+        } else {
+            ps.setNull(3, Types.BIGINT);
+        }
+        ps.setString(4, row.getFirstName());
+        ps.setString(5, row.getLastName());
+        ps.setString(6, row.getFirstNameKana());
+        ps.setString(7, row.getLastNameKana());
+        ps.setString(8, row.getEmail());
+        ps.setString(9, row.getPhone());
+        ps.setDate(10, row.getBirthday() != null ? Date.valueOf(row.getBirthday()) : null);
+        ps.setString(11, row.getGender());
+        ps.setString(12, row.getAddress());
+        ps.setString(13, row.getPostalCode());
+        ps.setString(14, row.getMemberType());
+        ps.setString(15, row.getStatus());
+        ps.setDate(16, Date.valueOf(row.getEnrollmentDate()));
+        ps.setString(17, row.getEnrollmentMethod());
+        ps.setString(18, row.getProfileImageUrl());
+        ps.setTimestamp(19, Timestamp.valueOf(now));
+        ps.setTimestamp(20, Timestamp.valueOf(now));
+    }
+    
+    /**
+     * 列定義（members）に合わせた入力チェック
+     */
+    private String validate(MemberImportRow row) {
+        if (isBlank(row.getFirstName()) || isBlank(row.getLastName())) {
+            return "firstName and lastName are required";
+        }
+        if (isBlank(row.getEmail()) || row.getEmail().indexOf('@') <= 0) {
+            return "Valid email is required";
+        }
+        if (isBlank(row.getMemberType())) {
+            return "memberType is required";
+        }
+        if (isBlank(row.getEnrollmentMethod())) {
+            return "enrollmentMethod is required";
+        }
+        if (tooLong(row.getMemberCode(), 50) || tooLong(row.getFirstName(), 100) || tooLong(row.getLastName(), 100)
+            || tooLong(row.getFirstNameKana(), 100) || tooLong(row.getLastNameKana(), 100)
+            || tooLong(row.getEmail(), 255) || tooLong(row.getPhone(), 20) || tooLong(row.getGender(), 10)
+            || tooLong(row.getAddress(), 500) || tooLong(row.getPostalCode(), 10) || tooLong(row.getMemberType(), 50)
+            || tooLong(row.getStatus(), 50) || tooLong(row.getEnrollmentMethod(), 50)
+            || tooLong(row.getProfileImageUrl(), 500)) {
+            return "Value exceeds column length";
+        }
+        return null;
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+    
+    private static boolean tooLong(String value, int max) {
+        return value != null && value.length() > max;
+    }
+    
+    /**
+     * CSVヘッダーをフィールド名に変換する（エクスポート形式のsnake_caseにも対応）
+     */
+    private static String toFieldName(String header) {
+        String name = header.trim();
+        StringBuilder builder = new StringBuilder(name.length());
+        boolean upper = false;
+        for (char c : name.toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                builder.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * CSVの1レコードを読み込む（ダブルクォート内の改行・カンマに対応、終端の場合はnull）
+     */
+    private static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            value.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        value.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else {
+                    value.append(c);
+                }
+            }
+            if (!quoted) {
+                break;
+            }
+            line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            value.append('\n');
+        }
+        values.add(value.toString());
+        return values;
+    }
+    
+    private static class PendingRow {
+        private final long line;
+        private final MemberImportRow row;
+        private long id;
+        
+        PendingRow(long line, MemberImportRow row) {
+            this.line = line;
+            this.row = row;
+        }
+    }
+    
+    private static class ImportContext {
+        private long total;
+        private long imported;
+        private long failed;
+        private final List<MemberImportResult.RowError> errors = new ArrayList<>();
+        
+        void reject(long line, String email, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new MemberImportResult.RowError(line, email, message));
+            }
+        }
+    }
+}
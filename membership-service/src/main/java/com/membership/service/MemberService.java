@@ -1,17 +1,30 @@
 package com.membership.service;
 
+import com.membership.dto.CursorPage;
+import com.membership.dto.MemberCursor;
 import com.membership.entity.Member;
 import com.membership.entity.MemberCard;
 import com.membership.repository.MemberCardRepository;
 import com.membership.repository.MemberRepository;
+import com.membership.repository.projection.MemberCardView;
+import com.membership.repository.projection.MemberSummary;
+import com.membership.security.IpWhitelistCache;
+import com.membership.service.cache.MemberCache;
+import com.membership.service.cache.MemberCacheInvalidator;
+import com.membership.service.checkin.MemberCardIndex;
+import com.membership.service.id.MembershipCodes;
+import com.membership.service.id.SnowflakeIdGenerator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.util.UUID;
+import java.util.List;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -20,6 +33,12 @@ public class MemberService {
     
     private final MemberRepository memberRepository;
     private final MemberCardRepository memberCardRepository;
+    private final FaceRecognitionService faceRecognitionService;
+    private final IpWhitelistCache ipWhitelistCache;
+    private final SnowflakeIdGenerator idGenerator;
+    private final MemberCardIndex memberCardIndex;
+    private final MemberCache memberCache;
+    private final MemberCacheInvalidator memberCacheInvalidator;
     
     public Member createMember(Member member) {
         if (member.getMemberCode() == null || member.getMemberCode().isEmpty()) {
@@ -28,75 +47,172 @@ public class MemberService {
         if (member.getEnrollmentDate() == null) {
             member.setEnrollmentDate(LocalDate.now());
         }
-        return memberRepository.save(member);
+        Member saved = memberRepository.save(member);
+        ipWhitelistCache.invalidate(saved.getId());
+        memberCardIndex.putMember(toIndexEntry(saved));
+        return saved;
     }
     
-    @Transactional(readOnly = true)
+    /**
+     * 会員キャッシュから返す。キャッシュにヒットした場合はDB接続を使わないよう、トランザクションを開始しない
+     * 返す会員は読み取り専用のスナップショットで、変更しても保存されない
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Member getMemberById(Long id) {
-        return memberRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("Member not found with id: " + id));
+        Member member = memberCache.getMember(id, () -> memberRepository.findById(id).orElse(null));
+        if (member == null) {
+            throw new RuntimeException("Member not found with id: " + id);
+        }
+        return member;
     }
     
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Member getMemberByCode(String memberCode) {
-        return memberRepository.findByMemberCode(memberCode)
-            .orElseThrow(() -> new RuntimeException("Member not found with code: " + memberCode));
+        Long id = memberCache.getMemberId(memberCode,
+            () -> memberRepository.findByMemberCode(memberCode).map(Member::getId).orElse(null));
+        Member member = id != null ? memberCache.getMember(id, () -> memberRepository.findById(id).orElse(null)) : null;
+        if (member == null || !memberCode.equals(member.getMemberCode())) {
+            throw new RuntimeException("Member not found with code: " + memberCode);
+        }
+        return member;
     }
     
     @Transactional(readOnly = true)
-    public Page<Member> getAllMembers(Pageable pageable) {
-        return memberRepository.findAll(pageable);
+    public Page<MemberSummary> getAllMembers(Pageable pageable) {
+        return memberRepository.findAllProjectedBy(pageable);
+    }
+    
+    @Transactional(readOnly = true)
+    public Page<MemberSummary> getMembersByStore(Long storeId, Pageable pageable) {
+        return memberRepository.findProjectedByStoreId(storeId, pageable);
+    }
+    
+    /**
+     * シーク方式の会員一覧取得
+     * 店舗指定時は(store_id, id)、未指定時は主キーの順に読み進める
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<MemberSummary> getMembersAfter(Long storeId, String status, String cursor, int size, boolean withCount) {
+        MemberCursor after = MemberCursor.decode(cursor);
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<MemberSummary> rows;
+        Long total = null;
+        if (storeId == null) {
+            rows = memberRepository.findByIdGreaterThanOrderByIdAsc(after.id(), limit);
+            if (withCount) {
+                total = memberRepository.count();
+            }
+        } else if (status == null) {
+            rows = memberRepository.findByStoreIdAndIdGreaterThanOrderByIdAsc(storeId, after.id(), limit);
+            if (withCount) {
+                total = memberRepository.countByStoreId(storeId);
+            }
+        } else {
+            rows = memberRepository.findByStoreIdAndStatusAndIdGreaterThanOrderByIdAsc(storeId, status, after.id(), limit);
+            if (withCount) {
+                total = memberRepository.countByStoreIdAndStatus(storeId, status);
+            }
+        }
+        return toCursorPage(rows, size, total, last -> new MemberCursor(null, last.getId()));
     }
     
+    /**
+     * 入会日範囲のシーク方式の会員一覧取得（(enrollment_date, id)の順）
+     */
     @Transactional(readOnly = true)
-    public Page<Member> getMembersByStore(Long storeId, Pageable pageable) {
-        return memberRepository.findByStoreId(storeId, pageable);
+    public CursorPage<MemberSummary> getMembersByEnrollmentDateAfter(LocalDate startDate, LocalDate endDate,
+                                                                    String cursor, int size, boolean withCount) {
+        MemberCursor after = MemberCursor.decode(cursor);
+        LocalDate afterDate = after.enrollmentDate() != null ? after.enrollmentDate() : startDate;
+        List<MemberSummary> rows = memberRepository.findByEnrollmentDateBetweenAfter(
+            startDate, endDate, afterDate, after.id(), PageRequest.of(0, size + 1));
+        Long total = withCount ? memberRepository.countByEnrollmentDateBetween(startDate, endDate) : null;
+        return toCursorPage(rows, size, total, last -> new MemberCursor(last.getEnrollmentDate(), last.getId()));
     }
     
     public Member updateMember(Long id, Member updatedMember) {
-        Member member = getMemberById(id);
+        Member member = findMember(id);
         member.setFirstName(updatedMember.getFirstName());
         member.setLastName(updatedMember.getLastName());
         member.setEmail(updatedMember.getEmail());
         member.setPhone(updatedMember.getPhone());
         member.setAddress(updatedMember.getAddress());
         member.setStatus(updatedMember.getStatus());
-        return memberRepository.save(member);
+        Member saved = memberRepository.save(member);
+        ipWhitelistCache.invalidate(id);
+        memberCardIndex.putMember(toIndexEntry(saved));
+        memberCacheInvalidator.memberChanged(id);
+        return saved;
     }
     
     public void deleteMember(Long id) {
+        faceRecognitionService.removeFaceData(id);
         memberRepository.deleteById(id);
+        ipWhitelistCache.invalidate(id);
+        memberCardIndex.removeMember(id);
+        memberCacheInvalidator.memberChanged(id);
     }
     
     public MemberCard issueMemberCard(Long memberId, String cardType) {
-        Member member = getMemberById(memberId);
+        Member member = findMember(memberId);
         
         MemberCard card = new MemberCard();
         card.setMemberId(memberId);
         card.setCardNumber(generateCardNumber());
         card.setCardType(cardType);
         card.setIssuedDate(LocalDate.now());
-        card.setQrCode(generateQRCode(member.getMemberCode()));
+        card.setQrCode(generateQRCode(member.getMemberCode(), card.getCardNumber()));
         
-        return memberCardRepository.save(card);
+        MemberCard saved = memberCardRepository.save(card);
+        memberCardIndex.putMember(toIndexEntry(member));
+        memberCardIndex.putCard(saved.getCardNumber(), new MemberCardIndex.CardEntry(
+            saved.getId(), memberId, saved.getStatus(), saved.getExpiryDate()));
+        memberCacheInvalidator.memberChanged(memberId);
+        return saved;
     }
     
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public java.util.List<MemberCard> getMemberCards(Long memberId) {
-        return memberCardRepository.findByMemberId(memberId);
+        return memberCache.getCards(memberId, () -> List.copyOf(memberCardRepository.findByMemberId(memberId)));
     }
     
-    private String generateMemberCode() {
-        return "MEM" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    @Transactional(readOnly = true)
+    public MemberCardView getMemberCardView(String cardNumber) {
+        return memberCardRepository.findCardViewByCardNumber(cardNumber)
+            .orElseThrow(() -> new RuntimeException("Member card not found with number: " + cardNumber));
+    }
+    
+    /**
+     * 更新処理用にDBから読み込む（キャッシュのスナップショットは使わない）
+     */
+    private Member findMember(Long id) {
+        return memberRepository.findById(id)
+            .orElseThrow(() -> new RuntimeException("Member not found with id: " + id));
+    }
+    
+    private static MemberCardIndex.MemberEntry toIndexEntry(Member member) {
+        return new MemberCardIndex.MemberEntry(member.getId(), member.getMemberCode(), member.getStoreId(), member.getStatus());
+    }
+    
+    String generateMemberCode() {
+        return MembershipCodes.memberCode(idGenerator.nextId());
     }
     
     private String generateCardNumber() {
-        return "CARD" + System.currentTimeMillis();
+        return MembershipCodes.cardNumber(idGenerator.nextId());
     }
     
-    private String generateQRCode(String memberCode) {
-        // QRコード生成ロジック（実際の実装ではQRコードライブラリを使用）
-        return "QR:" + memberCode + ":" + System.currentTimeMillis();
+    private String generateQRCode(String memberCode, String cardNumber) {
+        // QRコードに埋め込む内容。画像はMemberCardQrServiceで描画する
+        // 英数字と":"のみで構成し、QRコードの英数字モードで小さい型番に収まるようにする
+        return "QR:" + memberCode + ":" + cardNumber;
+    }
+    
+    private CursorPage<MemberSummary> toCursorPage(List<MemberSummary> rows, int size, Long total,
+                                                   Function<MemberSummary, MemberCursor> cursorOf) {
+        boolean hasNext = rows.size() > size;
+        List<MemberSummary> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(content.get(content.size() - 1)).encode() : null;
+        return new CursorPage<>(content, nextCursor, hasNext, total);
     }
 }
-
@@ -0,0 +1,103 @@
+package com.membership.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * ゲートウェイの応答キャッシュ（会員証・会員コードでの参照）から、変更された会員の応答を破棄する
+ * Eurekaに登録されたゲートウェイの全インスタンスへ非同期で通知し、届かなかった分はゲートウェイ側の有効期限で反映される
+ * 会員証番号・会員コードでの参照はパスから会員を特定できないため、それらはまとめて破棄する
+ */
+@Component
+@Slf4j
+public class GatewayCachePurger {
+    
+    static final String PURGE_PATH = "/internal/cache/routes/%s/purge?%s";
+    
+    private final ObjectProvider<DiscoveryClient> discoveryClient;
+    private final String gatewayServiceId;
+    private final String routeId;
+    private final String token;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final Counter sent;
+    private final Counter failed;
+    
+    public GatewayCachePurger(ObjectProvider<DiscoveryClient> discoveryClient,
+                              @Value("${membership.gateway-cache.service-id:api-gateway}") String gatewayServiceId,
+                              @Value("${spring.application.name}") String routeId,
+                              @Value("${membership.gateway-cache.purge-token:}") String token,
+                              @Value("${membership.gateway-cache.timeout-ms:2000}") long timeoutMillis,
+                              MeterRegistry meterRegistry) {
+        this.discoveryClient = discoveryClient;
+        this.gatewayServiceId = gatewayServiceId;
+        this.routeId = routeId;
+        this.token = token;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.sent = counter(meterRegistry, "sent");
+        this.failed = counter(meterRegistry, "failed");
+    }
+    
+    public void memberChanged(Long memberId) {
+        purge(List.of("/api/members/" + memberId + "/cards", "/api/members/cards/**", "/api/members/code/**"));
+    }
+    
+    private void purge(List<String> paths) {
+        String query = paths.stream()
+            .map(path -> "path=" + URLEncoder.encode(path, StandardCharsets.UTF_8))
+            .collect(Collectors.joining("&"));
+        for (URI gateway : gateways()) {
+            HttpRequest.Builder request = HttpRequest.newBuilder(gateway.resolve(PURGE_PATH.formatted(routeId, query)))
+                .timeout(timeout)
+                .POST(HttpRequest.BodyPublishers.noBody());
+            if (!token.isEmpty()) {
+                request.header(MemberCacheInvalidator.TOKEN_HEADER, token);
+            }
+            sent.increment();
+            httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, e) -> {
+                    if (e != null || response.statusCode() >= 300) {
+                        failed.increment();
+                        log.warn("Failed to purge gateway cache at {}: {}", gateway,
+                            e != null ? e.getMessage() : "HTTP " + response.statusCode());
+                    }
+                });
+        }
+    }
+    
+    private List<URI> gateways() {
+        DiscoveryClient discovery = discoveryClient.getIfAvailable();
+        if (discovery == null) {
+            return List.of();
+        }
+        try {
+            return discovery.getInstances(gatewayServiceId).stream()
+                .map(ServiceInstance::getUri)
+                .toList();
+        } catch (RuntimeException e) {
+            log.warn("Failed to look up {} instances for cache purge: {}", gatewayServiceId, e.getMessage());
+            return List.of();
+        }
+    }
+    
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("membership.gateway-cache.purges").tag("outcome", outcome).register(meterRegistry);
+    }
+}
@@ -0,0 +1,62 @@
+package com.membership.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * プロセス内の読み込みキャッシュ（Caffeineによる件数上限での追い出し + 有効期限）
+ * 同じキーの同時ミスは1回の読み込みにまとめ、読み込み中のキーの無効化は読み込みの完了を待ってから行われる
+ * （読み込み開始後にコミットされた更新を、古い値で上書きしないため）
+ * 全件の無効化は読み込み中のキーを待たないため、世代番号を進めて読み込み中だった値を格納後に破棄する
+ * ヒット・ミス・破棄件数は cache.gets / cache.evictions / cache.size としてMicrometerへ公開する
+ */
+public class LocalCache<K, V> {
+    
+    private final Cache<K, V> entries;
+    private final AtomicLong generation = new AtomicLong();
+    
+    public LocalCache(String name, int maxEntries, long ttlMillis, MeterRegistry meterRegistry) {
+        this.entries = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(Duration.ofMillis(ttlMillis))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, name);
+    }
+    
+    /**
+     * キャッシュにあればそれを返し、なければloaderで読み込んで格納する
+     * loaderがnullを返した場合は格納しない
+     */
+    public V get(K key, Supplier<V> loader) {
+        V value = entries.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        long readGeneration = generation.get();
+        value = entries.get(key, k -> loader.get());
+        if (readGeneration != generation.get()) {
+            entries.invalidate(key);
+        }
+        return value;
+    }
+    
+    public void invalidate(K key) {
+        entries.invalidate(key);
+    }
+    
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.invalidateAll();
+    }
+    
+    public long size() {
+        return entries.estimatedSize();
+    }
+}
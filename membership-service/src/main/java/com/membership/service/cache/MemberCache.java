@@ -0,0 +1,59 @@
+package com.membership.service.cache;
+
+import com.membership.entity.Member;
+import com.membership.entity.MemberCard;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 会員・会員証の読み込みキャッシュ
+ * ゲートウェイ・入館処理・IP制限から同じ会員が繰り返し参照されるため、ID・会員コード・会員証一覧の参照結果を保持する
+ * 保持するエンティティはDBから切り離された読み取り専用のスナップショットで、更新処理では使わない
+ * 更新は MemberCacheInvalidator が自インスタンスと他インスタンスへ通知し、通知が届かなかった場合も有効期限で反映される
+ */
+@Component
+public class MemberCache {
+    
+    private final LocalCache<Long, Member> members;
+    private final LocalCache<String, Long> memberIdsByCode;
+    private final LocalCache<Long, List<MemberCard>> cards;
+    
+    public MemberCache(@Value("${membership.member-cache.max-entries:100000}") int maxEntries,
+                       @Value("${membership.member-cache.ttl-seconds:60}") long ttlSeconds,
+                       MeterRegistry meterRegistry) {
+        long ttlMillis = ttlSeconds * 1000;
+        this.members = new LocalCache<>("members", maxEntries, ttlMillis, meterRegistry);
+        this.memberIdsByCode = new LocalCache<>("member-codes", maxEntries, ttlMillis, meterRegistry);
+        this.cards = new LocalCache<>("member-cards", maxEntries, ttlMillis, meterRegistry);
+    }
+    
+    public Member getMember(Long memberId, Supplier<Member> loader) {
+        return members.get(memberId, loader);
+    }
+    
+    /**
+     * 会員コードから会員IDを引く（会員コードは変更されないため、会員本体とは別に保持する）
+     */
+    public Long getMemberId(String memberCode, Supplier<Long> loader) {
+        return memberIdsByCode.get(memberCode, loader);
+    }
+    
+    public List<MemberCard> getCards(Long memberId, Supplier<List<MemberCard>> loader) {
+        return cards.get(memberId, loader);
+    }
+    
+    public void invalidate(Long memberId) {
+        members.invalidate(memberId);
+        cards.invalidate(memberId);
+    }
+    
+    public void invalidateAll() {
+        members.invalidateAll();
+        memberIdsByCode.invalidateAll();
+        cards.invalidateAll();
+    }
+}
@@ -0,0 +1,175 @@
+package com.membership.service.cache;
+
+import com.membership.security.IpWhitelistCache;
+import com.membership.service.checkin.MemberCardIndex;
+import com.netflix.appinfo.ApplicationInfoManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 会員情報の変更を自インスタンスと他インスタンスのキャッシュへ反映する
+ * 変更のコミット後に自インスタンスのキャッシュを破棄し、Eurekaに登録された同じサービスの他インスタンスへ非同期で通知する
+ * 通知を受けたインスタンスは会員キャッシュ・IPホワイトリスト・入館判定インデックスの該当会員分を読み直す
+ * ゲートウェイの応答キャッシュは変更元のインスタンスだけが破棄を依頼する
+ * 登録直後でレジストリに載っていないインスタンスへは通知が届かないため、その分はキャッシュの有効期限で反映される
+ */
+@Component
+@Slf4j
+public class MemberCacheInvalidator {
+    
+    public static final String TOKEN_HEADER = "X-Cache-Invalidation-Token";
+    static final String INVALIDATE_PATH = "/internal/cache/members/%d/invalidate";
+    
+    private final MemberCache memberCache;
+    private final IpWhitelistCache ipWhitelistCache;
+    private final MemberCardIndex memberCardIndex;
+    private final GatewayCachePurger gatewayCachePurger;
+    private final ObjectProvider<DiscoveryClient> discoveryClient;
+    private final ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+    private final String applicationName;
+    private final String token;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter received;
+    
+    public MemberCacheInvalidator(MemberCache memberCache,
+                                  IpWhitelistCache ipWhitelistCache,
+                                  MemberCardIndex memberCardIndex,
+                                  GatewayCachePurger gatewayCachePurger,
+                                  ObjectProvider<DiscoveryClient> discoveryClient,
+                                  ObjectProvider<ApplicationInfoManager> applicationInfoManager,
+                                  @Value("${spring.application.name}") String applicationName,
+                                  @Value("${membership.member-cache.invalidation-token:}") String token,
+                                  @Value("${membership.member-cache.broadcast-timeout-ms:2000}") long timeoutMillis,
+                                  MeterRegistry meterRegistry) {
+        this.memberCache = memberCache;
+        this.ipWhitelistCache = ipWhitelistCache;
+        this.memberCardIndex = memberCardIndex;
+        this.gatewayCachePurger = gatewayCachePurger;
+        this.discoveryClient = discoveryClient;
+        this.applicationInfoManager = applicationInfoManager;
+        this.applicationName = applicationName;
+        this.token = token;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.sent = counter(meterRegistry, "sent");
+        this.failed = counter(meterRegistry, "failed");
+        this.received = counter(meterRegistry, "received");
+    }
+    
+    /**
+     * 自インスタンスでの会員情報の変更を反映する
+     * トランザクション内で呼ばれた場合はコミット後に破棄・通知し、ロールバックされた変更は通知しない
+     */
+    public void memberChanged(Long memberId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidateAndBroadcast(memberId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidateAndBroadcast(memberId);
+            }
+        });
+    }
+    
+    /**
+     * 他インスタンスからの通知を反映する
+     */
+    public void onRemoteInvalidation(Long memberId) {
+        received.increment();
+        memberCache.invalidate(memberId);
+        ipWhitelistCache.invalidate(memberId);
+        memberCardIndex.refreshMember(memberId);
+    }
+    
+    /**
+     * 通知元の認証。トークンが未設定の場合は、プライベートネットワークから（プロキシを経由せず）直接届いた通知のみ受け付ける
+     */
+    public boolean isAuthorized(HttpServletRequest request) {
+        if (!token.isEmpty()) {
+            String requestToken = request.getHeader(TOKEN_HEADER);
+            return requestToken != null && MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8), requestToken.getBytes(StandardCharsets.UTF_8));
+        }
+        InetAddress address;
+        try {
+            // getRemoteAddrはIPアドレスの文字列のため、名前解決は行われない
+            address = InetAddress.getByName(request.getRemoteAddr());
+        } catch (UnknownHostException e) {
+            return false;
+        }
+        return (address.isLoopbackAddress() || address.isSiteLocalAddress())
+            && request.getHeader("X-Forwarded-For") == null && request.getHeader("Forwarded") == null;
+    }
+    
+    private void invalidateAndBroadcast(Long memberId) {
+        memberCache.invalidate(memberId);
+        gatewayCachePurger.memberChanged(memberId);
+        for (URI peer : peers()) {
+            HttpRequest.Builder request = HttpRequest.newBuilder(peer.resolve(INVALIDATE_PATH.formatted(memberId)))
+                .timeout(timeout)
+                .POST(HttpRequest.BodyPublishers.noBody());
+            if (!token.isEmpty()) {
+                request.header(TOKEN_HEADER, token);
+            }
+            sent.increment();
+            httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, e) -> {
+                    if (e != null || response.statusCode() >= 300) {
+                        failed.increment();
+                        log.warn("Failed to notify {} of member {} change: {}", peer, memberId,
+                            e != null ? e.getMessage() : "HTTP " + response.statusCode());
+                    }
+                });
+        }
+    }
+    
+    /**
+     * 同じサービスの他インスタンス（Eurekaを使わない構成では自インスタンスが含まれうるが、二重に破棄するだけで害はない）
+     */
+    private List<URI> peers() {
+        DiscoveryClient discovery = discoveryClient.getIfAvailable();
+        if (discovery == null) {
+            return List.of();
+        }
+        ApplicationInfoManager infoManager = applicationInfoManager.getIfAvailable();
+        String self = infoManager != null ? infoManager.getInfo().getInstanceId() : null;
+        try {
+            return discovery.getInstances(applicationName).stream()
+                .filter(instance -> self == null || !self.equals(instance.getInstanceId()))
+                .map(ServiceInstance::getUri)
+                .toList();
+        } catch (RuntimeException e) {
+            log.warn("Failed to look up {} instances for cache invalidation: {}", applicationName, e.getMessage());
+            return List.of();
+        }
+    }
+    
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("membership.member-cache.invalidations").tag("outcome", outcome).register(meterRegistry);
+    }
+}
@@ -0,0 +1,218 @@
+package com.membership.service.checkin;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.membership.repository.MemberCardRepository;
+import com.membership.repository.projection.MemberCardView;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 入館判定用の会員証・会員インデックス
+ * 起動時に会員証番号から会員IDと状態を引けるようメモリへ読み込み、入館時はDBを参照しない
+ * 会員証の発行・会員情報の更新はコミット後にMemberServiceから反映され、未登録の会員証番号のみDBへ問い合わせる
+ * DBにも存在しなかった会員証番号は一定時間記憶し、同じ番号の読み取りを繰り返してもDBへ問い合わせない
+ */
+@Component
+@Slf4j
+public class MemberCardIndex {
+    
+    private static final int LOAD_FETCH_SIZE = 1000;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MemberCardRepository memberCardRepository;
+    private final Map<String, CardEntry> cards = new ConcurrentHashMap<>();
+    private final Map<Long, MemberEntry> members = new ConcurrentHashMap<>();
+    /**
+     * 会員IDから会員証番号を引く逆引き（会員の削除時に会員証を取り除くため）
+     */
+    private final Map<Long, Set<String>> cardNumbersByMember = new ConcurrentHashMap<>();
+    /**
+     * DBに存在しなかった会員証番号
+     */
+    private final Cache<String, Boolean> missingCards;
+    
+    public MemberCardIndex(DataSource dataSource,
+                           PlatformTransactionManager transactionManager,
+                           MemberCardRepository memberCardRepository,
+                           @Value("${membership.check-in.missing-card-cache-max-entries:10000}") long missingCardMaxEntries,
+                           @Value("${membership.check-in.missing-card-cache-ttl-seconds:60}") long missingCardTtlSeconds) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(LOAD_FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.memberCardRepository = memberCardRepository;
+        this.missingCards = Caffeine.newBuilder()
+            .maximumSize(missingCardMaxEntries)
+            .expireAfterWrite(Duration.ofSeconds(missingCardTtlSeconds))
+            .build();
+    }
+    
+    /**
+     * 会員証の状態（会員証番号で引く）
+     */
+    public record CardEntry(long cardId, long memberId, String status, LocalDate expiryDate) {
+    }
+    
+    /**
+     * 会員の状態
+     */
+    public record MemberEntry(long memberId, String memberCode, Long storeId, String status) {
+    }
+    
+    /**
+     * 入館判定に使う会員証と会員の組み合わせ
+     */
+    public record CardHolder(CardEntry card, MemberEntry member) {
+    }
+    
+    /**
+     * 起動時に全会員証・全会員をインデックスへ読み込む
+     * 読み込み中に反映された更新を上書きしないよう、未登録のものだけ追加する
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.query("SELECT id, member_code, store_id, status FROM members", (RowCallbackHandler) rs -> {
+                long storeId = rs.getLong(3);
+                MemberEntry member = new MemberEntry(rs.getLong(1), rs.getString(2),
+                    rs.wasNull() ? null : storeId, rs.getString(4));
+                members.putIfAbsent(member.memberId(), member);
+            });
+            jdbcTemplate.query("SELECT card_number, id, member_id, status, expiry_date FROM member_cards", (RowCallbackHandler) rs -> {
+                Date expiryDate = rs.getDate(5);
+                CardEntry card = new CardEntry(rs.getLong(2), rs.getLong(3), rs.getString(4),
+                    expiryDate != null ? expiryDate.toLocalDate() : null);
+                String cardNumber = rs.getString(1);
+                if (cards.putIfAbsent(cardNumber, card) == null) {
+                    indexCardNumber(card.memberId(), cardNumber);
+                }
+            });
+        });
+        log.info("Loaded {} member cards and {} members into check-in index", cards.size(), members.size());
+    }
+    
+    /**
+     * 会員証番号から会員証と会員を引く（存在しない場合はnull）
+     */
+    public CardHolder find(String cardNumber) {
+        CardEntry card = cards.get(cardNumber);
+        MemberEntry member = card != null ? members.get(card.memberId()) : null;
+        if (member != null) {
+            return new CardHolder(card, member);
+        }
+        if (missingCards.getIfPresent(cardNumber) != null) {
+            return null;
+        }
+        // 他インスタンスで発行された会員証などインデックスにないものはDBから読み込む
+        MemberCardView view = memberCardRepository.findCardViewByCardNumber(cardNumber).orElse(null);
+        if (view == null) {
+            missingCards.put(cardNumber, Boolean.TRUE);
+            return null;
+        }
+        card = new CardEntry(view.cardId(), view.memberId(), view.cardStatus(), view.expiryDate());
+        member = new MemberEntry(view.memberId(), view.memberCode(), view.storeId(), view.memberStatus());
+        indexCard(cardNumber, card);
+        members.put(member.memberId(), member);
+        return new CardHolder(card, member);
+    }
+    
+    public void putCard(String cardNumber, CardEntry card) {
+        afterCommit(() -> indexCard(cardNumber, card));
+    }
+    
+    public void putMember(MemberEntry member) {
+        afterCommit(() -> members.put(member.memberId(), member));
+    }
+    
+    /**
+     * 会員の削除を反映する（会員証もDB側でカスケード削除される）
+     */
+    public void removeMember(long memberId) {
+        afterCommit(() -> {
+            members.remove(memberId);
+            removeCards(memberId);
+        });
+    }
+    
+    /**
+     * 他インスタンスで更新された会員の状態と会員証をDBから読み直す（会員が削除されていれば取り除く）
+     */
+    public void refreshMember(long memberId) {
+        List<MemberEntry> member = jdbcTemplate.query("SELECT id, member_code, store_id, status FROM members WHERE id = ?",
+            (rs, rowNum) -> {
+                long storeId = rs.getLong(3);
+                return new MemberEntry(rs.getLong(1), rs.getString(2), rs.wasNull() ? null : storeId, rs.getString(4));
+            }, memberId);
+        if (member.isEmpty()) {
+            members.remove(memberId);
+            removeCards(memberId);
+            return;
+        }
+        jdbcTemplate.query("SELECT card_number, id, member_id, status, expiry_date FROM member_cards WHERE member_id = ?",
+            (RowCallbackHandler) rs -> {
+                Date expiryDate = rs.getDate(5);
+                indexCard(rs.getString(1), new CardEntry(rs.getLong(2), rs.getLong(3), rs.getString(4),
+                    expiryDate != null ? expiryDate.toLocalDate() : null));
+            }, memberId);
+        members.put(memberId, member.get(0));
+    }
+    
+    public int size() {
+        return cards.size();
+    }
+    
+    private void indexCard(String cardNumber, CardEntry card) {
+        cards.put(cardNumber, card);
+        indexCardNumber(card.memberId(), cardNumber);
+        missingCards.invalidate(cardNumber);
+    }
+    
+    private void indexCardNumber(long memberId, String cardNumber) {
+        cardNumbersByMember.computeIfAbsent(memberId, id -> ConcurrentHashMap.newKeySet()).add(cardNumber);
+    }
+    
+    private void removeCards(long memberId) {
+        Set<String> cardNumbers = cardNumbersByMember.remove(memberId);
+        if (cardNumbers != null) {
+            for (String cardNumber : cardNumbers) {
+                cards.remove(cardNumber);
+            }
+        }
+    }
+    
+    /**
+     * トランザクション内で呼ばれた場合はコミット後に反映し、ロールバックされた変更を入館判定に使わない
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,10 @@
+package com.membership.service.checkin;
+
+import java.time.LocalDateTime;
+
+/**
+ * visit_recordsへ書き込む入館記録
+ */
+public record VisitRecord(long memberId, Long storeId, LocalDateTime visitDate, String entryMethod,
+                          boolean faceRecognized, String ipAddress) {
+}
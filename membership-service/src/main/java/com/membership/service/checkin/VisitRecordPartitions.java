@@ -0,0 +1,54 @@
+package com.membership.service.checkin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * visit_recordsの月パーティションの保守
+ * 入館記録の書き込み先がなくならないよう先の月のパーティションを作成しておき、
+ * 保持期間を過ぎた月はarchiveスキーマへ切り離す（処理の本体はinit.sqlのDB関数）
+ */
+@Component
+@Slf4j
+public class VisitRecordPartitions {
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    
+    public VisitRecordPartitions(JdbcTemplate jdbcTemplate,
+                                 @Value("${membership.check-in.partition-months-ahead:3}") int monthsAhead,
+                                 @Value("${membership.check-in.retention-months:36}") int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+    
+    /**
+     * 起動時と一定間隔で、不足している月のパーティションを作成し、保持期間を過ぎた月を切り離す
+     */
+    @Scheduled(fixedDelayString = "${membership.check-in.partition-check-interval-ms:3600000}")
+    public void maintain() {
+        try {
+            Integer created = jdbcTemplate.queryForObject("SELECT ensure_monthly_partitions('visit_records', ?)",
+                Integer.class, monthsAhead);
+            if (created != null && created > 0) {
+                log.info("Created {} monthly partitions of visit_records", created);
+            }
+            List<String> archived = jdbcTemplate.queryForList("SELECT detach_expired_partitions('visit_records', ?)",
+                String.class, retentionMonths);
+            if (!archived.isEmpty()) {
+                log.info("Detached expired partitions of visit_records: {}", archived);
+            }
+        } catch (DataAccessException e) {
+            // 親テーブルのロックが取れなかった場合などは次回に再試行する
+            log.warn("Failed to maintain visit_records partitions: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.membership.service.checkin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入館記録の非同期書き込み
+ * 入館処理はメモリ上の有界キューへ追加するだけで戻り、専用スレッドがキューに溜まった分をまとめてJDBCバッチで登録する
+ * キューが一杯の場合は一定時間だけ待ち、それでも空かなければ受け付けない（呼び出し側へ背圧をかける）
+ * 停止時はWebサーバーの停止後にキューを最後まで書き込んでから終了する
+ */
+@Component
+@Slf4j
+public class VisitRecordWriter implements SmartLifecycle {
+    
+    private static final String INSERT_SQL = "INSERT INTO visit_records " +
+        "(member_id, store_id, visit_date, entry_method, face_recognized, ip_address) VALUES (?, ?, ?, ?, ?, ?)";
+    
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 30_000;
+    private static final int SHUTDOWN_RETRY_ATTEMPTS = 3;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<VisitRecord> queue;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final long enqueueTimeoutMillis;
+    
+    private volatile boolean running;
+    private Thread flusher;
+    
+    public VisitRecordWriter(JdbcTemplate jdbcTemplate,
+                             @Value("${membership.check-in.queue-capacity:10000}") int queueCapacity,
+                             @Value("${membership.check-in.batch-size:500}") int batchSize,
+                             @Value("${membership.check-in.poll-interval-ms:200}") long pollIntervalMillis,
+                             @Value("${membership.check-in.enqueue-timeout-ms:50}") long enqueueTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+    }
+    
+    /**
+     * 入館記録を書き込みキューへ追加する
+     *
+     * @return キューが一杯のまま待ち時間を過ぎた場合、または停止中の場合はfalse
+     */
+    public boolean enqueue(VisitRecord record) {
+        if (!running) {
+            return false;
+        }
+        try {
+            return queue.offer(record, enqueueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    public int pending() {
+        return queue.size();
+    }
+    
+    @Override
+    public void start() {
+        running = true;
+        flusher = new Thread(this::flushLoop, "visit-record-writer");
+        flusher.start();
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Visit record writer stopped");
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Webサーバー（グレースフルシャットダウン含む）より後に停止し、受付済みの入館記録を書き切る
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+    
+    private void flushLoop() {
+        List<VisitRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            VisitRecord first;
+            try {
+                first = queue.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            // 書き込み中に溜まった分をまとめて次のバッチにする
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                log.error("Discarding {} visit records", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+    
+    /**
+     * DBに接続できない間はバッチを保持したまま再試行する（その間キューが埋まり、入館処理に背圧がかかる）
+     */
+    private void write(List<VisitRecord> batch) {
+        long backoff = pollIntervalMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                insertBatch(batch);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // 削除済み会員など一部の行が制約違反になった場合は1行ずつ登録し、違反行のみ破棄する
+                insertIndividually(batch);
+                return;
+            } catch (DataAccessException e) {
+                if (!running && attempt >= SHUTDOWN_RETRY_ATTEMPTS) {
+                    log.error("Discarding {} visit records on shutdown: {}", batch.size(), e.getMessage());
+                    return;
+                }
+                log.warn("Failed to write {} visit records (attempt {}), retrying in {} ms: {}",
+                    batch.size(), attempt, backoff, e.getMessage());
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+    
+    private void insertBatch(List<VisitRecord> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), VisitRecordWriter::bind);
+    }
+    
+    private void insertIndividually(List<VisitRecord> batch) {
+        for (VisitRecord record : batch) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, record));
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Discarding visit record for member {}: {}", record.memberId(), e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+    
+    private static void bind(PreparedStatement ps, VisitRecord record) throws SQLException {
+        ps.setLong(1, record.memberId());
+        if (record.storeId() != null) {
+            ps.setLong(2, record.storeId());
+        } else {
+            ps.setNull(2, Types.BIGINT);
+        }
+        ps.setTimestamp(3, Timestamp.valueOf(record.visitDate()));
+        ps.setString(4, record.entryMethod());
+        ps.setBoolean(5, record.faceRecognized());
+        ps.setString(6, record.ipAddress());
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
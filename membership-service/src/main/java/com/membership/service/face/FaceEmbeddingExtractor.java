@@ -0,0 +1,19 @@
+package com.membership.service.face;
+
+/**
+ * 顔画像から固定長の特徴量ベクトルを抽出するエクストラクタ
+ * 外部の顔認識エンジンを利用する場合はこのインターフェースを実装したBeanを登録する
+ */
+public interface FaceEmbeddingExtractor {
+    
+    /**
+     * 特徴量ベクトルの次元数
+     */
+    int dimension();
+    
+    /**
+     * 画像バイト列から特徴量を抽出する
+     * 返却するベクトルはL2正規化済みであること
+     */
+    float[] extract(byte[] imageBytes);
+}
@@ -0,0 +1,430 @@
+package com.membership.service.face;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 会員の顔特徴量を保持するインメモリ最近傍インデックス
+ * ベクトルは1本の連続したfloat配列に詰めて保持し、照合は全件の内積スキャンで行う
+ * 登録件数が partitionMinSize 以上になると、k-meansで求めた代表ベクトルごとにベクトルを分割（IVF）し、
+ * 照合は照合対象に近い probeCount 個の区画だけをスキャンする（近似検索のため、再現率はベンチマークで確認する）
+ */
+public class FaceEmbeddingIndex {
+    
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int TRAINING_ITERATIONS = 10;
+    private static final int TRAINING_SAMPLES_PER_PARTITION = 64;
+    private static final int ASSIGN_BATCH_SIZE = 4096;
+    
+    private final int dimension;
+    private final int partitionMinSize;
+    private final int partitionCount;
+    private final int probeCount;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> slotByMemberId = new HashMap<>();
+    
+    private float[] vectors;
+    private long[] memberIds;
+    private int size;
+    
+    /**
+     * 区画の代表ベクトル（分割前はnull）
+     * 区画の一覧の末尾（添字 partitionCount）は区画へ未割り当てのスロットで、照合時は常にスキャンする
+     */
+    private float[] centroids;
+    private int partitionedSize;
+    private int[][] partitions;
+    private int[] partitionSizes;
+    private int[] partitionOfSlot;
+    private int[] positionInPartition;
+    
+    /**
+     * 全件スキャンのみのインデックス
+     */
+    public FaceEmbeddingIndex(int dimension) {
+        this(dimension, 0, 0, 0);
+    }
+    
+    /**
+     * @param partitionMinSize 区画に分割する登録件数（0以下の場合は分割しない）
+     * @param partitionCount 区画数
+     * @param probeCount 照合時にスキャンする区画数
+     */
+    public FaceEmbeddingIndex(int dimension, int partitionMinSize, int partitionCount, int probeCount) {
+        if (partitionMinSize > 0 && (partitionCount < 1 || probeCount < 1 || partitionMinSize < partitionCount)) {
+            throw new IllegalArgumentException("Invalid face index partitioning: min-size=" + partitionMinSize
+                + ", partitions=" + partitionCount + ", probes=" + probeCount);
+        }
+        this.dimension = dimension;
+        this.partitionMinSize = partitionMinSize;
+        this.partitionCount = partitionCount;
+        this.probeCount = Math.min(probeCount, partitionCount);
+        this.vectors = new float[INITIAL_CAPACITY * dimension];
+        this.memberIds = new long[INITIAL_CAPACITY];
+        this.partitionOfSlot = new int[INITIAL_CAPACITY];
+        this.positionInPartition = new int[INITIAL_CAPACITY];
+    }
+    
+    public int dimension() {
+        return dimension;
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 区画に分割済みか
+     */
+    public boolean isPartitioned() {
+        lock.readLock().lock();
+        try {
+            return centroids != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 会員の特徴量を登録する（登録済みの場合は置き換える）
+     */
+    public void put(long memberId, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Face embedding dimension mismatch: " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByMemberId.get(memberId);
+            if (slot == null) {
+                ensureCapacity(size + 1);
+                slot = size++;
+                memberIds[slot] = memberId;
+                slotByMemberId.put(memberId, slot);
+            } else if (centroids != null) {
+                detach(slot);
+            }
+            System.arraycopy(vector, 0, vectors, slot * dimension, dimension);
+            if (centroids != null) {
+                attach(slot, nearestCentroid(centroids, vector));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * 会員の特徴量を削除する
+     * 末尾のスロットを空いた位置へ移動して配列を詰めたまま保つ
+     */
+    public void remove(long memberId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByMemberId.remove(memberId);
+            if (slot == null) {
+                return;
+            }
+            if (centroids != null) {
+                detach(slot);
+            }
+            int last = --size;
+            if (slot != last) {
+                System.arraycopy(vectors, last * dimension, vectors, slot * dimension, dimension);
+                memberIds[slot] = memberIds[last];
+                slotByMemberId.put(memberIds[slot], slot);
+                if (centroids != null) {
+                    int partition = partitionOfSlot[last];
+                    int position = positionInPartition[last];
+                    partitions[partition][position] = slot;
+                    partitionOfSlot[slot] = partition;
+                    positionInPartition[slot] = position;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * 類似度が閾値以上で最も近い会員を返す（該当なしの場合はnull）
+     */
+    public FaceMatch findNearest(float[] query, float threshold) {
+        lock.readLock().lock();
+        try {
+            int best = -1;
+            float bestScore = threshold;
+            if (centroids == null) {
+                for (int slot = 0; slot < size; slot++) {
+                    float score = FaceVectors.dot(query, vectors, slot * dimension, dimension);
+                    if (score >= bestScore) {
+                        bestScore = score;
+                        best = slot;
+                    }
+                }
+            } else {
+                int[] probes = nearestCentroids(query);
+                for (int i = 0; i <= probes.length; i++) {
+                    int partition = i < probes.length ? probes[i] : partitionCount;
+                    int[] slots = partitions[partition];
+                    for (int j = 0, n = partitionSizes[partition]; j < n; j++) {
+                        int slot = slots[j];
+                        float score = FaceVectors.dot(query, vectors, slot * dimension, dimension);
+                        if (score >= bestScore) {
+                            bestScore = score;
+                            best = slot;
+                        }
+                    }
+                }
+            }
+            return best < 0 ? null : new FaceMatch(memberIds[best], bestScore);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 登録件数が分割の基準に達した場合、または前回の分割から倍以上に増えた場合に区画を作り直す
+     */
+    public void maintainPartitions() {
+        int currentSize;
+        int previousSize;
+        lock.readLock().lock();
+        try {
+            currentSize = size;
+            previousSize = centroids != null ? partitionedSize : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (partitionMinSize > 0 && currentSize >= partitionMinSize
+            && (previousSize == 0 || currentSize >= previousSize * 2)) {
+            partition();
+        }
+    }
+    
+    /**
+     * 区画を作り直す
+     * 代表ベクトルの学習と各スロットの割り当てはロックの外で行い、照合を止めない
+     * 割り当てが終わるまでのスロットは未割り当ての区画に置き、照合時に全件スキャンする
+     */
+    public synchronized void partition() {
+        float[] sample;
+        int sampleCount;
+        lock.readLock().lock();
+        try {
+            if (size < partitionCount || partitionCount < 1) {
+                return;
+            }
+            sampleCount = Math.min(size, partitionCount * TRAINING_SAMPLES_PER_PARTITION);
+            sample = new float[sampleCount * dimension];
+            for (int i = 0; i < sampleCount; i++) {
+                int slot = (int) ((long) i * size / sampleCount);
+                System.arraycopy(vectors, slot * dimension, sample, i * dimension, dimension);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        float[] trained = train(sample, sampleCount);
+        
+        lock.writeLock().lock();
+        try {
+            centroids = trained;
+            partitionedSize = size;
+            partitions = new int[partitionCount + 1][];
+            partitionSizes = new int[partitionCount + 1];
+            for (int i = 0; i < partitionCount; i++) {
+                partitions[i] = new int[Math.max(16, size / partitionCount)];
+            }
+            int[] unassigned = new int[Math.max(16, size)];
+            for (int slot = 0; slot < size; slot++) {
+                unassigned[slot] = slot;
+                partitionOfSlot[slot] = partitionCount;
+                positionInPartition[slot] = slot;
+            }
+            partitions[partitionCount] = unassigned;
+            partitionSizes[partitionCount] = size;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        assignPending(trained);
+    }
+    
+    /**
+     * 未割り当てのスロットを最も近い区画へ移す
+     * 計算中に削除・移動されたスロットは未割り当てのまま残り、次のバッチで改めて割り当てる
+     */
+    private void assignPending(float[] trained) {
+        int[] slots = new int[ASSIGN_BATCH_SIZE];
+        long[] ids = new long[ASSIGN_BATCH_SIZE];
+        int[] targets = new int[ASSIGN_BATCH_SIZE];
+        float[] batch = new float[ASSIGN_BATCH_SIZE * dimension];
+        float[] vector = new float[dimension];
+        while (true) {
+            int count;
+            lock.readLock().lock();
+            try {
+                if (centroids != trained) {
+                    return;
+                }
+                count = Math.min(partitionSizes[partitionCount], ASSIGN_BATCH_SIZE);
+                if (count == 0) {
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    int slot = partitions[partitionCount][i];
+                    slots[i] = slot;
+                    ids[i] = memberIds[slot];
+                    System.arraycopy(vectors, slot * dimension, batch, i * dimension, dimension);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (int i = 0; i < count; i++) {
+                System.arraycopy(batch, i * dimension, vector, 0, dimension);
+                targets[i] = nearestCentroid(trained, vector);
+            }
+            lock.writeLock().lock();
+            try {
+                if (centroids != trained) {
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    int slot = slots[i];
+                    if (slot < size && memberIds[slot] == ids[i] && partitionOfSlot[slot] == partitionCount) {
+                        detach(slot);
+                        attach(slot, targets[i]);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+    
+    /**
+     * 球面k-means（内積で割り当て、平均をL2正規化したものを代表ベクトルとする）
+     */
+    private float[] train(float[] sample, int sampleCount) {
+        float[] trained = new float[partitionCount * dimension];
+        for (int c = 0; c < partitionCount; c++) {
+            int index = (int) ((long) c * sampleCount / partitionCount);
+            System.arraycopy(sample, index * dimension, trained, c * dimension, dimension);
+        }
+        float[] sums = new float[partitionCount * dimension];
+        int[] counts = new int[partitionCount];
+        float[] vector = new float[dimension];
+        for (int iteration = 0; iteration < TRAINING_ITERATIONS; iteration++) {
+            Arrays.fill(sums, 0f);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < sampleCount; i++) {
+                System.arraycopy(sample, i * dimension, vector, 0, dimension);
+                int c = nearestCentroid(trained, vector);
+                counts[c]++;
+                for (int d = 0; d < dimension; d++) {
+                    sums[c * dimension + d] += vector[d];
+                }
+            }
+            for (int c = 0; c < partitionCount; c++) {
+                // 空になった区画は前回の代表ベクトルのまま残す
+                if (counts[c] == 0) {
+                    continue;
+                }
+                float norm = 0f;
+                for (int d = 0; d < dimension; d++) {
+                    float v = sums[c * dimension + d];
+                    norm += v * v;
+                }
+                if (norm > 0f) {
+                    float inv = (float) (1.0 / Math.sqrt(norm));
+                    for (int d = 0; d < dimension; d++) {
+                        trained[c * dimension + d] = sums[c * dimension + d] * inv;
+                    }
+                }
+            }
+        }
+        return trained;
+    }
+    
+    private int nearestCentroid(float[] trained, float[] vector) {
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < partitionCount; c++) {
+            float score = FaceVectors.dot(vector, trained, c * dimension, dimension);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * 照合対象に近い順に probeCount 個の区画
+     */
+    private int[] nearestCentroids(float[] query) {
+        int[] best = new int[probeCount];
+        float[] bestScores = new float[probeCount];
+        Arrays.fill(bestScores, Float.NEGATIVE_INFINITY);
+        for (int c = 0; c < partitionCount; c++) {
+            float score = FaceVectors.dot(query, centroids, c * dimension, dimension);
+            if (score <= bestScores[probeCount - 1]) {
+                continue;
+            }
+            int i = probeCount - 1;
+            while (i > 0 && bestScores[i - 1] < score) {
+                bestScores[i] = bestScores[i - 1];
+                best[i] = best[i - 1];
+                i--;
+            }
+            bestScores[i] = score;
+            best[i] = c;
+        }
+        return best;
+    }
+    
+    private void attach(int slot, int partition) {
+        int position = partitionSizes[partition]++;
+        if (position == partitions[partition].length) {
+            partitions[partition] = Arrays.copyOf(partitions[partition], position * 2);
+        }
+        partitions[partition][position] = slot;
+        partitionOfSlot[slot] = partition;
+        positionInPartition[slot] = position;
+    }
+    
+    private void detach(int slot) {
+        int partition = partitionOfSlot[slot];
+        int position = positionInPartition[slot];
+        int last = --partitionSizes[partition];
+        if (position != last) {
+            int moved = partitions[partition][last];
+            partitions[partition][position] = moved;
+            positionInPartition[moved] = position;
+        }
+    }
+    
+    private void ensureCapacity(int required) {
+        if (required <= memberIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, memberIds.length * 2);
+        float[] grownVectors = new float[capacity * dimension];
+        System.arraycopy(vectors, 0, grownVectors, 0, size * dimension);
+        vectors = grownVectors;
+        memberIds = Arrays.copyOf(memberIds, capacity);
+        partitionOfSlot = Arrays.copyOf(partitionOfSlot, capacity);
+        positionInPartition = Arrays.copyOf(positionInPartition, capacity);
+    }
+    
+    /**
+     * 照合結果
+     */
+    public record FaceMatch(long memberId, float score) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.membership.service.face;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FaceRecognitionConfig {
+    
+    /**
+     * 特徴量エクストラクタ
+     * 外部の顔認識エンジン用のBeanが登録されていない場合はローカル実装を使用
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public FaceEmbeddingExtractor faceEmbeddingExtractor() {
+        return new LocalFaceEmbeddingExtractor();
+    }
+    
+    /**
+     * 顔特徴量のインデックス
+     * 登録件数が partition.min-size 以上になると区画に分割し、照合は近い区画だけをスキャンする
+     */
+    @Bean
+    public FaceEmbeddingIndex faceEmbeddingIndex(FaceEmbeddingExtractor faceEmbeddingExtractor,
+                                                 @Value("${membership.face.partition.min-size:200000}") int partitionMinSize,
+                                                 @Value("${membership.face.partition.count:256}") int partitionCount,
+                                                 @Value("${membership.face.partition.probes:8}") int probeCount) {
+        return new FaceEmbeddingIndex(faceEmbeddingExtractor.dimension(), partitionMinSize, partitionCount, probeCount);
+    }
+}
@@ -0,0 +1,87 @@
+package com.membership.service.face;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * 外部エンジンを使わないローカル特徴量エクストラクタ
+ * 画像をグレースケールの縮小グリッドに変換し、輝度分布を正規化したものを特徴量とする
+ * 顔認識精度は持たないが、オフラインでのテストやベンチマークに利用できる
+ */
+@Slf4j
+public class LocalFaceEmbeddingExtractor implements FaceEmbeddingExtractor {
+    
+    private static final int GRID_WIDTH = 16;
+    private static final int GRID_HEIGHT = 8;
+    private static final int DIMENSION = GRID_WIDTH * GRID_HEIGHT;
+    
+    @Override
+    public int dimension() {
+        return DIMENSION;
+    }
+    
+    @Override
+    public float[] extract(byte[] imageBytes) {
+        float[] vector = new float[DIMENSION];
+        BufferedImage image = decode(imageBytes);
+        if (image != null) {
+            fillFromImage(image, vector);
+        } else {
+            fillFromBytes(imageBytes, vector);
+        }
+        FaceVectors.centerAndNormalize(vector);
+        return vector;
+    }
+    
+    private BufferedImage decode(byte[] imageBytes) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(imageBytes));
+        } catch (IOException e) {
+            log.debug("Face image could not be decoded, falling back to byte histogram", e);
+            return null;
+        }
+    }
+    
+    private void fillFromImage(BufferedImage image, float[] vector) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] counts = new int[DIMENSION];
+        for (int y = 0; y < height; y++) {
+            int gy = y * GRID_HEIGHT / height;
+            for (int x = 0; x < width; x++) {
+                int gx = x * GRID_WIDTH / width;
+                int rgb = image.getRGB(x, y);
+                int luminance = (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+                int slot = gy * GRID_WIDTH + gx;
+                vector[slot] += luminance;
+                counts[slot]++;
+            }
+        }
+        for (int i = 0; i < DIMENSION; i++) {
+            if (counts[i] > 0) {
+                vector[i] /= counts[i];
+            }
+        }
+    }
+    
+    private void fillFromBytes(byte[] imageBytes, float[] vector) {
+        // デコードできない形式は、バイト列を次元数分のバケットに分けた平均値で代用する
+        int length = imageBytes.length;
+        if (length == 0) {
+            return;
+        }
+        for (int i = 0; i < DIMENSION; i++) {
+            int from = (int) ((long) i * length / DIMENSION);
+            int to = Math.max(from + 1, (int) ((long) (i + 1) * length / DIMENSION));
+            long sum = 0;
+            for (int j = from; j < to && j < length; j++) {
+                sum += imageBytes[j] & 0xFF;
+            }
+            vector[i] = (float) sum / (to - from);
+        }
+    }
+}
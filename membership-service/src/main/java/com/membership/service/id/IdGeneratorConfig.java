@@ -0,0 +1,64 @@
+package com.membership.service.id;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ID生成器の設定
+ * ノードIDは membership.id.node-id で明示できる。未指定の場合はEurekaのインスタンスIDから導出し、
+ * 同じサービスの他インスタンスがメタデータで公開しているノードIDと重ならない値を選んで自身も公開する
+ */
+@Configuration
+@Slf4j
+public class IdGeneratorConfig {
+    
+    static final String NODE_METADATA_KEY = "id-node";
+    
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator(@Value("${membership.id.node-id:-1}") int configuredNodeId,
+                                                     @Value("${spring.application.name}") String applicationName,
+                                                     ObjectProvider<ApplicationInfoManager> applicationInfoManager,
+                                                     ObjectProvider<DiscoveryClient> discoveryClient) {
+        int nodeId = configuredNodeId >= 0
+            ? configuredNodeId
+            : resolveNodeId(applicationName, applicationInfoManager.getIfAvailable(), discoveryClient.getIfAvailable());
+        ApplicationInfoManager infoManager = applicationInfoManager.getIfAvailable();
+        if (infoManager != null) {
+            infoManager.registerAppMetadata(Map.of(NODE_METADATA_KEY, String.valueOf(nodeId)));
+        }
+        log.info("ID generator node id: {}", nodeId);
+        return new SnowflakeIdGenerator(nodeId);
+    }
+    
+    private int resolveNodeId(String applicationName, ApplicationInfoManager infoManager, DiscoveryClient discoveryClient) {
+        if (infoManager == null) {
+            log.warn("Eureka instance is not available; using node id 0. Set membership.id.node-id when running multiple instances.");
+            return 0;
+        }
+        String instanceId = infoManager.getInfo().getInstanceId();
+        Set<Integer> used = new HashSet<>();
+        if (discoveryClient != null) {
+            for (ServiceInstance instance : discoveryClient.getInstances(applicationName)) {
+                String node = instance.getMetadata().get(NODE_METADATA_KEY);
+                if (node != null && !instanceId.equals(instance.getInstanceId())) {
+                    used.add(Integer.parseInt(node));
+                }
+            }
+        }
+        int candidate = Math.floorMod(instanceId.hashCode(), SnowflakeIdGenerator.MAX_NODE_ID + 1);
+        while (used.contains(candidate)) {
+            candidate = (candidate + 1) & SnowflakeIdGenerator.MAX_NODE_ID;
+        }
+        return candidate;
+    }
+}
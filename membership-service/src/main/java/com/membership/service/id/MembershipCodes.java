@@ -0,0 +1,124 @@
+package com.membership.service.id;
+
+/**
+ * IDから会員コード・会員証番号への変換と検査
+ * いずれも固定長のため、文字列としての並び順がIDの生成順と一致する
+ */
+public final class MembershipCodes {
+    
+    public static final String MEMBER_CODE_PREFIX = "MEM";
+    
+    /**
+     * Crockford Base32（I, L, O, Uを除く、ASCII順に昇順）
+     */
+    private static final char[] BASE32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int BASE32_DIGITS = 13;
+    private static final int DECIMAL_DIGITS = 19;
+    
+    public static final int CARD_NUMBER_LENGTH = DECIMAL_DIGITS + 1;
+    
+    private MembershipCodes() {
+    }
+    
+    /**
+     * 会員コード: "MEM" + Base32 13桁 + チェック文字（Luhn mod 32）
+     */
+    public static String memberCode(long id) {
+        char[] chars = new char[MEMBER_CODE_PREFIX.length() + BASE32_DIGITS + 1];
+        MEMBER_CODE_PREFIX.getChars(0, MEMBER_CODE_PREFIX.length(), chars, 0);
+        int offset = MEMBER_CODE_PREFIX.length();
+        long value = id;
+        for (int i = BASE32_DIGITS - 1; i >= 0; i--) {
+            chars[offset + i] = BASE32[(int) (value & 31)];
+            value >>>= 5;
+        }
+        chars[chars.length - 1] = BASE32[luhnBase32(chars, offset, offset + BASE32_DIGITS)];
+        return new String(chars);
+    }
+    
+    /**
+     * 会員証番号: 10進 19桁 + チェックディジット（Luhn）の数字20桁
+     */
+    public static String cardNumber(long id) {
+        char[] chars = new char[CARD_NUMBER_LENGTH];
+        long value = id;
+        for (int i = DECIMAL_DIGITS - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        chars[DECIMAL_DIGITS] = (char) ('0' + luhnDecimal(chars, 0, DECIMAL_DIGITS));
+        return new String(chars);
+    }
+    
+    public static boolean isValidMemberCode(String code) {
+        int offset = MEMBER_CODE_PREFIX.length();
+        if (code == null || code.length() != offset + BASE32_DIGITS + 1 || !code.startsWith(MEMBER_CODE_PREFIX)) {
+            return false;
+        }
+        for (int i = offset; i < code.length(); i++) {
+            if (base32Value(code.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        char[] chars = code.toCharArray();
+        return BASE32[luhnBase32(chars, offset, offset + BASE32_DIGITS)] == chars[chars.length - 1];
+    }
+    
+    public static boolean isValidCardNumber(String number) {
+        if (number == null || number.length() != CARD_NUMBER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        char[] chars = number.toCharArray();
+        return '0' + luhnDecimal(chars, 0, DECIMAL_DIGITS) == chars[DECIMAL_DIGITS];
+    }
+    
+    private static int luhnBase32(char[] chars, int from, int to) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = to - 1; i >= from; i--) {
+            int value = base32Value(chars[i]);
+            if (doubled) {
+                value *= 2;
+                value = value / 32 + value % 32;
+            }
+            sum += value;
+            doubled = !doubled;
+        }
+        return (32 - sum % 32) % 32;
+    }
+    
+    private static int luhnDecimal(char[] chars, int from, int to) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = to - 1; i >= from; i--) {
+            int value = chars[i] - '0';
+            if (doubled) {
+                value *= 2;
+                if (value > 9) {
+                    value -= 9;
+                }
+            }
+            sum += value;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+    
+    private static int base32Value(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        for (int i = 10; i < BASE32.length; i++) {
+            if (BASE32[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,62 @@
+package com.membership.service.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake方式の64bit ID生成器
+ * 構成は 41bit（エポックからのミリ秒）+ 10bit（ノードID）+ 12bit（ミリ秒内の連番）で、生成順にソート可能
+ * 状態（時刻と連番）を1つのAtomicLongに詰めてCASで更新するため、ロックを取らずに並行生成できる
+ */
+public class SnowflakeIdGenerator {
+    
+    /**
+     * 2024-01-01T00:00:00Z
+     */
+    public static final long DEFAULT_EPOCH_MILLIS = 1704067200000L;
+    
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    
+    private final long nodeId;
+    private final long epochMillis;
+    private final LongSupplier clock;
+    
+    /**
+     * 直近に払い出した (経過ミリ秒 << SEQUENCE_BITS | 連番)
+     */
+    private final AtomicLong state = new AtomicLong();
+    
+    public SnowflakeIdGenerator(int nodeId) {
+        this(nodeId, DEFAULT_EPOCH_MILLIS, System::currentTimeMillis);
+    }
+    
+    public SnowflakeIdGenerator(int nodeId, long epochMillis, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.epochMillis = epochMillis;
+        this.clock = clock;
+    }
+    
+    public int nodeId() {
+        return (int) nodeId;
+    }
+    
+    public long nextId() {
+        long next;
+        long current;
+        do {
+            current = state.get();
+            long now = (clock.getAsLong() - epochMillis) << SEQUENCE_BITS;
+            // 同一ミリ秒内（または時刻の巻き戻り時）は連番を進める
+            // 連番が溢れた場合は時刻部へ繰り上がり、次のミリ秒を先取りする
+            next = Math.max(now, current + 1);
+        } while (!state.compareAndSet(current, next));
+        long elapsed = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (elapsed << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+}
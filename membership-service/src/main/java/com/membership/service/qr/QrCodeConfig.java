@@ -0,0 +1,23 @@
+package com.membership.service.qr;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class QrCodeConfig {
+    
+    /**
+     * 描画用バッファのプール
+     * 同時描画数がプールサイズを超えた分は都度確保し、使用後は破棄する
+     */
+    @Bean
+    public QrCodeRenderer qrCodeRenderer(@Value("${membership.qr.buffer-pool-size:32}") int bufferPoolSize) {
+        return new QrCodeRenderer(bufferPoolSize);
+    }
+    
+    @Bean
+    public QrImageCache qrImageCache(@Value("${membership.qr.cache-max-bytes:33554432}") long cacheMaxBytes) {
+        return new QrImageCache(cacheMaxBytes);
+    }
+}
@@ -0,0 +1,319 @@
+package com.membership.service.qr;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * QRコードの画像生成（PNG / SVG）
+ * PNGは1bitグレースケールとして直接エンコードし、BufferedImageを経由しない
+ * 行バッファ・出力バッファ・Deflaterはプールから借りて使い回すため、同時に多数の描画要求が来てもヒープを消費しない
+ */
+public class QrCodeRenderer {
+    
+    /**
+     * QRコード周囲の余白（モジュール数）
+     */
+    static final int QUIET_ZONE = 4;
+    
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+    
+    /**
+     * これより大きくなったバッファはプールへ戻さない
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    
+    private final BlockingQueue<RenderBuffer> pool;
+    
+    public QrCodeRenderer(int poolSize) {
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+    }
+    
+    public enum Format {
+        PNG("image/png"),
+        SVG("image/svg+xml");
+        
+        private final String mediaType;
+        
+        Format(String mediaType) {
+            this.mediaType = mediaType;
+        }
+        
+        public String mediaType() {
+            return mediaType;
+        }
+    }
+    
+    /**
+     * 文字列をQRコード画像に変換する
+     *
+     * @param scale 1モジュールあたりのピクセル数
+     */
+    public byte[] render(String content, Format format, int scale) {
+        byte[][] modules = encode(content);
+        RenderBuffer buffer = acquire();
+        try {
+            return format == Format.SVG ? renderSvg(modules, scale, buffer) : renderPng(modules, scale, buffer);
+        } finally {
+            release(buffer);
+        }
+    }
+    
+    /**
+     * QRコードのモジュール配列（[y][x]、1が暗）を生成する
+     * 英数字のみの内容は英数字モードで符号化されるため、型番が小さくなる
+     */
+    byte[][] encode(String content) {
+        try {
+            return Encoder.encode(content, ErrorCorrectionLevel.M).getMatrix().getArray();
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Failed to encode QR code content", e);
+        }
+    }
+    
+    private byte[] renderPng(byte[][] modules, int scale, RenderBuffer buffer) {
+        int size = (modules.length + QUIET_ZONE * 2) * scale;
+        int rowBytes = (size + 7) / 8;
+        ByteSink out = buffer.out;
+        out.write(PNG_SIGNATURE);
+        
+        // 幅・高さ、ビット深度1、カラータイプ0（グレースケール）、圧縮0、フィルタ0、インターレースなし
+        int ihdrStart = out.beginChunk(IHDR);
+        out.writeInt(size);
+        out.writeInt(size);
+        out.write(1);
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        out.endChunk(ihdrStart, buffer.crc);
+        
+        int idatStart = out.beginChunk(IDAT);
+        Deflater deflater = buffer.deflater;
+        byte[] row = buffer.row(rowBytes + 1);
+        byte[] quietRow = buildRow(null, scale, size, rowBytes, buffer.quietRow(rowBytes + 1));
+        int quietLines = QUIET_ZONE * scale;
+        for (int y = 0; y < quietLines; y++) {
+            deflate(deflater, quietRow, rowBytes + 1, out);
+        }
+        for (byte[] moduleRow : modules) {
+            // 同じモジュール行のスキャンラインは同一なので一度だけ組み立てる
+            buildRow(moduleRow, scale, size, rowBytes, row);
+            for (int y = 0; y < scale; y++) {
+                deflate(deflater, row, rowBytes + 1, out);
+            }
+        }
+        for (int y = 0; y < quietLines; y++) {
+            deflate(deflater, quietRow, rowBytes + 1, out);
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            out.deflateFrom(deflater);
+        }
+        out.endChunk(idatStart, buffer.crc);
+        
+        int iendStart = out.beginChunk(IEND);
+        out.endChunk(iendStart, buffer.crc);
+        return out.toByteArray();
+    }
+    
+    /**
+     * 1スキャンライン分（先頭のフィルタ種別バイトを含む）を組み立てる。ビットが1で白、0で黒
+     */
+    private static byte[] buildRow(byte[] moduleRow, int scale, int size, int rowBytes, byte[] row) {
+        Arrays.fill(row, 0, rowBytes + 1, (byte) 0xFF);
+        row[0] = 0;
+        if (moduleRow != null) {
+            int offset = QUIET_ZONE * scale;
+            for (int x = 0; x < moduleRow.length; x++) {
+                if (moduleRow[x] != 1) {
+                    continue;
+                }
+                int from = offset + x * scale;
+                for (int px = from; px < from + scale; px++) {
+                    row[1 + (px >>> 3)] &= (byte) ~(0x80 >>> (px & 7));
+                }
+            }
+        }
+        // 最終バイトの余りビットは白のまま
+        int padding = rowBytes * 8 - size;
+        if (padding > 0) {
+            row[rowBytes] |= (byte) ((1 << padding) - 1);
+        }
+        return row;
+    }
+    
+    private static void deflate(Deflater deflater, byte[] row, int length, ByteSink out) {
+        deflater.setInput(row, 0, length);
+        while (!deflater.needsInput()) {
+            out.deflateFrom(deflater);
+        }
+    }
+    
+    private byte[] renderSvg(byte[][] modules, int scale, RenderBuffer buffer) {
+        int dimension = modules.length + QUIET_ZONE * 2;
+        int size = dimension * scale;
+        StringBuilder svg = buffer.text;
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(size)
+            .append("\" height=\"").append(size)
+            .append("\" viewBox=\"0 0 ").append(dimension).append(' ').append(dimension)
+            .append("\" shape-rendering=\"crispEdges\">")
+            .append("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path fill=\"#000\" d=\"");
+        // 横方向に連続する暗モジュールを1つの矩形にまとめる
+        for (int y = 0; y < modules.length; y++) {
+            byte[] moduleRow = modules[y];
+            int x = 0;
+            while (x < moduleRow.length) {
+                if (moduleRow[x] != 1) {
+                    x++;
+                    continue;
+                }
+                int runStart = x;
+                while (x < moduleRow.length && moduleRow[x] == 1) {
+                    x++;
+                }
+                int run = x - runStart;
+                svg.append('M').append(runStart + QUIET_ZONE).append(' ').append(y + QUIET_ZONE)
+                    .append('h').append(run).append("v1h-").append(run).append('z');
+            }
+        }
+        svg.append("\"/></svg>");
+        return svg.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private RenderBuffer acquire() {
+        RenderBuffer buffer = pool.poll();
+        return buffer != null ? buffer : new RenderBuffer();
+    }
+    
+    private void release(RenderBuffer buffer) {
+        if (buffer.isOversized() || !pool.offer(buffer.reset())) {
+            buffer.deflater.end();
+        }
+    }
+    
+    /**
+     * 描画1回分の作業領域
+     */
+    private static final class RenderBuffer {
+        
+        private final ByteSink out = new ByteSink(8 * 1024);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final CRC32 crc = new CRC32();
+        private final StringBuilder text = new StringBuilder(8 * 1024);
+        private byte[] row = new byte[0];
+        private byte[] quietRow = new byte[0];
+        
+        byte[] row(int length) {
+            if (row.length < length) {
+                row = new byte[length];
+            }
+            return row;
+        }
+        
+        byte[] quietRow(int length) {
+            if (quietRow.length < length) {
+                quietRow = new byte[length];
+            }
+            return quietRow;
+        }
+        
+        boolean isOversized() {
+            return out.capacity() > MAX_POOLED_BUFFER_SIZE || text.capacity() > MAX_POOLED_BUFFER_SIZE
+                || row.length > MAX_POOLED_BUFFER_SIZE;
+        }
+        
+        RenderBuffer reset() {
+            out.reset();
+            deflater.reset();
+            text.setLength(0);
+            return this;
+        }
+    }
+    
+    /**
+     * 拡張可能な出力バッファ（PNGチャンクの書き込み用）
+     */
+    private static final class ByteSink {
+        
+        private byte[] buf;
+        private int count;
+        
+        ByteSink(int initialCapacity) {
+            this.buf = new byte[initialCapacity];
+        }
+        
+        void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+        
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+        
+        void writeInt(int value) {
+            ensure(4);
+            buf[count++] = (byte) (value >>> 24);
+            buf[count++] = (byte) (value >>> 16);
+            buf[count++] = (byte) (value >>> 8);
+            buf[count++] = (byte) value;
+        }
+        
+        /**
+         * チャンクの長さ（後で埋める）と種別を書き込み、チャンクの開始位置を返す
+         */
+        int beginChunk(byte[] type) {
+            int start = count;
+            writeInt(0);
+            write(type);
+            return start;
+        }
+        
+        void endChunk(int start, CRC32 crc) {
+            int length = count - start - 8;
+            buf[start] = (byte) (length >>> 24);
+            buf[start + 1] = (byte) (length >>> 16);
+            buf[start + 2] = (byte) (length >>> 8);
+            buf[start + 3] = (byte) length;
+            crc.reset();
+            crc.update(buf, start + 4, length + 4);
+            writeInt((int) crc.getValue());
+        }
+        
+        void deflateFrom(Deflater deflater) {
+            ensure(512);
+            count += deflater.deflate(buf, count, buf.length - count);
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+        
+        int capacity() {
+            return buf.length;
+        }
+        
+        void reset() {
+            count = 0;
+        }
+        
+        private void ensure(int extra) {
+            if (count + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.membership.service.qr;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 描画済みQRコード画像のLRUキャッシュ
+ * 件数ではなく保持している画像の合計バイト数で上限を設け、超えた分は参照の古いものから破棄する
+ */
+public class QrImageCache {
+    
+    private final long maxBytes;
+    private final LinkedHashMap<Key, byte[]> images = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+    
+    public QrImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * QRコードの内容・形式・倍率の組み合わせ
+     */
+    public record Key(String content, QrCodeRenderer.Format format, int scale) {
+    }
+    
+    public synchronized byte[] get(Key key) {
+        return images.get(key);
+    }
+    
+    public synchronized void put(Key key, byte[] image) {
+        if (image.length > maxBytes) {
+            return;
+        }
+        byte[] previous = images.put(key, image);
+        currentBytes += image.length - (previous != null ? previous.length : 0);
+        Iterator<Map.Entry<Key, byte[]>> eldest = images.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<Key, byte[]> entry = eldest.next();
+            currentBytes -= entry.getValue().length;
+            eldest.remove();
+        }
+    }
+    
+    public synchronized void clear() {
+        images.clear();
+        currentBytes = 0;
+    }
+    
+    public synchronized long sizeInBytes() {
+        return currentBytes;
+    }
+}
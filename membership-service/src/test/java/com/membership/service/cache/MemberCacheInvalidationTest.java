@@ -0,0 +1,123 @@
+package com.membership.service.cache;
+
+import com.membership.MembershipServiceApplication;
+import com.membership.entity.Member;
+import com.membership.service.MemberService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 同じDBを使う2つのインスタンスを起動し、一方での会員の更新がもう一方のキャッシュへ破棄通知で反映されることを確認する
+ * キャッシュの有効期限（60秒）より十分短い時間で反映されるため、有効期限ではなく通知による反映であることが分かる
+ */
+class MemberCacheInvalidationTest {
+    
+    private static final Duration PROPAGATION_TIMEOUT = Duration.ofSeconds(10);
+    
+    private static EmbeddedPostgres postgres;
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+    private static long memberId;
+    
+    @BeforeAll
+    static void startInstances() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        jdbcTemplate.execute(Files.readString(Path.of("../init.sql")));
+        memberId = jdbcTemplate.queryForObject("""
+            INSERT INTO members (member_code, store_id, first_name, last_name, email, member_type, status, enrollment_date,
+                enrollment_method)
+            VALUES ('CACHE0000000001', (SELECT id FROM stores ORDER BY id LIMIT 1), '太郎', '山田',
+                'cache-test@example.com', 'REGULAR', 'ACTIVE', CURRENT_DATE, 'STORE')
+            RETURNING id
+            """, Long.class);
+        
+        int firstPort = freePort();
+        int secondPort = freePort();
+        first = start(firstPort, secondPort);
+        second = start(secondPort, firstPort);
+    }
+    
+    @AfterAll
+    static void stopInstances() throws IOException {
+        if (first != null) {
+            first.close();
+        }
+        if (second != null) {
+            second.close();
+        }
+        postgres.close();
+    }
+    
+    @Test
+    void updateOnOneInstanceInvalidatesTheOther() throws InterruptedException {
+        MemberService firstService = first.getBean(MemberService.class);
+        MemberService secondService = second.getBean(MemberService.class);
+        assertThat(secondService.getMemberById(memberId).getFirstName()).isEqualTo("太郎");
+        
+        Member updated = firstService.getMemberById(memberId);
+        updated.setFirstName("次郎");
+        firstService.updateMember(memberId, updated);
+        
+        long deadline = System.nanoTime() + PROPAGATION_TIMEOUT.toNanos();
+        String firstName = secondService.getMemberById(memberId).getFirstName();
+        while (!"次郎".equals(firstName) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            firstName = secondService.getMemberById(memberId).getFirstName();
+        }
+        assertThat(firstName).isEqualTo("次郎");
+    }
+    
+    @Test
+    void invalidationEndpointRejectsForwardedRequestsWithoutToken() throws Exception {
+        int port = first.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        URI uri = URI.create("http://localhost:" + port + MemberCacheInvalidator.INVALIDATE_PATH.formatted(memberId));
+        HttpClient client = HttpClient.newHttpClient();
+        
+        HttpResponse<Void> direct = client.send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.noBody()).build(),
+            HttpResponse.BodyHandlers.discarding());
+        HttpResponse<Void> forwarded = client.send(HttpRequest.newBuilder(uri)
+                .header("X-Forwarded-For", "203.0.113.10")
+                .POST(HttpRequest.BodyPublishers.noBody()).build(),
+            HttpResponse.BodyHandlers.discarding());
+        
+        assertThat(direct.statusCode()).isEqualTo(204);
+        assertThat(forwarded.statusCode()).isEqualTo(403);
+    }
+    
+    private static ConfigurableApplicationContext start(int port, int peerPort) {
+        return new SpringApplicationBuilder(MembershipServiceApplication.class).run(
+            "--server.port=" + port,
+            "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+            "--spring.datasource.username=postgres",
+            "--spring.datasource.password=",
+            "--spring.jpa.hibernate.ddl-auto=none",
+            "--eureka.client.enabled=false",
+            // Eurekaの代わりに相手のインスタンスだけを登録する
+            "--spring.cloud.discovery.client.simple.instances.membership-service[0].uri=http://localhost:" + peerPort,
+            "--logging.level.root=WARN");
+    }
+    
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.membership.service.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MembershipCodesTest {
+    
+    /**
+     * 会員コード（Base32 13桁 = 65bit）と会員証番号（10進19桁 ≧ Long.MAX_VALUE）はいずれも
+     * 0以上のlongを桁あふれなく表せるため、異なるIDが同じコードになることはない
+     * ここではビット配置の境界と乱数のIDで、コードの一意性と並び順がIDと一致することを確認する
+     */
+    @Test
+    void distinctIdsMapToDistinctCodesInIdOrder() {
+        SplittableRandom random = new SplittableRandom(7);
+        long[] ids = LongStream.concat(
+            LongStream.of(0, 1, 31, 32, 4095, 4096, 1L << 22, (1L << 22) - 1, Long.MAX_VALUE - 1, Long.MAX_VALUE),
+            random.longs(200_000, 0, Long.MAX_VALUE)).sorted().distinct().toArray();
+        
+        String[] memberCodes = Arrays.stream(ids).mapToObj(MembershipCodes::memberCode).toArray(String[]::new);
+        String[] cardNumbers = Arrays.stream(ids).mapToObj(MembershipCodes::cardNumber).toArray(String[]::new);
+        
+        assertThat(new HashSet<>(Arrays.asList(memberCodes))).hasSize(ids.length);
+        assertThat(new HashSet<>(Arrays.asList(cardNumbers))).hasSize(ids.length);
+        assertThat(memberCodes).isSorted();
+        assertThat(cardNumbers).isSorted();
+        assertThat(memberCodes).allSatisfy(code -> assertThat(code).hasSize(17).startsWith("MEM"));
+        assertThat(cardNumbers).allSatisfy(number -> assertThat(number).hasSize(MembershipCodes.CARD_NUMBER_LENGTH));
+    }
+    
+    @Test
+    void generatedCodesAreValid() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5);
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertThat(MembershipCodes.isValidMemberCode(MembershipCodes.memberCode(id))).isTrue();
+            assertThat(MembershipCodes.isValidCardNumber(MembershipCodes.cardNumber(id))).isTrue();
+        }
+    }
+    
+    @Test
+    void singleCharacterChangesAreDetected() {
+        String code = MembershipCodes.memberCode(new SnowflakeIdGenerator(9).nextId());
+        String number = MembershipCodes.cardNumber(123_456_789_012_345L);
+        String base32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+        
+        Set<String> variants = new HashSet<>();
+        for (int i = MembershipCodes.MEMBER_CODE_PREFIX.length(); i < code.length(); i++) {
+            for (char c : base32.toCharArray()) {
+                if (c != code.charAt(i)) {
+                    variants.add(code.substring(0, i) + c + code.substring(i + 1));
+                }
+            }
+        }
+        assertThat(variants).noneMatch(MembershipCodes::isValidMemberCode);
+        
+        for (int i = 0; i < number.length(); i++) {
+            for (char c = '0'; c <= '9'; c++) {
+                if (c != number.charAt(i)) {
+                    assertThat(MembershipCodes.isValidCardNumber(number.substring(0, i) + c + number.substring(i + 1)))
+                        .isFalse();
+                }
+            }
+        }
+    }
+    
+    @Test
+    void rejectsMalformedInput() {
+        assertThat(MembershipCodes.isValidMemberCode(null)).isFalse();
+        assertThat(MembershipCodes.isValidMemberCode("MEM123")).isFalse();
+        assertThat(MembershipCodes.isValidMemberCode("XYZ" + MembershipCodes.memberCode(1).substring(3))).isFalse();
+        assertThat(MembershipCodes.isValidCardNumber("1234567890123456789A")).isFalse();
+    }
+}
@@ -0,0 +1,141 @@
+package com.membership.service.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnowflakeIdGeneratorTest {
+    
+    private static final long EPOCH = SnowflakeIdGenerator.DEFAULT_EPOCH_MILLIS;
+    private static final long SEQUENCE_MASK = (1L << SnowflakeIdGenerator.SEQUENCE_BITS) - 1;
+    
+    @Test
+    void concurrentGenerationProducesUniqueIncreasingIds() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        
+        long[][] perThread = generateConcurrently(16, 100_000, generator::nextId);
+        
+        for (long[] ids : perThread) {
+            for (int i = 1; i < ids.length; i++) {
+                assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+            }
+        }
+        assertAllDistinct(perThread);
+    }
+    
+    /**
+     * 時刻が進まない状態で競合させても重複せず、1ミリ秒あたりの連番の上限（4096）を超えた分は次のミリ秒へ繰り上がる
+     */
+    @Test
+    void frozenClockUnderContentionCarriesSequenceIntoNextMillisecond() throws Exception {
+        long now = EPOCH + 1_000;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, EPOCH, () -> now);
+        int threads = 8;
+        int perThread = 50_000;
+        
+        long[][] ids = generateConcurrently(threads, perThread, generator::nextId);
+        
+        long[] all = assertAllDistinct(ids);
+        long expectedMillis = (long) threads * perThread / (SEQUENCE_MASK + 1);
+        assertThat(elapsedMillis(all[0])).isEqualTo(1_000);
+        assertThat(elapsedMillis(all[all.length - 1])).isEqualTo(1_000 + expectedMillis);
+        for (long id : all) {
+            assertThat(nodeId(id)).isEqualTo(3);
+        }
+    }
+    
+    @Test
+    void clockMovingBackwardsNeverRepeatsIds() {
+        long[] times = {EPOCH + 500, EPOCH + 500, EPOCH + 100, EPOCH + 499, EPOCH + 501, EPOCH + 0};
+        AtomicLong call = new AtomicLong();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, EPOCH,
+            () -> times[(int) Math.min(call.getAndIncrement(), times.length - 1)]);
+        
+        long previous = -1;
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(previous);
+            previous = id;
+        }
+    }
+    
+    /**
+     * ノードIDが異なる生成器は、同じ時刻・同じ連番でもノードIDのビットが異なるため重複しない
+     */
+    @Test
+    void generatorsOnDistinctNodesNeverCollide() throws Exception {
+        long now = EPOCH + 42;
+        List<SnowflakeIdGenerator> generators = new ArrayList<>();
+        for (int node : new int[] {0, 1, 512, SnowflakeIdGenerator.MAX_NODE_ID}) {
+            generators.add(new SnowflakeIdGenerator(node, EPOCH, () -> now));
+        }
+        AtomicLong next = new AtomicLong();
+        
+        long[][] ids = generateConcurrently(8, 20_000,
+            () -> generators.get((int) (next.getAndIncrement() % generators.size())).nextId());
+        
+        assertAllDistinct(ids);
+    }
+    
+    @Test
+    void rejectsNodeIdOutsideTenBits() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    private static long[][] generateConcurrently(int threads, int perThread, LongSupplier nextId) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Callable<long[]> task = () -> {
+                    start.await();
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = nextId.getAsLong();
+                    }
+                    return ids;
+                };
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+            long[][] results = new long[threads][];
+            for (int t = 0; t < threads; t++) {
+                results[t] = futures.get(t).get();
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private static long[] assertAllDistinct(long[][] perThread) {
+        long[] all = Arrays.stream(perThread).flatMapToLong(Arrays::stream).sorted().toArray();
+        for (int i = 1; i < all.length; i++) {
+            assertThat(all[i]).as("duplicate id").isNotEqualTo(all[i - 1]);
+        }
+        return all;
+    }
+    
+    private static long elapsedMillis(long id) {
+        return id >>> (SnowflakeIdGenerator.NODE_BITS + SnowflakeIdGenerator.SEQUENCE_BITS);
+    }
+    
+    private static long nodeId(long id) {
+        return (id >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_NODE_ID;
+    }
+}
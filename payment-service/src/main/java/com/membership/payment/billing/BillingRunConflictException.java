@@ -0,0 +1,15 @@
+package com.membership.payment.billing;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 同じ請求月の請求処理が他のスレッドまたはインスタンスで実行中
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class BillingRunConflictException extends RuntimeException {
+    
+    public BillingRunConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,289 @@
+package com.membership.payment.billing;
+
+import com.membership.payment.dto.BillingRunResult;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 月次会費請求処理
+ * 請求月に有効な契約を会員IDの範囲で分割し、範囲ごとにワーカースレッドが会員ID順に読み進めて
+ * membership_billsへJDBCバッチで登録する。会員・請求月の一意制約で重複を無視するため、何度実行しても請求は1件になる
+ * 範囲ごとの進捗は請求と同じトランザクションでコミットし、中断した処理は次回の実行時に続きから再開する
+ */
+@Service
+@Slf4j
+public class BillingRunService {
+    
+    private static final String COUNT_SQL = "SELECT COUNT(*) AS total, " +
+        "percentile_disc(?::float8[]) WITHIN GROUP (ORDER BY c.member_id) AS boundaries " +
+        "FROM membership_contracts c JOIN membership_plans p ON p.id = c.plan_id " +
+        "WHERE c.status = 'ACTIVE' AND c.contract_start_date <= ? " +
+        "AND (c.contract_end_date IS NULL OR c.contract_end_date >= ?)";
+    private static final String SELECT_SQL = "SELECT c.id, c.member_id, c.payment_method, p.monthly_fee " +
+        "FROM membership_contracts c JOIN membership_plans p ON p.id = c.plan_id " +
+        "WHERE c.status = 'ACTIVE' AND c.contract_start_date <= ? " +
+        "AND (c.contract_end_date IS NULL OR c.contract_end_date >= ?) " +
+        "AND (c.member_id, c.id) > (?, ?) AND c.member_id < ? " +
+        "ORDER BY c.member_id, c.id LIMIT ?";
+    private static final String INSERT_SQL = "INSERT INTO membership_bills " +
+        "(member_id, contract_id, billing_month, amount, tax_amount, total_amount, payment_method) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (member_id, billing_month) DO NOTHING";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BillingRunStore store;
+    private final TaxCalculator taxCalculator;
+    private final int partitions;
+    private final int batchSize;
+    private final long heartbeatIntervalMillis;
+    private final long staleAfterMillis;
+    private final ExecutorService workers;
+    private final Set<Thread> coordinators = ConcurrentHashMap.newKeySet();
+    
+    private record Contract(long id, long memberId, String paymentMethod, BigDecimal monthlyFee) {
+    }
+    
+    public BillingRunService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             BillingRunStore store,
+                             TaxCalculator taxCalculator,
+                             @Value("${payment.billing.worker-threads:4}") int workerThreads,
+                             @Value("${payment.billing.partitions:16}") int partitions,
+                             @Value("${payment.billing.batch-size:1000}") int batchSize,
+                             @Value("${payment.billing.heartbeat-interval-ms:10000}") long heartbeatIntervalMillis,
+                             @Value("${payment.billing.stale-after-ms:60000}") long staleAfterMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.store = store;
+        this.taxCalculator = taxCalculator;
+        this.partitions = partitions;
+        this.batchSize = batchSize;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.staleAfterMillis = staleAfterMillis;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, task -> {
+            Thread thread = new Thread(task, "billing-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * 請求月の請求処理を開始する（処理はバックグラウンドで実行し、開始時点の状況を返す）
+     * 失敗・中断した処理は続きから再開し、完了済みの場合は何もしない
+     *
+     * @throws BillingRunConflictException 同じ請求月の処理が実行中の場合
+     */
+    public BillingRunResult start(YearMonth month) {
+        LocalDate billingMonth = month.atDay(1);
+        Long runId = transactionTemplate.execute(status -> claim(billingMonth));
+        if (runId != null) {
+            Thread coordinator = new Thread(() -> {
+                try {
+                    execute(runId, billingMonth);
+                } finally {
+                    coordinators.remove(Thread.currentThread());
+                }
+            }, "billing-run-" + month);
+            coordinator.setDaemon(true);
+            coordinators.add(coordinator);
+            coordinator.start();
+        }
+        return getRun(month);
+    }
+    
+    /**
+     * 請求月の請求処理の状況（未実行の場合はnull）
+     */
+    public BillingRunResult getRun(YearMonth month) {
+        BillingRunStore.Run run = store.findRun(month.atDay(1));
+        if (run == null) {
+            return null;
+        }
+        return new BillingRunResult(YearMonth.from(run.billingMonth()), run.status(), run.totalContracts(),
+            run.billedContracts(), run.partitions(), run.completedPartitions(), run.startedAt(), run.finishedAt());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        // 処理中の範囲は進捗を残して中断し、実行を失敗として記録する（次回の実行で続きから再開する）
+        workers.shutdownNow();
+        coordinators.forEach(Thread::interrupt);
+    }
+    
+    /**
+     * 実行を登録し、会員IDの範囲を決める。完了済みの場合はnullを返す
+     */
+    private Long claim(LocalDate billingMonth) {
+        LocalDate periodEnd = billingMonth.plusMonths(1).minusDays(1);
+        Long reclaimed = store.reclaimRun(billingMonth, staleAfterMillis);
+        if (reclaimed != null) {
+            log.info("Resuming billing run for {}", billingMonth);
+            return reclaimed;
+        }
+        BillingRunStore.Run existing = store.findRun(billingMonth);
+        if (existing != null) {
+            if (BillingRunStore.COMPLETED.equals(existing.status())) {
+                return null;
+            }
+            throw new BillingRunConflictException("Billing run for " + YearMonth.from(billingMonth) + " is already running");
+        }
+        
+        // 有効な契約数がほぼ均等になるよう、会員IDの分位点で範囲を分ける
+        List<Long> boundaries = new ArrayList<>();
+        long total = jdbcTemplate.query(COUNT_SQL, ps -> {
+            Double[] fractions = new Double[Math.max(partitions - 1, 0)];
+            for (int i = 0; i < fractions.length; i++) {
+                fractions[i] = (double) (i + 1) / partitions;
+            }
+            ps.setArray(1, ps.getConnection().createArrayOf("float8", fractions));
+            ps.setDate(2, Date.valueOf(periodEnd));
+            ps.setDate(3, Date.valueOf(billingMonth));
+        }, rs -> {
+            rs.next();
+            Array array = rs.getArray("boundaries");
+            if (array != null) {
+                for (Object boundary : (Object[]) array.getArray()) {
+                    long memberId = ((Number) boundary).longValue();
+                    if (boundaries.isEmpty() || boundaries.get(boundaries.size() - 1) < memberId) {
+                        boundaries.add(memberId);
+                    }
+                }
+            }
+            return rs.getLong("total");
+        });
+        Long runId = store.insertRun(billingMonth, total);
+        if (runId == null) {
+            throw new BillingRunConflictException("Billing run for " + YearMonth.from(billingMonth) + " is already running");
+        }
+        store.createPartitions(runId, boundaries);
+        log.info("Starting billing run for {}: {} contracts in {} partitions", billingMonth, total, boundaries.size() + 1);
+        return runId;
+    }
+    
+    /**
+     * 未完了の範囲をワーカーへ割り当て、完了を待つ間ハートビートを更新する
+     */
+    private void execute(long runId, LocalDate billingMonth) {
+        long started = System.currentTimeMillis();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (BillingRunStore.Partition partition : store.findPartitions(runId)) {
+                if (!BillingRunStore.COMPLETED.equals(partition.status())) {
+                    futures.add(workers.submit(() -> bill(runId, billingMonth, partition)));
+                }
+            }
+            for (Future<?> future : futures) {
+                while (true) {
+                    try {
+                        future.get(heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        store.heartbeat(runId);
+                    }
+                }
+            }
+            store.finish(runId, BillingRunStore.COMPLETED);
+            log.info("Completed billing run for {} in {} ms", billingMonth, System.currentTimeMillis() - started);
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Billing run for {} failed, it will resume from the last checkpoint: {}", billingMonth,
+                e instanceof ExecutionException ? e.getCause().toString() : e.toString());
+            try {
+                store.finish(runId, BillingRunStore.FAILED);
+            } catch (RuntimeException ex) {
+                log.warn("Failed to record billing run failure for {}: {}", billingMonth, ex.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 1つの範囲を前回の進捗から最後まで処理する
+     */
+    private void bill(long runId, LocalDate billingMonth, BillingRunStore.Partition partition) {
+        LocalDate periodEnd = billingMonth.plusMonths(1).minusDays(1);
+        // 未処理の範囲は (from - 1, 最大値) の次、つまり会員ID fromの最初の契約から読む
+        long lastMemberId = partition.lastMemberId() != null ? partition.lastMemberId() : partition.fromMemberId() - 1;
+        long lastContractId = partition.lastContractId() != null ? partition.lastContractId() : Long.MAX_VALUE;
+        long toMemberId = partition.toMemberId() != null ? partition.toMemberId() : Long.MAX_VALUE;
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("Billing partition " + partition.partitionNo() + " interrupted");
+            }
+            List<Contract> contracts = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new Contract(rs.getLong("id"),
+                    rs.getLong("member_id"), rs.getString("payment_method"), rs.getBigDecimal("monthly_fee")),
+                Date.valueOf(periodEnd), Date.valueOf(billingMonth), lastMemberId, lastContractId, toMemberId, batchSize);
+            if (!contracts.isEmpty()) {
+                write(runId, partition.partitionNo(), billingMonth, contracts);
+                Contract last = contracts.get(contracts.size() - 1);
+                lastMemberId = last.memberId();
+                lastContractId = last.id();
+            }
+            if (contracts.size() < batchSize) {
+                store.completePartition(runId, partition.partitionNo());
+                return;
+            }
+        }
+    }
+    
+    private void write(long runId, int partitionNo, LocalDate billingMonth, List<Contract> contracts) {
+        Contract last = contracts.get(contracts.size() - 1);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, contracts, contracts.size(),
+                    (ps, contract) -> bind(ps, billingMonth, contract));
+                store.checkpoint(runId, partitionNo, last.memberId(), last.id(), contracts.size());
+            });
+        } catch (DataIntegrityViolationException e) {
+            // 処理中に削除された会員など一部の行が制約違反になった場合は1行ずつ登録し、違反行のみ飛ばす
+            for (Contract contract : contracts) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, billingMonth, contract));
+                } catch (DataIntegrityViolationException ex) {
+                    log.warn("Skipping bill for contract {} of member {}: {}", contract.id(), contract.memberId(),
+                        ex.getMostSpecificCause().getMessage());
+                }
+            }
+            store.checkpoint(runId, partitionNo, last.memberId(), last.id(), contracts.size());
+        }
+    }
+    
+    private void bind(PreparedStatement ps, LocalDate billingMonth, Contract contract) throws SQLException {
+        TaxCalculator.Amounts amounts = taxCalculator.calculate(contract.monthlyFee());
+        ps.setLong(1, contract.memberId());
+        ps.setLong(2, contract.id());
+        ps.setDate(3, Date.valueOf(billingMonth));
+        ps.setBigDecimal(4, amounts.amount());
+        ps.setBigDecimal(5, amounts.tax());
+        ps.setBigDecimal(6, amounts.total());
+        ps.setString(7, contract.paymentMethod());
+    }
+}
@@ -0,0 +1,138 @@
+package com.membership.payment.billing;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 月次請求処理の実行状況と会員ID範囲ごとの進捗（billing_runs / billing_run_partitions）
+ */
+@Component
+class BillingRunStore {
+    
+    static final String RUNNING = "RUNNING";
+    static final String COMPLETED = "COMPLETED";
+    static final String FAILED = "FAILED";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    BillingRunStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    record Run(long id, LocalDate billingMonth, String status, Long totalContracts, long billedContracts,
+               int partitions, int completedPartitions, LocalDateTime startedAt, LocalDateTime finishedAt) {
+    }
+    
+    /**
+     * 会員ID範囲 [fromMemberId, toMemberId) と、最後に請求を登録した契約（未処理ならnull）
+     */
+    record Partition(int partitionNo, long fromMemberId, Long toMemberId, Long lastMemberId, Long lastContractId,
+                     String status) {
+    }
+    
+    /**
+     * 請求月の実行を新規に登録する（既に登録済みの場合はnull）
+     */
+    Long insertRun(LocalDate billingMonth, long totalContracts) {
+        List<Long> ids = jdbcTemplate.queryForList("INSERT INTO billing_runs (billing_month, status, total_contracts) " +
+            "VALUES (?, ?, ?) ON CONFLICT (billing_month) DO NOTHING RETURNING id",
+            Long.class, Date.valueOf(billingMonth), RUNNING, totalContracts);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+    
+    /**
+     * 失敗した実行、または一定時間ハートビートが途絶えた（実行中のインスタンスが停止した）実行を引き継ぐ
+     */
+    Long reclaimRun(LocalDate billingMonth, long staleAfterMillis) {
+        List<Long> ids = jdbcTemplate.queryForList("UPDATE billing_runs " +
+            "SET status = ?, heartbeat_at = CURRENT_TIMESTAMP, finished_at = NULL " +
+            "WHERE billing_month = ? AND (status = ? OR (status = ? AND heartbeat_at < ?)) RETURNING id",
+            Long.class, RUNNING, Date.valueOf(billingMonth), FAILED, RUNNING,
+            Timestamp.valueOf(LocalDateTime.now().minusNanos(staleAfterMillis * 1_000_000)));
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+    
+    Run findRun(LocalDate billingMonth) {
+        List<Run> runs = jdbcTemplate.query("SELECT r.id, r.billing_month, r.status, r.total_contracts, " +
+            "r.started_at, r.finished_at, COALESCE(SUM(p.billed_contracts), 0) AS billed_contracts, " +
+            "COUNT(p.partition_no) AS partitions, COUNT(p.partition_no) FILTER (WHERE p.status = ?) AS completed_partitions " +
+            "FROM billing_runs r LEFT JOIN billing_run_partitions p ON p.run_id = r.id " +
+            "WHERE r.billing_month = ? GROUP BY r.id", (rs, rowNum) -> {
+                long totalContracts = rs.getLong("total_contracts");
+                return new Run(rs.getLong("id"), rs.getDate("billing_month").toLocalDate(), rs.getString("status"),
+                    rs.wasNull() ? null : totalContracts, rs.getLong("billed_contracts"),
+                    rs.getInt("partitions"), rs.getInt("completed_partitions"),
+                    toLocalDateTime(rs, "started_at"), toLocalDateTime(rs, "finished_at"));
+            }, COMPLETED, Date.valueOf(billingMonth));
+        return runs.isEmpty() ? null : runs.get(0);
+    }
+    
+    /**
+     * 境界の会員IDで範囲を分割して登録する（先頭の範囲は最小値から、末尾の範囲は上限なし）
+     */
+    void createPartitions(long runId, List<Long> boundaries) {
+        List<Object[]> rows = new ArrayList<>();
+        long from = 0;
+        for (int i = 0; i <= boundaries.size(); i++) {
+            Long to = i < boundaries.size() ? boundaries.get(i) : null;
+            rows.add(new Object[]{runId, i, from, to});
+            if (to != null) {
+                from = to;
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO billing_run_partitions (run_id, partition_no, from_member_id, to_member_id) " +
+            "VALUES (?, ?, ?, ?)", rows);
+    }
+    
+    List<Partition> findPartitions(long runId) {
+        return jdbcTemplate.query("SELECT partition_no, from_member_id, to_member_id, last_member_id, last_contract_id, status " +
+            "FROM billing_run_partitions WHERE run_id = ? ORDER BY partition_no", (rs, rowNum) -> new Partition(
+                rs.getInt("partition_no"), rs.getLong("from_member_id"), getLong(rs, "to_member_id"),
+                getLong(rs, "last_member_id"), getLong(rs, "last_contract_id"), rs.getString("status")), runId);
+    }
+    
+    /**
+     * 登録済みの最後の契約を記録する。請求の登録と同じトランザクションで呼び、請求と進捗を一緒にコミットする
+     */
+    void checkpoint(long runId, int partitionNo, long lastMemberId, long lastContractId, int billedContracts) {
+        jdbcTemplate.update("UPDATE billing_run_partitions SET last_member_id = ?, last_contract_id = ?, " +
+            "billed_contracts = billed_contracts + ?, status = ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE run_id = ? AND partition_no = ?",
+            lastMemberId, lastContractId, billedContracts, RUNNING, runId, partitionNo);
+    }
+    
+    void completePartition(long runId, int partitionNo) {
+        jdbcTemplate.update("UPDATE billing_run_partitions SET status = ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE run_id = ? AND partition_no = ?", COMPLETED, runId, partitionNo);
+    }
+    
+    void heartbeat(long runId) {
+        jdbcTemplate.update("UPDATE billing_runs SET heartbeat_at = CURRENT_TIMESTAMP WHERE id = ?", runId);
+    }
+    
+    void finish(long runId, String status) {
+        jdbcTemplate.update("UPDATE billing_runs SET status = ?, heartbeat_at = CURRENT_TIMESTAMP, " +
+            "finished_at = CURRENT_TIMESTAMP, billed_contracts = " +
+            "(SELECT COALESCE(SUM(billed_contracts), 0) FROM billing_run_partitions WHERE run_id = ?) WHERE id = ?",
+            status, runId, runId);
+    }
+    
+    private static Long getLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+    
+    private static LocalDateTime toLocalDateTime(ResultSet rs, String column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
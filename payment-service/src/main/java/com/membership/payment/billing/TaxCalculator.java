@@ -0,0 +1,35 @@
+package com.membership.payment.billing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 会費の消費税計算
+ * 月額会費を税抜金額とし、税率を掛けた端数を設定された方法（既定は切り捨て）で円未満に丸める
+ */
+@Component
+public class TaxCalculator {
+    
+    private final BigDecimal rate;
+    private final RoundingMode rounding;
+    
+    public TaxCalculator(@Value("${payment.billing.tax-rate:0.10}") BigDecimal rate,
+                         @Value("${payment.billing.tax-rounding:DOWN}") RoundingMode rounding) {
+        this.rate = rate;
+        this.rounding = rounding;
+    }
+    
+    /**
+     * 請求金額（税抜金額・消費税額・税込金額）
+     */
+    public record Amounts(BigDecimal amount, BigDecimal tax, BigDecimal total) {
+    }
+    
+    public Amounts calculate(BigDecimal amount) {
+        BigDecimal tax = amount.multiply(rate).setScale(0, rounding);
+        return new Amounts(amount, tax, amount.add(tax));
+    }
+}
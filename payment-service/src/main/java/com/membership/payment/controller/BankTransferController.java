@@ -0,0 +1,70 @@
+package com.membership.payment.controller;
+
+import com.membership.payment.dto.BankTransferFileResult;
+import com.membership.payment.dto.BankTransferImportResult;
+import com.membership.payment.zengin.BankTransferService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+@RestController
+@RequestMapping("/api/payments/bank-transfers")
+@RequiredArgsConstructor
+@Tag(name = "Bank Transfer", description = "口座振替（全銀フォーマット）API")
+public class BankTransferController {
+    
+    private final BankTransferService bankTransferService;
+    
+    @PostMapping
+    @Operation(summary = "依頼ファイルの作成", description = "請求月の未払いの口座振替請求から全銀フォーマットの依頼ファイルを作成し、対象の請求を依頼中にする")
+    public ResponseEntity<BankTransferFileResult> createRequestFile(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth month,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate withdrawalDate) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(bankTransferService.createRequestFile(month, withdrawalDate));
+    }
+    
+    @GetMapping("/{id}/file")
+    @Operation(summary = "依頼ファイルのダウンロード", description = "作成済みの依頼ファイルをそのまま返す（Shift_JIS、1レコード120バイト + CRLF）")
+    public ResponseEntity<Resource> downloadRequestFile(@PathVariable Long id) {
+        Path file = bankTransferService.getRequestFile(id);
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString())
+            .body(new FileSystemResource(file));
+    }
+    
+    @PostMapping(value = "/results", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "結果ファイルの取り込み", description = "銀行から返却された結果ファイル（リクエスト本文）を取り込み、依頼中の請求を振替済または振替不能にする")
+    public ResponseEntity<BankTransferImportResult> importResultFile(HttpServletRequest request) throws IOException {
+        // 本文はメモリに溜めずに一時ファイルへ書き出してから読む
+        Path temp = Files.createTempFile("zengin-result-", ".txt");
+        try (InputStream body = request.getInputStream()) {
+            Files.copy(body, temp, StandardCopyOption.REPLACE_EXISTING);
+            return ResponseEntity.ok(bankTransferService.importResultFile(temp));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.membership.payment.controller;
+
+import com.membership.payment.billing.BillingRunService;
+import com.membership.payment.dto.BillingRunResult;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+
+@RestController
+@RequestMapping("/api/payments/billing-runs")
+@RequiredArgsConstructor
+@Tag(name = "Billing Run", description = "月次会費請求API")
+public class BillingRunController {
+    
+    private final BillingRunService billingRunService;
+    
+    @PostMapping("/{month}")
+    @Operation(summary = "月次請求の実行", description = "請求月（yyyy-MM）に有効な全契約の会費請求を登録する。処理はバックグラウンドで実行し、中断した処理は続きから再開する")
+    public ResponseEntity<BillingRunResult> start(@PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(billingRunService.start(month));
+    }
+    
+    @GetMapping("/{month}")
+    @Operation(summary = "月次請求の状況", description = "請求月（yyyy-MM）の請求処理の進捗")
+    public ResponseEntity<BillingRunResult> get(@PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        BillingRunResult result = billingRunService.getRun(month);
+        return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+    }
+}
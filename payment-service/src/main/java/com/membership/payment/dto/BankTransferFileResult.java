@@ -0,0 +1,19 @@
+package com.membership.payment.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * 作成した口座振替の依頼ファイル
+ *
+ * @param skipped 口座情報が全銀フォーマットに合わず依頼できなかった請求の件数（未払いのまま残る）
+ */
+public record BankTransferFileResult(long id,
+                                     YearMonth billingMonth,
+                                     LocalDate withdrawalDate,
+                                     String fileName,
+                                     int recordCount,
+                                     BigDecimal totalAmount,
+                                     int skipped) {
+}
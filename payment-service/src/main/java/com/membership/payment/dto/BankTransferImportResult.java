@@ -0,0 +1,12 @@
+package com.membership.payment.dto;
+
+/**
+ * 口座振替の結果ファイルの取り込み結果
+ *
+ * @param unmatched 依頼中の請求と顧客番号・金額が一致しなかった件数（取り込み済みの結果の再取り込みを含む）
+ */
+public record BankTransferImportResult(long records,
+                                       long paid,
+                                       long failed,
+                                       long unmatched) {
+}
@@ -0,0 +1,20 @@
+package com.membership.payment.dto;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * 月次請求処理の実行状況
+ *
+ * @param totalContracts  処理開始時点の請求対象契約数
+ * @param billedContracts 請求登録済みの契約数（会員・請求月で既に請求がある契約も含む）
+ */
+public record BillingRunResult(YearMonth billingMonth,
+                               String status,
+                               Long totalContracts,
+                               long billedContracts,
+                               int partitions,
+                               int completedPartitions,
+                               LocalDateTime startedAt,
+                               LocalDateTime finishedAt) {
+}
@@ -0,0 +1,299 @@
+package com.membership.payment.zengin;
+
+import com.membership.payment.dto.BankTransferFileResult;
+import com.membership.payment.dto.BankTransferImportResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 口座振替（全銀フォーマット）の依頼ファイル作成と結果ファイルの取り込み
+ * 依頼ファイルは対象の請求を「依頼中」にしてからサーバーサイドカーソルで読み出し、1件ずつファイルへ書き出す
+ * 結果ファイルは先頭から読んでトレーラの件数・金額を検証した後、もう一度読みながら一定件数ごとにまとめて請求の支払状況を更新する
+ * どちらもファイル全体をメモリに読み込まないため、件数に関わらず使用メモリは一定
+ */
+@Service
+@Slf4j
+public class BankTransferService {
+    
+    static final String REQUESTED = "REQUESTED";
+    static final String PAID = "PAID";
+    static final String FAILED = "FAILED";
+    
+    private static final String MARK_SQL = "UPDATE membership_bills b " +
+        "SET payment_status = ?, transfer_file_id = ?, transfer_result_code = NULL, updated_at = CURRENT_TIMESTAMP " +
+        "WHERE b.billing_month = ? AND b.payment_status = 'PENDING' AND b.payment_method = ? " +
+        "AND EXISTS (SELECT 1 FROM bank_accounts a WHERE a.member_id = b.member_id AND a.status = 'ACTIVE')";
+    private static final String SELECT_SQL = "SELECT b.id, b.total_amount, a.bank_code, a.branch_code, a.account_type, " +
+        "a.account_number, a.account_holder_name FROM membership_bills b " +
+        "JOIN LATERAL (SELECT * FROM bank_accounts a WHERE a.member_id = b.member_id AND a.status = 'ACTIVE' " +
+        "ORDER BY a.id DESC LIMIT 1) a ON true " +
+        "WHERE b.transfer_file_id = ? ORDER BY b.id";
+    private static final String UNMARK_SQL = "UPDATE membership_bills " +
+        "SET payment_status = 'PENDING', transfer_file_id = NULL, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+    private static final String RESULT_SQL = "UPDATE membership_bills b SET payment_status = ?, transfer_result_code = ?, " +
+        "payment_date = CASE WHEN ? THEN f.withdrawal_date END, updated_at = CURRENT_TIMESTAMP " +
+        "FROM bank_transfer_files f " +
+        "WHERE b.id = ? AND b.total_amount = ? AND b.payment_status = ? AND f.id = b.transfer_file_id";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Path outputDir;
+    private final String paymentMethod;
+    private final int batchSize;
+    private final ZenginFileWriter.Consignor consignor;
+    
+    public BankTransferService(DataSource dataSource,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${payment.zengin.output-dir:./data/zengin}") Path outputDir,
+                               @Value("${payment.zengin.payment-method:BANK}") String paymentMethod,
+                               @Value("${payment.zengin.batch-size:1000}") int batchSize,
+                               @Value("${payment.zengin.consignor.code:0000000000}") String consignorCode,
+                               @Value("${payment.zengin.consignor.name:}") String consignorName,
+                               @Value("${payment.zengin.consignor.bank-code:0000}") String bankCode,
+                               @Value("${payment.zengin.consignor.bank-name:}") String bankName,
+                               @Value("${payment.zengin.consignor.branch-code:000}") String branchCode,
+                               @Value("${payment.zengin.consignor.branch-name:}") String branchName,
+                               @Value("${payment.zengin.consignor.account-type:1}") String accountType,
+                               @Value("${payment.zengin.consignor.account-number:0000000}") String accountNumber) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // トランザクション内で実行し、請求をサーバーサイドカーソルで少しずつ読み出す
+        this.cursorJdbcTemplate = new JdbcTemplate(dataSource);
+        this.cursorJdbcTemplate.setFetchSize(batchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.outputDir = outputDir;
+        this.paymentMethod = paymentMethod;
+        this.batchSize = batchSize;
+        this.consignor = new ZenginFileWriter.Consignor(consignorCode, consignorName, bankCode, bankName, branchCode,
+            branchName, accountType, accountNumber);
+    }
+    
+    /**
+     * 請求月の未払いの口座振替請求から依頼ファイルを作成し、対象の請求を依頼中にする
+     * ファイルは一時ファイルへ書き出してから置き換え、登録に失敗した場合は削除する
+     */
+    public BankTransferFileResult createRequestFile(YearMonth month, LocalDate withdrawalDate) {
+        return transactionTemplate.execute(status -> {
+            long fileId = jdbcTemplate.queryForObject("INSERT INTO bank_transfer_files (billing_month, withdrawal_date) " +
+                "VALUES (?, ?) RETURNING id", Long.class, Date.valueOf(month.atDay(1)), Date.valueOf(withdrawalDate));
+            jdbcTemplate.update(MARK_SQL, REQUESTED, fileId, Date.valueOf(month.atDay(1)), paymentMethod);
+            
+            String fileName = "zengin-%s-%d.txt".formatted(month, fileId);
+            Path file = outputDir.resolve(fileName);
+            List<Long> skipped = new ArrayList<>();
+            ZenginFileWriter writer;
+            try {
+                Files.createDirectories(outputDir);
+                Path temp = Files.createTempFile(outputDir, fileName, ".tmp");
+                try {
+                    writer = writeRequestFile(temp, fileId, withdrawalDate, skipped);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write bank transfer file " + file, e);
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        try {
+                            Files.deleteIfExists(file);
+                        } catch (IOException e) {
+                            log.warn("Failed to delete bank transfer file {}: {}", file, e.getMessage());
+                        }
+                    }
+                }
+            });
+            
+            // 口座情報が不正で依頼できなかった請求は未払いに戻す
+            if (!skipped.isEmpty()) {
+                jdbcTemplate.batchUpdate(UNMARK_SQL, skipped, batchSize, (ps, billId) -> ps.setLong(1, billId));
+            }
+            BigDecimal totalAmount = BigDecimal.valueOf(writer.totalAmount());
+            jdbcTemplate.update("UPDATE bank_transfer_files SET file_name = ?, record_count = ?, total_amount = ?, " +
+                "status = ? WHERE id = ?", fileName, writer.count(), totalAmount, REQUESTED, fileId);
+            log.info("Created bank transfer file {} with {} debits ({} yen), skipped {}",
+                fileName, writer.count(), writer.totalAmount(), skipped.size());
+            return new BankTransferFileResult(fileId, month, withdrawalDate, fileName, writer.count(), totalAmount,
+                skipped.size());
+        });
+    }
+    
+    /**
+     * 依頼中にした請求を読み出してファイルへ書き出す。口座情報が全銀フォーマットに合わない請求はskippedに加えて飛ばす
+     */
+    private ZenginFileWriter writeRequestFile(Path temp, long fileId, LocalDate withdrawalDate, List<Long> skipped)
+            throws IOException {
+        try (ZenginFileWriter writer = new ZenginFileWriter(temp)) {
+            writer.header(consignor, withdrawalDate);
+            cursorJdbcTemplate.query(SELECT_SQL, (RowCallbackHandler) rs -> {
+                long billId = rs.getLong("id");
+                try {
+                    writer.data(new ZenginFileWriter.Debit(rs.getString("bank_code"), null,
+                        rs.getString("branch_code"), null, rs.getString("account_type"),
+                        rs.getString("account_number"), rs.getString("account_holder_name"),
+                        rs.getBigDecimal("total_amount").longValueExact(), String.valueOf(billId)));
+                } catch (IllegalArgumentException | ArithmeticException e) {
+                    log.warn("Skipping bill {} in bank transfer file: {}", billId, e.getMessage());
+                    skipped.add(billId);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, fileId);
+            writer.finish();
+            return writer;
+        }
+    }
+    
+    /**
+     * 依頼ファイルのパス（存在しない場合はnull）
+     */
+    public Path getRequestFile(long fileId) {
+        List<String> names = jdbcTemplate.queryForList("SELECT file_name FROM bank_transfer_files WHERE id = ? AND file_name IS NOT NULL",
+            String.class, fileId);
+        if (names.isEmpty()) {
+            return null;
+        }
+        Path file = outputDir.resolve(names.get(0));
+        return Files.exists(file) ? file : null;
+    }
+    
+    /**
+     * 銀行から返却された結果ファイルを取り込み、依頼中の請求を振替済（PAID）または振替不能（FAILED）にする
+     * 依頼中の請求のみ更新するため、同じファイルを再度取り込んでも結果は変わらない
+     *
+     * @throws ZenginFormatException ファイルの形式やトレーラの合計が不正な場合（請求は更新しない）
+     */
+    public BankTransferImportResult importResultFile(Path file) throws IOException {
+        validate(file);
+        
+        List<ZenginFileReader.Data> batch = new ArrayList<>(batchSize);
+        long[] counts = new long[4];
+        ZenginFileReader.read(file, new ZenginFileReader.Handler() {
+            @Override
+            public void header(ZenginFileReader.Header header) {
+            }
+            
+            @Override
+            public void data(ZenginFileReader.Data data) {
+                batch.add(data);
+                if (batch.size() >= batchSize) {
+                    apply(batch, counts);
+                }
+            }
+            
+            @Override
+            public void trailer(ZenginFileReader.Trailer trailer) {
+                apply(batch, counts);
+            }
+        });
+        jdbcTemplate.update("UPDATE bank_transfer_files f SET status = 'RESULT_IMPORTED', result_imported_at = CURRENT_TIMESTAMP " +
+            "WHERE f.status = ? AND NOT EXISTS " +
+            "(SELECT 1 FROM membership_bills b WHERE b.transfer_file_id = f.id AND b.payment_status = ?)", REQUESTED, REQUESTED);
+        log.info("Imported bank transfer results from {}: {} records, {} paid, {} failed, {} unmatched",
+            file.getFileName(), counts[0], counts[1], counts[2], counts[3]);
+        return new BankTransferImportResult(counts[0], counts[1], counts[2], counts[3]);
+    }
+    
+    /**
+     * 更新前にファイル全体を読み、口座振替の結果データであることとトレーラの件数・金額の合計を確かめる
+     */
+    private void validate(Path file) throws IOException {
+        long[] totals = new long[6];
+        boolean[] trailerSeen = new boolean[1];
+        ZenginFileReader.read(file, new ZenginFileReader.Handler() {
+            @Override
+            public void header(ZenginFileReader.Header header) {
+                if (!ZenginFileWriter.TYPE_CODE_DIRECT_DEBIT.equals(header.typeCode())) {
+                    throw new ZenginFormatException("Not a direct debit result file: type code " + header.typeCode());
+                }
+            }
+            
+            @Override
+            public void data(ZenginFileReader.Data data) {
+                if (data.customerNumber().isEmpty() || !data.customerNumber().chars().allMatch(Character::isDigit)) {
+                    throw new ZenginFormatException("Invalid customer number: " + data.customerNumber());
+                }
+                int offset = data.resultCode() == '0' ? 2 : 4;
+                totals[0]++;
+                totals[1] += data.amount();
+                totals[offset]++;
+                totals[offset + 1] += data.amount();
+            }
+            
+            @Override
+            public void trailer(ZenginFileReader.Trailer trailer) {
+                long[] expected = {trailer.totalCount(), trailer.totalAmount(), trailer.transferredCount(),
+                    trailer.transferredAmount(), trailer.failedCount(), trailer.failedAmount()};
+                for (int i = 0; i < expected.length; i++) {
+                    if (expected[i] != totals[i]) {
+                        throw new ZenginFormatException("Trailer totals do not match data records: expected "
+                            + Arrays.toString(expected) + " but was " + Arrays.toString(totals));
+                    }
+                }
+                trailerSeen[0] = true;
+            }
+        });
+        if (!trailerSeen[0]) {
+            throw new ZenginFormatException("Missing trailer record");
+        }
+    }
+    
+    /**
+     * 結果をまとめて更新する。件数: [0]レコード [1]振替済 [2]振替不能 [3]不一致
+     */
+    private void apply(List<ZenginFileReader.Data> batch, long[] counts) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int[][] updated = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(RESULT_SQL, batch, batch.size(),
+            (ps, data) -> {
+                boolean paid = data.resultCode() == '0';
+                ps.setString(1, paid ? PAID : FAILED);
+                ps.setString(2, String.valueOf(data.resultCode()));
+                ps.setBoolean(3, paid);
+                ps.setLong(4, Long.parseLong(data.customerNumber()));
+                ps.setBigDecimal(5, BigDecimal.valueOf(data.amount()));
+                ps.setString(6, REQUESTED);
+            }));
+        int i = 0;
+        for (int[] chunk : updated) {
+            for (int count : chunk) {
+                ZenginFileReader.Data data = batch.get(i++);
+                counts[0]++;
+                if (count == 0) {
+                    counts[3]++;
+                } else if (data.resultCode() == '0') {
+                    counts[1]++;
+                } else {
+                    counts[2]++;
+                }
+            }
+        }
+        batch.clear();
+    }
+}
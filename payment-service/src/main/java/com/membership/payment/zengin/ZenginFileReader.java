@@ -0,0 +1,118 @@
+package com.membership.payment.zengin;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 全銀フォーマット（預金口座振替 結果データ）のファイル読み込み
+ * 固定長のバッファで先頭から120バイトずつ切り出して渡すため、ファイルの大きさに関わらず使用メモリは一定
+ * レコード間の改行（CRLF/LF）の有無はどちらでもよい
+ */
+public final class ZenginFileReader {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private ZenginFileReader() {
+    }
+    
+    public record Header(String typeCode, String consignorCode, int withdrawalMonth, int withdrawalDay) {
+    }
+    
+    /**
+     * @param resultCode 振替結果コード（0:振替済 1:資金不足 2:取引なし 3:預金者の振替停止 4:依頼書なし 8:委託者の都合 9:その他）
+     */
+    public record Data(String bankCode, String branchCode, String accountNumber, long amount, String customerNumber,
+                       char resultCode) {
+    }
+    
+    public record Trailer(long totalCount, long totalAmount, long transferredCount, long transferredAmount,
+                          long failedCount, long failedAmount) {
+    }
+    
+    public interface Handler {
+        
+        void header(Header header);
+        
+        void data(Data data);
+        
+        void trailer(Trailer trailer);
+    }
+    
+    /**
+     * ファイルを先頭から読み、レコードごとにhandlerを呼ぶ。エンドレコードで読み込みを終える
+     */
+    public static void read(Path path, Handler handler) throws IOException {
+        byte[] record = new byte[ZenginFileWriter.RECORD_LENGTH];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long recordNumber = 0;
+        int filled = 0;
+        char previous = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    if (filled == 0) {
+                        byte b = buffer.get(buffer.position());
+                        if (b == '\r' || b == '\n' || b == 0x1A) {
+                            buffer.get();
+                            continue;
+                        }
+                    }
+                    int length = Math.min(buffer.remaining(), record.length - filled);
+                    buffer.get(record, filled, length);
+                    filled += length;
+                    if (filled < record.length) {
+                        break;
+                    }
+                    filled = 0;
+                    recordNumber++;
+                    char type = (char) record[0];
+                    checkOrder(previous, type, recordNumber);
+                    if (type == '9') {
+                        return;
+                    }
+                    dispatch(type, record, handler);
+                    previous = type;
+                }
+                buffer.clear();
+            }
+        }
+        if (filled != 0) {
+            throw new ZenginFormatException("Truncated record " + (recordNumber + 1) + ": " + filled + " bytes");
+        }
+        throw new ZenginFormatException("Missing end record after record " + recordNumber);
+    }
+    
+    private static void dispatch(char type, byte[] record, Handler handler) {
+        switch (type) {
+            case '1' -> handler.header(new Header(ZenginText.readText(record, 1, 2), ZenginText.readText(record, 4, 10),
+                (int) ZenginText.readNumber(record, 54, 2), (int) ZenginText.readNumber(record, 56, 2)));
+            case '2' -> handler.data(new Data(ZenginText.readText(record, 1, 4), ZenginText.readText(record, 20, 3),
+                ZenginText.readText(record, 43, 7), ZenginText.readNumber(record, 80, 10),
+                ZenginText.readText(record, 91, 20).trim(), (char) record[111]));
+            case '8' -> handler.trailer(new Trailer(ZenginText.readNumber(record, 1, 6), ZenginText.readNumber(record, 7, 12),
+                ZenginText.readNumber(record, 19, 6), ZenginText.readNumber(record, 25, 12),
+                ZenginText.readNumber(record, 37, 6), ZenginText.readNumber(record, 43, 12)));
+            default -> throw new IllegalStateException("Unexpected record type " + type);
+        }
+    }
+    
+    /**
+     * ヘッダ → データ（0件以上） → トレーラ → エンドの順であること
+     */
+    private static void checkOrder(char previous, char type, long recordNumber) {
+        boolean valid = switch (type) {
+            case '1' -> previous == 0;
+            case '2' -> previous == '1' || previous == '2';
+            case '8' -> previous == '1' || previous == '2';
+            case '9' -> previous == '8';
+            default -> false;
+        };
+        if (!valid) {
+            throw new ZenginFormatException("Unexpected record type '" + type + "' at record " + recordNumber);
+        }
+    }
+}
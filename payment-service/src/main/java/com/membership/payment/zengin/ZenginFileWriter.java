@@ -0,0 +1,143 @@
+package com.membership.payment.zengin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * 全銀フォーマット（預金口座振替 依頼データ、1レコード120バイト + CRLF）のファイル書き込み
+ * ヘッダ・データ・トレーラ・エンドの順に1レコードずつ固定長のバッファへ書き出し、件数と金額の合計だけを保持する
+ */
+public class ZenginFileWriter implements Closeable {
+    
+    static final int RECORD_LENGTH = 120;
+    static final String TYPE_CODE_DIRECT_DEBIT = "91";
+    private static final int BUFFER_RECORDS = 512;
+    
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect((RECORD_LENGTH + 2) * BUFFER_RECORDS);
+    private final byte[] record = new byte[RECORD_LENGTH];
+    private int count;
+    private long totalAmount;
+    
+    /**
+     * 委託者（請求元）の情報
+     */
+    public record Consignor(String code, String name, String bankCode, String bankName, String branchCode,
+                            String branchName, String accountType, String accountNumber) {
+    }
+    
+    /**
+     * 引落1件分の情報
+     *
+     * @param customerNumber 振替結果の突き合わせに使う顧客番号（20桁以内の数字）
+     */
+    public record Debit(String bankCode, String bankName, String branchCode, String branchName, String accountType,
+                        String accountNumber, String holderName, long amount, String customerNumber) {
+    }
+    
+    public ZenginFileWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+    }
+    
+    public void header(Consignor consignor, LocalDate withdrawalDate) throws IOException {
+        record[0] = '1';
+        ZenginText.text(record, 1, 2, TYPE_CODE_DIRECT_DEBIT);
+        record[3] = '0';
+        ZenginText.digits(record, 4, 10, consignor.code());
+        ZenginText.text(record, 14, 40, consignor.name());
+        ZenginText.number(record, 54, 2, withdrawalDate.getMonthValue());
+        ZenginText.number(record, 56, 2, withdrawalDate.getDayOfMonth());
+        ZenginText.digits(record, 58, 4, consignor.bankCode());
+        ZenginText.text(record, 62, 15, consignor.bankName());
+        ZenginText.digits(record, 77, 3, consignor.branchCode());
+        ZenginText.text(record, 80, 15, consignor.branchName());
+        ZenginText.digits(record, 95, 1, accountTypeCode(consignor.accountType()));
+        ZenginText.digits(record, 96, 7, consignor.accountNumber());
+        ZenginText.text(record, 103, 17, null);
+        put();
+    }
+    
+    public void data(Debit debit) throws IOException {
+        record[0] = '2';
+        ZenginText.digits(record, 1, 4, debit.bankCode());
+        ZenginText.text(record, 5, 15, debit.bankName());
+        ZenginText.digits(record, 20, 3, debit.branchCode());
+        ZenginText.text(record, 23, 15, debit.branchName());
+        ZenginText.text(record, 38, 4, null);
+        ZenginText.digits(record, 42, 1, accountTypeCode(debit.accountType()));
+        ZenginText.digits(record, 43, 7, debit.accountNumber());
+        ZenginText.text(record, 50, 30, debit.holderName());
+        ZenginText.number(record, 80, 10, debit.amount());
+        record[90] = '0';
+        ZenginText.digits(record, 91, 20, debit.customerNumber());
+        record[111] = '0';
+        ZenginText.text(record, 112, 8, null);
+        put();
+        count++;
+        totalAmount += debit.amount();
+    }
+    
+    /**
+     * トレーラ（合計件数・合計金額）とエンドを書き込む。振替結果の項目は依頼データでは0にする
+     */
+    public void finish() throws IOException {
+        record[0] = '8';
+        ZenginText.number(record, 1, 6, count);
+        ZenginText.number(record, 7, 12, totalAmount);
+        ZenginText.number(record, 19, 36, 0);
+        ZenginText.text(record, 55, 65, null);
+        put();
+        record[0] = '9';
+        ZenginText.text(record, 1, 119, null);
+        put();
+        flush();
+        channel.force(false);
+    }
+    
+    public int count() {
+        return count;
+    }
+    
+    public long totalAmount() {
+        return totalAmount;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    /**
+     * 預金種目（1:普通 2:当座 4:貯蓄）。口座情報の表記揺れを吸収する
+     */
+    static String accountTypeCode(String accountType) {
+        String type = accountType != null ? accountType.trim().toUpperCase() : "";
+        return switch (type) {
+            case "2", "当座", "CHECKING", "CURRENT" -> "2";
+            case "4", "貯蓄", "SAVINGS" -> "4";
+            case "1", "普通", "ORDINARY", "" -> "1";
+            default -> throw new IllegalArgumentException("Unknown bank account type: " + accountType);
+        };
+    }
+    
+    private void put() throws IOException {
+        if (buffer.remaining() < RECORD_LENGTH + 2) {
+            flush();
+        }
+        buffer.put(record).put((byte) '\r').put((byte) '\n');
+    }
+    
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,15 @@
+package com.membership.payment.zengin;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 全銀フォーマットのファイルとして読み込めない（レコード長・データ区分・トレーラの合計の不一致など）
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class ZenginFormatException extends RuntimeException {
+    
+    public ZenginFormatException(String message) {
+        super(message);
+    }
+}
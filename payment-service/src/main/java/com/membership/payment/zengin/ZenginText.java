@@ -0,0 +1,116 @@
+package com.membership.payment.zengin;
+
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+
+/**
+ * 全銀フォーマットの項目編集
+ * 文字項目は半角英大文字・数字・半角カナ（JIS X 0201）のみ使えるため、全角・ひらがな・小書き文字を変換し、
+ * 変換できない文字は空白にしてからバイト数で左詰め・空白埋めする
+ */
+final class ZenginText {
+    
+    static final Charset CHARSET = Charset.forName("windows-31j");
+    
+    private static final String FULL_WIDTH = "アイウエオカキクケコサシスセソタチツテトナニヌネノハヒフヘホマミムメモヤユヨラリルレロワヲン"
+        + "ァィゥェォッャュョヮヰヱー";
+    private static final String HALF_WIDTH = "ｱｲｳｴｵｶｷｸｹｺｻｼｽｾｿﾀﾁﾂﾃﾄﾅﾆﾇﾈﾉﾊﾋﾌﾍﾎﾏﾐﾑﾒﾓﾔﾕﾖﾗﾘﾙﾚﾛﾜｦﾝ"
+        + "ｱｲｳｴｵﾂﾔﾕﾖﾜｲｴ-";
+    private static final String ALLOWED_SYMBOLS = " ().-/,\\";
+    
+    private ZenginText() {
+    }
+    
+    /**
+     * 文字項目（左詰め・空白埋め）を書き込む
+     */
+    static void text(byte[] record, int offset, int length, String value) {
+        String converted = value != null ? toZenginCharacters(value) : "";
+        byte[] bytes = converted.getBytes(CHARSET);
+        int copied = Math.min(bytes.length, length);
+        System.arraycopy(bytes, 0, record, offset, copied);
+        for (int i = offset + copied; i < offset + length; i++) {
+            record[i] = ' ';
+        }
+    }
+    
+    /**
+     * 数字項目（右詰め・ゼロ埋め）を書き込む
+     */
+    static void number(byte[] record, int offset, int length, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value for zengin numeric field: " + value);
+        }
+        for (int i = offset + length - 1; i >= offset; i--) {
+            record[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        if (value != 0) {
+            throw new IllegalArgumentException("Value too large for " + length + "-digit zengin numeric field");
+        }
+    }
+    
+    /**
+     * 数字のみの文字列項目（銀行番号・口座番号など）を右詰め・ゼロ埋めで書き込む
+     */
+    static void digits(byte[] record, int offset, int length, String value) {
+        String digits = value != null ? value.trim() : "";
+        if (digits.length() > length || !digits.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            throw new IllegalArgumentException("Invalid " + length + "-digit zengin field: " + value);
+        }
+        for (int i = 0; i < length - digits.length(); i++) {
+            record[offset + i] = '0';
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            record[offset + length - digits.length() + i] = (byte) digits.charAt(i);
+        }
+    }
+    
+    static String readText(byte[] record, int offset, int length) {
+        return new String(record, offset, length, CHARSET).stripTrailing();
+    }
+    
+    static long readNumber(byte[] record, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = record[i];
+            if (b == ' ') {
+                continue;
+            }
+            if (b < '0' || b > '9') {
+                throw new ZenginFormatException("Non-numeric zengin field at column " + (i + 1));
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+    
+    /**
+     * 全角英数字・全角カナ・ひらがなを全銀フォーマットで使える半角文字に変換する（濁点・半濁点は分離する）
+     */
+    static String toZenginCharacters(String value) {
+        String normalized = Normalizer.normalize(Normalizer.normalize(value, Normalizer.Form.NFKC), Normalizer.Form.NFD);
+        StringBuilder converted = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c >= 'ぁ' && c <= 'ゖ') {
+                c += 'ァ' - 'ぁ';
+            }
+            int kana = FULL_WIDTH.indexOf(c);
+            if (kana >= 0) {
+                converted.append(HALF_WIDTH.charAt(kana));
+            } else if (c == '゙') {
+                converted.append('ﾞ');
+            } else if (c == '゚') {
+                converted.append('ﾟ');
+            } else if (c >= 'a' && c <= 'z') {
+                converted.append((char) (c - 'a' + 'A'));
+            } else if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || ALLOWED_SYMBOLS.indexOf(c) >= 0) {
+                converted.append(c);
+            } else {
+                converted.append(' ');
+            }
+        }
+        return converted.toString();
+    }
+}
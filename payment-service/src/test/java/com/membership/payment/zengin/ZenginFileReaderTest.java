@@ -0,0 +1,143 @@
+package com.membership.payment.zengin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ZenginFileReaderTest {
+    
+    /**
+     * 銀行から返却される形式の結果ファイル（ヘッダ・データ3件・トレーラ・エンド、CRLF区切り、末尾にEOF文字）
+     */
+    private static final String RESULT_FIXTURE = "/zengin/direct-debit-result.txt";
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void readsAllFieldsOfTheResultFixture() throws IOException {
+        Records records = read(fixture());
+        
+        assertThat(records.headers).containsExactly(new ZenginFileReader.Header("91", "1234567890", 5, 27));
+        assertThat(records.data).containsExactly(
+            new ZenginFileReader.Data("0005", "123", "7654321", 9680, "00000000000000000101", '0'),
+            new ZenginFileReader.Data("0009", "456", "0000123", 14520, "00000000000000000102", '1'),
+            new ZenginFileReader.Data("0010", "789", "1111111", 6050, "00000000000000000103", '0'));
+        assertThat(records.trailers).containsExactly(new ZenginFileReader.Trailer(3, 30250, 2, 15730, 1, 14520));
+    }
+    
+    @Test
+    void acceptsRecordsWithoutLineBreaks() throws IOException {
+        byte[] bytes = Files.readAllBytes(fixture());
+        byte[] packed = new byte[bytes.length];
+        int length = 0;
+        for (byte b : bytes) {
+            if (b != '\r' && b != '\n' && b != 0x1A) {
+                packed[length++] = b;
+            }
+        }
+        Path file = Files.write(tempDir.resolve("packed.txt"), Arrays.copyOf(packed, length));
+        
+        assertThat(read(file)).isEqualTo(read(fixture()));
+    }
+    
+    @Test
+    void acceptsLfLineBreaks() throws IOException {
+        String lf = new String(Files.readAllBytes(fixture()), ZenginText.CHARSET).replace("\r\n", "\n");
+        Path file = Files.write(tempDir.resolve("lf.txt"), lf.getBytes(ZenginText.CHARSET));
+        
+        assertThat(read(file)).isEqualTo(read(fixture()));
+    }
+    
+    @Test
+    void rejectsTruncatedRecord() throws IOException {
+        byte[] bytes = Files.readAllBytes(fixture());
+        // データ2件目の途中で切れたファイル
+        Path file = Files.write(tempDir.resolve("truncated.txt"), Arrays.copyOf(bytes, 122 * 2 + 60));
+        
+        assertThatThrownBy(() -> read(file))
+            .isInstanceOf(ZenginFormatException.class)
+            .hasMessageContaining("Truncated record 3");
+    }
+    
+    @Test
+    void rejectsFileWithoutEndRecord() throws IOException {
+        byte[] bytes = Files.readAllBytes(fixture());
+        Path file = Files.write(tempDir.resolve("no-end.txt"), Arrays.copyOf(bytes, 122 * 5));
+        
+        assertThatThrownBy(() -> read(file))
+            .isInstanceOf(ZenginFormatException.class)
+            .hasMessageContaining("Missing end record");
+    }
+    
+    @Test
+    void rejectsDataBeforeHeader() throws IOException {
+        byte[] bytes = Files.readAllBytes(fixture());
+        // ヘッダを除いたファイル
+        Path file = Files.write(tempDir.resolve("no-header.txt"), Arrays.copyOfRange(bytes, 122, bytes.length));
+        
+        assertThatThrownBy(() -> read(file))
+            .isInstanceOf(ZenginFormatException.class)
+            .hasMessageContaining("Unexpected record type '2' at record 1");
+    }
+    
+    @Test
+    void rejectsNonNumericAmount() throws IOException {
+        byte[] bytes = Files.readAllBytes(fixture());
+        bytes[122 + 85] = 'X';
+        Path file = Files.write(tempDir.resolve("non-numeric.txt"), bytes);
+        
+        assertThatThrownBy(() -> read(file))
+            .isInstanceOf(ZenginFormatException.class)
+            .hasMessageContaining("column 86");
+    }
+    
+    private Path fixture() {
+        try (InputStream in = getClass().getResourceAsStream(RESULT_FIXTURE)) {
+            Path file = tempDir.resolve("fixture.txt");
+            if (!Files.exists(file)) {
+                Files.copy(in, file);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static Records read(Path file) throws IOException {
+        Records records = new Records(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        ZenginFileReader.read(file, new ZenginFileReader.Handler() {
+            @Override
+            public void header(ZenginFileReader.Header header) {
+                records.headers.add(header);
+            }
+            
+            @Override
+            public void data(ZenginFileReader.Data data) {
+                records.data.add(data);
+            }
+            
+            @Override
+            public void trailer(ZenginFileReader.Trailer trailer) {
+                records.trailers.add(trailer);
+            }
+        });
+        return records;
+    }
+    
+    private record Records(List<ZenginFileReader.Header> headers, List<ZenginFileReader.Data> data,
+                           List<ZenginFileReader.Trailer> trailers) {
+    }
+}
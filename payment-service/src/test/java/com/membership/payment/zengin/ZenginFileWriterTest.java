@@ -0,0 +1,71 @@
+package com.membership.payment.zengin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ZenginFileWriterTest {
+    
+    /**
+     * 依頼ファイルの期待値（全角・ひらがなは半角カナに、小書き文字は並字に、長音は「-」に変換される）
+     */
+    private static final String REQUEST_FIXTURE = "/zengin/direct-debit-request.txt";
+    
+    private static final ZenginFileWriter.Consignor CONSIGNOR = new ZenginFileWriter.Consignor("1234567890",
+        "メンバーシップ", "0001", "ミズホ", "001", "ほんてん", "普通", "1234567");
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void writesTheRequestFixture() throws IOException {
+        Path file = tempDir.resolve("request.txt");
+        try (ZenginFileWriter writer = new ZenginFileWriter(file)) {
+            writer.header(CONSIGNOR, LocalDate.of(2024, 5, 27));
+            writer.data(new ZenginFileWriter.Debit("0005", "ミツビシＵＦＪ", "123", "しぶや", "ORDINARY", "7654321",
+                "ヤマダ　タロウ", 9680, "101"));
+            writer.data(new ZenginFileWriter.Debit("9", null, "456", null, "当座", "123", "さとう はなこ", 14520, "102"));
+            writer.finish();
+            
+            assertThat(writer.count()).isEqualTo(2);
+            assertThat(writer.totalAmount()).isEqualTo(24200);
+        }
+        
+        byte[] expected;
+        try (InputStream in = getClass().getResourceAsStream(REQUEST_FIXTURE)) {
+            expected = in.readAllBytes();
+        }
+        assertThat(Files.readAllBytes(file)).isEqualTo(expected);
+    }
+    
+    @Test
+    void replacesCharactersOutsideTheZenginSetWithSpaces() {
+        assertThat(ZenginText.toZenginCharacters("渋谷ﾃﾞｨ店")).isEqualTo("  ﾃﾞｲ ");
+    }
+    
+    @Test
+    void rejectsFieldsThatDoNotFit() throws IOException {
+        try (ZenginFileWriter writer = new ZenginFileWriter(tempDir.resolve("invalid.txt"))) {
+            writer.header(CONSIGNOR, LocalDate.of(2024, 5, 27));
+            
+            assertThatThrownBy(() -> writer.data(new ZenginFileWriter.Debit("0005", null, "123", null, "1", "12345678",
+                "ﾔﾏﾀﾞ", 100, "1")))
+                .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> writer.data(new ZenginFileWriter.Debit("0005", null, "123", null, "外貨", "1234567",
+                "ﾔﾏﾀﾞ", 100, "1")))
+                .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> writer.data(new ZenginFileWriter.Debit("0005", null, "123", null, "1", "1234567",
+                "ﾔﾏﾀﾞ", 10_000_000_000L, "1")))
+                .isInstanceOf(IllegalArgumentException.class);
+            assertThat(writer.count()).isZero();
+        }
+    }
+}
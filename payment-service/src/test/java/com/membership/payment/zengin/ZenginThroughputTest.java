@@ -0,0 +1,73 @@
+package com.membership.payment.zengin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 50万件の依頼ファイルを書き出して読み直し、件数・金額が一致することと処理速度を確認する
+ * どちらも固定長のバッファで1レコードずつ処理するため、件数に比例してメモリを使うことはない
+ * 時間の上限はCIの遅いマシンでも超えない程度に緩く取り、実測値は標準出力に残す
+ */
+class ZenginThroughputTest {
+    
+    private static final int RECORDS = 500_000;
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void writesAndReadsFiveHundredThousandRecords() throws IOException {
+        Path file = tempDir.resolve("large.txt");
+        ZenginFileWriter.Consignor consignor = new ZenginFileWriter.Consignor("1234567890", "ﾒﾝﾊﾞｰｼｯﾌﾟ", "0001",
+            "ﾐｽﾞﾎ", "001", "ﾎﾝﾃﾝ", "1", "1234567");
+        
+        long started = System.nanoTime();
+        long expectedAmount = 0;
+        try (ZenginFileWriter writer = new ZenginFileWriter(file)) {
+            writer.header(consignor, LocalDate.of(2024, 5, 27));
+            for (int i = 1; i <= RECORDS; i++) {
+                long amount = 5500 + i % 7 * 1100;
+                writer.data(new ZenginFileWriter.Debit("0005", null, "123", null, "1",
+                    String.valueOf(1_000_000 + i % 9_000_000), "ﾔﾏﾀﾞ ﾀﾛｳ", amount, String.valueOf(i)));
+                expectedAmount += amount;
+            }
+            writer.finish();
+        }
+        long written = System.nanoTime();
+        
+        long[] totals = new long[3];
+        ZenginFileReader.read(file, new ZenginFileReader.Handler() {
+            @Override
+            public void header(ZenginFileReader.Header header) {
+            }
+            
+            @Override
+            public void data(ZenginFileReader.Data data) {
+                totals[0]++;
+                totals[1] += data.amount();
+                totals[2] = Long.parseLong(data.customerNumber());
+            }
+            
+            @Override
+            public void trailer(ZenginFileReader.Trailer trailer) {
+                assertThat(trailer.totalCount()).isEqualTo(RECORDS);
+            }
+        });
+        long read = System.nanoTime();
+        
+        assertThat(Files.size(file)).isEqualTo((RECORDS + 3L) * 122);
+        assertThat(totals).containsExactly(RECORDS, expectedAmount, RECORDS);
+        System.out.printf("zengin %d records: write %.0f records/s, read %.0f records/s%n", RECORDS,
+            RECORDS / ((written - started) / 1e9), RECORDS / ((read - written) / 1e9));
+    }
+}
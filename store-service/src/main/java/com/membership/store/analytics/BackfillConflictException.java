@@ -0,0 +1,15 @@
+package com.membership.store.analytics;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 集計値のバックフィルが実行中
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class BackfillConflictException extends RuntimeException {
+    
+    public BackfillConflictException(String message) {
+        super(message);
+    }
+}
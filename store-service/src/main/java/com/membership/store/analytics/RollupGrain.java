@@ -0,0 +1,21 @@
+package com.membership.store.analytics;
+
+/**
+ * 集計の時間単位（PostgreSQLのdate_truncの単位）
+ */
+public enum RollupGrain {
+    
+    HOUR("hour"),
+    DAY("day"),
+    MONTH("month");
+    
+    private final String field;
+    
+    RollupGrain(String field) {
+        this.field = field;
+    }
+    
+    String field() {
+        return field;
+    }
+}
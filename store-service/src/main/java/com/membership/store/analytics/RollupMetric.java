@@ -0,0 +1,115 @@
+package com.membership.store.analytics;
+
+import java.util.List;
+
+/**
+ * 集計する指標と、その元データ
+ * 元データは主キー（BIGSERIAL）の順に差分を集計し、件数・金額を店舗・時間単位・内訳ごとに足し込む
+ */
+public enum RollupMetric {
+    
+    /**
+     * 来場数（visit_records）
+     */
+    VISITS("visit_records r", "r", "r.store_id", "r.visit_date", "COUNT(*)", "0", "''", "TRUE",
+        List.of(RollupGrain.HOUR, RollupGrain.DAY, RollupGrain.MONTH)),
+    /**
+     * 売上件数・売上金額（完了した販売）
+     */
+    SALES("sales r", "r", "r.store_id", "r.sale_date", "COUNT(*)", "SUM(r.total_amount)", "''", "r.status = 'COMPLETED'",
+        List.of(RollupGrain.HOUR, RollupGrain.DAY, RollupGrain.MONTH)),
+    /**
+     * 商品カテゴリ別の販売数量・販売金額（完了した販売の明細）
+     */
+    SALES_BY_CATEGORY("sale_items r JOIN sales s ON s.id = r.sale_id LEFT JOIN products p ON p.id = r.product_id", "r",
+        "s.store_id", "s.sale_date", "SUM(r.quantity)", "SUM(r.subtotal)", "COALESCE(p.category, '')",
+        "s.status = 'COMPLETED'", List.of(RollupGrain.DAY, RollupGrain.MONTH)),
+    /**
+     * 入会数（members.enrollment_dateは日付のため日単位から）
+     */
+    ENROLLMENTS("members r", "r", "r.store_id", "r.enrollment_date", "COUNT(*)", "0", "''", "TRUE",
+        List.of(RollupGrain.DAY, RollupGrain.MONTH));
+    
+    private final String from;
+    private final String keyAlias;
+    private final String storeColumn;
+    private final String timeColumn;
+    private final String countExpression;
+    private final String amountExpression;
+    private final String dimensionExpression;
+    private final String condition;
+    private final List<RollupGrain> grains;
+    
+    RollupMetric(String from, String keyAlias, String storeColumn, String timeColumn, String countExpression,
+                 String amountExpression, String dimensionExpression, String condition, List<RollupGrain> grains) {
+        this.from = from;
+        this.keyAlias = keyAlias;
+        this.storeColumn = storeColumn;
+        this.timeColumn = timeColumn;
+        this.countExpression = countExpression;
+        this.amountExpression = amountExpression;
+        this.dimensionExpression = dimensionExpression;
+        this.condition = condition;
+        this.grains = grains;
+    }
+    
+    public List<RollupGrain> grains() {
+        return grains;
+    }
+    
+    /**
+     * 元テーブル（差分の位置と確定待ちの判定に使う主キー・登録日時を持つテーブル）
+     */
+    String table() {
+        return from.substring(0, from.indexOf(' '));
+    }
+    
+    String keyColumn() {
+        return keyAlias + ".id";
+    }
+    
+    String timeColumn() {
+        return timeColumn;
+    }
+    
+    /**
+     * 期間 [?, ?) の元データが1件でもあるかを返すSQL
+     */
+    String existsSql() {
+        return "SELECT EXISTS (SELECT 1 FROM " + from + " WHERE " + timeColumn + " >= ? AND " + timeColumn + " < ?)";
+    }
+    
+    /**
+     * 元データのうちwhereに一致する行を集計し、各時間単位の集計値へ足し込むSQL
+     * 最も細かい単位で一度集計し、粗い単位はその結果からまとめる
+     */
+    String upsertSql(String where) {
+        RollupGrain finest = grains.get(0);
+        StringBuilder sql = new StringBuilder("WITH delta AS (SELECT COALESCE(")
+            .append(storeColumn).append(", 0) AS store_id, ")
+            .append(dimensionExpression).append(" AS dimension, ")
+            .append("date_trunc('").append(finest.field()).append("', ").append(timeColumn).append(") AS bucket_start, ")
+            .append(countExpression).append(" AS event_count, ")
+            .append(amountExpression).append(" AS amount FROM ").append(from)
+            .append(" WHERE ").append(condition).append(" AND ").append(where)
+            .append(" GROUP BY 1, 2, 3) ")
+            .append("INSERT INTO analytics_rollups (metric, grain, store_id, bucket_start, dimension, event_count, amount) ");
+        for (int i = 0; i < grains.size(); i++) {
+            RollupGrain grain = grains.get(i);
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT '").append(name()).append("', '").append(grain.name()).append("', store_id, ");
+            if (grain == finest) {
+                sql.append("bucket_start, dimension, event_count, amount FROM delta");
+            } else {
+                sql.append("date_trunc('").append(grain.field()).append("', bucket_start), dimension, ")
+                    .append("SUM(event_count), SUM(amount) FROM delta GROUP BY 3, 4, 5");
+            }
+        }
+        return sql.append(" ON CONFLICT (metric, grain, store_id, bucket_start, dimension) DO UPDATE SET ")
+            .append("event_count = analytics_rollups.event_count + EXCLUDED.event_count, ")
+            .append("amount = analytics_rollups.amount + EXCLUDED.amount, updated_at = CURRENT_TIMESTAMP")
+            .toString();
+    }
+}
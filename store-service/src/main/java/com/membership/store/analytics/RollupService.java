@@ -0,0 +1,215 @@
+package com.membership.store.analytics;
+
+import com.membership.store.dto.BackfillStatus;
+import com.membership.store.dto.RollupPoint;
+import com.membership.store.dto.RollupWatermark;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 来場数・売上・入会数の集計
+ * 元データを前回集計した位置（主キー）以降の差分だけ集計値へ足し込み、ダッシュボードは集計値のみを読む
+ * 足し込みと位置の更新は同じトランザクションで行うため、複数インスタンスで動かしても二重に集計しない
+ * バックフィルは月ごとに並列で、集計済み位置までの元データから集計値を作り直す
+ */
+@Service
+@Slf4j
+public class RollupService {
+    
+    private final RollupStore store;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long batchSize;
+    private final long settleMillis;
+    private final ExecutorService backfillExecutor;
+    private final Object backfillLock = new Object();
+    private volatile BackfillStatus backfill;
+    
+    public RollupService(RollupStore store,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${analytics.rollup.enabled:true}") boolean enabled,
+                         @Value("${analytics.rollup.batch-size:100000}") long batchSize,
+                         @Value("${analytics.rollup.settle-ms:120000}") long settleMillis,
+                         @Value("${analytics.rollup.backfill-threads:4}") int backfillThreads) {
+        this.store = store;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.settleMillis = settleMillis;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.backfillExecutor = Executors.newFixedThreadPool(backfillThreads, runnable -> {
+            Thread thread = new Thread(runnable, "rollup-backfill-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * 全指標の差分を集計する
+     */
+    @Scheduled(initialDelayString = "${analytics.rollup.interval-ms:60000}",
+        fixedDelayString = "${analytics.rollup.interval-ms:60000}")
+    public void rollUpAll() {
+        if (!enabled) {
+            return;
+        }
+        for (RollupMetric metric : RollupMetric.values()) {
+            try {
+                long rows = rollUp(metric);
+                if (rows > 0) {
+                    log.debug("Rolled up {} ids of {}", rows, metric);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to roll up {}: {}", metric, e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 1指標の差分を、確定した（登録から一定時間が経った）元データの末尾まで集計する
+     *
+     * @return 集計したIDの範囲の幅
+     */
+    public long rollUp(RollupMetric metric) {
+        store.initWatermark(metric, 0);
+        long total = 0;
+        while (true) {
+            Long advanced = transactionTemplate.execute(status -> {
+                Long lastId = store.lockWatermark(metric);
+                if (lastId == null) {
+                    return 0L;
+                }
+                Long settled = store.findSettledMaxId(metric, settledBefore());
+                if (settled == null || settled <= lastId) {
+                    return 0L;
+                }
+                long toId = Math.min(settled, lastId + batchSize);
+                store.addRange(metric, lastId, toId);
+                store.updateWatermark(metric, toId);
+                return toId - lastId;
+            });
+            if (advanced == null || advanced == 0) {
+                return total;
+            }
+            total += advanced;
+        }
+    }
+    
+    /**
+     * 期間の集計値（店舗を指定しない場合は全店舗の合計、時間単位の開始日時順）
+     */
+    public List<RollupPoint> findPoints(RollupMetric metric, RollupGrain grain, Long storeId,
+                                        LocalDateTime from, LocalDateTime until) {
+        return store.findPoints(metric, grain, storeId, from, until);
+    }
+    
+    public List<RollupWatermark> getWatermarks() {
+        return store.findWatermarks().stream()
+            .map(watermark -> new RollupWatermark(watermark.metric(), watermark.lastId(), watermark.updatedAt()))
+            .toList();
+    }
+    
+    /**
+     * 月 [from, to] の集計値を作り直す処理をバックグラウンドで開始する
+     * 集計済み位置が未登録の指標は現在の確定済みの末尾を位置とし、以降は差分集計に任せる
+     *
+     * @throws BackfillConflictException バックフィルが実行中の場合
+     */
+    public BackfillStatus startBackfill(YearMonth from, YearMonth to, List<RollupMetric> metrics) {
+        synchronized (backfillLock) {
+            BackfillStatus current = backfill;
+            if (current != null && BackfillStatus.RUNNING.equals(current.status())) {
+                throw new BackfillConflictException("Rollup backfill from " + current.from() + " to " + current.to()
+                    + " is already running");
+            }
+            for (RollupMetric metric : metrics) {
+                Long settled = store.findSettledMaxId(metric, settledBefore());
+                store.initWatermark(metric, settled != null ? settled : 0);
+            }
+            List<YearMonth> months = new ArrayList<>();
+            for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+                months.add(month);
+            }
+            int tasks = months.size() * metrics.size();
+            backfill = new BackfillStatus(from, to, metrics, BackfillStatus.RUNNING, tasks, 0, LocalDateTime.now(), null, null);
+            Thread coordinator = new Thread(() -> runBackfill(months, metrics), "rollup-backfill");
+            coordinator.setDaemon(true);
+            coordinator.start();
+            return backfill;
+        }
+    }
+    
+    public BackfillStatus getBackfill() {
+        return backfill;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+    
+    private void runBackfill(List<YearMonth> months, List<RollupMetric> metrics) {
+        AtomicInteger completed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (YearMonth month : months) {
+            for (RollupMetric metric : metrics) {
+                futures.add(backfillExecutor.submit(() -> {
+                    rebuild(metric, month);
+                    int done = completed.incrementAndGet();
+                    synchronized (backfillLock) {
+                        backfill = backfill.withCompletedTasks(done);
+                    }
+                }));
+            }
+        }
+        String error = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = "interrupted";
+                break;
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.error("Rollup backfill task failed", cause);
+                error = cause.getMessage();
+            }
+        }
+        synchronized (backfillLock) {
+            backfill = backfill.finish(error == null ? BackfillStatus.COMPLETED : BackfillStatus.FAILED, error);
+        }
+        log.info("Rollup backfill {} for {} months of {}", backfill.status(), months.size(), metrics);
+    }
+    
+    /**
+     * 1か月分の集計値を作り直す。集計済み位置を共有ロックし、その位置までの元データだけを集計する
+     */
+    private void rebuild(RollupMetric metric, YearMonth month) {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime until = month.plusMonths(1).atDay(1).atStartOfDay();
+        Boolean rebuilt = transactionTemplate.execute(status ->
+            store.rebuildPeriod(metric, from, until, store.shareWatermark(metric)));
+        if (!Boolean.TRUE.equals(rebuilt)) {
+            log.info("Kept {} rollups of {} without source rows", metric, month);
+        }
+    }
+    
+    private LocalDateTime settledBefore() {
+        return LocalDateTime.now().minusNanos(settleMillis * 1_000_000);
+    }
+}
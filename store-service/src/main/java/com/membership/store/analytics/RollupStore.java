@@ -0,0 +1,116 @@
+package com.membership.store.analytics;
+
+import com.membership.store.dto.RollupPoint;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 集計値と集計済み位置の読み書き（analytics_rollups / analytics_watermarks）
+ */
+@Component
+class RollupStore {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    RollupStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    record Watermark(RollupMetric metric, long lastId, LocalDateTime updatedAt) {
+    }
+    
+    /**
+     * 集計済み位置を未登録の場合のみ登録する
+     */
+    void initWatermark(RollupMetric metric, long lastId) {
+        jdbcTemplate.update("INSERT INTO analytics_watermarks (source, last_id) VALUES (?, ?) ON CONFLICT (source) DO NOTHING",
+            metric.name(), lastId);
+    }
+    
+    /**
+     * 集計済み位置を更新のためにロックする。他のインスタンスが集計中（またはバックフィル中）の場合はnull
+     */
+    Long lockWatermark(RollupMetric metric) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT last_id FROM analytics_watermarks WHERE source = ? " +
+            "FOR UPDATE SKIP LOCKED", Long.class, metric.name());
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+    
+    /**
+     * 集計済み位置を共有ロックして読む。バックフィル中に差分集計が位置を進めないようにする
+     */
+    long shareWatermark(RollupMetric metric) {
+        return jdbcTemplate.queryForObject("SELECT last_id FROM analytics_watermarks WHERE source = ? FOR SHARE",
+            Long.class, metric.name());
+    }
+    
+    void updateWatermark(RollupMetric metric, long lastId) {
+        jdbcTemplate.update("UPDATE analytics_watermarks SET last_id = ?, updated_at = CURRENT_TIMESTAMP WHERE source = ?",
+            lastId, metric.name());
+    }
+    
+    List<Watermark> findWatermarks() {
+        return jdbcTemplate.query("SELECT source, last_id, updated_at FROM analytics_watermarks ORDER BY source",
+            (rs, rowNum) -> new Watermark(RollupMetric.valueOf(rs.getString("source")), rs.getLong("last_id"),
+                rs.getTimestamp("updated_at").toLocalDateTime()));
+    }
+    
+    /**
+     * 登録から一定時間が経った元データの最大ID
+     * 採番順とコミット順は一致しないため、まだコミットされていない小さいIDを飛ばして位置を進めないよう、最近の行は待つ
+     */
+    Long findSettledMaxId(RollupMetric metric, LocalDateTime createdBefore) {
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + metric.table() + " WHERE created_at < ?",
+            Long.class, Timestamp.valueOf(createdBefore));
+    }
+    
+    /**
+     * ID範囲 (fromId, toId] の元データを集計値へ足し込む
+     */
+    void addRange(RollupMetric metric, long fromId, long toId) {
+        jdbcTemplate.update(metric.upsertSql(metric.keyColumn() + " > ? AND " + metric.keyColumn() + " <= ?"),
+            fromId, toId);
+    }
+    
+    /**
+     * 期間 [from, until) の集計値を、ID maxId以下の元データから集計し直す
+     * 保持期間を過ぎて元データのパーティションが切り離された期間は集計値を残すため、元データがなければ何もしない
+     *
+     * @return 集計し直した場合はtrue
+     */
+    boolean rebuildPeriod(RollupMetric metric, LocalDateTime from, LocalDateTime until, long maxId) {
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(metric.existsSql(), Boolean.class,
+            Timestamp.valueOf(from), Timestamp.valueOf(until)))) {
+            return false;
+        }
+        jdbcTemplate.update("DELETE FROM analytics_rollups WHERE metric = ? AND bucket_start >= ? AND bucket_start < ?",
+            metric.name(), Timestamp.valueOf(from), Timestamp.valueOf(until));
+        jdbcTemplate.update(metric.upsertSql(metric.keyColumn() + " <= ? AND " + metric.timeColumn() + " >= ? AND "
+                + metric.timeColumn() + " < ?"),
+            maxId, Timestamp.valueOf(from), Timestamp.valueOf(until));
+        return true;
+    }
+    
+    /**
+     * 期間 [from, until) の集計値（店舗を指定しない場合は全店舗の合計）
+     */
+    List<RollupPoint> findPoints(RollupMetric metric, RollupGrain grain, Long storeId,
+                                 LocalDateTime from, LocalDateTime until) {
+        StringBuilder sql = new StringBuilder("SELECT bucket_start, dimension, SUM(event_count) AS event_count, " +
+            "SUM(amount) AS amount FROM analytics_rollups WHERE metric = ? AND grain = ? AND bucket_start >= ? AND bucket_start < ?");
+        List<Object> args = new ArrayList<>(List.of(metric.name(), grain.name(), Timestamp.valueOf(from), Timestamp.valueOf(until)));
+        if (storeId != null) {
+            sql.append(" AND store_id = ?");
+            args.add(storeId);
+        }
+        sql.append(" GROUP BY bucket_start, dimension ORDER BY bucket_start, dimension");
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new RollupPoint(
+            rs.getTimestamp("bucket_start").toLocalDateTime(), rs.getString("dimension"),
+            rs.getLong("event_count"), rs.getBigDecimal("amount")), args.toArray());
+    }
+}
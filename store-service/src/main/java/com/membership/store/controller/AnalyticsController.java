@@ -0,0 +1,78 @@
+package com.membership.store.controller;
+
+import com.membership.store.analytics.RollupGrain;
+import com.membership.store.analytics.RollupMetric;
+import com.membership.store.analytics.RollupService;
+import com.membership.store.dto.BackfillStatus;
+import com.membership.store.dto.RollupPoint;
+import com.membership.store.dto.RollupWatermark;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/stores/analytics")
+@Tag(name = "Store Analytics", description = "店舗分析API")
+public class AnalyticsController {
+    
+    private final RollupService rollupService;
+    private final int maxRangeDays;
+    
+    public AnalyticsController(RollupService rollupService,
+                               @Value("${analytics.rollup.max-range-days:400}") int maxRangeDays) {
+        this.rollupService = rollupService;
+        this.maxRangeDays = maxRangeDays;
+    }
+    
+    @GetMapping("/rollups")
+    @Operation(summary = "集計値", description = "指標の期間（from〜to、日付）の集計値を時間単位ごとに返す。店舗を指定しない場合は全店舗の合計")
+    public ResponseEntity<List<RollupPoint>> getRollups(
+            @RequestParam RollupMetric metric,
+            @RequestParam RollupGrain grain,
+            @RequestParam(required = false) Long storeId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (!metric.grains().contains(grain) || to.isBefore(from)
+            || ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(rollupService.findPoints(metric, grain, storeId,
+            from.atStartOfDay(), to.plusDays(1).atStartOfDay()));
+    }
+    
+    @GetMapping("/watermarks")
+    @Operation(summary = "集計済み位置", description = "指標ごとに集計値へ反映済みの元データの位置を返す")
+    public ResponseEntity<List<RollupWatermark>> getWatermarks() {
+        return ResponseEntity.ok(rollupService.getWatermarks());
+    }
+    
+    @PostMapping("/backfill")
+    @Operation(summary = "集計値のバックフィル開始", description = "月（from〜to、yyyy-MM）の集計値を元データから月ごとに並列で作り直す")
+    public ResponseEntity<BackfillStatus> startBackfill(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            @RequestParam(required = false) List<RollupMetric> metrics) {
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<RollupMetric> targets = metrics == null || metrics.isEmpty() ? Arrays.asList(RollupMetric.values()) : metrics;
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(rollupService.startBackfill(from, to, targets));
+    }
+    
+    @GetMapping("/backfill")
+    @Operation(summary = "集計値のバックフィルの状況", description = "最後に開始したバックフィルの実行状況を返す")
+    public ResponseEntity<BackfillStatus> getBackfill() {
+        BackfillStatus status = rollupService.getBackfill();
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.membership.store.dto;
+
+import com.membership.store.analytics.RollupMetric;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * 集計値のバックフィルの実行状況
+ *
+ * @param status         RUNNING / COMPLETED / FAILED
+ * @param totalTasks     指標×月の件数
+ * @param completedTasks 完了した指標×月の件数
+ * @param error          失敗した場合のエラー内容
+ */
+public record BackfillStatus(
+    YearMonth from,
+    YearMonth to,
+    List<RollupMetric> metrics,
+    String status,
+    int totalTasks,
+    int completedTasks,
+    LocalDateTime startedAt,
+    LocalDateTime finishedAt,
+    String error
+) {
+    
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+    
+    public BackfillStatus withCompletedTasks(int completedTasks) {
+        return new BackfillStatus(from, to, metrics, status, totalTasks, completedTasks, startedAt, finishedAt, error);
+    }
+    
+    public BackfillStatus finish(String status, String error) {
+        return new BackfillStatus(from, to, metrics, status, totalTasks, completedTasks, startedAt, LocalDateTime.now(), error);
+    }
+}
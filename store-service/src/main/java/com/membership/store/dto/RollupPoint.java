@@ -0,0 +1,20 @@
+package com.membership.store.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 時間単位ごとの集計値
+ *
+ * @param bucketStart 時間単位の開始日時
+ * @param dimension   内訳（商品カテゴリ別の販売の場合はカテゴリ、それ以外は空文字）
+ * @param count       件数（商品カテゴリ別の販売の場合は販売数量）
+ * @param amount      金額（来場数・入会数は0）
+ */
+public record RollupPoint(
+    LocalDateTime bucketStart,
+    String dimension,
+    long count,
+    BigDecimal amount
+) {
+}
@@ -0,0 +1,17 @@
+package com.membership.store.dto;
+
+import com.membership.store.analytics.RollupMetric;
+
+import java.time.LocalDateTime;
+
+/**
+ * 指標ごとの集計済み位置
+ *
+ * @param lastId 集計値に反映済みの元データの最大ID
+ */
+public record RollupWatermark(
+    RollupMetric metric,
+    long lastId,
+    LocalDateTime updatedAt
+) {
+}